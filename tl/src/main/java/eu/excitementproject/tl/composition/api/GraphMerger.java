@@ -1,5 +1,6 @@
 package eu.excitementproject.tl.composition.api;
 
+import java.util.Iterator;
 import java.util.Set;
 
 import eu.excitementproject.tl.composition.exceptions.GraphMergerException;
@@ -14,8 +15,10 @@ import eu.excitementproject.tl.structures.rawgraph.EntailmentGraphRaw;
   graph {@link EntailmentGraphRaw}.
 <p> <b>Input-case2:</b> one {@link FragmentGraph}, and one work
   graph {@link EntailmentGraphRaw}.
+<p> <b>Input-case3:</b> a stream (iterator) of {@link FragmentGraph}s, and one work
+  graph {@link EntailmentGraphRaw}.
 
-<p> <b>Output (case1,2):</b> No additional output. When successfully called,
+<p> <b>Output (case1,2,3):</b> No additional output. When successfully called,
   the work graph will be enriched by merging it with the given
   fragment graph (set of fragment graphs).
 
@@ -67,6 +70,19 @@ public interface GraphMerger {
 			FragmentGraph fragmentGraph,
 			EntailmentGraphRaw workGraph) throws GraphMergerException;
 	
+	/** input-case3: a stream of FragmentGraphs ({@link FragmentGraph}), and a work
+	  graph ({@link EntailmentGraphRaw}). The fragment graphs are merged one by one, in the order of the iterator, 
+	  so the merge can start before all the fragment graphs are available (e.g. with a {@link eu.excitementproject.tl.composition.graphmerger.FragmentGraphQueue}).
+		 * @param fragmentGraphs
+		 * @param workGraph
+		 * @return the work graph (EntailmentGraphRaw) enriched by the given fragments
+		 * @throws GraphMergerException if the implementation can't merge the graphs for some
+	  reason
+		 */
+	public EntailmentGraphRaw mergeGraphs(
+			Iterator<FragmentGraph> fragmentGraphs,
+			EntailmentGraphRaw workGraph) throws GraphMergerException;
+	
 	/**
 	 * Set confidence threshold to be applied while merging.
 	 * To disable thresholding, set the threshold to null.
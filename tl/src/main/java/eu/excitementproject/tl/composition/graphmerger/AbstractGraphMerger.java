@@ -3,21 +3,30 @@
  */
 package eu.excitementproject.tl.composition.graphmerger;
 
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
 import java.util.HashSet;
-
+import java.util.Iterator;
+import java.util.Map;
 import java.util.Set;
 import org.apache.log4j.Logger;
+import org.apache.uima.jcas.JCas;
 
 import eu.excitementproject.eop.common.DecisionLabel;
 import eu.excitementproject.eop.common.EDABasic;
+import eu.excitementproject.eop.lap.LAPException;
 import eu.excitementproject.tl.composition.api.GraphMerger;
 import eu.excitementproject.tl.composition.exceptions.EntailmentGraphRawException;
 import eu.excitementproject.tl.composition.exceptions.GraphMergerException;
+import eu.excitementproject.tl.edautils.EDADecisionCache;
+import eu.excitementproject.tl.edautils.TEDecisionWithConfidence;
 import eu.excitementproject.tl.laputils.CachedLAPAccess;
 import eu.excitementproject.tl.structures.fragmentgraph.FragmentGraph;
 import eu.excitementproject.tl.structures.rawgraph.EntailmentGraphRaw;
 import eu.excitementproject.tl.structures.rawgraph.EntailmentRelation;
 import eu.excitementproject.tl.structures.rawgraph.EntailmentUnit;
+import eu.excitementproject.tl.structures.rawgraph.utils.EdgeType;
 
 
 /**
@@ -42,6 +51,16 @@ public abstract class AbstractGraphMerger implements GraphMerger{
 	 */
 	public Integer edaCalls = null;
 
+	/**
+	 * Holds the number of pairs, which were not sent to the EDA since they were pruned by the blocker (i.e. the number of saved EDA calls).
+	 */
+	public int prunedPairs = 0;
+
+	/**
+	 * Holds the number of pairs, which were left undecided since the budget of the merge was used up.
+	 */
+	public int undecidedPairs = 0;
+
 	/**
 	 * Holds the predefined threshold for confidence of entailment decisions. 
 	 * Is null when no threshold is defined. 
@@ -59,6 +78,72 @@ public abstract class AbstractGraphMerger implements GraphMerger{
 	 */
 	private final EDABasic<?> eda;
 	
+	/**
+	 * Cache of EDA decisions, which is consulted before each EDA call. Is null if no cache is used.
+	 * <p>Should be set by the method {@link AbstractGraphMerger#setDecisionCache(EDADecisionCache)}.
+	 */
+	private EDADecisionCache decisionCache = null;
+	
+	/**
+	 * Blocker, which proposes the pairs to be sent to the EDA. The other pairs get a "pruned" non-entailment decision. Is null if no blocking is done.
+	 * <p>Should be set by the method {@link AbstractGraphMerger#setBlocker(LexicalOverlapBlocker)}.
+	 */
+	private LexicalOverlapBlocker blocker = null;
+	
+	/**
+	 * Maximal number of EDA calls of a merge. Is null if the number of calls is not limited.
+	 * <p>Should be set by the method {@link AbstractGraphMerger#setEdaCallBudget(Integer)}.
+	 */
+	private Integer edaCallBudget = null;
+
+	/**
+	 * Maximal duration of a merge in milliseconds. Is null if the duration is not limited.
+	 * <p>Should be set by the method {@link AbstractGraphMerger#setTimeBudget(Long)}.
+	 */
+	private Long timeBudget = null;
+
+	/**
+	 * The value of {@link AbstractGraphMerger#edaCalls} when the budget was started (null if it was not started yet)
+	 */
+	private Integer budgetStartEdaCalls = null;
+
+	/**
+	 * The time (in milliseconds) at which the time budget is used up
+	 */
+	private long budgetDeadline = Long.MAX_VALUE;
+	
+	/**
+	 * File of the merge checkpoints. Is null if no checkpoints are saved.
+	 * <p>Should be set by the method {@link AbstractGraphMerger#setCheckpoint(File, int, boolean)}.
+	 */
+	private File checkpointFile = null;
+
+	/**
+	 * Number of fragment graphs merged between two checkpoints
+	 */
+	private int checkpointInterval = 0;
+
+	/**
+	 * true if the next merge should continue from the checkpoint file (if it exists)
+	 */
+	private boolean resume = false;
+
+	/**
+	 * The number of fragment graphs merged into the work graph, per key (see {@link MergeCheckpoint#getFragmentGraphKey(FragmentGraph)}). Is null if no checkpoints are saved.
+	 */
+	private Map<String, Integer> mergedFragmentGraphs = null;
+
+	/**
+	 * The number of fragment graphs per key, which were merged before the checkpoint the merge resumed from, and were not skipped yet. 
+	 * Is null if the merge did not resume from a checkpoint.
+	 */
+	private Map<String, Integer> fragmentGraphsToSkip = null;
+
+	/**
+	 * Number of fragment graphs merged since the last checkpoint
+	 */
+	private int mergedSinceCheckpoint = 0;
+	
 	/******************************************************************************************
 	 * CONSTRUCTORS
 	 * ****************************************************************************************/
@@ -85,6 +170,25 @@ public abstract class AbstractGraphMerger implements GraphMerger{
 		return mergeGraphs(fragmentGraphs, null);
 	}	
 	
+	/** Merge the fragment graphs one by one, in the order of the iterator (unlike the merge of a set, they are not sorted).
+	 */
+	@Override
+	public EntailmentGraphRaw mergeGraphs(Iterator<FragmentGraph> fragmentGraphs, EntailmentGraphRaw workGraph)
+			throws GraphMergerException {
+		workGraph = resumeFromCheckpoint(workGraph);
+		int i = 0;
+		while (fragmentGraphs.hasNext()){
+			FragmentGraph fragmentGraph = fragmentGraphs.next();
+			if (isMergedBeforeCheckpoint(fragmentGraph)) continue;
+			workGraph = mergeGraphs(fragmentGraph, workGraph);
+			fragmentGraphMerged(fragmentGraph, workGraph);
+			i++;
+			logger.info("Merged FG #"+String.valueOf(i));
+		}
+		saveCheckpoint(workGraph);
+		return workGraph;
+	}
+
 	@Override
 	public Integer getEdaCallsNumber() {
 		return edaCalls;
@@ -112,6 +216,230 @@ public abstract class AbstractGraphMerger implements GraphMerger{
 		return this.eda;
 	}
 
+	/**
+	 * @return the cache of EDA decisions used by the merger (null if no cache is used)
+	 */
+	public EDADecisionCache getDecisionCache() {
+		return decisionCache;
+	}
+
+	/**
+	 * Set the cache of EDA decisions to be consulted before each EDA call.
+	 * The same cache can be shared by several mergers. To disable caching, set the cache to null.
+	 * @param decisionCache
+	 */
+	public void setDecisionCache(EDADecisionCache decisionCache) {
+		this.decisionCache = decisionCache;
+	}
+
+	/**
+	 * @return the blocker used by the merger (null if no blocking is done)
+	 */
+	public LexicalOverlapBlocker getBlocker() {
+		return blocker;
+	}
+
+	/**
+	 * Set the blocker, which proposes the pairs to be sent to the EDA. Pairs, which are not proposed, are not sent to the EDA 
+	 * and get a non-entailment decision with edge type {@link EdgeType#PRUNED}. 
+	 * Should only be used with lexical EDAs, which cannot find entailment between texts without common content words.
+	 * To disable blocking, set the blocker to null.
+	 * @param blocker
+	 */
+	public void setBlocker(LexicalOverlapBlocker blocker) {
+		this.blocker = blocker;
+	}
+
+	/**
+	 * @return the number of pairs pruned by the blocker, i.e. the number of saved EDA calls
+	 */
+	public int getPrunedPairsNumber() {
+		return prunedPairs;
+	}
+
+	/**
+	 * @return the number of pairs left undecided since the budget of the merge was used up
+	 */
+	public int getUndecidedPairsNumber() {
+		return undecidedPairs;
+	}
+
+	/**
+	 * Limit the number of EDA calls of a merge. Once the budget is used up, the remaining pairs are not sent to the EDA, 
+	 * and get an "unknown" decision with edge type {@link EdgeType#UNDECIDED}. Mergers, which evaluate a list of pairs, 
+	 * evaluate the most promising pairs first when a budget is set.
+	 * @param edaCallBudget - the maximal number of EDA calls (cached decisions are not counted), or null for no limit
+	 */
+	public void setEdaCallBudget(Integer edaCallBudget) {
+		this.edaCallBudget = edaCallBudget;
+	}
+
+	/**
+	 * Limit the duration of a merge. Once the time is up, the remaining pairs are not sent to the EDA (see {@link AbstractGraphMerger#setEdaCallBudget(Integer)}). 
+	 * @param timeBudget - the maximal duration of the merge in milliseconds, or null for no limit
+	 */
+	public void setTimeBudget(Long timeBudget) {
+		this.timeBudget = timeBudget;
+	}
+
+	/**
+	 * @return true if the number of EDA calls or the duration of a merge is limited
+	 */
+	public boolean hasBudget() {
+		return (edaCallBudget!=null) || (timeBudget!=null);
+	}
+
+	/**
+	 * Start counting the EDA calls and the time of the budget from now. 
+	 * Is called when the merge of a set of fragment graphs starts. Before that, the budget is started by the first EDA call.
+	 */
+	public void startBudget() {
+		budgetStartEdaCalls = edaCalls;
+		budgetDeadline = (timeBudget==null) ? Long.MAX_VALUE : System.currentTimeMillis() + timeBudget;
+	}
+
+	/**
+	 * @return the number of EDA calls left in the budget (Integer.MAX_VALUE if the number of calls is not limited)
+	 */
+	protected int getRemainingEdaCalls() {
+		if (budgetStartEdaCalls==null) startBudget();
+		if (edaCallBudget==null) return Integer.MAX_VALUE;
+		return Math.max(0, edaCallBudget - (edaCalls - budgetStartEdaCalls));
+	}
+
+	/**
+	 * @return true if the time of the budget is up
+	 */
+	protected boolean isTimeBudgetExhausted() {
+		if (budgetStartEdaCalls==null) startBudget();
+		return System.currentTimeMillis() >= budgetDeadline;
+	}
+
+	/**
+	 * @return true if no more EDA calls can be made within the budget
+	 */
+	protected boolean isBudgetExhausted() {
+		if (!hasBudget()) return false;
+		return (getRemainingEdaCalls()==0) || isTimeBudgetExhausted();
+	}
+
+	/**
+	 * Save checkpoints of the merge of a set (or stream) of fragment graphs: the work graph, the fragment graphs merged so far and the counters of the merger 
+	 * are saved to the given file (see {@link MergeCheckpoint}) every checkpointInterval fragment graphs, and at the end of the merge. 
+	 * <p>With resume = true, the next merge continues from the checkpoint in the given file, if it exists: the work graph and the counters are restored, 
+	 * and the fragment graphs merged before the checkpoint are skipped, so that their pairs are not sent to the EDA again.
+	 * To disable checkpoints, set the file to null.
+	 * @param checkpointFile
+	 * @param checkpointInterval - the number of fragment graphs merged between two checkpoints
+	 * @param resume - whether to continue from the checkpoint in the file
+	 */
+	public void setCheckpoint(File checkpointFile, int checkpointInterval, boolean resume) {
+		this.checkpointFile = checkpointFile;
+		this.checkpointInterval = checkpointInterval;
+		this.resume = resume && (checkpointFile != null);
+		this.mergedFragmentGraphs = (checkpointFile == null) ? null : new HashMap<String, Integer>();
+		this.fragmentGraphsToSkip = null;
+		this.mergedSinceCheckpoint = 0;
+	}
+
+	/**
+	 * If the merger should resume, restore the work graph, the merged fragment graphs and the counters from the checkpoint file (if it exists). 
+	 * Is called when the merge of a set of fragment graphs starts.
+	 * @param workGraph - the work graph given to the merge
+	 * @return the work graph of the checkpoint, or the given work graph if there is no checkpoint to resume from
+	 * @throws GraphMergerException if the checkpoint cannot be read
+	 */
+	protected EntailmentGraphRaw resumeFromCheckpoint(EntailmentGraphRaw workGraph) throws GraphMergerException {
+		if (!resume) return workGraph;
+		resume = false; // only the first merge resumes
+		if (!checkpointFile.exists()) {
+			logger.info("No checkpoint to resume from in " + checkpointFile.getPath());
+			return workGraph;
+		}
+		try {
+			MergeCheckpoint checkpoint = MergeCheckpoint.read(checkpointFile);
+			mergedFragmentGraphs = new HashMap<String, Integer>(checkpoint.getMergedFragmentGraphs());
+			fragmentGraphsToSkip = new HashMap<String, Integer>(checkpoint.getMergedFragmentGraphs());
+			edaCalls = checkpoint.getEdaCalls();
+			prunedPairs = checkpoint.getPrunedPairs();
+			undecidedPairs = checkpoint.getUndecidedPairs();
+			logger.info("Resuming from checkpoint " + checkpointFile.getPath() + : " + getMergedFragmentGraphsNumber() + " merged fragment graphs, " 
+					+ checkpoint.getWorkGraph().vertexSet().size() + " nodes, " + edaCalls + " EDA calls");
+			return checkpoint.getWorkGraph();
+		} catch (IOException e) {
+			throw new GraphMergerException("Cannot resume from checkpoint " + checkpointFile.getPath() + "\n" + e.getMessage());
+		}
+	}
+
+	/**
+	 * Check whether the given fragment graph was merged before the checkpoint the merge resumed from, and should be skipped.
+	 * <p>Several fragment graphs can have the same key, so each call uses up one of the fragment graphs with the key of the given one: 
+	 * if n fragment graphs with this key were merged before the checkpoint, the first n calls with this key return true.
+	 * If the merge did not resume from a checkpoint, no fragment graph is skipped.
+	 * @param fragmentGraph
+	 * @return true if the given fragment graph should be skipped
+	 */
+	protected boolean isMergedBeforeCheckpoint(FragmentGraph fragmentGraph) {
+		if (fragmentGraphsToSkip == null) return false;
+		String key = MergeCheckpoint.getFragmentGraphKey(fragmentGraph);
+		Integer toSkip = fragmentGraphsToSkip.get(key);
+		if (toSkip == null) return false;
+		if (toSkip > 1) fragmentGraphsToSkip.put(key, toSkip - 1);
+		else fragmentGraphsToSkip.remove(key);
+		return true;
+	}
+
+	/**
+	 * Record that the given fragment graph was merged into the work graph, and save a checkpoint if checkpointInterval fragment graphs were merged since the last one.
+	 * @param fragmentGraph
+	 * @param workGraph
+	 * @throws GraphMergerException if the checkpoint cannot be saved
+	 */
+	protected void fragmentGraphMerged(FragmentGraph fragmentGraph, EntailmentGraphRaw workGraph) throws GraphMergerException {
+		if (mergedFragmentGraphs == null) return;
+		setMerged(fragmentGraph);
+		if (mergedSinceCheckpoint >= checkpointInterval) saveCheckpoint(workGraph);
+	}
+
+	/**
+	 * Record that the given fragment graph was merged into the work graph, without saving a checkpoint
+	 * @param fragmentGraph
+	 */
+	protected void setMerged(FragmentGraph fragmentGraph) {
+		if (mergedFragmentGraphs == null) return;
+		String key = MergeCheckpoint.getFragmentGraphKey(fragmentGraph);
+		Integer merged = mergedFragmentGraphs.get(key);
+		mergedFragmentGraphs.put(key, (merged == null) ? 1 : merged + 1);
+		mergedSinceCheckpoint++;
+	}
+
+	/**
+	 * @return the number of fragment graphs merged into the work graph, as recorded for the checkpoints
+	 */
+	private int getMergedFragmentGraphsNumber() {
+		int number = 0;
+		for (Integer merged : mergedFragmentGraphs.values()) {
+			number += merged;
+		}
+		return number;
+	}
+
+	/**
+	 * Save a checkpoint of the given work graph, if checkpoints are saved
+	 * @param workGraph
+	 * @throws GraphMergerException if the checkpoint cannot be saved
+	 */
+	protected void saveCheckpoint(EntailmentGraphRaw workGraph) throws GraphMergerException {
+		if ((mergedFragmentGraphs == null) || (workGraph == null)) return;
+		try {
+			new MergeCheckpoint(workGraph, mergedFragmentGraphs, edaCalls, prunedPairs, undecidedPairs).write(checkpointFile);
+			mergedSinceCheckpoint = 0;
+			logger.info("Saved checkpoint " + checkpointFile.getPath() + " after " + getMergedFragmentGraphsNumber() + " merged fragment graphs");
+		} catch (IOException e) {
+			throw new GraphMergerException("Cannot save checkpoint " + checkpointFile.getPath() + "\n" + e.getMessage());
+		}
+	}
+
 	/**
 	 * @return the entailmentConfidenceThreshold
 	 */
@@ -188,6 +516,8 @@ public abstract class AbstractGraphMerger implements GraphMerger{
 	/** Make an EDA call and return the resulting {@link EntailmentRelation} for candidateEntailingNode -> candidateEntailedNode.
 	 * <p> Does not take into consideration the value of {@link AbstractGraphMerger#entailmentConfidenceThreshold}.
 	 * <p> The method performs the actual EDA call, and thus updates the value of {@link AbstractGraphMerger#edaCalls}. 
+	 * If a decision cache is set and holds the decision, no EDA call is made and the counter is not updated.
+	 * If the budget of the merge is used up, no EDA call is made and an "undecided" relation is returned (see {@link AbstractGraphMerger#getUndecidedRelation(EntailmentUnit, EntailmentUnit)}).
 
 	 * @param candidateEntailingNode
 	 * @param candidateEntailedNode
@@ -196,15 +526,69 @@ public abstract class AbstractGraphMerger implements GraphMerger{
 	 * @throws GraphMergerException 
 	 */
 	protected EntailmentRelation getRelation(EntailmentUnit candidateEntailingNode, EntailmentUnit candidateEntailedNode) throws GraphMergerException{	
-		edaCalls++;
 		// check only one direction: candidateEntailingNode -> candidateEntailedNode
+		if (isBudgetExhausted()) return getUndecidedRelation(candidateEntailingNode, candidateEntailedNode);
+		try {
+			EntailmentRelation r = new EntailmentRelation(candidateEntailingNode, candidateEntailedNode, this.getEda(), this.lap, this.lap.getWorkJCas(), this.decisionCache);
+			if (!r.isCachedDecision()) edaCalls++;
+			return r;
+		} catch (EntailmentGraphRawException | LAPException e) {
+			throw new GraphMergerException(e.getMessage());
+		}
+	}
+
+	/** Make an EDA call with the given EDA instance and pair CAS and return the resulting {@link EntailmentRelation} for candidateEntailingNode -> candidateEntailedNode.
+	 * <p> Unlike {@link AbstractGraphMerger#getRelation(EntailmentUnit, EntailmentUnit)}, this method does not use the work JCas of the LAP ({@link CachedLAPAccess#getWorkJCas()}) 
+	 * and does not update {@link AbstractGraphMerger#edaCalls}, so that it can be called concurrently by several workers. 
+	 * The caller is responsible for counting the EDA calls (see {@link EntailmentRelation#isCachedDecision()}).
+	 * 
+	 * @param candidateEntailingNode
+	 * @param candidateEntailedNode
+	 * @param eda - the EDA instance to be used (should not be shared with other threads)
+	 * @param pairCAS - the JCas to be used for the text-hypothesis pair (should not be shared with other threads)
+	 * @return Return the corresponding {@link EntailmentRelation}.
+	 * @throws GraphMergerException
+	 */
+	protected EntailmentRelation computeRelation(EntailmentUnit candidateEntailingNode, EntailmentUnit candidateEntailedNode, EDABasic<?> eda, JCas pairCAS) throws GraphMergerException{
 		try {
-			return new EntailmentRelation(candidateEntailingNode, candidateEntailedNode, this.getEda(), this.lap);
+			return new EntailmentRelation(candidateEntailingNode, candidateEntailedNode, eda, this.lap, pairCAS, this.decisionCache);
 		} catch (EntailmentGraphRawException e) {
 			throw new GraphMergerException(e.getMessage());
 		}
 	}
 
+	/** Check whether the pair candidateEntailingNode -> candidateEntailedNode is pruned by the blocker, i.e. should not be sent to the EDA.
+	 * @param candidateEntailingNode
+	 * @param candidateEntailedNode
+	 * @return true if a blocker is set and it does not propose the pair, otherwise false
+	 */
+	protected boolean isPruned(EntailmentUnit candidateEntailingNode, EntailmentUnit candidateEntailedNode){
+		if (blocker==null) return false;
+		return !blocker.isCandidatePair(candidateEntailingNode, candidateEntailedNode);
+	}
+
+	/** Return a "pruned" non-entailment {@link EntailmentRelation} for candidateEntailingNode -> candidateEntailedNode, without an EDA call.
+	 * <p> The method updates the value of {@link AbstractGraphMerger#prunedPairs}.
+	 * @param candidateEntailingNode
+	 * @param candidateEntailedNode
+	 * @return Return the corresponding {@link EntailmentRelation}, with edge type {@link EdgeType#PRUNED}.
+	 */
+	protected EntailmentRelation getPrunedRelation(EntailmentUnit candidateEntailingNode, EntailmentUnit candidateEntailedNode){
+		prunedPairs++;
+		return new EntailmentRelation(candidateEntailingNode, candidateEntailedNode, new TEDecisionWithConfidence(1.0, DecisionLabel.NonEntailment), EdgeType.PRUNED);
+	}
+
+	/** Return an "undecided" {@link EntailmentRelation} for candidateEntailingNode -> candidateEntailedNode, for a pair left without EDA call since the budget was used up.
+	 * <p> The method updates the value of {@link AbstractGraphMerger#undecidedPairs}.
+	 * @param candidateEntailingNode
+	 * @param candidateEntailedNode
+	 * @return Return the corresponding {@link EntailmentRelation}, with {@link DecisionLabel#Unknown} label and edge type {@link EdgeType#UNDECIDED}.
+	 */
+	protected EntailmentRelation getUndecidedRelation(EntailmentUnit candidateEntailingNode, EntailmentUnit candidateEntailedNode){
+		undecidedPairs++;
+		return new EntailmentRelation(candidateEntailingNode, candidateEntailedNode, new TEDecisionWithConfidence(0.0, DecisionLabel.Unknown), EdgeType.UNDECIDED);
+	}
+
 	/** Check if the given confidence is sufficient to consider an entailment decision valid, based on the predefined threshold {@link AbstractGraphMerger#entailmentConfidenceThreshold}.
 	 * @param confidence - the given confidence to check
 	 * @return true if the given confidence is >= the threshold, otherwise return false. If no threshold was defined, return true.
@@ -1,24 +1,51 @@
 package eu.excitementproject.tl.composition.graphmerger;
 
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.log4j.Logger;
+import org.apache.uima.jcas.JCas;
 
 import eu.excitementproject.eop.common.EDABasic;
+import eu.excitementproject.eop.lap.LAPException;
 import eu.excitementproject.tl.composition.exceptions.GraphMergerException;
+import eu.excitementproject.tl.laputils.CASUtils;
 import eu.excitementproject.tl.laputils.CachedLAPAccess;
+import eu.excitementproject.tl.structures.fragmentgraph.EntailmentUnitMention;
 import eu.excitementproject.tl.structures.fragmentgraph.FragmentGraph;
 import eu.excitementproject.tl.structures.rawgraph.EntailmentGraphRaw;
 import eu.excitementproject.tl.structures.rawgraph.EntailmentRelation;
 import eu.excitementproject.tl.structures.rawgraph.EntailmentUnit;
+import eu.excitementproject.tl.structures.rawgraph.utils.EdgeType;
 
 /**
  * This graph merger performs the merge by comparing all possible node pairs. 
+ * Each merge step only compares the pairs with a node added by this step, since the other pairs were compared by the previous steps.
  * Note that in this implementation both "entailment" and "non-entailment" edges are added during the merge. 
  * Yet, absence of an edge in the merged graph should be interpreted as "no entailment".  
+ * <p>If a blocker is set (see {@link AbstractGraphMerger#setBlocker(LexicalOverlapBlocker)}), only the pairs proposed by the blocker are sent to the EDA.
+ * <p>If a budget is set (see {@link AbstractGraphMerger#setEdaCallBudget(Integer)} and {@link AbstractGraphMerger#setTimeBudget(Long)}), the pairs of each merge step 
+ * are evaluated best-first (see {@link AllPairsGraphMerger#getPairPriority(EntailmentUnit, EntailmentUnit)}), and the pairs left when the budget is used up get an "undecided" edge.
+ * Undecided pairs are evaluated again by the next merge into the same work graph (e.g. with a new budget), which replaces their "undecided" edges.
+ * <p>If the merger is constructed with a list of EDA instances, the pairs are evaluated in parallel, by one worker per EDA instance.
+ * Each worker uses its own EDA and its own pair CAS. The resulting edges are added to the work graph in the same order as in the sequential merge.
  *
  * @author Lili Kotlerman
  *
@@ -26,6 +53,26 @@ import eu.excitementproject.tl.structures.rawgraph.EntailmentUnit;
 
 public class AllPairsGraphMerger extends AbstractGraphMerger {
 	
+	/**
+	 * EDA instances of the parallel workers (one per worker). Is null if the merge is sequential.
+	 */
+	private final List<EDABasic<?>> workerEdas;
+
+	/**
+	 * Pair CASes of the parallel workers (one per worker). Is null if the merge is sequential.
+	 */
+	private final List<JCas> workerCASes;
+
+	/**
+	 * Index used for the lexical similarity of pairs, when no blocker is set (see {@link AllPairsGraphMerger#getPairPriority(EntailmentUnit, EntailmentUnit)})
+	 */
+	private final LexicalOverlapBlocker similarityIndex = new LexicalOverlapBlocker();
+
+	/**
+	 * The executor of the parallel workers, created at the first parallel evaluation unless set by {@link AllPairsGraphMerger#setExecutor(ExecutorService)}
+	 */
+	private ExecutorService executor = null;
+
 	/** Constructor, which calls the constructor of {@link AbstractGraphMerger} for the given LAP and EDA configurations.
 	 * @param lap
 	 * @param eda
@@ -34,6 +81,74 @@ public class AllPairsGraphMerger extends AbstractGraphMerger {
 	public AllPairsGraphMerger(CachedLAPAccess lap, EDABasic<?> eda)
 			throws GraphMergerException {
 		super(lap, eda);
+		this.workerEdas = null;
+		this.workerCASes = null;
+	}
+
+	/** Constructor for parallel merge. Pair evaluations are distributed over one worker per given EDA instance.
+	 * The EDA instances should be initialized with the same configuration, and should not be shared with other mergers.
+	 * The first EDA of the list is also used as the EDA of the merger ({@link AbstractGraphMerger#getEda()}).
+	 * @param lap
+	 * @param edas - the EDA instances, one per worker
+	 * @throws GraphMergerException if no EDA instance is given or if the worker CASes cannot be created
+	 */
+	public AllPairsGraphMerger(CachedLAPAccess lap, List<EDABasic<?>> edas)
+			throws GraphMergerException {
+		super(lap, getFirstEda(edas));
+		this.workerEdas = new ArrayList<EDABasic<?>>(edas);
+		this.workerCASes = new ArrayList<JCas>();
+		try {
+			for (int i=0; i<edas.size(); i++){
+				workerCASes.add(CASUtils.createNewInputCas());
+			}
+		} catch (LAPException e) {
+			throw new GraphMergerException("Cannot create pair CAS for a merge worker\n"+e.getMessage());
+		}
+	}
+
+	/**
+	 * @param edas - the EDA instances of the parallel workers
+	 * @return the first EDA instance of the list
+	 * @throws GraphMergerException if no EDA instance is given
+	 */
+	private static EDABasic<?> getFirstEda(List<EDABasic<?>> edas) throws GraphMergerException {
+		if (edas==null || edas.isEmpty()) throw new GraphMergerException("At least one EDA instance is needed for the merge");
+		return edas.get(0);
+	}
+
+	/**
+	 * Set the executor, on which the workers of the parallel merge run. An executor set here is not shut down by the merger.
+	 * If no executor is set, the merger creates its own thread pool (of daemon threads, one per worker) at the first parallel evaluation, 
+	 * and uses it for all the following merge steps. 
+	 * @param executor
+	 */
+	public synchronized void setExecutor(ExecutorService executor){
+		this.executor = executor;
+	}
+
+	/**
+	 * @return the executor of the parallel workers (see {@link AllPairsGraphMerger#setExecutor(ExecutorService)})
+	 */
+	private synchronized ExecutorService getExecutor(){
+		if (executor==null){
+			executor = Executors.newFixedThreadPool(getNumberOfWorkers(), new ThreadFactory() {
+				@Override
+				public Thread newThread(Runnable r) {
+					Thread thread = Executors.defaultThreadFactory().newThread(r);
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+		}
+		return executor;
+	}
+
+	/**
+	 * @return the number of workers used to evaluate node pairs (1 for sequential merge)
+	 */
+	public int getNumberOfWorkers(){
+		if (workerEdas==null) return 1;
+		return workerEdas.size();
 	}
 
 	@Override
@@ -42,15 +157,40 @@ public class AllPairsGraphMerger extends AbstractGraphMerger {
 		
 		Logger mergeLogger = Logger.getLogger("eu.excitementproject.tl.composition.graphmerger.AllPairsGraphMergerWithNonEntailments"); 
 		
+		workGraph = resumeFromCheckpoint(workGraph);
+		if (hasBudget()) startBudget();
 		List<FragmentGraph> fg = new LinkedList<FragmentGraph>(fragmentGraphs);
 		Collections.sort(fg, new FragmentGraph.CompleteStatementComparator());
-		// Iterate over the list of fragment graphs and merge them one by one
-		int i = 0;
-		for (FragmentGraph fragmentGraph : fg){
-			workGraph=mergeGraphs(fragmentGraph, workGraph);
-			i++;
-			mergeLogger.info("Merged FG #"+String.valueOf(i)+" out of "+String.valueOf(fg.size()));
+		if (hasBudget()){
+			// with a budget, first copy all the fragment graphs, and then evaluate the pairs of all the new nodes best-first
+			Set<EntailmentUnit> newNodes = new LinkedHashSet<EntailmentUnit>();
+			// (the checkpoint is only saved when all the pairs are evaluated)
+			List<FragmentGraph> copied = new ArrayList<FragmentGraph>();
+			for (FragmentGraph fragmentGraph : fg){
+				if (isMergedBeforeCheckpoint(fragmentGraph)) continue;
+				workGraph=copyFragmentGraph(fragmentGraph, workGraph, newNodes);
+				copied.add(fragmentGraph);
+			}
+			workGraph=evaluatePairs(workGraph, newNodes);
+			for (FragmentGraph fragmentGraph : copied){
+				setMerged(fragmentGraph);
+			}
+			mergeLogger.info("Merged "+String.valueOf(copied.size())+" FGs");
+		}
+		else {
+			// Iterate over the list of fragment graphs and merge them one by one
+			int i = 0;
+			for (FragmentGraph fragmentGraph : fg){
+				i++;
+				if (isMergedBeforeCheckpoint(fragmentGraph)) continue; // merged before the checkpoint the merge resumed from
+				workGraph=mergeGraphs(fragmentGraph, workGraph);
+				fragmentGraphMerged(fragmentGraph, workGraph);
+				mergeLogger.info("Merged FG #"+String.valueOf(i)+" out of "+String.valueOf(fg.size()));
+			}
 		}
+		if (getBlocker()!=null) mergeLogger.info("EDA calls: "+String.valueOf(getEdaCallsNumber())+", pairs pruned by blocking (saved EDA calls): "+String.valueOf(getPrunedPairsNumber()));
+		if (hasBudget()) mergeLogger.info("EDA calls: "+String.valueOf(getEdaCallsNumber())+", pairs left undecided by the budget: "+String.valueOf(getUndecidedPairsNumber()));
+		saveCheckpoint(workGraph);
 		
 		return workGraph;
 	}
@@ -59,25 +199,387 @@ public class AllPairsGraphMerger extends AbstractGraphMerger {
 	public EntailmentGraphRaw mergeGraphs(FragmentGraph fragmentGraph,
 			EntailmentGraphRaw workGraph) throws GraphMergerException {
 		
+		Set<EntailmentUnit> newNodes = new LinkedHashSet<EntailmentUnit>();
+		workGraph = copyFragmentGraph(fragmentGraph, workGraph, newNodes);
+		return evaluatePairs(workGraph, newNodes);
+	}
+
+	/** Copy the nodes and edges of the given fragment graph into the work graph, and collect the nodes added to the work graph. 
+	 * @param fragmentGraph
+	 * @param workGraph
+	 * @param newNodes - the set, to which the nodes added to the work graph are added
+	 * @return the work graph (a new graph, if the given work graph was null or empty)
+	 */
+	private EntailmentGraphRaw copyFragmentGraph(FragmentGraph fragmentGraph, EntailmentGraphRaw workGraph, Set<EntailmentUnit> newNodes){
 		// If the work graph is empty or null - just copy the fragment graph nodes/edges (there's nothing else to merge) and return the resulting graph
+		boolean isNewWorkGraph = (workGraph==null) || workGraph.isEmpty();
 		if (workGraph==null) workGraph = new EntailmentGraphRaw(fragmentGraph, true);
 		if (workGraph.isEmpty()) workGraph = new EntailmentGraphRaw(fragmentGraph, true, workGraph.hasLemmatizedLabel());
 		
+		// the texts of the fragment graph nodes, which are not yet in the work graph
+		Set<String> newTexts = new LinkedHashSet<String>();
+		if (!isNewWorkGraph){
+			for (EntailmentUnitMention fragmentGraphNode : fragmentGraph.vertexSet()){
+				if (workGraph.getVertexWithText(fragmentGraphNode.getText())==null) newTexts.add(fragmentGraphNode.getText());
+			}
+		}
 		 
 		// else - merge new fragment graph into work graph 		
 		workGraph.copyFragmentGraphNodesAndAllEdges(fragmentGraph);
 
-		// now for each pair of nodes, obtain and store the decision, if not yet defined
+		// the nodes added by this merge step: all the nodes of a new work graph, or the nodes with the new texts 
+		if (isNewWorkGraph) newNodes.addAll(workGraph.vertexSet());
+		else {
+			for (String text : newTexts){
+				newNodes.add(workGraph.getVertexWithText(text));
+			}
+		}
+		return workGraph;
+	}
+
+	/** Obtain and store the decisions of the pairs with a new node, which have no decision yet. 
+	 * <p>If the merge has a budget of EDA calls, only the most promising pairs, up to the number of calls left, are kept and evaluated best-first 
+	 * (see {@link AllPairsGraphMerger#getPairPriority(EntailmentUnit, EntailmentUnit)}); the other pairs get an "undecided" edge. 
+	 * Since decisions found in the decision cache do not use up the budget, the pairs left undecided are then evaluated in further rounds, as long as calls are left.
+	 * @param workGraph
+	 * @param newNodes - the nodes added to the work graph since the last evaluation
+	 * @return the work graph
+	 * @throws GraphMergerException
+	 */
+	private EntailmentGraphRaw evaluatePairs(EntailmentGraphRaw workGraph, Set<EntailmentUnit> newNodes) throws GraphMergerException{
+		// now for each pair of nodes with a new node, obtain and store the decision, if not yet defined
+		// (pairs of nodes, which were in the work graph before, were decided by the previous merge steps, unless they were left undecided)
+		List<EntailmentUnit[]> pairs = getPairsToEvaluate(workGraph, newNodes, hasBudget() ? getRemainingEdaCalls() : Integer.MAX_VALUE);
+		logger.debug("Evaluating "+String.valueOf(pairs.size())+" node pairs for "+String.valueOf(newNodes.size())+" new nodes");
+		evaluatePairs(workGraph, pairs);
+		while (hasBudget() && !pairs.isEmpty() && (undecidedPairs > 0) && !isBudgetExhausted()){
+			pairs = getPairsToEvaluate(workGraph, new HashSet<EntailmentUnit>(), getRemainingEdaCalls());
+			logger.debug("Evaluating "+String.valueOf(pairs.size())+" undecided node pairs");
+			evaluatePairs(workGraph, pairs);
+		}
+		return workGraph;
+	}
+
+	/** Obtain and store the decisions of the given pairs, in the order of the list.
+	 * @param workGraph
+	 * @param pairs - list of node pairs, each given as array {source, target}
+	 * @throws GraphMergerException
+	 */
+	private void evaluatePairs(EntailmentGraphRaw workGraph, List<EntailmentUnit[]> pairs) throws GraphMergerException{
+		if (getNumberOfWorkers()==1){
+			for (EntailmentUnit[] pair : pairs){
+				addRelation(workGraph, getRelation(pair[0], pair[1]));
+			}
+			return;
+		}
+
+		// parallel merge: evaluate the pairs by the workers and add the edges in the order of the pairs
+		// (pairs not evaluated within the budget are returned as null)
+		List<EntailmentRelation> edges = getRelationsInParallel(pairs);
+		for (int i=0; i<pairs.size(); i++){
+			EntailmentRelation edge = edges.get(i);
+			if (edge==null) edge = getUndecidedRelation(pairs.get(i)[0], pairs.get(i)[1]);
+			addRelation(workGraph, edge);
+		}
+	}
+
+	/** Add the given edge to the work graph, replacing the "undecided" edges of its node pair.
+	 * @param workGraph
+	 * @param edge
+	 */
+	private void addRelation(EntailmentGraphRaw workGraph, EntailmentRelation edge){
+		if (workGraph.containsEdge(edge.getSource(), edge.getTarget())){
+			for (EntailmentRelation undecidedEdge : new ArrayList<EntailmentRelation>(workGraph.getAllEdges(edge.getSource(), edge.getTarget()))){
+				if (!undecidedEdge.getEdgeType().equals(EdgeType.UNDECIDED)) continue;
+				workGraph.removeEdge(undecidedEdge);
+				undecidedPairs--;
+			}
+		}
+		workGraph.addEdge(edge.getSource(), edge.getTarget(), edge);
+	}
+
+	/** Check whether the pair source -> target has a decision in the work graph. "Undecided" edges do not count as a decision.
+	 * @param workGraph
+	 * @param source
+	 * @param target
+	 * @return true if the work graph has an edge source -> target, which is not "undecided"
+	 */
+	private boolean isDecided(EntailmentGraphRaw workGraph, EntailmentUnit source, EntailmentUnit target){
+		if (!workGraph.containsEdge(source, target)) return false;
+		for (EntailmentRelation edge : workGraph.getAllEdges(source, target)){
+			if (!edge.getEdgeType().equals(EdgeType.UNDECIDED)) return true;
+		}
+		return false;
+	}
+
+	/** Sort the given pairs by descending priority (see {@link AllPairsGraphMerger#getPairPriority(EntailmentUnit, EntailmentUnit)}).
+	 * Pairs with the same priority keep their order.
+	 * @param pairs - list of node pairs, each given as array {source, target}
+	 */
+	private void sortByPriority(List<EntailmentUnit[]> pairs){
+		final double[] priorities = new double[pairs.size()];
+		List<Integer> order = new ArrayList<Integer>(pairs.size());
+		for (int i=0; i<pairs.size(); i++){
+			priorities[i] = getPairPriority(pairs.get(i)[0], pairs.get(i)[1]);
+			order.add(i);
+		}
+		Collections.sort(order, new Comparator<Integer>() {
+			@Override
+			public int compare(Integer i, Integer j) {
+				return Double.compare(priorities[j], priorities[i]);
+			}
+		});
+		List<EntailmentUnit[]> sorted = new ArrayList<EntailmentUnit[]>(pairs.size());
+		for (Integer i : order){
+			sorted.add(pairs.get(i));
+		}
+		pairs.clear();
+		pairs.addAll(sorted);
+	}
+
+	/** Get the expected value of an EDA decision on the pair candidateEntailingNode -> candidateEntailedNode, used to order the pairs when the merge has a budget.
+	 * <p>Pairs are preferred if the texts are lexically similar (entailment is more likely), if the nodes have lower levels 
+	 * (fewer modifiers, so the decision tells more about the other nodes of their fragment graphs), and if the nodes have more mentions. 
+	 * @param candidateEntailingNode
+	 * @param candidateEntailedNode
+	 * @return the priority of the pair (higher values are evaluated first)
+	 */
+	protected double getPairPriority(EntailmentUnit candidateEntailingNode, EntailmentUnit candidateEntailedNode){
+		LexicalOverlapBlocker index = (getBlocker()!=null) ? getBlocker() : similarityIndex;
+		double similarity = index.getSimilarity(candidateEntailingNode, candidateEntailedNode);
+		double frequency = Math.log(1 + candidateEntailingNode.getMentions().size() + candidateEntailedNode.getMentions().size());
+		int levels = candidateEntailingNode.getLevel() + candidateEntailedNode.getLevel();
+		return (similarity + 0.1) * frequency / (1 + levels);
+	}
+
+	/** Collect the (source, target) pairs with at least one new node, which have no decision (edge) in the work graph, 
+	 * and the pairs of the other nodes, which were left undecided (see {@link EdgeType#UNDECIDED}).
+	 * Without a budget, the pairs are in text-major order (all targets of one source in a row), so that the LAP can reuse the text view of the pair CAS.
+	 * With a budget, the pairs are in the order of descending priority (see {@link AllPairsGraphMerger#getPairPriority(EntailmentUnit, EntailmentUnit)}). 
+	 * If the budget limits the number of EDA calls, only the maxPairs pairs with the highest priority are kept, in a bounded heap, 
+	 * and the other pairs get an "undecided" edge in the work graph.  
+	 * <p>If a blocker is set, the candidates of each new node are taken from the blocker's index. The pairs, which are not proposed by the blocker,
+	 * get a "pruned" non-entailment edge in the work graph, and are not returned.
+	 * @param workGraph
+	 * @param newNodes - the nodes added to the work graph by the current merge step
+	 * @param maxPairs - the maximal number of pairs to return (Integer.MAX_VALUE if not limited)
+	 * @return list of node pairs to be evaluated by the EDA, each given as array {source, target}
+	 */
+	private List<EntailmentUnit[]> getPairsToEvaluate(EntailmentGraphRaw workGraph, Set<EntailmentUnit> newNodes, int maxPairs){
+		List<EntailmentUnit[]> pairs = new ArrayList<EntailmentUnit[]>();
+		PriorityQueue<PairCandidate> bestPairs = (maxPairs < Integer.MAX_VALUE) ? new PriorityQueue<PairCandidate>(Math.max(1, Math.min(maxPairs, 1024))) : null;
+		int position = 0;
+
+		// the pairs of old nodes, which were left undecided by a previous evaluation
+		// (counted by undecidedPairs, so the edges are only searched if there can be undecided edges)
+		if (undecidedPairs > 0){
+			for (EntailmentRelation edge : new ArrayList<EntailmentRelation>(workGraph.edgeSet())){
+				if (!edge.getEdgeType().equals(EdgeType.UNDECIDED)) continue;
+				if (newNodes.contains(edge.getSource()) || newNodes.contains(edge.getTarget())) continue;
+				if (isDecided(workGraph, edge.getSource(), edge.getTarget())) continue;
+				position = addPair(workGraph, pairs, bestPairs, maxPairs, edge.getSource(), edge.getTarget(), position);
+			}
+		}
+		if (newNodes.isEmpty()) return getSortedPairs(pairs, bestPairs);
+		
+		// the texts of the candidate nodes of each new node (null for a node, which cannot be blocked)
+		Map<EntailmentUnit, Set<String>> candidateTexts = null;
+		if (getBlocker()!=null){
+			for (EntailmentUnit node : workGraph.vertexSet()){
+				getBlocker().add(node);
+			}
+			candidateTexts = new HashMap<EntailmentUnit, Set<String>>();
+			for (EntailmentUnit node : newNodes){
+				candidateTexts.put(node, getBlocker().getCandidateTexts(node));
+			}
+		}
+		
+		List<EntailmentRelation> prunedEdges = new ArrayList<EntailmentRelation>();
 		for (EntailmentUnit src : workGraph.vertexSet()){
-			for (EntailmentUnit tgt : workGraph.vertexSet()){
+			// (new x all) pairs for a new source, (old x new) pairs for an old one
+			boolean isNewSource = newNodes.contains(src);
+			Set<EntailmentUnit> targets = isNewSource ? workGraph.vertexSet() : newNodes;
+			for (EntailmentUnit tgt : targets){
 				if (src.equals(tgt)) continue;
-				if (!workGraph.containsEdge(src, tgt)){ // only obtain new decision if no decision is defined
-					EntailmentRelation edge = getRelation(src, tgt);
-					workGraph.addEdge(edge.getSource(), edge.getTarget(), edge);
+				if (isDecided(workGraph, src, tgt)) continue; // only obtain new decision if no decision is defined
+				if (candidateTexts!=null){
+					Set<String> candidates = isNewSource ? candidateTexts.get(src) : candidateTexts.get(tgt);
+					String otherText = isNewSource ? tgt.getText() : src.getText();
+					if ((candidates!=null) && !candidates.contains(otherText)){
+						prunedEdges.add(getPrunedRelation(src, tgt));
+						continue;
+					}
 				}
+				// (adding an "undecided" edge for a pair dropped from the heap does not change the vertex sets of the loops)
+				position = addPair(workGraph, pairs, bestPairs, maxPairs, src, tgt, position);
 			}
 		}
-		return workGraph;		
+		for (EntailmentRelation edge : prunedEdges){
+			addRelation(workGraph, edge);
+		}
+		return getSortedPairs(pairs, bestPairs);
 	}
 
+	/** Add the pair source -> target to the pairs to be evaluated. If the number of pairs is limited, the pair is added to the heap of the best pairs, 
+	 * and the pair with the lowest priority is dropped from the heap when it is full. A dropped pair gets an "undecided" edge in the work graph (unless it has one already).
+	 * @param workGraph
+	 * @param pairs - the list of pairs, used if the number of pairs is not limited
+	 * @param bestPairs - the heap of the best pairs, used if the number of pairs is limited (otherwise null)
+	 * @param maxPairs - the maximal number of pairs
+	 * @param source
+	 * @param target
+	 * @param position - the number of pairs added so far
+	 * @return the number of pairs added so far, including the given one
+	 */
+	private int addPair(EntailmentGraphRaw workGraph, List<EntailmentUnit[]> pairs, PriorityQueue<PairCandidate> bestPairs, int maxPairs, 
+			EntailmentUnit source, EntailmentUnit target, int position){
+		if (bestPairs==null){
+			pairs.add(new EntailmentUnit[]{source, target});
+			return position+1;
+		}
+		PairCandidate dropped = new PairCandidate(source, target, getPairPriority(source, target), position);
+		if (bestPairs.size() < maxPairs){
+			bestPairs.add(dropped);
+			dropped = null;
+		}
+		else if ((maxPairs > 0) && (bestPairs.peek().compareTo(dropped) < 0)){
+			bestPairs.add(dropped);
+			dropped = bestPairs.poll();
+		}
+		if ((dropped!=null) && !workGraph.containsEdge(dropped.source, dropped.target)){
+			workGraph.addEdge(dropped.source, dropped.target, getUndecidedRelation(dropped.source, dropped.target));
+		}
+		return position+1;
+	}
+
+	/** Return the pairs to be evaluated in the order of evaluation.
+	 * @param pairs - the list of pairs, used if the number of pairs is not limited
+	 * @param bestPairs - the heap of the best pairs, used if the number of pairs is limited (otherwise null)
+	 * @return the pairs of the heap by descending priority if the number of pairs is limited, 
+	 * otherwise the list of pairs (sorted by descending priority if the merge has a budget) 
+	 */
+	private List<EntailmentUnit[]> getSortedPairs(List<EntailmentUnit[]> pairs, PriorityQueue<PairCandidate> bestPairs){
+		if (bestPairs==null){
+			if (hasBudget()) sortByPriority(pairs);
+			return pairs;
+		}
+		List<PairCandidate> candidates = new ArrayList<PairCandidate>(bestPairs);
+		Collections.sort(candidates, Collections.reverseOrder());
+		for (PairCandidate candidate : candidates){
+			pairs.add(new EntailmentUnit[]{candidate.source, candidate.target});
+		}
+		return pairs;
+	}
+
+	/**
+	 * A node pair with its priority, kept in the heap of the best pairs. 
+	 * Pairs are ordered by ascending priority, and pairs with the same priority by descending position, so that the head of the heap is the pair to be dropped first.
+	 */
+	private static class PairCandidate implements Comparable<PairCandidate> {
+		final EntailmentUnit source;
+		final EntailmentUnit target;
+		final double priority;
+		final int position;
+		
+		PairCandidate(EntailmentUnit source, EntailmentUnit target, double priority, int position){
+			this.source = source;
+			this.target = target;
+			this.priority = priority;
+			this.position = position;
+		}
+
+		@Override
+		public int compareTo(PairCandidate other) {
+			int c = Double.compare(priority, other.priority);
+			if (c!=0) return c;
+			return (position > other.position) ? -1 : ((position < other.position) ? 1 : 0);
+		}
+	}
+
+	/** Evaluate the given (source, target) pairs by the parallel workers.
+	 * The pairs are split into contiguous chunks, one chunk per worker, so that each worker keeps the (text-major) order of its pairs.
+	 * If the merge has a budget, the pairs are dealt round-robin to the workers instead, so that the first (most promising) pairs are evaluated first, 
+	 * and the workers stop when the budget is used up. 
+	 * @param pairs - list of node pairs, each given as array {source, target}
+	 * @return list of the resulting {@link EntailmentRelation}s, in the same order as the input pairs (null for the pairs not evaluated within the budget)
+	 * @throws GraphMergerException if one of the workers fails
+	 */
+	private List<EntailmentRelation> getRelationsInParallel(final List<EntailmentUnit[]> pairs) throws GraphMergerException{
+		final EntailmentRelation[] results = new EntailmentRelation[pairs.size()];
+		if (pairs.isEmpty()) return new ArrayList<EntailmentRelation>();
+
+		final int workers = Math.min(getNumberOfWorkers(), pairs.size());
+		final boolean budgeted = hasBudget();
+		// EDA calls left in the budget, reserved by the workers before each call (and given back for cached decisions)
+		final AtomicInteger remainingCalls = new AtomicInteger(getRemainingEdaCalls());
+		// EDA calls made by the workers, counted also if one of the workers fails
+		final AtomicInteger calls = new AtomicInteger(0);
+		// set when a worker fails, so that the other workers stop
+		final AtomicBoolean stopped = new AtomicBoolean(false);
+		int chunkSize = (pairs.size() + workers - 1) / workers;
+		ExecutorService workerExecutor = getExecutor();
+		List<Future<Void>> futures = new ArrayList<Future<Void>>();
+		try {
+			for (int w=0; w<workers; w++){
+				final int from = budgeted ? w : Math.min(w*chunkSize, pairs.size());
+				final int to = budgeted ? pairs.size() : Math.min(from+chunkSize, pairs.size());
+				final int step = budgeted ? workers : 1;
+				final EDABasic<?> eda = workerEdas.get(w);
+				final JCas pairCAS = workerCASes.get(w);
+				futures.add(workerExecutor.submit(new Callable<Void>() {
+					@Override
+					public Void call() throws GraphMergerException {
+						try {
+							for (int i=from; i<to; i+=step){
+								if (stopped.get()) break;
+								if (budgeted){
+									if (isTimeBudgetExhausted()) break;
+									if (remainingCalls.decrementAndGet() < 0){
+										remainingCalls.incrementAndGet();
+										break;
+									}
+								}
+								EntailmentUnit[] pair = pairs.get(i);
+								results[i] = computeRelation(pair[0], pair[1], eda, pairCAS);
+								if (!results[i].isCachedDecision()) calls.incrementAndGet();
+								else if (budgeted) remainingCalls.incrementAndGet();
+							}
+						} catch (GraphMergerException | RuntimeException e) {
+							stopped.set(true);
+							throw e;
+						}
+						return null;
+					}
+				}));
+			}
+			for (Future<Void> future : futures){
+				future.get();
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new GraphMergerException("Parallel merge was interrupted");
+		} catch (ExecutionException e) {
+			throw new GraphMergerException("Parallel merge failed: "+e.getCause().getMessage());
+		} finally {
+			// stop the other workers and wait for them, so that the EDA calls of all the workers are counted
+			stopped.set(true);
+			for (Future<Void> future : futures){
+				try {
+					future.get();
+				} catch (ExecutionException e) {
+					// already reported
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					break;
+				}
+			}
+			edaCalls += calls.get();
+		}
+
+		List<EntailmentRelation> relations = new ArrayList<EntailmentRelation>(pairs.size());
+		Collections.addAll(relations, results);
+		return relations;
+	}
+
+
 }
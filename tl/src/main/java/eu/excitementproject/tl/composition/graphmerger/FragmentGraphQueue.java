@@ -0,0 +1,99 @@
+package eu.excitementproject.tl.composition.graphmerger;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+import eu.excitementproject.tl.composition.api.GraphMerger;
+import eu.excitementproject.tl.structures.fragmentgraph.FragmentGraph;
+
+/**
+ * Bounded queue of fragment graphs between the decomposition and the merge, to be used with {@link GraphMerger#mergeGraphs(Iterator, eu.excitementproject.tl.structures.rawgraph.EntailmentGraphRaw)}.
+ * <p>The producer (decomposition) adds fragment graphs by {@link FragmentGraphQueue#put(FragmentGraph)}, which waits while the queue is full,
+ * and calls {@link FragmentGraphQueue#close()} when it is done (also if it fails). Closing never waits, so a producer, which is interrupted 
+ * because the merge failed, can always close the queue and end, even if nobody takes the fragment graphs from the full queue any more.
+ * The consumer (merger) iterates over the queue, waiting for the next fragment graph, until the queue is closed and empty.
+ * So the merge starts as soon as the first fragment graph is produced, and at most capacity fragment graphs wait for the merge.
+ * <p>There should be only one consumer.
+ */
+public class FragmentGraphQueue implements Iterator<FragmentGraph> {
+
+	/**
+	 * Marks the end of the fragment graphs in the queue
+	 */
+	private static final Object END = new Object();
+
+	private final BlockingQueue<Object> queue;
+
+	/**
+	 * The next element taken from the queue by the consumer (null if not taken yet)
+	 */
+	private Object next = null;
+
+	/**
+	 * true if the producer closed the queue (the end marker may be missing, if the queue was full when it was closed)
+	 */
+	private volatile boolean closed = false;
+
+	/**
+	 * @param capacity - the maximal number of fragment graphs waiting in the queue
+	 */
+	public FragmentGraphQueue(int capacity) {
+		queue = new ArrayBlockingQueue<Object>(capacity);
+	}
+
+	/**
+	 * Add a fragment graph to the queue, waiting if the queue is full
+	 * @param fragmentGraph
+	 * @throws InterruptedException if interrupted while waiting
+	 */
+	public void put(FragmentGraph fragmentGraph) throws InterruptedException {
+		queue.put(fragmentGraph);
+	}
+
+	/**
+	 * Mark the end of the fragment graphs, without waiting. Should be called once by the producer, after the last fragment graph was added.
+	 * If the queue is full, the consumer finds the end when it has taken the remaining fragment graphs.
+	 */
+	public void close() {
+		closed = true;
+		queue.offer(END);
+	}
+
+	/**
+	 * Waits until the next fragment graph is available or the queue is closed
+	 * @throws IllegalStateException if interrupted while waiting
+	 */
+	@Override
+	public boolean hasNext() {
+		if (next == null) {
+			if (closed) {
+				// nothing more is added, so an empty queue is the end (also if the end marker did not fit into the queue)
+				next = queue.poll();
+				if (next == null) next = END;
+				return next != END;
+			}
+			try {
+				next = queue.take();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new IllegalStateException("Interrupted while waiting for the next fragment graph");
+			}
+		}
+		return next != END;
+	}
+
+	@Override
+	public FragmentGraph next() {
+		if (!hasNext()) throw new NoSuchElementException();
+		FragmentGraph fragmentGraph = (FragmentGraph) next;
+		next = null;
+		return fragmentGraph;
+	}
+
+	@Override
+	public void remove() {
+		throw new UnsupportedOperationException();
+	}
+}
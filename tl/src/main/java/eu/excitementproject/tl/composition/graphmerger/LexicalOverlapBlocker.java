@@ -0,0 +1,198 @@
+package eu.excitementproject.tl.composition.graphmerger;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import eu.excitementproject.tl.structures.rawgraph.EntailmentUnit;
+
+/**
+ * Blocking stage for graph mergers: proposes the node pairs, which share enough lexical keys to be sent to the EDA.
+ * <p>The keys of a node are the tokens of its lemmatized text (or of its text, if the node has no lemmatized text),
+ * lower-cased and without the given stop words. Optionally, the keys are the character n-grams of these tokens,
+ * so that pairs with e.g. different inflections or compound parts are still proposed when no lemmas are available.
+ * <p>The nodes are kept in an inverted index from keys to node texts, so that the candidates of a node are found without
+ * comparing it to all the other nodes. Two nodes are a candidate pair if they share at least minOverlap keys.
+ * A node without keys (e.g. only stop words) cannot be blocked, and is a candidate pair with any node.
+ * <p>Blocking is only safe for lexical EDAs, which cannot decide on entailment between texts with no common content words.
+ * The nodes are identified by their texts, so the same blocker can be used for several work graphs.
+ */
+public class LexicalOverlapBlocker {
+
+	/**
+	 * Length of the character n-grams used as keys (0 if whole tokens are used as keys)
+	 */
+	private final int ngramSize;
+
+	/**
+	 * Minimal number of keys shared by a candidate pair
+	 */
+	private final int minOverlap;
+
+	/**
+	 * Tokens, which are not used as keys (lower-cased)
+	 */
+	private final Set<String> stopWords;
+
+	/**
+	 * Keys by node text
+	 */
+	private final Map<String, Set<String>> keysByText = new HashMap<String, Set<String>>();
+
+	/**
+	 * Node texts by key (the inverted index)
+	 */
+	private final Map<String, Set<String>> textsByKey = new HashMap<String, Set<String>>();
+
+	/**
+	 * Texts of the indexed nodes, which have no keys
+	 */
+	private final Set<String> textsWithoutKeys = new HashSet<String>();
+
+	/**
+	 * Blocker with whole tokens as keys, no stop words, and one shared token per candidate pair
+	 */
+	public LexicalOverlapBlocker() {
+		this(0, 1, Collections.<String>emptySet());
+	}
+
+	/**
+	 * Blocker with whole tokens as keys, and one shared token per candidate pair
+	 * @param stopWords - tokens, which are not used as keys (e.g. function words of the language)
+	 */
+	public LexicalOverlapBlocker(Set<String> stopWords) {
+		this(0, 1, stopWords);
+	}
+
+	/**
+	 * @param ngramSize - length of the character n-grams used as keys, or 0 to use whole tokens as keys
+	 * (tokens shorter than ngramSize are used as keys as they are)
+	 * @param minOverlap - minimal number of keys shared by a candidate pair (at least 1)
+	 * @param stopWords - tokens, which are not used as keys (e.g. function words of the language)
+	 */
+	public LexicalOverlapBlocker(int ngramSize, int minOverlap, Set<String> stopWords) {
+		if (ngramSize < 0) throw new IllegalArgumentException("N-gram size should be >= 0, given: " + ngramSize);
+		if (minOverlap < 1) throw new IllegalArgumentException("Minimal overlap should be >= 1, given: " + minOverlap);
+		this.ngramSize = ngramSize;
+		this.minOverlap = minOverlap;
+		this.stopWords = new HashSet<String>();
+		for (String stopWord : stopWords){
+			this.stopWords.add(stopWord.toLowerCase());
+		}
+	}
+
+	/**
+	 * Add the given node to the index, if a node with its text was not indexed yet
+	 * @param node
+	 */
+	public void add(EntailmentUnit node){
+		if (keysByText.containsKey(node.getText())) return;
+		Set<String> keys = getKeys(node);
+		keysByText.put(node.getText(), keys);
+		if (keys.isEmpty()) {
+			textsWithoutKeys.add(node.getText());
+			return;
+		}
+		for (String key : keys){
+			Set<String> texts = textsByKey.get(key);
+			if (texts == null){
+				texts = new HashSet<String>();
+				textsByKey.put(key, texts);
+			}
+			texts.add(node.getText());
+		}
+	}
+
+	/**
+	 * Get the texts of the indexed nodes, which form a candidate pair with the given node (indexes the given node, if needed).
+	 * @param node
+	 * @return the texts of the candidate nodes (including the text of the given node), or null if the node has no keys, i.e. all nodes are candidates
+	 */
+	public Set<String> getCandidateTexts(EntailmentUnit node){
+		add(node);
+		Set<String> keys = keysByText.get(node.getText());
+		if (keys.isEmpty()) return null;
+		Set<String> candidates = new HashSet<String>(textsWithoutKeys);
+		if (minOverlap == 1){
+			for (String key : keys){
+				candidates.addAll(textsByKey.get(key));
+			}
+			return candidates;
+		}
+		Map<String, Integer> sharedKeys = new HashMap<String, Integer>();
+		for (String key : keys){
+			for (String text : textsByKey.get(key)){
+				Integer shared = sharedKeys.get(text);
+				sharedKeys.put(text, (shared == null) ? 1 : shared + 1);
+			}
+		}
+		for (Map.Entry<String, Integer> entry : sharedKeys.entrySet()){
+			if (entry.getValue() >= minOverlap) candidates.add(entry.getKey());
+		}
+		return candidates;
+	}
+
+	/**
+	 * @param nodeA
+	 * @param nodeB
+	 * @return true if the two nodes share at least minOverlap keys, or if one of them has no keys (indexes the nodes, if needed)
+	 */
+	public boolean isCandidatePair(EntailmentUnit nodeA, EntailmentUnit nodeB){
+		add(nodeA);
+		add(nodeB);
+		Set<String> keysA = keysByText.get(nodeA.getText());
+		Set<String> keysB = keysByText.get(nodeB.getText());
+		if (keysA.isEmpty() || keysB.isEmpty()) return true;
+		if (keysA.size() > keysB.size()){
+			Set<String> keys = keysA;
+			keysA = keysB;
+			keysB = keys;
+		}
+		int shared = 0;
+		for (String key : keysA){
+			if (keysB.contains(key) && (++shared >= minOverlap)) return true;
+		}
+		return false;
+	}
+
+	/**
+	 * @param nodeA
+	 * @param nodeB
+	 * @return the Jaccard similarity of the keys of the two nodes (0 if one of them has no keys)
+	 */
+	public double getSimilarity(EntailmentUnit nodeA, EntailmentUnit nodeB){
+		add(nodeA);
+		add(nodeB);
+		Set<String> keysA = keysByText.get(nodeA.getText());
+		Set<String> keysB = keysByText.get(nodeB.getText());
+		if (keysA.isEmpty() || keysB.isEmpty()) return 0.0;
+		int shared = 0;
+		for (String key : keysA){
+			if (keysB.contains(key)) shared++;
+		}
+		return ((double) shared) / (keysA.size() + keysB.size() - shared);
+	}
+
+	/**
+	 * @param node
+	 * @return the keys of the given node (see {@link LexicalOverlapBlocker})
+	 */
+	protected Set<String> getKeys(EntailmentUnit node){
+		String text = node.getLemmatizedText();
+		if ((text == null) || text.isEmpty()) text = node.getText();
+		Set<String> keys = new HashSet<String>();
+		for (String token : text.toLowerCase().split("[^\\p{L}\\p{N}]+")){
+			if (token.isEmpty() || stopWords.contains(token)) continue;
+			if ((ngramSize == 0) || (token.length() <= ngramSize)) {
+				keys.add(token);
+				continue;
+			}
+			for (int i = 0; i + ngramSize <= token.length(); i++){
+				keys.add(token.substring(i, i + ngramSize));
+			}
+		}
+		return keys;
+	}
+}
@@ -0,0 +1,242 @@
+package eu.excitementproject.tl.composition.graphmerger;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import eu.excitementproject.eop.common.DecisionLabel;
+import eu.excitementproject.eop.common.EDAException;
+import eu.excitementproject.tl.edautils.TEDecisionWithConfidence;
+import eu.excitementproject.tl.structures.fragmentgraph.EntailmentUnitMention;
+import eu.excitementproject.tl.structures.fragmentgraph.FragmentGraph;
+import eu.excitementproject.tl.structures.rawgraph.EntailmentGraphRaw;
+import eu.excitementproject.tl.structures.rawgraph.EntailmentRelation;
+import eu.excitementproject.tl.structures.rawgraph.EntailmentUnit;
+import eu.excitementproject.tl.structures.rawgraph.utils.EdgeType;
+
+/**
+ * Checkpoint of a running merge: the work graph, the fragment graphs merged into it, and the counters of the merger.
+ * <p>The checkpoint is saved in a gzipped binary file, with the same information on nodes and edges as the xml file of the graph
+ * ({@link EntailmentGraphRaw#toXML(String)}), where the edges refer to the nodes by their position instead of their text.
+ * The file is written to a temporary file first and then renamed, so a crash while writing does not destroy the previous checkpoint.
+ * <p>The fragment graphs are identified by their interaction id and complete statement (see {@link MergeCheckpoint#getFragmentGraphKey(FragmentGraph)}).
+ * Since several fragment graphs can have the same key (e.g. a sentence repeated in one interaction), the checkpoint holds the number of merged fragment graphs per key.
+ */
+public class MergeCheckpoint {
+
+	private static final int MAGIC = 0x544C4D43; // "TLMC"
+	private static final int VERSION = 2;
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	private final EntailmentGraphRaw workGraph;
+	private final Map<String, Integer> mergedFragmentGraphs;
+	private final int edaCalls;
+	private final int prunedPairs;
+	private final int undecidedPairs;
+
+	/**
+	 * @param workGraph - the work graph
+	 * @param mergedFragmentGraphs - the number of fragment graphs merged into the work graph, per key (see {@link MergeCheckpoint#getFragmentGraphKey(FragmentGraph)})
+	 * @param edaCalls - the number of EDA calls of the merger
+	 * @param prunedPairs - the number of pairs pruned by the merger
+	 * @param undecidedPairs - the number of pairs left undecided by the merger
+	 */
+	public MergeCheckpoint(EntailmentGraphRaw workGraph, Map<String, Integer> mergedFragmentGraphs, int edaCalls, int prunedPairs, int undecidedPairs) {
+		this.workGraph = workGraph;
+		this.mergedFragmentGraphs = mergedFragmentGraphs;
+		this.edaCalls = edaCalls;
+		this.prunedPairs = prunedPairs;
+		this.undecidedPairs = undecidedPairs;
+	}
+
+	public EntailmentGraphRaw getWorkGraph() {
+		return workGraph;
+	}
+
+	public Map<String, Integer> getMergedFragmentGraphs() {
+		return mergedFragmentGraphs;
+	}
+
+	public int getEdaCalls() {
+		return edaCalls;
+	}
+
+	public int getPrunedPairs() {
+		return prunedPairs;
+	}
+
+	public int getUndecidedPairs() {
+		return undecidedPairs;
+	}
+
+	/**
+	 * @param fragmentGraph
+	 * @return the key identifying the given fragment graph in a checkpoint: its interaction id and complete statement text
+	 */
+	public static String getFragmentGraphKey(FragmentGraph fragmentGraph) {
+		return fragmentGraph.getInteractionId() + "\t" + fragmentGraph.getCompleteStatement().getText();
+	}
+
+	/**
+	 * Save the checkpoint to the given file (replacing the previous checkpoint only when the new one is completely written)
+	 * @param file
+	 * @throws IOException
+	 */
+	public void write(File file) throws IOException {
+		File tmpFile = new File(file.getPath() + ".tmp");
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new GZIPOutputStream(new FileOutputStream(tmpFile))));
+		try {
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			out.writeInt(edaCalls);
+			out.writeInt(prunedPairs);
+			out.writeInt(undecidedPairs);
+
+			out.writeInt(mergedFragmentGraphs.size());
+			for (Map.Entry<String, Integer> entry : mergedFragmentGraphs.entrySet()) {
+				writeString(out, entry.getKey());
+				out.writeInt(entry.getValue());
+			}
+
+			out.writeBoolean(workGraph.hasLemmatizedLabel());
+			Map<EntailmentUnit, Integer> positions = new HashMap<EntailmentUnit, Integer>();
+			out.writeInt(workGraph.vertexSet().size());
+			for (EntailmentUnit eu : workGraph.vertexSet()) {
+				positions.put(eu, positions.size());
+				writeString(out, eu.getText());
+				writeString(out, eu.getLemmatizedText());
+				out.writeInt(eu.getLevel());
+				out.writeInt(eu.getCompleteStatementTexts().size());
+				for (String csText : eu.getCompleteStatementTexts()) {
+					writeString(out, csText);
+				}
+				out.writeInt(eu.getMentions().size());
+				for (EntailmentUnitMention eum : eu.getMentions()) {
+					writeString(out, eum.getText());
+					out.writeInt(eum.getLevel());
+					writeString(out, eum.getInteractionId());
+					writeString(out, eum.getCategoryId());
+				}
+			}
+
+			out.writeInt(workGraph.edgeSet().size());
+			for (EntailmentRelation r : workGraph.edgeSet()) {
+				out.writeInt(positions.get(r.getSource()));
+				out.writeInt(positions.get(r.getTarget()));
+				writeString(out, r.getLabel().toString());
+				out.writeDouble(r.getConfidence());
+				writeString(out, r.getEdgeType().toString());
+			}
+		} finally {
+			out.close();
+		}
+
+		try {
+			Files.move(tmpFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} catch (AtomicMoveNotSupportedException e) {
+			Files.move(tmpFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+		}
+	}
+
+	/**
+	 * Load a checkpoint from the given file
+	 * @param file
+	 * @return the checkpoint
+	 * @throws IOException if the file cannot be read or is not a checkpoint
+	 */
+	public static MergeCheckpoint read(File file) throws IOException {
+		DataInputStream in = new DataInputStream(new BufferedInputStream(new GZIPInputStream(new FileInputStream(file))));
+		try {
+			if (in.readInt() != MAGIC) throw new IOException(file.getPath() + " is not a merge checkpoint");
+			int version = in.readInt();
+			if (version != VERSION) throw new IOException("Unsupported version of merge checkpoint " + file.getPath() + ": " + version);
+			int edaCalls = in.readInt();
+			int prunedPairs = in.readInt();
+			int undecidedPairs = in.readInt();
+
+			int size = in.readInt();
+			Map<String, Integer> mergedFragmentGraphs = new HashMap<String, Integer>();
+			for (int i = 0; i < size; i++) {
+				String key = readString(in);
+				mergedFragmentGraphs.put(key, in.readInt());
+			}
+
+			EntailmentGraphRaw workGraph = new EntailmentGraphRaw(in.readBoolean());
+			size = in.readInt();
+			List<EntailmentUnit> nodes = new ArrayList<EntailmentUnit>(size);
+			for (int i = 0; i < size; i++) {
+				String text = readString(in);
+				String lemmatizedText = readString(in);
+				int level = in.readInt();
+				Set<String> completeStatementTexts = new HashSet<String>();
+				int n = in.readInt();
+				for (int j = 0; j < n; j++) {
+					completeStatementTexts.add(readString(in));
+				}
+				Set<EntailmentUnitMention> mentions = new HashSet<EntailmentUnitMention>();
+				n = in.readInt();
+				for (int j = 0; j < n; j++) {
+					String eumText = readString(in);
+					int eumLevel = in.readInt();
+					EntailmentUnitMention m = new EntailmentUnitMention(eumText, eumLevel, readString(in));
+					m.setCategoryId(readString(in));
+					mentions.add(m);
+				}
+				EntailmentUnit eu = (lemmatizedText == null) ? new EntailmentUnit(text, completeStatementTexts, mentions, level)
+						: new EntailmentUnit(text, lemmatizedText, completeStatementTexts, mentions, level);
+				workGraph.addVertex(eu);
+				nodes.add(eu);
+			}
+
+			size = in.readInt();
+			for (int i = 0; i < size; i++) {
+				EntailmentUnit source = nodes.get(in.readInt());
+				EntailmentUnit target = nodes.get(in.readInt());
+				DecisionLabel label = DecisionLabel.getLabelFor(readString(in));
+				double confidence = in.readDouble();
+				EdgeType edgeType = EdgeType.convert(readString(in));
+				workGraph.addEdge(source, target, new EntailmentRelation(source, target, new TEDecisionWithConfidence(confidence, label), edgeType));
+			}
+			return new MergeCheckpoint(workGraph, mergedFragmentGraphs, edaCalls, prunedPairs, undecidedPairs);
+		} catch (EDAException e) {
+			throw new IOException("Could not read merge checkpoint " + file.getPath() + "\n" + e.getMessage());
+		} finally {
+			in.close();
+		}
+	}
+
+	private static void writeString(DataOutputStream out, String s) throws IOException {
+		if (s == null) {
+			out.writeInt(-1);
+			return;
+		}
+		byte[] bytes = s.getBytes(UTF8);
+		out.writeInt(bytes.length);
+		out.write(bytes);
+	}
+
+	private static String readString(DataInputStream in) throws IOException {
+		int length = in.readInt();
+		if (length < 0) return null;
+		byte[] bytes = new byte[length];
+		in.readFully(bytes);
+		return new String(bytes, UTF8);
+	}
+}
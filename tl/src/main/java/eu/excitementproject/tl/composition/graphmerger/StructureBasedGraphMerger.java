@@ -3,6 +3,7 @@ package eu.excitementproject.tl.composition.graphmerger;
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.Hashtable;
+import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Set;
@@ -16,6 +17,7 @@ import eu.excitementproject.tl.structures.fragmentgraph.FragmentGraph;
 import eu.excitementproject.tl.structures.rawgraph.EntailmentGraphRaw;
 import eu.excitementproject.tl.structures.rawgraph.EntailmentRelation;
 import eu.excitementproject.tl.structures.rawgraph.EntailmentUnit;
+import eu.excitementproject.tl.structures.rawgraph.utils.EdgeType;
 
 /**
  * This graph merger implements a merger based on the WP2 manual procedure. 
@@ -44,13 +46,26 @@ public class StructureBasedGraphMerger extends AbstractGraphMerger {
 	public EntailmentGraphRaw mergeGraphs(Set<FragmentGraph> fragmentGraphs,
 			EntailmentGraphRaw workGraph) throws GraphMergerException {
 
+		workGraph = resumeFromCheckpoint(workGraph);
 		List<FragmentGraph> fg = new LinkedList<FragmentGraph>(fragmentGraphs);
 		Collections.sort(fg, new FragmentGraph.CompleteStatementComparator());
 		// Iterate over the list of fragment graphs and merge them one by one
 		for (FragmentGraph fragmentGraph : fg){
+			if (isMergedBeforeCheckpoint(fragmentGraph)) continue; // merged before the checkpoint the merge resumed from
 			workGraph=mergeGraphs(fragmentGraph, workGraph);
+			fragmentGraphMerged(fragmentGraph, workGraph);
 		}
-		workGraph.applyTransitiveClosure();
+		if (getBlocker()!=null) logger.info("EDA calls: "+String.valueOf(getEdaCallsNumber())+", base statement pairs pruned by blocking (saved EDA calls): "+String.valueOf(getPrunedPairsNumber()));
+		workGraph.updateTransitiveClosure();
+		saveCheckpoint(workGraph);
+		return workGraph;
+	}
+
+	@Override
+	public EntailmentGraphRaw mergeGraphs(Iterator<FragmentGraph> fragmentGraphs,
+			EntailmentGraphRaw workGraph) throws GraphMergerException {
+		workGraph = super.mergeGraphs(fragmentGraphs, workGraph);
+		if (workGraph!=null) workGraph.updateTransitiveClosure();
 		return workGraph;
 	}
 
@@ -100,7 +115,8 @@ public class StructureBasedGraphMerger extends AbstractGraphMerger {
 				workGraph = mergeFragmentGraphs(workGraph, newFragmentGraphNodes, oldFragmentGraphNodes, newBaseStatement, workGraphBaseStatement);				
 			}
 		}			
-		workGraph.applyTransitiveClosure();
+		// only add the closure edges due to the edges added in this merge step (the work graph was closed after the previous step)
+		workGraph.updateTransitiveClosure();
 		return workGraph;		
 	}
 	
@@ -116,12 +132,14 @@ public class StructureBasedGraphMerger extends AbstractGraphMerger {
 	private EntailmentGraphRaw mergeFragmentGraphs(EntailmentGraphRaw workGraph, Hashtable<Integer, Set<EntailmentUnit>> newFragmentGraphNodes, Hashtable<Integer, Set<EntailmentUnit>> oldFragmentGraphNodes, EntailmentUnit newBaseStatement,  EntailmentUnit workGraphBaseStatement) throws GraphMergerException{
 		//Check if there is entailment between the two base statements
 		Set<EntailmentRelation> edgesToAdd = mergeBaseStatements(workGraph, newBaseStatement, workGraphBaseStatement);
-		if (edgesToAdd.isEmpty()) return workGraph; // empty set = no entailment, i.e. we are done  - there's nothing else to merge (return the current work graph)
 		
-		// add the entailment relation(s) between the 2 base statements
+		// add the entailment relation(s) between the 2 base statements (or the "pruned" non-entailment relations)
+		boolean isNewEntailment = false;
 		for (EntailmentRelation edge : edgesToAdd){
 			workGraph.addEdge(edge.getSource(), edge.getTarget(), edge);
+			if (edge.getLabel().is(DecisionLabel.Entailment)) isNewEntailment = true;
 		}			
+		if (!isNewEntailment) return workGraph; // no new entailment, i.e. we are done  - there's nothing else to merge (return the current work graph)
 
 		
 		// If there was an existing entailment edge, or if we just found that there is entailment in either direction between the 2 base statements
@@ -158,7 +176,7 @@ public class StructureBasedGraphMerger extends AbstractGraphMerger {
 	 * @param workGraph
 	 * @param newBaseStatement
 	 * @param workGraphBaseStatement
-	 * @return set of the corresponding entailment relations 
+	 * @return set of the corresponding entailment relations, or the "pruned" non-entailment relations in both directions if the pair is pruned by the blocker 
 	 * @throws GraphMergerException
 	 */
 	protected Set<EntailmentRelation> mergeBaseStatements(EntailmentGraphRaw workGraph, EntailmentUnit newBaseStatement, EntailmentUnit workGraphBaseStatement) throws GraphMergerException{
@@ -166,6 +184,15 @@ public class StructureBasedGraphMerger extends AbstractGraphMerger {
 		// There might be an existing entailment edge because the two base statements were present in the work graph before
 		Set<EntailmentRelation> edgesToAdd = new HashSet<EntailmentRelation>();
 		if (!workGraph.isEntailmentInAnyDirection(newBaseStatement, workGraphBaseStatement)){
+			// If the base statements share no content words, there's no need to ask the EDA (if a blocker is set) 
+			if (isPruned(workGraphBaseStatement, newBaseStatement)){
+				// the pair may have been pruned already, when another fragment graph with the same base statement was merged
+				if (!isPrunedEdge(workGraph, workGraphBaseStatement, newBaseStatement)){
+					edgesToAdd.add(getPrunedRelation(workGraphBaseStatement, newBaseStatement));
+					edgesToAdd.add(getPrunedRelation(newBaseStatement, workGraphBaseStatement));
+				}
+				return edgesToAdd;
+			}
 			// If there's no existing entailment, check if there is entailment between the base statements
 //			logger.info("Checking entailment between base statements");
 			edgesToAdd = getEntailmentRelations(workGraphBaseStatement, newBaseStatement);
@@ -173,6 +200,19 @@ public class StructureBasedGraphMerger extends AbstractGraphMerger {
 		return edgesToAdd;
 	}
 	
+	/**
+	 * @param workGraph
+	 * @param source
+	 * @param target
+	 * @return true if the work graph has a "pruned" edge source -> target
+	 */
+	private boolean isPrunedEdge(EntailmentGraphRaw workGraph, EntailmentUnit source, EntailmentUnit target){
+		for (EntailmentRelation edge : workGraph.getAllEdges(source, target)){
+			if (edge.getEdgeType().equals(EdgeType.PRUNED)) return true;
+		}
+		return false;
+	}
+	
 	/**
 	 * This method is called when entailment relation A->B was detected between 2 base statements.
 	 * It receives a work graph and two base statements - one from the work graph, and the other from the fragment graph that is currently being merged with the work graph
@@ -1,17 +1,26 @@
 package eu.excitementproject.tl.composition.graphoptimizer;
 
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.apache.commons.lang.exception.ExceptionUtils;
 import org.apache.log4j.Logger;
+import org.jgrapht.alg.ConnectivityInspector;
 
 import eu.excitementproject.eop.common.DecisionLabel;
 import eu.excitementproject.eop.common.TEDecision;
 import eu.excitementproject.eop.globalgraphoptimizer.api.UntypedPredicateGraphLearner;
 import eu.excitementproject.eop.globalgraphoptimizer.defs.Pair;
-import eu.excitementproject.eop.globalgraphoptimizer.edgelearners.EdgeLearner;
 import eu.excitementproject.eop.globalgraphoptimizer.edgelearners.EfficientlyCorrectHtlLearner;
 import eu.excitementproject.eop.globalgraphoptimizer.graph.AbstractOntologyGraph;
 import eu.excitementproject.eop.globalgraphoptimizer.graph.AbstractRuleEdge;
@@ -32,6 +41,7 @@ import eu.excitementproject.tl.structures.rawgraph.utils.EdgeType;
  * This implementation of {@link GraphOptimizer} interface performs global graph optimization as described in Berant, Jonathan, Ido Dagan, and Jacob Goldberger. 2012. Learning entailment relations by global
 graph structure optimization. Computational Linguistics, 38(1):73–111.
 <p> The implementation is a wrapper of the corresponding algorithm implemented in the EOP.
+<p> The weakly connected components of the work graph are optimized separately, in parallel (see {@link #setExecutor(ExecutorService)} and {@link #setSplitComponents(boolean)}).
 
  * @author Meni Adler & Lili Kotlerman
  */
@@ -42,6 +52,12 @@ public class GlobalGraphOptimizer extends AbstractGraphOptimizer {
 	protected final static double DEFAULT_EDGE_COST = 0.5;
 	protected final static double DEFAULT_UNKNOWN_SCORE = 0;
 	
+	/**
+	 * If true, only the node pairs with edges in the work graph are given to the graph learner, and the other pairs get the learner's unknownScore.
+	 * If false, a score is given for every ordered pair of nodes (n^2 edges), where the pairs without edges get minus the average entailment confidence of the work graph.  
+	 */
+	protected boolean sparseInput = false;
+	
 	/******************************************************************************************
 	 * CONSTRUCTORS
 	 * ****************************************************************************************/
@@ -59,9 +75,32 @@ public class GlobalGraphOptimizer extends AbstractGraphOptimizer {
 	}
 	
 	public GlobalGraphOptimizer(double edgeCost, double unknownScore, Set<Pair<String,String>> entailings, Set<Pair<String,String>> nonentailings)  {
-		boolean convertProb2Score = false;
-		this.edgeLearner = new EfficientlyCorrectHtlLearner(edgeCost);
-		this.graphLearner = new UntypedPredicateGraphLearner(this.edgeLearner, convertProb2Score, entailings,nonentailings, unknownScore);		
+		this(edgeCost, unknownScore, entailings, nonentailings, false);
+	}
+
+	/**
+	 * @param edgeCost
+	 * @param unknownScore - the score of node pairs, which are not given to the graph learner 
+	 * @param sparseInput - if true, only the node pairs with edges in the work graph are given to the graph learner (the other pairs get unknownScore), 
+	 * so that the input grows with the number of edges rather than with the square of the number of nodes  
+	 */
+	public GlobalGraphOptimizer(double edgeCost, double unknownScore, boolean sparseInput) {
+		this(edgeCost, unknownScore, new HashSet<Pair<String,String>>(), new HashSet<Pair<String,String>>(), sparseInput);
+	}
+
+	/**
+	 * @param edgeCost
+	 * @param unknownScore - the score of node pairs, which are not given to the graph learner
+	 * @param entailings
+	 * @param nonentailings
+	 * @param sparseInput - if true, only the node pairs with edges in the work graph are given to the graph learner (the other pairs get unknownScore) 
+	 */
+	public GlobalGraphOptimizer(double edgeCost, double unknownScore, Set<Pair<String,String>> entailings, Set<Pair<String,String>> nonentailings, boolean sparseInput)  {
+		this.edgeCost = edgeCost;
+		this.unknownScore = unknownScore;
+		this.entailings = entailings;
+		this.nonentailings = nonentailings;
+		this.sparseInput = sparseInput;
 	}
 
 
@@ -76,8 +115,6 @@ public class GlobalGraphOptimizer extends AbstractGraphOptimizer {
 
 	@Override
 	public EntailmentGraphCollapsed optimizeGraph(EntailmentGraphRaw workGraph, Double confidenceThreshold) throws GraphOptimizerException{
-		DirectedOntologyGraph graph = new DirectedOneMappingOntologyGraph("work graph");
-
 		/* Commented out: 
 		 * Here we only add nodes connected by edges in the graph, and we consider all existing edges to denote entailment. 
 		 * We should 1) add "orphan" nodes, not connected with any other node.
@@ -105,28 +142,29 @@ public class GlobalGraphOptimizer extends AbstractGraphOptimizer {
 
 	
 		HashMap<String, Integer> nodeIndex = new HashMap<String, Integer>(); 
+		HashMap<String, EntailmentUnit> nodeByText = new HashMap<String, EntailmentUnit>(); 
 		int i = 1;
 		for (EntailmentUnit node : workGraph.vertexSet()) {
-			nodeIndex.put(node.getText(), i);
-			RelationNode rNode = new RelationNode(i++,node.getText());
-			graph.addNode(rNode);
+			nodeIndex.put(node.getText(), i++);
+			nodeByText.put(node.getText(), node);
 		}
 		
-		for (EntailmentUnit nodeA : workGraph.vertexSet()){
-			for (EntailmentUnit nodeB : workGraph.vertexSet()){
-				if (nodeA.equals(nodeB)) continue; // no self-loops
-				Double confidence = detectConfidence(workGraph, nodeA, nodeB, confidenceThreshold);
-				if (confidence == TEDecision.CONFIDENCE_NOT_AVAILABLE)
-					throw new GraphOptimizerException("Unavaliable score was detected.");
-				RelationNode sourceNode = new RelationNode(nodeIndex.get(nodeA.getText()),nodeA.getText());
-				RelationNode targetNode = new RelationNode(nodeIndex.get(nodeB.getText()),nodeB.getText());
-				try {
-					graph.addEdge(new RuleEdge(sourceNode, targetNode,confidence));
-				} catch (Exception e) {
-					throw new GraphOptimizerException("Problem when adding edge "+nodeA.getText()+" -> "+nodeB.getText()+" with confidence = "+confidence+".\n"+e);
-				}				
+		// The pairs of nodes from different weakly connected components have no edges, so they get non-entailing scores and can be left out: 
+		// each component is optimized separately. Single nodes have nothing to optimize. 
+		// The input graphs are built here, and only the learning is done in parallel. 
+		Double defaultConfidence = -1.0 * AbstractGraphOptimizer.getAverageConfidenceOfEntailment(workGraph);
+		List<DirectedOntologyGraph> graphs = new ArrayList<DirectedOntologyGraph>();
+		if (splitComponents){
+			int c = 0;
+			for (Set<EntailmentUnit> component : new ConnectivityInspector<EntailmentUnit,EntailmentRelation>(workGraph).connectedSets()){
+				if (component.size() < 2) continue;
+				graphs.add(buildInputGraph(workGraph, component, "work graph component "+(c++), nodeIndex, confidenceThreshold, defaultConfidence));
 			}
 		}
+		else {
+			graphs.add(buildInputGraph(workGraph, workGraph.vertexSet(), "work graph", nodeIndex, confidenceThreshold, defaultConfidence));
+		}
+		logger.info("Optimizing "+graphs.size()+" components of the work graph");
 		
 /*		for (EntailmentRelation edge : workGraph.edgeSet()) {
 			Double confidence = detectConfidence(workGraph, edge.getSource(), edge.getTarget(), confidenceThreshold);
@@ -141,12 +179,7 @@ public class GlobalGraphOptimizer extends AbstractGraphOptimizer {
 			}
 		}
 */		
-		Set<AbstractOntologyGraph> componnetGraphs;
-		try {
-			componnetGraphs = graphLearner.learn(graph);
-		} catch (Exception e) {
-			throw new GraphOptimizerException("Problem with global optimization.\n"+ExceptionUtils.getFullStackTrace(e));
-		}
+		List<AbstractOntologyGraph> componnetGraphs = learn(graphs);
 		EntailmentGraphCollapsed ret = new EntailmentGraphCollapsed();
 
 		/* Commented out: 
@@ -177,8 +210,8 @@ public class GlobalGraphOptimizer extends AbstractGraphOptimizer {
 			for (AbstractRuleEdge componentEdge : componnetGraph.getEdges()) {
 				//if (componentEdge.score() >= confidenceThreshold) { //TODO: do we need the threshold here? Should it be confidenceThreshold or just 0 (to retain only entailment edges)? 				
 				if (componentEdge.score() >= 0) { //keep threshold of 0 (to retain only entailment edges).  I spotted negative scores for output edges, the question is whether to retain them (they are supposed to be part of consistent transitive graph), or remove, since they seem non-entailing 				
-					EntailmentUnit source = tmpRawGraph.getVertexWithText(componentEdge.from().description());
-					EntailmentUnit target = tmpRawGraph.getVertexWithText(componentEdge.to().description());
+					EntailmentUnit source = nodeByText.get(componentEdge.from().description());
+					EntailmentUnit target = nodeByText.get(componentEdge.to().description());
 					Double score = componentEdge.score();
 					if (score > 1) score = 1.0;
 					EntailmentRelation edge = new EntailmentRelation(source, target, new TEDecisionWithConfidence(score, DecisionLabel.Entailment));
@@ -193,8 +226,8 @@ public class GlobalGraphOptimizer extends AbstractGraphOptimizer {
 		for (EntailmentRelation edge : workGraph.edgeSet()){
 			if (!edge.getLabel().is(DecisionLabel.Entailment)) continue; // only return entailing FG edges
 			if (edge.getEdgeType().is(EdgeType.FRAGMENT_GRAPH)){
-				EntailmentUnit src = tmpRawGraph.getVertexWithText(edge.getSource().getText());
-				EntailmentUnit tgt = tmpRawGraph.getVertexWithText(edge.getTarget().getText());
+				EntailmentUnit src = nodeByText.get(edge.getSource().getText());
+				EntailmentUnit tgt = nodeByText.get(edge.getTarget().getText());
 				tmpRawGraph.removeAllEdges(src, tgt);
 				EntailmentRelation e = new EntailmentRelation(src, tgt, new TEDecisionWithConfidence(1.0, DecisionLabel.Entailment));
 				tmpRawGraph.addEdge(src, tgt, e);
@@ -211,12 +244,136 @@ public class GlobalGraphOptimizer extends AbstractGraphOptimizer {
 	
 	
 	
-	private Double detectConfidence(EntailmentGraphRaw workGraph, EntailmentUnit source, EntailmentUnit target, Double confidenceThreshold){
+	/**
+	 * Build the input of the graph learner for the given nodes: a score for each ordered pair of nodes, 
+	 * or only for the pairs with edges in the work graph if {@link #sparseInput} is true.
+	 * @param workGraph
+	 * @param nodes - the nodes of a weakly connected component of the work graph (or all its nodes)
+	 * @param name - the name of the graph
+	 * @param nodeIndex - the ids of the nodes by their texts
+	 * @param confidenceThreshold
+	 * @param defaultConfidence - the confidence of pairs without edges with confidence >= confidenceThreshold
+	 * @return the input graph
+	 * @throws GraphOptimizerException
+	 */
+	private DirectedOntologyGraph buildInputGraph(EntailmentGraphRaw workGraph, Set<EntailmentUnit> nodes, String name, Map<String, Integer> nodeIndex, Double confidenceThreshold, Double defaultConfidence) throws GraphOptimizerException{
+		DirectedOntologyGraph graph = new DirectedOneMappingOntologyGraph(name);
+		for (EntailmentUnit node : nodes) {
+			graph.addNode(new RelationNode(nodeIndex.get(node.getText()),node.getText()));
+		}
+		for (EntailmentUnit nodeA : nodes){
+			Set<EntailmentUnit> targets = sparseInput ? getTargets(workGraph, nodeA) : nodes;
+			for (EntailmentUnit nodeB : targets){
+				if (nodeA.equals(nodeB)) continue; // no self-loops
+				Double confidence = detectConfidence(workGraph, nodeA, nodeB, confidenceThreshold, defaultConfidence);
+				if (confidence == TEDecision.CONFIDENCE_NOT_AVAILABLE)
+					throw new GraphOptimizerException("Unavaliable score was detected.");
+				RelationNode sourceNode = new RelationNode(nodeIndex.get(nodeA.getText()),nodeA.getText());
+				RelationNode targetNode = new RelationNode(nodeIndex.get(nodeB.getText()),nodeB.getText());
+				try {
+					graph.addEdge(new RuleEdge(sourceNode, targetNode,confidence));
+				} catch (Exception e) {
+					throw new GraphOptimizerException("Problem when adding edge "+nodeA.getText()+" -> "+nodeB.getText()+" with confidence = "+confidence+".\n"+e);
+				}				
+			}
+		}
+		return graph;
+	}
+	
+	/**
+	 * Run the graph learner on each of the given graphs, on the executor (see {@link #setExecutor(ExecutorService)}). 
+	 * Each graph gets its own learner, since the learners keep state while learning.
+	 * @param graphs
+	 * @return the learned component graphs, in the order of the input graphs
+	 * @throws GraphOptimizerException if the learning of one of the graphs failed
+	 */
+	private List<AbstractOntologyGraph> learn(List<DirectedOntologyGraph> graphs) throws GraphOptimizerException{
+		List<AbstractOntologyGraph> componentGraphs = new ArrayList<AbstractOntologyGraph>();
+		if (graphs.isEmpty()) return componentGraphs;
+		
+		ExecutorService learningExecutor = executor;
+		if (learningExecutor == null) learningExecutor = Executors.newFixedThreadPool(Math.min(graphs.size(), Runtime.getRuntime().availableProcessors()));
+		List<Future<Set<AbstractOntologyGraph>>> futures = new ArrayList<Future<Set<AbstractOntologyGraph>>>();
+		try {
+			for (final DirectedOntologyGraph graph : graphs){
+				futures.add(learningExecutor.submit(new Callable<Set<AbstractOntologyGraph>>() {
+					@Override
+					public Set<AbstractOntologyGraph> call() throws Exception {
+						return createGraphLearner().learn(graph);
+					}
+				}));
+			}
+			for (Future<Set<AbstractOntologyGraph>> future : futures){
+				componentGraphs.addAll(future.get());
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new GraphOptimizerException("Global optimization was interrupted");
+		} catch (ExecutionException e) {
+			throw new GraphOptimizerException("Problem with global optimization.\n"+ExceptionUtils.getFullStackTrace(e.getCause()));
+		} finally {
+			if (learningExecutor != executor) learningExecutor.shutdownNow();
+		}
+		return componentGraphs;
+	}
+	
+	/**
+	 * @return a new graph learner with the settings of this optimizer
+	 */
+	protected UntypedPredicateGraphLearner createGraphLearner(){
+		return new UntypedPredicateGraphLearner(new EfficientlyCorrectHtlLearner(edgeCost), convertProb2Score, entailings, nonentailings, unknownScore);
+	}
+	
+	/**
+	 * Set the executor, on which the components of the work graph are optimized. 
+	 * If not set (or set to null), a thread pool with one thread per available processor is created for each call of optimizeGraph(), and shut down at its end.
+	 * An executor set here is not shut down by the optimizer. 
+	 * @param executor
+	 */
+	public void setExecutor(ExecutorService executor){
+		this.executor = executor;
+	}
+	
+	/**
+	 * Set whether the weakly connected components of the work graph are optimized separately (default), 
+	 * or the whole work graph is given to one graph learner. Both give the same result, since pairs of nodes 
+	 * from different components have no edges; the latter is kept for comparison.
+	 * @param splitComponents
+	 */
+	public void setSplitComponents(boolean splitComponents){
+		this.splitComponents = splitComponents;
+	}
+	
+	/**
+	 * @param workGraph
+	 * @param source
+	 * @return the nodes with edges from source, in the order of the edges (edges without a decision, see {@link #isWithoutDecision(EntailmentRelation)}, are left out)
+	 */
+	private Set<EntailmentUnit> getTargets(EntailmentGraphRaw workGraph, EntailmentUnit source){
+		Set<EntailmentUnit> targets = new LinkedHashSet<EntailmentUnit>();
+		for (EntailmentRelation edge : workGraph.outgoingEdgesOf(source)){
+			if (isWithoutDecision(edge)) continue;
+			targets.add(edge.getTarget());
+		}
+		return targets;
+	}
+
+	/**
+	 * @param edge
+	 * @return true if the edge was added by the graph merger without a decision of the EDA: pairs pruned by the blocker, and pairs left undecided by the budget of the merge.
+	 * These edges are treated as missing edges, so that a pair the EDA never saw does not outweigh the decisions of the EDA.  
+	 */
+	private static boolean isWithoutDecision(EntailmentRelation edge){
+		return edge.getEdgeType().equals(EdgeType.PRUNED) || edge.getEdgeType().equals(EdgeType.UNDECIDED);
+	}
+	
+	private Double detectConfidence(EntailmentGraphRaw workGraph, EntailmentUnit source, EntailmentUnit target, Double confidenceThreshold, Double defaultConfidence){
 		Double confidence = null; // this will encode missing edges or edges with confidence < threshold
 		
 		if (workGraph.containsEdge(source, target)) {		
 			// look through all the edges src->tgt and select the most confident as the representative one 
 			for (EntailmentRelation edge : workGraph.getAllEdges(source, target)){
+				if (isWithoutDecision(edge)) continue; // counts as a missing edge
 				if(edge.getTEdecision().getDecision().is(DecisionLabel.Entailment)) {
 					 if (edge.getEdgeType().equals(EdgeType.FRAGMENT_GRAPH)) {
 						 logger.debug("Adding edge "+source.getTextWithoutDoubleSpaces()+" -> "+target.getTextWithoutDoubleSpaces()+" with score: 10000.0");
@@ -258,7 +415,7 @@ public class GlobalGraphOptimizer extends AbstractGraphOptimizer {
 		}
 */		
 		
-		if (confidence==null) confidence = -1.0 * AbstractGraphOptimizer.getAverageConfidenceOfEntailment(workGraph);
+		if (confidence==null) confidence = defaultConfidence;
 		
 		// Note: -1 confidence is understood as "unavailable score"
 		if (confidence == TEDecision.CONFIDENCE_NOT_AVAILABLE) {
@@ -268,6 +425,20 @@ public class GlobalGraphOptimizer extends AbstractGraphOptimizer {
 		return confidence;
 	}
 
-	protected UntypedPredicateGraphLearner graphLearner;
-	protected EdgeLearner edgeLearner;
+	// settings of the graph learners created for the components (see createGraphLearner())
+	protected final boolean convertProb2Score = false;
+	protected double edgeCost;
+	protected double unknownScore;
+	protected Set<Pair<String,String>> entailings;
+	protected Set<Pair<String,String>> nonentailings;
+	
+	/**
+	 * The executor for optimizing the components in parallel, or null to use a new thread pool for each graph
+	 */
+	protected ExecutorService executor = null;
+	
+	/**
+	 * If true, the weakly connected components of the work graph are optimized separately
+	 */
+	protected boolean splitComponents = true;
 } 
@@ -1,10 +1,11 @@
 package eu.excitementproject.tl.composition.graphoptimizer;
 
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Map;
 import java.util.Set;
 import org.apache.log4j.Logger;
-
-import org.jgrapht.alg.CycleDetector;
+import org.jgrapht.DirectedGraph;
 
 import eu.excitementproject.eop.common.DecisionLabel;
 import eu.excitementproject.tl.composition.api.GraphOptimizer;
@@ -15,6 +16,8 @@ import eu.excitementproject.tl.structures.collapsedgraph.EquivalenceClass;
 import eu.excitementproject.tl.structures.rawgraph.EntailmentGraphRaw;
 import eu.excitementproject.tl.structures.rawgraph.EntailmentRelation;
 import eu.excitementproject.tl.structures.rawgraph.EntailmentUnit;
+import eu.excitementproject.tl.structures.rawgraph.FilteredEntailmentGraphRaw;
+import eu.excitementproject.tl.structures.utils.ReachabilityEngine;
 
 /**
  * Simple implementation of {@link GraphOptimizer} interface. 
@@ -41,25 +44,13 @@ public class SimpleGraphOptimizer extends AbstractGraphOptimizer{
 			EntailmentGraphRaw graph, Double confidenceThreshold)
 			throws GraphOptimizerException {
 		
-		EntailmentGraphRaw workGraph = new EntailmentGraphRaw(graph.vertexSet(), graph.edgeSet());
-		
 		// Step 1 - clean up the work graph
 		
-		// -  Only retain "entailment" edges and remove all "entailment" edges with confidence < confidenceThreshold
+		// -  Only retain "entailment" edges with confidence >= confidenceThreshold 
+		//    (a filtered view of the graph is used, so that the graph is not copied)
 		
-		Set<EntailmentRelation> workEdgesToRemove = new HashSet<EntailmentRelation>();
-		for (EntailmentRelation workEdge : workGraph.edgeSet()){
-			if (!workEdge.getLabel().is(DecisionLabel.Entailment)){
-				workEdgesToRemove.add(workEdge);
-			}
-			else{ // if this is an "entailment" edge
-				if(workEdge.getConfidence()<confidenceThreshold) {
-					workEdgesToRemove.add(workEdge);
-				}
-			}
-		}
-		workGraph.removeAllEdges(workEdgesToRemove);
-		logger.info("Removed "+String.valueOf(workEdgesToRemove.size())+" low-confidence edges.");
+		DirectedGraph<EntailmentUnit,EntailmentRelation> workGraph = new FilteredEntailmentGraphRaw(graph, DecisionLabel.Entailment, confidenceThreshold);
+		logger.info("Filtered out "+String.valueOf(graph.edgeSet().size()-workGraph.edgeSet().size())+" low-confidence edges.");
 		
 		// Step 2 - create collapsed graph from the cleaned-up work graph (copy nodes and edges)
 
@@ -67,24 +58,30 @@ public class SimpleGraphOptimizer extends AbstractGraphOptimizer{
 		Set<EquivalenceClass> equivalenceClasses = findEquivalenceClassesAsCycles(workGraph);
 		// - Create an empty collapsed graph and place the newly found equivalence classes as its nodes
 		EntailmentGraphCollapsed collapsedGraph = new EntailmentGraphCollapsed();
+		Map<EntailmentUnit,EquivalenceClass> equivalenceClassOf = new HashMap<EntailmentUnit,EquivalenceClass>();
 		for (EquivalenceClass equivalenceClass : equivalenceClasses){
 			collapsedGraph.addVertex(equivalenceClass);
+			for (EntailmentUnit eu : equivalenceClass.getEntailmentUnits()){
+				equivalenceClassOf.put(eu, equivalenceClass);
+			}
 		}
 		
 		// - Copy all the nodes which are not included in the previously found entailment classes
 		//   ( make an equivalence class out of every such node and add it to the graph)
 		for (EntailmentUnit workGraphNode : workGraph.vertexSet()){
-			if (!containsEntailmentUnit(collapsedGraph.vertexSet(),workGraphNode)){
-				collapsedGraph.addVertex(new EquivalenceClass(workGraphNode));
+			if (!equivalenceClassOf.containsKey(workGraphNode)){
+				EquivalenceClass equivalenceClass = new EquivalenceClass(workGraphNode);
+				collapsedGraph.addVertex(equivalenceClass);
+				equivalenceClassOf.put(workGraphNode, equivalenceClass);
 			}
 		}
 		
 
 		// - Copy edges (in case of multiple edges assign min confidence)
 		for (EntailmentRelation workGraphEdge : workGraph.edgeSet()){
-			EquivalenceClass source = collapsedGraph.getVertex(workGraphEdge.getSource());
+			EquivalenceClass source = equivalenceClassOf.get(workGraphEdge.getSource());
 			if (source==null) throw new GraphOptimizerException("Adding edges to the collapsed graph. Cannot find the equivalence class node, which includes the entailment unit "+workGraphEdge.getSource());
-			EquivalenceClass target = collapsedGraph.getVertex(workGraphEdge.getTarget());
+			EquivalenceClass target = equivalenceClassOf.get(workGraphEdge.getTarget());
 			if (target==null) throw new GraphOptimizerException("Adding edges to the collapsed graph. Cannot find the equivalence class node, which includes the entailment unit "+workGraphEdge.getTarget());
 			
 			if (source.equals(target)) continue; // if source and target of the work graph edge are both mapped to the same equivalence class - don't add this edge (this will be a loop)  
@@ -109,51 +106,35 @@ public class SimpleGraphOptimizer extends AbstractGraphOptimizer{
 	}
 	
 	
-	/** Detect all cycles and turn each of them to an {@link EquivalenceClass} node  
-	 * @param workGraph
+	/** Detect all cycles and turn each of them to an {@link EquivalenceClass} node.
+	 * <p> The nodes which are in a cycle with each other are the strongly connected components of the graph, 
+	 * which are found in linear time by {@link ReachabilityEngine#getComponents()}.  
+	 * @param workGraph - the graph, or a filtered view of it (see {@link FilteredEntailmentGraphRaw})
 	 * @return set of {@link EquivalenceClass} nodes
 	 */
-	public Set<EquivalenceClass> findEquivalenceClassesAsCycles(EntailmentGraphRaw workGraph){
+	public Set<EquivalenceClass> findEquivalenceClassesAsCycles(DirectedGraph<EntailmentUnit,EntailmentRelation> workGraph){
 		
 		if (workGraph==null) return null;
 		
 		Set<EquivalenceClass> cycles = new HashSet<EquivalenceClass>();
 		
-		CycleDetector<EntailmentUnit,EntailmentRelation> cycleDetector= new CycleDetector<EntailmentUnit,EntailmentRelation>(workGraph);
-		// find the set of all vertices which participate in at least one cycle in this graph 
-		Set<EntailmentUnit> cycleNodes = cycleDetector.findCycles();
-					
-		Set<EntailmentUnit> closedList = new HashSet<EntailmentUnit>();
+		ReachabilityEngine<EntailmentUnit> engine = new ReachabilityEngine<EntailmentUnit>(workGraph.vertexSet());
+		for (EntailmentRelation workGraphEdge : workGraph.edgeSet()){
+			engine.addEdge(workGraphEdge.getSource(), workGraphEdge.getTarget(), workGraphEdge.getConfidence());
+		}
 		
-		// for each such vertex, find all the vertices in the corresponding cycle
-		// these vertices are to form one equivalence class
-		for (EntailmentUnit currentNode : cycleNodes){
-			if (closedList.contains(currentNode)) {
-				logger.debug("Skipping node <<"+currentNode.getText()+">> since equivalence class with this node was already generated");
-				continue; // if already generated an equivalence class with this node - no need to do it again
+		for (Set<EntailmentUnit> component : engine.getComponents()){
+			if (component.size() == 1) {
+				// a single node is a cycle only if it has a loop
+				EntailmentUnit node = component.iterator().next();
+				if (workGraph.getEdge(node, node) == null) continue;
 			}
-			closedList.add(currentNode);
-			EquivalenceClass currentCycle = new EquivalenceClass(cycleDetector.findCyclesContainingVertex(currentNode));
-			logger.debug("Current node: "+currentNode.getText());
+			EquivalenceClass currentCycle = new EquivalenceClass(component);
 			logger.debug(currentCycle.getEntailmentUnits().size()+" nodes in cycle:");
 			for (EntailmentUnit nodeInCurrentCycle: currentCycle.getEntailmentUnits()){
-				closedList.add(nodeInCurrentCycle);
 				logger.debug("-- "+nodeInCurrentCycle.getText());
-				// if a node in the current cycle was already seen as part of another cycle, 
-				// then the current and the previously found cycles of this node should be merged
-				EquivalenceClass previousRelatedCycle = getEquivalenceClass(cycles, nodeInCurrentCycle);
-				if (previousRelatedCycle!=null){ // if such previous cycle was found
-					if (previousRelatedCycle.toString().equals(currentCycle.toString())) continue; // if it's not the same cycle as the c
-					logger.debug("\t>> found in another cycle of "+String.valueOf(previousRelatedCycle.getEntailmentUnits().size())+" entailment units");
-					logger.debug("\t>> " +previousRelatedCycle+"\n");
-					cycles.remove(previousRelatedCycle); // remove it from cycles
-					previousRelatedCycle.add(currentCycle.getEntailmentUnits()); // unite the previous one with the current one
-					cycles.add(previousRelatedCycle); // put the updated cycle back
-				}
-				else{ // if no previous related cycle was found, create the new one
-					cycles.add(currentCycle);  
-				}				
 			}
+			cycles.add(currentCycle);  
 		}		
 		return cycles;
 	}	
@@ -17,6 +17,24 @@ public class FragmentGraphGeneratorFromCAS extends
 
 	private final static Logger logger = Logger.getLogger(FragmentGraphGeneratorFromCAS.class.getName());
 
+	/**
+	 * the maximal number of modifiers of a fragment for which the whole fragment graph is built 
+	 * (see {@link FragmentGraph#FragmentGraph(JCas, eu.excitement.type.tl.FragmentAnnotation, int)})
+	 */
+	private final int maxModifiers;
+
+	public FragmentGraphGeneratorFromCAS() {
+		this(Integer.MAX_VALUE);
+	}
+
+	/**
+	 * @param maxModifiers -- the maximal number of modifiers of a fragment for which the whole fragment graph is built. 
+	 * Fragments with more modifiers get a graph with only the complete statement and the base statement. 
+	 */
+	public FragmentGraphGeneratorFromCAS(int maxModifiers) {
+		this.maxModifiers = maxModifiers;
+	}
+
 	/**
 	 * Fragment graph generator from each fragment annotation in a CAS object
 	 * 
@@ -29,7 +47,7 @@ public class FragmentGraphGeneratorFromCAS extends
 				
 		for(Annotation a : text.getAnnotationIndex(DeterminedFragment.type)) {
 			logger.info("Processing fragment: " + a.getCoveredText());
-			fgs.add(new FragmentGraph(text,(DeterminedFragment) a));
+			fgs.add(new FragmentGraph(text,(DeterminedFragment) a, maxModifiers));
 		}
 		
 		return fgs;
@@ -0,0 +1,364 @@
+package eu.excitementproject.tl.edautils;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UnsupportedEncodingException;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.apache.log4j.Logger;
+
+import eu.excitementproject.eop.common.DecisionLabel;
+import eu.excitementproject.eop.common.EDABasic;
+import eu.excitementproject.eop.common.EDAException;
+import eu.excitementproject.eop.common.TEDecision;
+import eu.excitementproject.eop.lap.LAPAccess;
+
+/**
+ * Persistent cache of EDA decisions.
+ * <p>Decisions are keyed by the normalized text, the normalized hypothesis and a fingerprint of the EDA,
+ * its configuration and the LAP used to annotate the pair (see {@link EDADecisionCache#getFingerprint(EDABasic, LAPAccess, String)}).
+ * The key is stored as SHA-1 digest, so the same store file can be shared by several EDAs and configurations.
+ * <p>Every new decision is appended to the store file, so that the decisions survive restarts. The appended records are buffered, 
+ * and written to the file by {@link EDADecisionCache#save()} and {@link EDADecisionCache#close()} (and when the buffer is full), 
+ * so if the process dies, only the decisions in the buffer are lost.
+ * Calling {@link EDADecisionCache#save()} compacts the store file by removing the duplicate records of a decision.
+ * <p>If a maximal number of entries is given, the least recently used decisions are evicted from memory when the limit is reached.
+ * Evicted decisions stay in the store file, and are loaded again by the next cache on the file.
+ * <p>The methods of the class are synchronized, so one cache can be shared by several graph mergers and merge workers.
+ */
+public class EDADecisionCache {
+
+	private static final Logger logger = Logger.getLogger(EDADecisionCache.class);
+
+	/**
+	 * The file which holds the decisions on disk
+	 */
+	private final File storeFile;
+
+	/**
+	 * Fingerprint of the EDA, configuration and LAP producing the cached decisions
+	 */
+	private final String fingerprint;
+
+	/**
+	 * Maximal number of decisions to be kept in memory. Non-positive value means no limit.
+	 */
+	private final int maxEntries;
+
+	/**
+	 * The cached decisions (key digest -> decision), in access order
+	 */
+	private final LinkedHashMap<String, TEDecision> decisions;
+
+	/**
+	 * Stream to append new decisions to the store file
+	 */
+	private DataOutputStream journal = null;
+
+	private long hits = 0;
+	private long misses = 0;
+	private long evictions = 0;
+
+	/******************************************************************************************
+	 * CONSTRUCTORS
+	 * ****************************************************************************************/
+
+	/** Create a decision cache backed by the given store file. If the file exists, the decisions stored in it are loaded.
+	 * @param storeFile - the file which holds the decisions on disk
+	 * @param fingerprint - fingerprint of the EDA, configuration and LAP, see {@link EDADecisionCache#getFingerprint(EDABasic, LAPAccess, String)}
+	 * @param maxEntries - maximal number of decisions to be kept in memory, non-positive value means no limit
+	 * @throws IOException if the store file cannot be read or opened for writing
+	 */
+	public EDADecisionCache(File storeFile, String fingerprint, int maxEntries) throws IOException {
+		this.storeFile = storeFile;
+		this.fingerprint = fingerprint;
+		this.maxEntries = maxEntries;
+		this.decisions = new LinkedHashMap<String, TEDecision>(16, 0.75f, true){
+			private static final long serialVersionUID = 4302175619283470112L;
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, TEDecision> eldest) {
+				if (EDADecisionCache.this.maxEntries > 0 && size() > EDADecisionCache.this.maxEntries){
+					evictions++;
+					return true;
+				}
+				return false;
+			}
+		};
+		load();
+		this.evictions = 0; // only count evictions of decisions added after loading
+		journal = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(storeFile, true)));
+	}
+
+	/** Create a decision cache with no limit on the number of decisions kept in memory
+	 * @param storeFile - the file which holds the decisions on disk
+	 * @param fingerprint - fingerprint of the EDA, configuration and LAP
+	 * @throws IOException if the store file cannot be read or opened for writing
+	 */
+	public EDADecisionCache(File storeFile, String fingerprint) throws IOException {
+		this(storeFile, fingerprint, 0);
+	}
+
+	/******************************************************************************************
+	 * LOOKUP AND UPDATE
+	 * ****************************************************************************************/
+
+	/** Return the cached decision for text -> hypothesis, or null if no decision is cached.
+	 * @param text
+	 * @param hypothesis
+	 * @return the cached decision or null
+	 */
+	public synchronized TEDecision getDecision(String text, String hypothesis){
+		TEDecision decision = decisions.get(getKey(text, hypothesis));
+		if (decision == null) misses++;
+		else hits++;
+		return decision;
+	}
+
+	/** Add the decision for text -> hypothesis to the cache and append it to the store file (buffered, see {@link EDADecisionCache#save()}).
+	 * Decisions with {@link DecisionLabel#Unknown} label (failed EDA calls) are not cached.
+	 * @param text
+	 * @param hypothesis
+	 * @param decision
+	 */
+	public synchronized void putDecision(String text, String hypothesis, TEDecision decision){
+		if (decision == null || decision.getDecision().is(DecisionLabel.Unknown)) return;
+		String key = getKey(text, hypothesis);
+		decisions.put(key, new TEDecisionWithConfidence(decision.getConfidence(), decision.getDecision()));
+		if (journal == null) return;
+		try {
+			writeRecord(journal, key, decision);
+		} catch (IOException e) {
+			logger.error("Cannot write EDA decision to "+storeFile.getAbsolutePath()+"\n"+e.getMessage());
+		}
+	}
+
+	/**
+	 * Write the buffered records to the store file, and compact it: the store file is rewritten with one record per decision, 
+	 * i.e. the duplicate records of decisions, which were evicted from memory and computed again, are dropped.
+	 * The decisions evicted from memory are kept. 
+	 * @throws IOException
+	 */
+	public synchronized void save() throws IOException {
+		if (journal != null) journal.close();
+		// the records of the store file (the last record of a decision wins), and the decisions, which were added after closing the store file
+		Map<String, TEDecision> records = new LinkedHashMap<String, TEDecision>();
+		readRecords(records);
+		for (Map.Entry<String, TEDecision> entry : decisions.entrySet()){
+			if (!records.containsKey(entry.getKey())) records.put(entry.getKey(), entry.getValue());
+		}
+		File tmpFile = new File(storeFile.getAbsolutePath()+".tmp");
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmpFile)));
+		try {
+			for (Map.Entry<String, TEDecision> entry : records.entrySet()){
+				writeRecord(out, entry.getKey(), entry.getValue());
+			}
+		} finally {
+			out.close();
+		}
+		if (storeFile.exists() && !storeFile.delete()) throw new IOException("Cannot replace "+storeFile.getAbsolutePath());
+		if (!tmpFile.renameTo(storeFile)) throw new IOException("Cannot rename "+tmpFile.getAbsolutePath()+" to "+storeFile.getAbsolutePath());
+		journal = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(storeFile, true)));
+	}
+
+	/**
+	 * Write the buffered records to the store file and close it. Decisions added after closing are only kept in memory (until {@link EDADecisionCache#save()} is called).
+	 * @throws IOException
+	 */
+	public synchronized void close() throws IOException {
+		if (journal != null) journal.close();
+		journal = null;
+	}
+
+	/******************************************************************************************
+	 * STATISTICS
+	 * ****************************************************************************************/
+
+	/**
+	 * @return the number of lookups, which found a cached decision
+	 */
+	public synchronized long getNumberOfHits() {
+		return hits;
+	}
+
+	/**
+	 * @return the number of lookups, which did not find a cached decision
+	 */
+	public synchronized long getNumberOfMisses() {
+		return misses;
+	}
+
+	/**
+	 * @return the number of decisions evicted from memory due to the size limit
+	 */
+	public synchronized long getNumberOfEvictions() {
+		return evictions;
+	}
+
+	/**
+	 * @return the number of decisions currently held in memory
+	 */
+	public synchronized int size() {
+		return decisions.size();
+	}
+
+	/**
+	 * @return the fingerprint of the EDA, configuration and LAP of this cache
+	 */
+	public String getFingerprint() {
+		return fingerprint;
+	}
+
+	@Override
+	public synchronized String toString(){
+		return "EDA decision cache "+storeFile.getName()+": "+decisions.size()+" decisions, "+hits+" hits, "+misses+" misses, "+evictions+" evictions";
+	}
+
+	/******************************************************************************************
+	 * FINGERPRINT
+	 * ****************************************************************************************/
+
+	/** Create a fingerprint of an EDA, its configuration and the LAP used to annotate the pairs.
+	 * Decisions produced with different fingerprints are never mixed up.
+	 * @param eda
+	 * @param lap - can be null
+	 * @param configuration - string which identifies the EDA configuration (e.g. the content or the name of the configuration file), can be null
+	 * @return the fingerprint
+	 */
+	public static String getFingerprint(EDABasic<?> eda, LAPAccess lap, String configuration){
+		String s = eda.getClass().getName();
+		if (lap != null) s += "|" + lap.getComponentName() + "|" + lap.getInstanceName();
+		if (configuration != null) s += "|" + digest(configuration);
+		return s;
+	}
+
+	/** Create a fingerprint of an EDA, the content of its configuration file and the LAP used to annotate the pairs.
+	 * @param eda
+	 * @param lap - can be null
+	 * @param configFile - the configuration file of the EDA
+	 * @return the fingerprint
+	 * @throws IOException if the configuration file cannot be read
+	 */
+	public static String getFingerprint(EDABasic<?> eda, LAPAccess lap, File configFile) throws IOException{
+		return getFingerprint(eda, lap, new String(Files.readAllBytes(configFile.toPath()), "UTF-8"));
+	}
+
+	/******************************************************************************************
+	 * AUXILIARY METHODS
+	 * ****************************************************************************************/
+
+	/**
+	 * Load the decisions from the store file. A truncated last record (e.g. if the process died while writing) is ignored, 
+	 * and cut off the store file, so that new records are appended after the last complete record.
+	 * @throws IOException
+	 */
+	private void load() throws IOException {
+		if (!storeFile.exists()) return;
+		long end = readRecords(decisions);
+		if (end < storeFile.length()){
+			logger.warn("Dropping truncated last record of "+storeFile.getAbsolutePath());
+			RandomAccessFile file = new RandomAccessFile(storeFile, "rw");
+			try {
+				file.getChannel().truncate(end);
+			} finally {
+				file.close();
+			}
+		}
+		logger.info("Loaded "+decisions.size()+" EDA decisions from "+storeFile.getAbsolutePath());
+	}
+
+	/**
+	 * Read the records of the store file into the given map (later records of a key replace the earlier ones).
+	 * A truncated last record is ignored.
+	 * @param records - the map to which the records are added (key digest -> decision)
+	 * @return the byte offset after the last complete record
+	 * @throws IOException
+	 */
+	private long readRecords(Map<String, TEDecision> records) throws IOException {
+		if (!storeFile.exists()) return 0;
+		long end = 0;
+		DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(storeFile)));
+		try {
+			while (true){
+				String key = in.readUTF();
+				String label = in.readUTF();
+				double confidence = in.readDouble();
+				records.put(key, new TEDecisionWithConfidence(confidence, DecisionLabel.getLabelFor(label)));
+				end += getUTFLength(key) + getUTFLength(label) + 8;
+			}
+		} catch (EOFException e) {
+			// end of the store file
+		} catch (EDAException e) {
+			throw new IOException("Unknown decision label in "+storeFile.getAbsolutePath()+"\n"+e.getMessage());
+		} finally {
+			in.close();
+		}
+		return end;
+	}
+
+	/**
+	 * @param s
+	 * @return the number of bytes written by {@link DataOutputStream#writeUTF(String)} for the given string
+	 */
+	private static long getUTFLength(String s){
+		long length = 2;
+		for (int i = 0; i < s.length(); i++){
+			char c = s.charAt(i);
+			if ((c >= 0x0001) && (c <= 0x007F)) length += 1;
+			else if (c <= 0x07FF) length += 2;
+			else length += 3;
+		}
+		return length;
+	}
+
+	private static void writeRecord(DataOutputStream out, String key, TEDecision decision) throws IOException{
+		out.writeUTF(key);
+		out.writeUTF(decision.getDecision().toString());
+		out.writeDouble(decision.getConfidence());
+	}
+
+	/** Get the key for text -> hypothesis: digest of the fingerprint and the normalized texts
+	 * @param text
+	 * @param hypothesis
+	 * @return the key
+	 */
+	private String getKey(String text, String hypothesis){
+		return digest(fingerprint+"\n"+normalize(text)+"\n"+normalize(hypothesis));
+	}
+
+	/**
+	 * @param text
+	 * @return the text with trimmed and reduced white spaces
+	 */
+	private static String normalize(String text){
+		return text.trim().replaceAll("\\s+", " ");
+	}
+
+	/**
+	 * @param s
+	 * @return hexadecimal SHA-1 digest of the given string
+	 */
+	private static String digest(String s){
+		try {
+			byte[] bytes = MessageDigest.getInstance("SHA-1").digest(s.getBytes("UTF-8"));
+			StringBuilder hex = new StringBuilder();
+			for (byte b : bytes){
+				hex.append(String.format("%02x", b));
+			}
+			return hex.toString();
+		} catch (NoSuchAlgorithmException | UnsupportedEncodingException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+}
@@ -67,17 +67,75 @@ public final class CASUtils {
 	 * Note: Generally, making a new CAS is not really a good thing to do. It is a heavy and big object. If you can work on CAS sequentially, you should do that. This means that, using one CAS, if the work is done, reset the CAS (calling .reset()), and set a new document on the CAS, etc. The following is from UIMA JavaDoc.
 	 * <P><I>
 	 * Important: CAS creation is expensive, so if at all possible an application should reuse CASes. When a JCas instance is no longer being used, call its JCas.reset() method, which will remove all prior analysis information, and then reuse that same JCas instance for another call to process(JCas). </I>
+	 * <P>
+	 * All CASes made by this method share one type system (the type AE is made only once per process). 
+	 * If you need many short-lived CASes, use checkOutInputCas() and returnInputCas() instead, which reuse reset CASes. 
 	 * @return JCas that can express/hold all CAS types that is known to EOP & TL Layer 
 	 */
 	static public JCas createNewInputCas() throws LAPException
 	{
 		JCas a = null; 
-		AnalysisEngine typeAE = null; 
+		AnalysisEngine typeAE = getTypeAE(); 
+
+		try {
+			synchronized (typeAE) // the AE is shared by all threads 
+			{
+				a = typeAE.newJCas(); 
+			}
+		}
+		catch (ResourceInitializationException e)
+		{
+			throw new LAPException("Unable to create new JCas.", e); 
+		}
+		
+		return a; 
+	}
+	
+	/**
+	 * This method gives an empty input JCas from the process-wide JCas pool. 
+	 * The JCas is either one that was returned by returnInputCas(), or a new one. 
+	 * Give it back with returnInputCas(), when it is no longer used. 
+	 * 
+	 * @return an empty JCas that can hold all EOP and TL types 
+	 * @throws LAPException
+	 */
+	static public JCas checkOutInputCas() throws LAPException
+	{
+		return INPUT_CAS_POOL.checkOut(); 
+	}
+	
+	/**
+	 * This method returns the JCas to the process-wide JCas pool, so that it can be reused 
+	 * (after reset) by a later checkOutInputCas() call. The caller must not use the JCas 
+	 * after returning it. 
+	 * 
+	 * @param aJCas a JCas made by createNewInputCas() or checkOutInputCas() 
+	 */
+	static public void returnInputCas(JCas aJCas)
+	{
+		INPUT_CAS_POOL.checkIn(aJCas); 
+	}
+	
+	/**
+	 * @return the process-wide JCas pool used by checkOutInputCas() and returnInputCas() 
+	 */
+	static public JCasPool getInputCasPool()
+	{
+		return INPUT_CAS_POOL; 
+	}
+	
+	// the AE that holds the TL + EOP type system. Made once, on the first call. 
+	static private synchronized AnalysisEngine getTypeAE() throws LAPException
+	{
+		if (sharedTypeAE != null)
+		{
+			return sharedTypeAE; 
+		}
 		try {
 			InputStream s = CASUtils.class.getResourceAsStream("/desc/TLDummyAE.xml"); // This AE does nothing, but holding all types.
 			XMLInputSource in = new XMLInputSource(s, null); 
 			ResourceSpecifier specifier = UIMAFramework.getXMLParser().parseResourceSpecifier(in);		
-			typeAE = UIMAFramework.produceAnalysisEngine(specifier); 
+			sharedTypeAE = UIMAFramework.produceAnalysisEngine(specifier); 
 		} 
 		catch (InvalidXMLException e)
 		{
@@ -87,18 +145,17 @@ public final class CASUtils {
 		{
 			throw new LAPException("Unable to initialize the AE.", e); 
 		}		
-
-		try {
-			a = typeAE.newJCas(); 
-		}
-		catch (ResourceInitializationException e)
-		{
-			throw new LAPException("Unable to create new JCas.", e); 
-		}
-		
-		return a; 
+		return sharedTypeAE; 
 	}
 	
+	/**
+	 * Maximum number of free JCases kept in the process-wide JCas pool. 
+	 */
+	public static final int INPUT_CAS_POOL_SIZE = 32; 
+	
+	static private AnalysisEngine sharedTypeAE = null; 
+	static private final JCasPool INPUT_CAS_POOL = new JCasPool(INPUT_CAS_POOL_SIZE); 
+	
 	/**
 	 * This methods dumps the give type of annotations to the console 
 	 * 
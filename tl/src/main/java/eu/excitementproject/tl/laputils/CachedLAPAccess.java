@@ -1,12 +1,16 @@
 package eu.excitementproject.tl.laputils;
 
 import java.io.File;
-import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
 
-import org.apache.log4j.Logger;
-import org.apache.uima.UIMAFramework;
-import org.apache.uima.analysis_engine.AnalysisEngine;
-import org.apache.uima.cas.CAS;
 import org.apache.uima.cas.CASException;
 import org.apache.uima.cas.FSIterator;
 //import org.apache.uima.cas.text.AnnotationIndex;
@@ -25,14 +29,8 @@ import eu.excitementproject.tl.laputils.CASUtils;
 //import java.util.HashMap;
 //import java.util.Iterator;
 //import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
 
-import org.apache.uima.resource.ResourceInitializationException;
-import org.apache.uima.resource.ResourceSpecifier;
 //import java.util.Set;
-import org.apache.uima.util.CasCopier;
-import org.apache.uima.util.InvalidXMLException;
-import org.apache.uima.util.XMLInputSource;
 
 /**
  * 
@@ -52,39 +50,130 @@ import org.apache.uima.util.XMLInputSource;
  * It adds one more method that is fastest: annotateSingleTHPairCAS(), which is not 
  * part of LAPAccess interface. This methods gets one CAS, and uses that CAS to annotate, 
  * and this reduces the time needed to generate a new CAS. 
+ * 
+ * By default the cache is unbounded. The constructor with limits bounds the cache by 
+ * number of entries and/or estimated size in bytes, and evicts entries by LRU or LFU 
+ * policy. Hit / miss / eviction statistics can be read by getCacheHits() and so on. 
+ * 
+ * Optionally, a persistent (on-disk) second-level cache directory can be given. Then 
+ * annotated strings are also stored on disk (binary CAS form, keyed by the string hash 
+ * and the identity of the underlying LAP), and a restarted job that uses the same 
+ * directory and LAP loads them instead of calling the underlying LAP again. 
+ * 
+ * By default, a new string is annotated twice by the underlying LAP (once on each view). 
+ * If the underlying LAP annotates the two views the same way, call setAnnotateOnce(true) 
+ * to have it annotated only once (on TEXTVIEW), and the annotations cloned into HYPOTHESISVIEW. 
+ * 
+ * The class is thread-safe. It can be made with a pool of underlying LAP instances (of the 
+ * same LAP and configuration): each new string is annotated by one free instance, so several 
+ * threads can annotate at the same time. Concurrent requests for the same string are annotated 
+ * only once; the other callers wait for that result. Each thread should use its own work 
+ * CAS, see getWorkJCas(). 
  *  
  * @author Tae-Gil Noh 
  *
  */
 public class CachedLAPAccess implements LAPAccess {
 	
+	/**
+	 * Eviction policy of the cache, used when the cache is bounded. 
+	 * LRU evicts the least recently used entry, LFU the least frequently used one. 
+	 */
+	public enum EvictionPolicy { LRU, LFU }
+	
+	/**
+	 * Estimated fixed size of one cached CAS in bytes (initial CAS heap and indexes), 
+	 * on top of the size of its texts and annotations. 
+	 */
+	public static final long ESTIMATED_CAS_OVERHEAD_BYTES = 2L * 1024 * 1024; 
+	
+	/**
+	 * Estimated size of one annotation in bytes. 
+	 */
+	public static final long ESTIMATED_ANNOTATION_BYTES = 64; 
+	
+	/**
+	 * Makes a cached LAP with unbounded cache. 
+	 * 
+	 * @param underlyingLAP the LAP that does the actual annotation 
+	 * @throws LAPException
+	 */
 	public CachedLAPAccess(LAPAccess underlyingLAP) throws LAPException 
 	{
-		// setting up the AE for type system
-        // note that you need at least one AE to get a JCAS. (valina UIMA)
-        try {
-                InputStream s = this.getClass().getResourceAsStream("/desc/DummyAE.xml"); // This AE does nothing, but holding all types.
-                XMLInputSource in = new XMLInputSource(s, null);
-                ResourceSpecifier specifier = UIMAFramework.getXMLParser().parseResourceSpecifier(in);                
-                AnalysisEngine ae = UIMAFramework.produceAnalysisEngine(specifier);
-                this.typeAE = ae;
-        }
-        catch (InvalidXMLException e)
-        {
-                throw new LAPException("AE descriptor is not a valid XML", e);                        
-        }
-        catch (ResourceInitializationException e)
-        {
-                throw new LAPException("Unable to initialize the AE", e);
-        }                
-        
+		this(underlyingLAP, 0, 0, EvictionPolicy.LRU); 
+	}
+	
+	/**
+	 * Makes a cached LAP with bounded cache. If one of the limits is exceeded, 
+	 * cached annotations are evicted according to the given policy. 
+	 * 
+	 * @param underlyingLAP the LAP that does the actual annotation 
+	 * @param maxEntries maximum number of cached strings (0 or less: no limit) 
+	 * @param maxBytes maximum estimated size of the cache in bytes (0 or less: no limit) 
+	 * @param policy eviction policy (LRU or LFU) 
+	 * @throws LAPException
+	 */
+	public CachedLAPAccess(LAPAccess underlyingLAP, int maxEntries, long maxBytes, EvictionPolicy policy) throws LAPException 
+	{
+		this(underlyingLAP, maxEntries, maxBytes, policy, null); 
+	}
+	
+	/**
+	 * Makes a cached LAP with bounded in-memory cache, and a persistent second-level 
+	 * cache in the given directory. Annotations stored in the directory by an earlier 
+	 * run (with the same underlying LAP) are reused without calling the underlying LAP. 
+	 * 
+	 * @param underlyingLAP the LAP that does the actual annotation 
+	 * @param maxEntries maximum number of strings cached in memory (0 or less: no limit) 
+	 * @param maxBytes maximum estimated size of the in-memory cache in bytes (0 or less: no limit) 
+	 * @param policy eviction policy of the in-memory cache (LRU or LFU) 
+	 * @param persistentCacheDir directory of the persistent cache (null: no persistent cache)  
+	 * @throws LAPException
+	 */
+	public CachedLAPAccess(LAPAccess underlyingLAP, int maxEntries, long maxBytes, EvictionPolicy policy, File persistentCacheDir) throws LAPException 
+	{
+		this(Collections.singletonList(underlyingLAP), maxEntries, maxBytes, policy, persistentCacheDir); 
+	}
+	
+	/**
+	 * Makes a cached LAP with unbounded cache, backed by a pool of underlying LAPs. 
+	 * 
+	 * @param underlyingLAPs instances of the same LAP (and configuration), one for each thread that may annotate at the same time 
+	 * @throws LAPException
+	 */
+	public CachedLAPAccess(List<LAPAccess> underlyingLAPs) throws LAPException 
+	{
+		this(underlyingLAPs, 0, 0, EvictionPolicy.LRU, null); 
+	}
+	
+	/**
+	 * Makes a cached LAP backed by a pool of underlying LAPs. The underlying LAPs are not 
+	 * thread-safe; each one is used by only one thread at a time. Strings that are not 
+	 * cached are annotated by a free LAP of the pool, and wait if all LAPs are busy. 
+	 * 
+	 * @param underlyingLAPs instances of the same LAP (and configuration), one for each thread that may annotate at the same time 
+	 * @param maxEntries maximum number of strings cached in memory (0 or less: no limit) 
+	 * @param maxBytes maximum estimated size of the in-memory cache in bytes (0 or less: no limit) 
+	 * @param policy eviction policy of the in-memory cache (LRU or LFU) 
+	 * @param persistentCacheDir directory of the persistent cache (null: no persistent cache)  
+	 * @throws LAPException
+	 */
+	public CachedLAPAccess(List<LAPAccess> underlyingLAPs, int maxEntries, long maxBytes, EvictionPolicy policy, File persistentCacheDir) throws LAPException 
+	{
+		if (underlyingLAPs == null || underlyingLAPs.isEmpty())
+		{
+			throw new LAPException("At least one underlying LAP is needed"); 
+		}
+		
 		// setting basic 
+		LAPAccess underlyingLAP = underlyingLAPs.get(0); 
 		this.underlyingLAP = underlyingLAP; 
-		this.textviewCache = new ConcurrentHashMap<String, JCas>(); 
-		this.hypoviewCache = new ConcurrentHashMap<String, JCas>(); 
+		this.lapPool = new LinkedBlockingQueue<LAPAccess>(new ArrayList<LAPAccess>(underlyingLAPs)); 
+		this.inFlight = new ConcurrentHashMap<String, FutureTask<JCas>>(); 
+		this.numberOfLAPs = underlyingLAPs.size(); 
+		this.viewCache = new ViewCache(maxEntries, maxBytes, policy); 
 		this.receivedCall = 0; 
 		this.actualCall = 0; 
-		theLogger = Logger.getLogger("eu.excitementproject.tl.laputils.CachedLAPAccess"); 
 		
 		// make a call and get language ID (loading models also...) 
 		JCas test = underlyingLAP.generateSingleTHPairCAS("This is a text.", "This is a hypothesis."); 
@@ -105,6 +194,20 @@ public class CachedLAPAccess implements LAPAccess {
 
 		// Common JCas that is provided for easy access from graph generating process. 
 		workJCas = CASUtils.createNewInputCas(); 
+		threadWorkJCas.set(workJCas); 
+		
+		// persistent cache, if asked. The LAP identity decides which stored annotations can be reused. 
+		if (persistentCacheDir != null)
+		{
+			this.lapIdentity = underlyingLAP.getClass().getName() + "|" + underlyingLAP.getComponentName() + "|" + underlyingLAP.getInstanceName() + "|" + this.languageId; 
+			this.persistentCache = new PersistentViewCache(persistentCacheDir, getPersistentCacheIdentity()); 
+		}
+		else
+		{
+			this.lapIdentity = null; 
+			this.persistentCache = null; 
+		}
+		this.persistentCacheDir = persistentCacheDir; 
 	}
 
 	//
@@ -115,17 +218,8 @@ public class CachedLAPAccess implements LAPAccess {
 	 */
 	@Override
 	public JCas generateSingleTHPairCAS(String arg0, String arg1) throws LAPException {
-		// generate a new CAS 
-		//JCas aJCas = CASUtils.createNewInputCas(); 
-		JCas aJCas = null; 
-		try 
-		{
-			aJCas = this.typeAE.newJCas(); 
-		}
-		catch (ResourceInitializationException e)
-		{
-			throw new LAPException("Unable to create new JCas", e);
-        }		
+		// generate a new CAS (CASUtils shares one type system AE, so this is cheap) 
+		JCas aJCas = CASUtils.createNewInputCas(); 
 		// actual work is done here, with all caching. 
 		annotateSingleTHPairCAS(arg0, arg1, aJCas); 
 		
@@ -142,45 +236,18 @@ public class CachedLAPAccess implements LAPAccess {
 	// handles the CAS creation, and reuses it everytime he calls cachedLAP.) 
 	public void annotateSingleTHPairCAS(String text, String hypothesis, JCas aJCas) throws LAPException 
 	{
-		// reset the CAS (clears all) 
-		aJCas.reset(); 
-		
 		increaseNumberOfReceivedCalls(); 
 		
 		// if we don't have the cache for text input and/or hypothesis input
-		// First we fill the cache with them. 
-		
-		// if text is not in cache; 
-		if (!textviewCache.containsKey(text))
-		{
-			// we make a cached CAS that holds both views 
-			// that has "text", and put it in the both cache. 
-			JCas aCacheJCas = CASUtils.createNewInputCas(); 
-			prepareCacheContent(aCacheJCas, text); 
-			textviewCache.put(text,  aCacheJCas); 
-			hypoviewCache.put(text,  aCacheJCas); 
-		}
-		
-		if (!hypoviewCache.containsKey(hypothesis))
-		{
-			JCas aCacheJCas = CASUtils.createNewInputCas(); 
-			prepareCacheContent(aCacheJCas, hypothesis); 
-			textviewCache.put(hypothesis,  aCacheJCas); 
-			hypoviewCache.put(hypothesis,  aCacheJCas); 			
-		}
+		// First we fill the cache with them. (we keep local references, 
+		// so eviction while we work does not matter) 
+		JCas textCacheJCas = getCachedViews(text); 
+		JCas hypoCacheJCas = getCachedViews(hypothesis); 
 				
-		// Okay. we are fully sure that each annotated view exist in the cache. 
-		// make up CAS by using the cache value 
-		
-		CAS textCas = textviewCache.get(text).getCas(); 
-		CAS hypoCas = hypoviewCache.get(hypothesis).getCas(); 
-		CAS aCas = aJCas.getCas(); 
-		
-		CasCopier textCopier = new CasCopier(textCas, aCas); 
-		CasCopier hypoCopier = new CasCopier(hypoCas, aCas); 
-		
-		textCopier.copyCasView(textCas.getView(LAP_ImplBase.TEXTVIEW), true); 
-		hypoCopier.copyCasView(hypoCas.getView(LAP_ImplBase.HYPOTHESISVIEW), true); 
+		// Okay. we are fully sure that each annotated view exist. 
+		// make up CAS by using the cache value (the text view of a text seen 
+		// in the last calls of this thread is restored from a snapshot, not copied again) 
+		pairBuilder.build(aJCas, text, textCacheJCas, hypoCacheJCas); 
 		
 		// Now annotations are copied. 
 		// The only thing missing is ENTAILMENT annotation. Add it. 
@@ -225,9 +292,151 @@ public class CachedLAPAccess implements LAPAccess {
 		
 		// DONE! 
 		// now the aJCas has "annotated" views and Entailment Pair annotation. 		
-		theLogger.info("Number of actual call / received call: " + Integer.toString(getNumberOfActualCalls()) + " / " + Integer.toString(getNumberOfReceivedCalls()) ); 
-		
 	}
+	
+	//
+	// cache statistics 
+	
+	/**
+	 * @return number of calls that found the annotated string in the cache 
+	 */
+	public long getCacheHits()
+	{
+		return viewCache.getHits(); 
+	}
+	
+	/**
+	 * @return number of calls that did not find the annotated string in the cache 
+	 */
+	public long getCacheMisses()
+	{
+		return viewCache.getMisses(); 
+	}
+	
+	/**
+	 * @return number of cached strings evicted due to the cache limits 
+	 */
+	public long getCacheEvictions()
+	{
+		return viewCache.getEvictions(); 
+	}
+	
+	/**
+	 * @return number of strings currently in the cache 
+	 */
+	public int getCacheSize()
+	{
+		return viewCache.size(); 
+	}
+	
+	/**
+	 * @return estimated size of the cache in bytes 
+	 */
+	public long getCacheEstimatedBytes()
+	{
+		return viewCache.getEstimatedBytes(); 
+	}
+	
+	/**
+	 * @return number of pair CASes whose TEXTVIEW was restored from a snapshot of an earlier pair with the same text 
+	 */
+	public long getTextViewReuses()
+	{
+		return pairBuilder.getNumberOfReusedTextViews(); 
+	}
+	
+	/**
+	 * @return number of strings loaded from the persistent cache (0 if there is no persistent cache) 
+	 */
+	public long getPersistentCacheHits()
+	{
+		if (persistentCache == null) return 0; 
+		return persistentCache.getHits(); 
+	}
+	
+	/**
+	 * @return number of strings written to the persistent cache (0 if there is no persistent cache) 
+	 */
+	public long getPersistentCacheWrites()
+	{
+		if (persistentCache == null) return 0; 
+		return persistentCache.getWrites(); 
+	}
+	
+	/**
+	 * Returns the work JCas of the calling thread. Each thread gets its own work JCas (the 
+	 * constructing thread gets workJCas), that can be passed to annotateSingleTHPairCAS() 
+	 * without generating a new CAS for each call. 
+	 * 
+	 * @return the work JCas of the calling thread 
+	 * @throws LAPException 
+	 */
+	public JCas getWorkJCas() throws LAPException
+	{
+		JCas aJCas = threadWorkJCas.get(); 
+		if (aJCas == null)
+		{
+			aJCas = CASUtils.createNewInputCas(); 
+			threadWorkJCas.set(aJCas); 
+		}
+		return aJCas; 
+	}
+	
+	/**
+	 * @return number of underlying LAP instances (number of strings that can be annotated at the same time) 
+	 */
+	public int getNumberOfUnderlyingLAPs()
+	{
+		return numberOfLAPs; 
+	}
+	
+	/**
+	 * Sets whether a new string is annotated once by the underlying LAP (on TEXTVIEW, and the 
+	 * annotations are cloned into HYPOTHESISVIEW), or twice (once for each view). Default is twice. 
+	 * Only affects strings that are not yet cached in memory. The persistent cache keeps the 
+	 * annotations of the two modes apart, so its statistics start again when the mode is changed. 
+	 * 
+	 * @param annotateOnce 
+	 * @throws LAPException if the persistent cache directory of the mode cannot be created 
+	 */
+	public synchronized void setAnnotateOnce(boolean annotateOnce) throws LAPException
+	{
+		if (annotateOnce == this.annotateOnce) return; 
+		this.annotateOnce = annotateOnce; 
+		if (persistentCacheDir != null)
+		{
+			persistentCache = new PersistentViewCache(persistentCacheDir, getPersistentCacheIdentity()); 
+		}
+	}
+	
+	/**
+	 * @return true if a new string is annotated once, and cloned into the other view 
+	 */
+	public boolean isAnnotateOnce()
+	{
+		return annotateOnce; 
+	}
+	
+	/**
+	 * Drops all cached annotations from memory (statistics and the persistent cache are kept). 
+	 */
+	public void clearCache()
+	{
+		viewCache.clear(); 
+	}
+	
+	/**
+	 * @return one line summary of cache statistics, for logging 
+	 */
+	public String getCacheStatistics()
+	{
+		return "actual call / received call: " + getNumberOfActualCalls() + " / " + getNumberOfReceivedCalls() 
+				+ ", cache hits / misses / evictions: " + getCacheHits() + " / " + getCacheMisses() + " / " + getCacheEvictions() 
+				+ ", cached strings: " + getCacheSize() + " (~" + (getCacheEstimatedBytes() / 1024) + " KB)" 
+				+ ", text view reuses: " + getTextViewReuses() 
+				+ ((persistentCache == null) ? "" : ", persistent cache hits / writes: " + getPersistentCacheHits() + " / " + getPersistentCacheWrites()); 
+	}
+	
 	//
 	// Un-cached methods - directly calls underlying LAP 
 	@Override
@@ -242,24 +451,168 @@ public class CachedLAPAccess implements LAPAccess {
 
 	@Override
 	public void addAnnotationOn(JCas arg0) throws LAPException {
-		underlyingLAP.addAnnotationOn(arg0); 
+		LAPAccess lap = borrowLAP(); 
+		try {
+			lap.addAnnotationOn(arg0); 
+		}
+		finally {
+			returnLAP(lap); 
+		}
 	}
 
 	@Override
 	public void processRawInputFormat(File arg0, File arg1) throws LAPException {
-		underlyingLAP.processRawInputFormat(arg0, arg1); 
+		LAPAccess lap = borrowLAP(); 
+		try {
+			lap.processRawInputFormat(arg0, arg1); 
+		}
+		finally {
+			returnLAP(lap); 
+		}
 	}
 
 	@Override
 	public void addAnnotationOn(JCas arg0, String arg1) throws LAPException {
-		underlyingLAP.addAnnotationOn(arg0, arg1); 
+		LAPAccess lap = borrowLAP(); 
+		try {
+			lap.addAnnotationOn(arg0, arg1); 
+		}
+		finally {
+			returnLAP(lap); 
+		}
 	}
 	
 	//
 	// private methods 
+	
+	// returns the cached CAS that holds the input in both views. If it is not 
+	// in the cache, the first thread asking for it prepares it, and other threads 
+	// asking for the same input meanwhile wait for its result. 
+	private JCas getCachedViews(final String input) throws LAPException
+	{
+		JCas aCacheJCas = viewCache.get(input); 
+		if (aCacheJCas != null)
+		{
+			return aCacheJCas; 
+		}
+		
+		FutureTask<JCas> task = new FutureTask<JCas>(new Callable<JCas>() {
+			@Override
+			public JCas call() throws LAPException {
+				return loadOrAnnotate(input); 
+			}
+		}); 
+		FutureTask<JCas> running = inFlight.putIfAbsent(input, task); 
+		if (running == null)
+		{
+			// no other thread is working on it: we do. 
+			running = task; 
+			try {
+				task.run(); 
+			}
+			finally {
+				inFlight.remove(input); 
+			}
+		}
+		
+		try {
+			return running.get(); 
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt(); 
+			throw new LAPException("Interrupted while waiting for the annotation of: " + input, e); 
+		}
+		catch (ExecutionException e)
+		{
+			if (e.getCause() instanceof LAPException)
+			{
+				throw (LAPException) e.getCause(); 
+			}
+			throw new LAPException("Unable to annotate: " + input, e.getCause()); 
+		}
+	}
+	
+	// loads the input from the persistent cache, or annotates it (and stores it 
+	// in the persistent cache), and puts it in the cache. 
+	private JCas loadOrAnnotate(String input) throws LAPException
+	{
+		// another thread may have finished it, just before we started. 
+		JCas aCacheJCas = viewCache.peek(input); 
+		if (aCacheJCas != null)
+		{
+			return aCacheJCas; 
+		}
+		
+		// we make a cached CAS that holds both views that has the input 
+		// (a reset CAS from the pool, if there is one) 
+		aCacheJCas = CASUtils.checkOutInputCas(); 
+		PersistentViewCache persistentCache = this.persistentCache; // the annotation mode may be changed meanwhile 
+		if (persistentCache == null || !persistentCache.load(input, aCacheJCas))
+		{
+			try {
+				prepareCacheContent(aCacheJCas, input); 
+			}
+			catch (LAPException | RuntimeException e)
+			{
+				CASUtils.returnInputCas(aCacheJCas); 
+				throw e; 
+			}
+			if (persistentCache != null)
+			{
+				persistentCache.store(input, aCacheJCas); 
+			}
+		}
+		viewCache.put(input, aCacheJCas, estimateBytes(aCacheJCas, input)); 
+		return aCacheJCas; 
+	}
+	
+	// the identity of the stored annotations: the LAP identity and the annotation mode 
+	private String getPersistentCacheIdentity()
+	{
+		return annotateOnce ? lapIdentity + "|annotateOnce" : lapIdentity; 
+	}
+	
+	// takes a free underlying LAP from the pool. Waits, if all of them are in use. 
+	private LAPAccess borrowLAP() throws LAPException
+	{
+		try {
+			return lapPool.take(); 
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt(); 
+			throw new LAPException("Interrupted while waiting for a free underlying LAP", e); 
+		}
+	}
+	
+	private void returnLAP(LAPAccess lap)
+	{
+		lapPool.add(lap); 
+	}
+	
+	// a rough estimation of the memory used by a cached CAS 
+	private static long estimateBytes(JCas aJCas, String input) throws LAPException
+	{
+		long bytes = ESTIMATED_CAS_OVERHEAD_BYTES; 
+		try {
+			for (String viewName : new String[] {LAP_ImplBase.TEXTVIEW, LAP_ImplBase.HYPOTHESISVIEW})
+			{
+				JCas view = aJCas.getView(viewName); 
+				bytes += 2L * input.length() + ESTIMATED_ANNOTATION_BYTES * view.getAnnotationIndex().size(); 
+			}
+		}
+		catch (CASException e)
+		{
+			throw new LAPException("Unable to get views of the cached CAS", e); 
+		}
+		return bytes; 
+	}
+	
 	// this code actually calls the underlying LAP module --- which is *not* thread-safe. 
-	// that's the main reason why the method is synchronized. 
-	private synchronized void prepareCacheContent(JCas aJCas, String input) throws LAPException {
+	// that's the main reason why an underlying LAP is borrowed from the pool, and used 
+	// only by this thread until it is returned. 
+	private void prepareCacheContent(JCas aJCas, String input) throws LAPException {
 		
 		// generate views and set SOFA 
 		JCas textView = null; JCas hypoView = null; 
@@ -286,9 +639,26 @@ public class CachedLAPAccess implements LAPAccess {
 		h.setBegin(0); h.setEnd(input.length()); 
 		h.addToIndexes(); 
 		
-		// okay. now call underlyingLAP to annotate 
-		underlyingLAP.addAnnotationOn(aJCas, LAP_ImplBase.TEXTVIEW); 
-		underlyingLAP.addAnnotationOn(aJCas, LAP_ImplBase.HYPOTHESISVIEW);
+		// okay. now call an underlying LAP to annotate 
+		LAPAccess lap = borrowLAP(); 
+		try {
+			lap.addAnnotationOn(aJCas, LAP_ImplBase.TEXTVIEW); 
+			if (annotateOnce)
+			{
+				// same text on both views: clone the TextView annotations into HypothesisView, 
+				// with references to the Text annotation replaced by the Hypothesis annotation. 
+				ViewCloner cloner = new ViewCloner(textView.getCas(), hypoView.getCas()); 
+				cloner.map(t, h); 
+				cloner.cloneIndexedFeatureStructures(); 
+			}
+			else
+			{
+				lap.addAnnotationOn(aJCas, LAP_ImplBase.HYPOTHESISVIEW);
+			}
+		}
+		finally {
+			returnLAP(lap); 
+		}
 		
 		// done. aJCas is updated to be used for cache. 
 		increaseNumberOfActualCalls(); 
@@ -304,12 +674,18 @@ public class CachedLAPAccess implements LAPAccess {
 		actualCall++; 
 	}
 
-	private synchronized int getNumberOfReceivedCalls()
+	/**
+	 * @return number of annotation requests received by this cached LAP 
+	 */
+	public synchronized int getNumberOfReceivedCalls()
 	{
 		return receivedCall; 
 	}
 	
-	private synchronized int getNumberOfActualCalls()
+	/**
+	 * @return number of calls made to the underlying LAP 
+	 */
+	public synchronized int getNumberOfActualCalls()
 	{
 		return actualCall; 
 	}
@@ -320,21 +696,27 @@ public class CachedLAPAccess implements LAPAccess {
 	 * This one instance is provided for "faster" temporary access of JCas object 
 	 * that you can pass to "annotateSingleTHPairCAS" without generating a new one. 
 	 * 
-	 * However, using this work JCas will make your code not thread-safe. This is 
-	 * only provided for EntailmentRelation class for its special (faster) usage. 
+	 * However, using this work JCas will make your code not thread-safe. Use 
+	 * getWorkJCas() instead, which gives one work JCas per thread. 
 	 * 
 	 * Don't use this public variable unless you know what you do. 
 	 */
 	public final JCas workJCas; 
 	
 	// private data 
-	private final LAPAccess underlyingLAP; 	
-	private final ConcurrentHashMap<String, JCas> textviewCache; 
-	private final ConcurrentHashMap<String, JCas> hypoviewCache; 
-	private final AnalysisEngine typeAE;
+	private final LAPAccess underlyingLAP; // first LAP of the pool, for names and language 	
+	private final BlockingQueue<LAPAccess> lapPool; // free underlying LAPs 
+	private final int numberOfLAPs; 
+	private final ConcurrentHashMap<String, FutureTask<JCas>> inFlight; // strings being annotated now 
+	private final ThreadLocal<JCas> threadWorkJCas = new ThreadLocal<JCas>(); 
+	private final PairCASBuilder pairBuilder = new PairCASBuilder(); 
+	private final ViewCache viewCache; // holds CASes with the string on both TEXTVIEW and HYPOTHESISVIEW 
+	private final File persistentCacheDir; // null, if no persistent cache 
+	private final String lapIdentity; // null, if no persistent cache 
+	private volatile PersistentViewCache persistentCache; // null, if no persistent cache 
 
 	private int receivedCall; 
 	private int actualCall; 
+	private volatile boolean annotateOnce = false; // annotate TEXTVIEW only, and clone into HYPOTHESISVIEW 
 	private final String languageId; 
-	private final Logger theLogger; 
 }
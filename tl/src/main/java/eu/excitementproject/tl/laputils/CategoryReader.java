@@ -7,25 +7,18 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 
-import javax.xml.parsers.DocumentBuilder;
-import javax.xml.parsers.DocumentBuilderFactory;
-import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.stream.XMLStreamException;
 
 import org.apache.log4j.Logger;
 //import org.apache.uima.jcas.JCas;
-import org.w3c.dom.Attr;
-import org.w3c.dom.Document;
-import org.w3c.dom.Element;
-import org.w3c.dom.NamedNodeMap;
-import org.w3c.dom.Node;
-import org.w3c.dom.NodeList;
-import org.xml.sax.SAXException;
 
 //import eu.excitementproject.eop.lap.LAPException;
 //import eu.excitementproject.tl.decomposition.exceptions.DataIntegrityFail;
 import eu.excitementproject.tl.decomposition.exceptions.DataReaderException;
 import eu.excitementproject.tl.structures.Interaction;
 import eu.excitementproject.tl.structures.RelevantText;
+import eu.excitementproject.tl.structures.utils.XMLElement;
+import eu.excitementproject.tl.structures.utils.XMLFileReader;
 
 /**
  * 
@@ -64,40 +57,10 @@ public final class CategoryReader {
 //		**** text
 //		(just plain text) 
 		
-		// Open XML file 
-		DocumentBuilderFactory dbf = DocumentBuilderFactory.newInstance();
-		Document dom = null;
-		
+		// The file is read as a stream (StAX): only one <categoryGroup> element is held in memory at a time. 
 		Logger logger = Logger.getLogger("eu.excitementproject.tl.laputils.CategoryReader");
 		logger.info("Processing file " + xmlFile);
 		
-		try {
-			//Using factory get an instance of document builder
-			DocumentBuilder db = dbf.newDocumentBuilder();
-			//parse using builder to get DOM representation of the XML file
-			dom = db.parse(xmlFile);
-
-		}catch(ParserConfigurationException pce) {
-			throw new DataReaderException("unable to generate the XML parser", pce);
-		}catch(SAXException se) {
-			throw new DataReaderException("unable to parse the XML input file", se);
-		}catch(IOException ioe) {
-			throw new DataReaderException("unable to access the input file", ioe);
-		}	
-		
-		logger.info("Processing file ...");
-		
-		// open the document <dataset> (top) 
-		Element dataset = dom.getDocumentElement(); 
-		
-		// first, read in the metadata attached to the dataset. 
-		@SuppressWarnings("unused")
-		Element providerE = (Element) dataset.getElementsByTagName("provider").item(0); 
-		@SuppressWarnings("unused")
-		Element channelE = (Element) dataset.getElementsByTagName("channel").item(0);
-		@SuppressWarnings("unused")
-		Element languageE = (Element) dataset.getElementsByTagName("language").item(0);
-
 		// common metadata for all interactions of this file. 
 		/*
 		String provider = providerE.getFirstChild().getNodeValue(); 
@@ -109,37 +72,40 @@ public final class CategoryReader {
 		String lang = "DE"; //TODO: ask Alex to insert the data! 
 
 		
-		Element categories = (Element) dataset.getElementsByTagName("categories").item(0); 
-		NodeList categoryGroupNodes = categories.getElementsByTagName("categoryGroup");
-
-		// the stage is ready with interactionNodes. 
-		// loop them over, generate one Interaction per <Interaction> 
+		// loop the category groups over, generate one Interaction per <category> 
 		ArrayList<Interaction> interactionList= new ArrayList<Interaction>(); 
-		for(int i=0; i < categoryGroupNodes.getLength(); i++)
-		{
-			// get category group element
-			Element oneCategoryGroup = (Element) categoryGroupNodes.item(i); 
-			
-			NodeList categoryNodes = oneCategoryGroup.getElementsByTagName("category");
-			String categoryText = "";
-			String categoryId = "";
-			
-			for (int j=0; j < categoryNodes.getLength(); j++) {
-				Node categoryNode = categoryNodes.item(j);
-				categoryText = categoryNode.getTextContent();
-				NamedNodeMap attributes = categoryNode.getAttributes();
-				int numAttrs = attributes.getLength();
-				for (int k = 0; k < numAttrs; k++) {
-					Attr attr = (Attr) attributes.item(k);
-					if (attr.getNodeName().equals("id")) categoryId = attr.getNodeValue();
-				}				
-				RelevantText relevantText = new RelevantText();
-				relevantText.setText(categoryText);
-				relevantText.setGoldCategory(categoryId);
-				List<RelevantText> relevantTexts = new ArrayList<RelevantText>();
-				Interaction category = new Interaction(categoryText, relevantTexts, lang, "c_"+categoryId, categoryId, channel, provider, null); 
-				interactionList.add(category); 			
-			}						
+		XMLFileReader reader = null; 
+		try {
+			reader = new XMLFileReader(xmlFile); 
+			XMLElement oneCategoryGroup; 
+			while ((oneCategoryGroup = reader.nextElement("categoryGroup")) != null)
+			{
+				String categoryText = "";
+				String categoryId = "";
+				
+				for (XMLElement categoryNode : oneCategoryGroup.getDescendants("category")) {
+					categoryText = categoryNode.getTextContent();
+					if (categoryNode.hasAttribute("id")) categoryId = categoryNode.getAttribute("id");
+					RelevantText relevantText = new RelevantText();
+					relevantText.setText(categoryText);
+					relevantText.setGoldCategory(categoryId);
+					List<RelevantText> relevantTexts = new ArrayList<RelevantText>();
+					Interaction category = new Interaction(categoryText, relevantTexts, lang, "c_"+categoryId, categoryId, channel, provider, null); 
+					interactionList.add(category); 			
+				}						
+			}
+		}catch(XMLStreamException se) {
+			throw new DataReaderException("unable to parse the XML input file", se);
+		}catch(IOException ioe) {
+			throw new DataReaderException("unable to access the input file", ioe);
+		}finally {
+			if (reader != null) {
+				try {
+					reader.close(); 
+				} catch (IOException ioe) {
+					logger.warn("unable to close the input file " + xmlFile);
+				}
+			}
 		}
 		
 		return interactionList; 
@@ -30,7 +30,8 @@ public class DataUtils {
 	 * @param dataDir -- directory with input XMI files (with annotations)
 	 * @param fileNumberLimit
 	 * 
-	 * @return a list of CAS objects corresponding to the input data
+	 * @return a list of CAS objects corresponding to the input data 
+	 *  (taken from the JCas pool of {@link CASUtils}; they can be given back by {@link DataUtils#releaseData(List)})
 	 */
 	public static List<JCas> loadData(String dataDir, int fileNumberLimit) {
 		
@@ -48,7 +49,7 @@ public class DataUtils {
 				i++; 
 				if (i>fileNumberLimit) break;
 
-				aJCas = CASUtils.createNewInputCas(); 
+				aJCas = CASUtils.checkOutInputCas(); 
 				CASUtils.deserializeFromXmi(aJCas, f); 
 				
 				docs.add(aJCas);
@@ -85,17 +86,22 @@ public class DataUtils {
 				i++; 
 				if (i>fileNumberLimit) break;
 				
-				JCas goldJCas = CASUtils.createNewInputCas(); 
-				CASUtils.deserializeFromXmi(goldJCas, f); 
-				
-				String interactionText = goldJCas.getDocumentText(); 
-				String interactionLang = goldJCas.getDocumentLanguage(); 
-				Interaction in = new Interaction(interactionText, interactionLang);  
-				JCas aJCas = in.createAndFillInputCAS();
-
-				AnnotationUtils.transferAnnotations(goldJCas, aJCas, KeywordAnnotation.class);
-				
-				docs.add(aJCas);
+				JCas goldJCas = CASUtils.checkOutInputCas(); 
+				try {
+					CASUtils.deserializeFromXmi(goldJCas, f); 
+					
+					String interactionText = goldJCas.getDocumentText(); 
+					String interactionLang = goldJCas.getDocumentLanguage(); 
+					Interaction in = new Interaction(interactionText, interactionLang);  
+					JCas aJCas = in.createAndFillInputCAS();
+
+					AnnotationUtils.transferAnnotations(goldJCas, aJCas, KeywordAnnotation.class);
+					
+					docs.add(aJCas);
+				} finally {
+					// the gold CAS is only needed for the transfer
+					CASUtils.returnInputCas(goldJCas);
+				}
 			}
 		} catch (Exception e) {
 			e.printStackTrace();
@@ -105,6 +111,53 @@ public class DataUtils {
 	
 	
 
+	/**
+	 * Stream the given number of XMI files from the given input directory, decoding them in the background 
+	 * (see {@link XmiCorpusStream}). Unlike {@link DataUtils#loadData(String, int)}, the CASes are not all held in memory: 
+	 * each CAS should be given back by {@link XmiCorpusStream#release(JCas)} when it is no longer needed.
+	 * 
+	 * @param dataDir -- directory with input XMI files (with annotations)
+	 * @param fileNumberLimit
+	 * @param threads -- number of threads decoding the XMIs
+	 * @param maxInFlight -- maximum number of CASes decoded and not yet released
+	 * 
+	 * @return a stream of CAS objects corresponding to the input data, in the order of the files
+	 */
+	public static XmiCorpusStream streamData(String dataDir, int fileNumberLimit, int threads, int maxInFlight) {
+		return new XmiCorpusStream(dataDir, fileNumberLimit, true, threads, maxInFlight);
+	}
+	
+	
+	/**
+	 * Stream CASes with only the text and keyword annotations (if any exist) of the XMI files in the given input directory, 
+	 * decoding them in the background (see {@link XmiCorpusStream} and {@link DataUtils#loadDataNoAnnot(String, int)}).
+	 * 
+	 * @param dataDir -- directory with input XMI files
+	 * @param fileNumberLimit
+	 * @param threads -- number of threads decoding the XMIs
+	 * @param maxInFlight -- maximum number of CASes decoded and not yet released
+	 * 
+	 * @return a stream of CAS objects containing only the interaction text and possibly keyword annotations
+	 */
+	public static XmiCorpusStream streamDataNoAnnot(String dataDir, int fileNumberLimit, int threads, int maxInFlight) {
+		return new XmiCorpusStream(dataDir, fileNumberLimit, false, threads, maxInFlight);
+	}
+	
+	
+	/**
+	 * Give the CASes loaded by {@link DataUtils#loadData(String, int)} or {@link DataUtils#loadDataNoAnnot(String, int)} 
+	 * back to the JCas pool of {@link CASUtils}, so that later loads can reuse them. The CASes must not be used afterwards.
+	 * 
+	 * @param docs -- the CASes that are no longer needed
+	 */
+	public static void releaseData(List<JCas> docs) {
+		for (JCas aJCas : docs) {
+			CASUtils.returnInputCas(aJCas);
+		}
+		docs.clear();
+	}
+	
+	
 	/**
 	 * Load XML-style data (used mostly for OMQ data)
 	 * 
@@ -12,6 +12,7 @@ import java.util.regex.Pattern;
 import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
 import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.stream.XMLStreamException;
 
 import org.apache.log4j.Level;
 import org.apache.log4j.Logger;
@@ -19,7 +20,6 @@ import org.apache.uima.jcas.JCas;
 import org.w3c.dom.Document;
 import org.w3c.dom.Element;
 import org.w3c.dom.Node;
-import org.w3c.dom.NodeList;
 import org.xml.sax.SAXException;
 
 import eu.excitement.type.tl.FragmentAnnotation;
@@ -28,6 +28,8 @@ import eu.excitementproject.tl.decomposition.exceptions.DataIntegrityFail;
 import eu.excitementproject.tl.decomposition.exceptions.DataReaderException;
 import eu.excitementproject.tl.structures.Interaction;
 import eu.excitementproject.tl.structures.RelevantText;
+import eu.excitementproject.tl.structures.utils.XMLElement;
+import eu.excitementproject.tl.structures.utils.XMLFileReader;
 
 /**
  * 
@@ -67,110 +69,121 @@ public final class InteractionReader {
 //		**** text
 //		(just plain text) 
 		
-		// Open XML file 
-		DocumentBuilderFactory dbf = DocumentBuilderFactory.newInstance();
-		Document dom = null;
-		
+		// The file is read as a stream (StAX): only one <interaction> element is held in memory at a time. 
+		// The dataset metadata (provider, channel, language) is expected before the interactions, as in WP2 data. 
+		// If it comes later, the interactions read before it are kept until it is known (and a warning is logged). 
 		Logger logger = Logger.getLogger("eu.excitementproject.tl.laputils.InteractionReader");
 		logger.setLevel(Level.INFO);
 		
 		logger.info("Processing file " + xmlFile);
 		
-		try {
-			//Using factory get an instance of document builder
-			DocumentBuilder db = dbf.newDocumentBuilder();
-			//parse using builder to get DOM representation of the XML file
-			dom = db.parse(xmlFile);
-
-		}catch(ParserConfigurationException pce) {
-			throw new DataReaderException("unable to generate the XML parser", pce);
-		}catch(SAXException se) {
-			throw new DataReaderException("unable to parse the XML input file", se);
-		}catch(IOException ioe) {
-			throw new DataReaderException("unable to access the input file", ioe);
-		}	
-		
-		logger.info("Processing file ...");
-		
-		// open the document <dataset> (top) 
-		Element dataset = dom.getDocumentElement(); 
-		
-		// first, read in the metadata attached to the dataset. 
-		Element providerE = (Element) dataset.getElementsByTagName("provider").item(0); 
-		Element channelE = (Element) dataset.getElementsByTagName("channel").item(0);
-		Element languageE = (Element) dataset.getElementsByTagName("language").item(0);
-
 		// common metadata for all interactions of this file. 
-		String provider = providerE.getFirstChild().getNodeValue(); 
-		String channel = channelE.getFirstChild().getNodeValue(); 
-		String lang = languageE.getFirstChild().getNodeValue(); 
+		String provider = null; 
+		String channel = null; 
+		String lang = null; 
 		
-		Element interactions = (Element) dataset.getElementsByTagName("interactions").item(0); 
-		NodeList interactionNodes = interactions.getElementsByTagName("interaction");
-
-		// the stage is ready with interactionNodes. 
-		// loop them over, generate one Interaction per <Interaction> 
+		// loop the interactions over, generate one Interaction per <Interaction> 
 		ArrayList<Interaction> interactionList= new ArrayList<Interaction>(); 
-		for(int i=0; i < interactionNodes.getLength(); i++)
-		{
-			// get interaction String
-			Element oneInteraction = (Element) interactionNodes.item(i); 
-			
-			NodeList texts = oneInteraction.getElementsByTagName("text");
-			String interactionText = "";
-			List<RelevantText> relevantTexts = new ArrayList<RelevantText>();
-			
-			if (texts.item(0).getChildNodes().getLength() == 1) { //the usual case: just one text  
-				interactionText = oneInteraction.getElementsByTagName("text").item(0).getFirstChild().getNodeValue(); 				
-			} else { //more than one texts --> probably contains a "relevantText" node
-				Node node = texts.item(0);
-				NodeList children = node.getChildNodes();
-				for (int k=0; k<children.getLength(); k++) {
-					Node childNode = children.item(k);
-					interactionText += childNode.getTextContent();
-					if (childNode.getNodeName().equals("relevantText")) {
-						RelevantText relevantText = new RelevantText();
-						relevantText.setText(childNode.getTextContent());
-						Element e = (Element)childNode;
-						relevantText.setGoldCategory(e.getAttribute("goldCategory"));
-						relevantTexts.add(relevantText);
-					}
-				}
-			}			
-
-			// get metadata (for now, only cateogry, if exist) 
-			
-			// TODO (low priority) check we will use metadata like the followings, or not.  
-			// businessScenario (e.g. train, coffeehouse, etc) , 
-			// dataSource (company name, prolly confidential), 
-			// date (meaningless in our setup? - all 0001-01-01 in the data) 
-			
-			// get the keywords
-			String keywords = getKeywords(oneInteraction);
-			
-			Element meta = (Element) oneInteraction.getElementsByTagName("metadata").item(0); 
-			Node c = meta.getElementsByTagName("category").item(0).getFirstChild(); 
-			String category = null;
-			String interactionId = null; 
-			if (c != null)
+		// the <interaction> elements read while the dataset metadata is incomplete 
+		List<XMLElement> waitingInteractions = new ArrayList<XMLElement>(); 
+		XMLFileReader reader = null; 
+		try {
+			reader = new XMLFileReader(xmlFile); 
+			XMLElement e; 
+			while ((e = reader.nextElement("provider", "channel", "language", "interaction")) != null)
 			{
-				category = c.getNodeValue(); 
+				if (e.getName().equals("interaction"))
+				{
+					if (provider == null || channel == null || lang == null) 
+						waitingInteractions.add(e); 
+					else
+						interactionList.add(readInteraction(e, provider, channel, lang)); 
+					continue; 
+				}
+				
+				// the metadata attached to the dataset. (the first occurrence counts) 
+				if (e.getName().equals("provider") && provider == null) provider = e.getFirstChildValue(); 
+				if (e.getName().equals("channel") && channel == null) channel = e.getFirstChildValue(); 
+				if (e.getName().equals("language") && lang == null) lang = e.getFirstChildValue(); 
+				
+				if (!waitingInteractions.isEmpty() && provider != null && channel != null && lang != null)
+				{
+					logger.warn("The dataset metadata (provider, channel, language) of " + xmlFile + " comes after " + waitingInteractions.size() + " interactions: they are kept in memory until it is read");
+					for (XMLElement waiting : waitingInteractions) 
+						interactionList.add(readInteraction(waiting, provider, channel, lang)); 
+					waitingInteractions.clear(); 
+				}
 			}
 			
-			Node idval = meta.getElementsByTagName("id").item(0).getFirstChild(); 
-			if (idval != null)
+			if (!waitingInteractions.isEmpty())
 			{
-				interactionId = idval.getNodeValue(); 
+				logger.warn("The dataset metadata of " + xmlFile + " is incomplete (provider: " + provider + ", channel: " + channel + ", language: " + lang + ")");
+				for (XMLElement waiting : waitingInteractions) 
+					interactionList.add(readInteraction(waiting, provider, channel, lang)); 
+			}
+		}catch(XMLStreamException se) {
+			throw new DataReaderException("unable to parse the XML input file", se);
+		}catch(IOException ioe) {
+			throw new DataReaderException("unable to access the input file", ioe);
+		}finally {
+			if (reader != null) {
+				try {
+					reader.close(); 
+				} catch (IOException ioe) {
+					logger.warn("unable to close the input file " + xmlFile);
+				}
 			}
-			
-			Interaction interaction = new Interaction(interactionText, relevantTexts, lang, interactionId, category, channel, provider, keywords); 
-
-			interactionList.add(interaction); 			
 		}
 		
 		return interactionList; 
 	}
 	
+	/**
+	 * Make an {@link Interaction} from one <interaction> element. 
+	 */
+	private static Interaction readInteraction(XMLElement oneInteraction, String provider, String channel, String lang)
+	{
+		// get interaction String
+		XMLElement textE = oneInteraction.getFirstDescendant("text"); 
+		String interactionText = "";
+		List<RelevantText> relevantTexts = new ArrayList<RelevantText>();
+		
+		if (textE.getChildCount() == 1) { //the usual case: just one text  
+			interactionText = textE.getFirstChildValue(); 				
+		} else { //more than one texts --> probably contains a "relevantText" node
+			for (Object child : textE.getChildren()) {
+				if (child instanceof String) {
+					interactionText += (String) child;
+					continue;
+				}
+				XMLElement childNode = (XMLElement) child;
+				interactionText += childNode.getTextContent();
+				if (childNode.getName().equals("relevantText")) {
+					RelevantText relevantText = new RelevantText();
+					relevantText.setText(childNode.getTextContent());
+					relevantText.setGoldCategory(childNode.getAttribute("goldCategory"));
+					relevantTexts.add(relevantText);
+				}
+			}
+		}			
+
+		// get metadata (for now, only cateogry, if exist) 
+		
+		// TODO (low priority) check we will use metadata like the followings, or not.  
+		// businessScenario (e.g. train, coffeehouse, etc) , 
+		// dataSource (company name, prolly confidential), 
+		// date (meaningless in our setup? - all 0001-01-01 in the data) 
+		
+		// get the keywords
+		String keywords = getKeywords(oneInteraction);
+		
+		XMLElement meta = oneInteraction.getFirstDescendant("metadata"); 
+		String category = meta.getFirstDescendant("category").getFirstChildValue(); 
+		String interactionId = meta.getFirstDescendant("id").getFirstChildValue(); 
+		
+		return new Interaction(interactionText, relevantTexts, lang, interactionId, category, channel, provider, keywords); 
+	}
+	
 	/**
 	 * Get the keywords from the input XML file
 	 * 
@@ -178,14 +191,14 @@ public final class InteractionReader {
 	 * 
 	 * @return the string of (comma separated) keywords 
 	 */
-	private static String getKeywords(Element oneInteraction) {
+	private static String getKeywords(XMLElement oneInteraction) {
 
 		String keywords = null;
 		
-		NodeList elements = oneInteraction.getElementsByTagName("keyword");
+		XMLElement keyword = oneInteraction.getFirstDescendant("keyword");
 				
-		if (elements != null && elements.getLength() > 0) {
-			keywords = oneInteraction.getElementsByTagName("keyword").item(0).getFirstChild().getNodeValue();
+		if (keyword != null) {
+			keywords = keyword.getFirstChildValue();
 		}
 		
 		return keywords;
@@ -0,0 +1,104 @@
+package eu.excitementproject.tl.laputils;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+import org.apache.uima.jcas.JCas;
+
+import eu.excitementproject.eop.lap.LAPException;
+
+/**
+ * A bounded pool of reusable input JCases (that can hold all EOP and TL types).
+ * <P>
+ * checkOut() gives a clean (reset) JCas: one that was returned earlier, or a new one
+ * made by {@link CASUtils#createNewInputCas()} if no returned JCas is free. checkIn()
+ * resets the JCas and keeps it for the next checkOut(). The pool never blocks: the bound
+ * is the number of free JCases kept in the pool; JCases returned beyond that bound are
+ * dropped (left to the garbage collector).
+ * <P>
+ * A JCas must not be used by the caller after it is checked in. The methods of this
+ * class are thread-safe.
+ */
+public class JCasPool {
+
+	/**
+	 * @param maxFree maximum number of free JCases kept in the pool
+	 */
+	public JCasPool(int maxFree)
+	{
+		this.maxFree = maxFree;
+		this.free = new ArrayDeque<JCas>();
+	}
+
+	/**
+	 * Gives a clean JCas from the pool, or a new one if the pool has no free JCas.
+	 *
+	 * @return an empty JCas that can hold all EOP and TL types
+	 * @throws LAPException
+	 */
+	public JCas checkOut() throws LAPException
+	{
+		synchronized (this)
+		{
+			JCas aJCas = free.pollFirst();
+			if (aJCas != null)
+			{
+				reused++;
+				return aJCas;
+			}
+			created++;
+		}
+		// outside of the lock: creating a CAS takes time
+		return CASUtils.createNewInputCas();
+	}
+
+	/**
+	 * Returns the JCas to the pool. The JCas is reset (all its content is removed).
+	 *
+	 * @param aJCas the JCas that is no longer used by the caller (null is ignored)
+	 */
+	public void checkIn(JCas aJCas)
+	{
+		if (aJCas == null)
+			return;
+		aJCas.reset();
+		synchronized (this)
+		{
+			if (free.size() < maxFree)
+			{
+				free.addFirst(aJCas); // the most recently used one is reused first
+			}
+		}
+	}
+
+	/**
+	 * @return number of free JCases currently in the pool
+	 */
+	public synchronized int getNumberOfFree()
+	{
+		return free.size();
+	}
+
+	/**
+	 * @return number of JCases newly made by checkOut()
+	 */
+	public synchronized long getNumberOfCreated()
+	{
+		return created;
+	}
+
+	/**
+	 * @return number of checkOut() calls that reused a returned JCas
+	 */
+	public synchronized long getNumberOfReused()
+	{
+		return reused;
+	}
+
+	// private data
+	private final int maxFree;
+	private final Deque<JCas> free;
+
+	private long created = 0;
+	private long reused = 0;
+}
@@ -0,0 +1,125 @@
+package eu.excitementproject.tl.laputils;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.apache.uima.cas.CAS;
+import org.apache.uima.cas.TypeSystem;
+import org.apache.uima.cas.impl.CASSerializer;
+import org.apache.uima.cas.impl.Serialization;
+import org.apache.uima.jcas.JCas;
+import org.apache.uima.util.CasCopier;
+
+import eu.excitementproject.eop.lap.implbase.LAP_ImplBase;
+
+/**
+ * Assembles the views of a T-H pair CAS from the cached (annotated) CASes of the text and
+ * of the hypothesis, used by {@link CachedLAPAccess}.
+ *
+ * Graph mergers evaluate many pairs with the same text in a row (one text against many
+ * hypotheses). Copying the text view with CasCopier for each pair is the main cost of
+ * the assembly, so the builder keeps, for the last few texts of each thread, a binary
+ * snapshot of a pair CAS that holds only the copied TEXTVIEW. For a known text, the
+ * pair CAS is restored from that snapshot (a plain copy of the CAS heaps), and only the
+ * HYPOTHESISVIEW is copied with CasCopier.
+ *
+ * A snapshot is only used for a CAS with the same type system as the CAS it was taken
+ * from (this is always the case for CASes made by {@link CASUtils}).
+ */
+class PairCASBuilder {
+
+	/**
+	 * Number of text view snapshots kept per thread.
+	 */
+	static final int TEXT_SNAPSHOTS_PER_THREAD = 4;
+
+	/**
+	 * Resets the CAS, and fills its TEXTVIEW with the TEXTVIEW of the text cache CAS, and its
+	 * HYPOTHESISVIEW with the HYPOTHESISVIEW of the hypothesis cache CAS.
+	 */
+	void build(JCas aJCas, String text, JCas textCacheJCas, JCas hypoCacheJCas)
+	{
+		CAS aCas = aJCas.getCas();
+		CAS textCas = textCacheJCas.getCas();
+		CAS hypoCas = hypoCacheJCas.getCas();
+
+		TextSnapshot snapshot = snapshots.get().get(text);
+		if (snapshot != null && snapshot.typeSystem == aCas.getTypeSystem())
+		{
+			// restore the CAS to the state right after the text view was copied
+			Serialization.deserializeCAS(aCas, snapshot.content);
+			increaseReused();
+		}
+		else
+		{
+			aJCas.reset();
+			CasCopier textCopier = new CasCopier(textCas, aCas);
+			textCopier.copyCasView(textCas.getView(LAP_ImplBase.TEXTVIEW), true);
+			snapshots.get().put(text, new TextSnapshot(aCas.getTypeSystem(), Serialization.serializeCAS(aCas)));
+			increaseCopied();
+		}
+
+		CasCopier hypoCopier = new CasCopier(hypoCas, aCas);
+		hypoCopier.copyCasView(hypoCas.getView(LAP_ImplBase.HYPOTHESISVIEW), true);
+	}
+
+	/**
+	 * @return number of pair CASes whose text view was restored from a snapshot
+	 */
+	synchronized long getNumberOfReusedTextViews()
+	{
+		return reused;
+	}
+
+	/**
+	 * @return number of pair CASes whose text view was copied by CasCopier
+	 */
+	synchronized long getNumberOfCopiedTextViews()
+	{
+		return copied;
+	}
+
+	//
+	// private methods
+
+	private synchronized void increaseReused()
+	{
+		reused++;
+	}
+
+	private synchronized void increaseCopied()
+	{
+		copied++;
+	}
+
+	// a snapshot of a pair CAS that holds only the text view
+	private static class TextSnapshot {
+		TextSnapshot(TypeSystem typeSystem, CASSerializer content)
+		{
+			this.typeSystem = typeSystem;
+			this.content = content;
+		}
+		final TypeSystem typeSystem;
+		final CASSerializer content;
+	}
+
+	// private data
+	// the snapshots of the last texts of each thread (in access order)
+	private final ThreadLocal<Map<String, TextSnapshot>> snapshots = new ThreadLocal<Map<String, TextSnapshot>>() {
+		@Override
+		protected Map<String, TextSnapshot> initialValue()
+		{
+			return new LinkedHashMap<String, TextSnapshot>(16, 0.75f, true) {
+				private static final long serialVersionUID = -5260874135237906457L;
+				@Override
+				protected boolean removeEldestEntry(Map.Entry<String, TextSnapshot> eldest)
+				{
+					return size() > TEXT_SNAPSHOTS_PER_THREAD;
+				}
+			};
+		}
+	};
+
+	private long reused = 0;
+	private long copied = 0;
+}
@@ -0,0 +1,198 @@
+package eu.excitementproject.tl.laputils;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import org.apache.log4j.Logger;
+import org.apache.uima.cas.impl.Serialization;
+import org.apache.uima.jcas.JCas;
+
+import eu.excitementproject.eop.lap.LAPException;
+
+/**
+ * On-disk (second-level) cache of annotated JCases, used by {@link CachedLAPAccess}.
+ *
+ * Each annotated string is stored in its own file, in UIMA binary CAS form compressed
+ * with GZIP. Files live under a sub-directory named by the hash of the LAP identity
+ * (LAP class, component and instance names, language), and are named by the hash of
+ * the string. The string itself is stored in the file header, so hash collisions are detected.
+ *
+ * Files are written to a temporary file first and then renamed, so an interrupted job
+ * does not leave broken entries. The type system of the stored CAS must be the same
+ * as the type system of the reading CAS (which is always the case for CASes made by
+ * {@link CASUtils#createNewInputCas()}).
+ */
+class PersistentViewCache {
+
+	PersistentViewCache(File baseDir, String lapIdentity) throws LAPException
+	{
+		this.lapDir = new File(baseDir, digest(lapIdentity));
+		if (!lapDir.exists() && !lapDir.mkdirs())
+		{
+			throw new LAPException("Unable to create the annotation cache directory " + lapDir.getAbsolutePath());
+		}
+		this.logger = Logger.getLogger("eu.excitementproject.tl.laputils.PersistentViewCache");
+		logger.info("Using persistent annotation cache " + lapDir.getAbsolutePath() + " for LAP " + lapIdentity);
+	}
+
+	/**
+	 * Fills the given (empty) JCas with the stored annotation of the input, if it exists.
+	 *
+	 * @return true if the stored annotation was found and loaded, false otherwise
+	 */
+	boolean load(String input, JCas aJCas)
+	{
+		File f = getFile(input);
+		if (!f.exists())
+		{
+			increaseMisses();
+			return false;
+		}
+
+		try {
+			DataInputStream in = new DataInputStream(new GZIPInputStream(new BufferedInputStream(new FileInputStream(f))));
+			try {
+				byte[] storedInput = new byte[in.readInt()];
+				in.readFully(storedInput);
+				if (!input.equals(new String(storedInput, "UTF-8")))
+				{
+					// hash collision: treat as not cached
+					increaseMisses();
+					return false;
+				}
+				Serialization.deserializeCAS(aJCas.getCas(), in);
+			}
+			finally {
+				in.close();
+			}
+		}
+		catch (Exception e)
+		{
+			// a broken cache file should never stop the annotation. we annotate again.
+			logger.warn("Unable to read the annotation cache file " + f.getAbsolutePath() + ": " + e.getMessage());
+			aJCas.reset();
+			increaseMisses();
+			return false;
+		}
+		increaseHits();
+		return true;
+	}
+
+	/**
+	 * Stores the annotated JCas of the input.
+	 */
+	void store(String input, JCas aJCas)
+	{
+		File f = getFile(input);
+		File dir = f.getParentFile();
+		if (!dir.exists() && !dir.mkdirs())
+		{
+			logger.warn("Unable to create the annotation cache directory " + dir.getAbsolutePath());
+			return;
+		}
+
+		File tmp = new File(dir, f.getName() + "." + Thread.currentThread().getId() + ".tmp");
+		try {
+			DataOutputStream out = new DataOutputStream(new GZIPOutputStream(new BufferedOutputStream(new FileOutputStream(tmp))));
+			try {
+				byte[] inputBytes = input.getBytes("UTF-8");
+				out.writeInt(inputBytes.length);
+				out.write(inputBytes);
+				Serialization.serializeCAS(aJCas.getCas(), out);
+			}
+			finally {
+				out.close();
+			}
+			if (tmp.renameTo(f))
+			{
+				increaseWrites();
+			}
+			else
+			{
+				// another thread or job may have stored the same input meanwhile
+				tmp.delete();
+			}
+		}
+		catch (IOException e)
+		{
+			logger.warn("Unable to write the annotation cache file " + f.getAbsolutePath() + ": " + e.getMessage());
+			tmp.delete();
+		}
+	}
+
+	synchronized long getHits()
+	{
+		return hits;
+	}
+
+	synchronized long getMisses()
+	{
+		return misses;
+	}
+
+	synchronized long getWrites()
+	{
+		return writes;
+	}
+
+	//
+	// private methods
+
+	private File getFile(String input)
+	{
+		String hash = digest(input);
+		// two-level directory, to keep the number of files per directory small
+		return new File(new File(lapDir, hash.substring(0, 2)), hash + ".bin.gz");
+	}
+
+	private synchronized void increaseHits()
+	{
+		hits++;
+	}
+
+	private synchronized void increaseMisses()
+	{
+		misses++;
+	}
+
+	private synchronized void increaseWrites()
+	{
+		writes++;
+	}
+
+	private static String digest(String s)
+	{
+		try {
+			byte[] bytes = MessageDigest.getInstance("SHA-1").digest(s.getBytes("UTF-8"));
+			StringBuilder hex = new StringBuilder();
+			for (byte b : bytes)
+			{
+				hex.append(String.format("%02x", b));
+			}
+			return hex.toString();
+		}
+		catch (NoSuchAlgorithmException | UnsupportedEncodingException e)
+		{
+			throw new IllegalStateException(e);
+		}
+	}
+
+	// private data
+	private final File lapDir;
+	private final Logger logger;
+
+	private long hits = 0;
+	private long misses = 0;
+	private long writes = 0;
+}
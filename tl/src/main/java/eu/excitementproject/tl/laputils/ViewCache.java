@@ -0,0 +1,218 @@
+package eu.excitementproject.tl.laputils;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.apache.uima.jcas.JCas;
+
+import eu.excitementproject.tl.laputils.CachedLAPAccess.EvictionPolicy;
+
+/**
+ * Bounded cache of annotated JCases, used by {@link CachedLAPAccess}.
+ *
+ * The cache can be limited by the number of entries and/or by the estimated size (in bytes)
+ * of the cached JCases. When a limit is exceeded, entries are evicted according to the given
+ * {@link EvictionPolicy}: least recently used (LRU) or least frequently used (LFU, ties are broken
+ * by insertion order). A limit of zero or less means "no limit".
+ *
+ * All methods are synchronized.
+ */
+class ViewCache {
+
+	ViewCache(int maxEntries, long maxBytes, EvictionPolicy policy)
+	{
+		this.maxEntries = maxEntries;
+		this.maxBytes = maxBytes;
+		this.policy = policy;
+		// access-ordered for LRU, insertion-ordered for LFU
+		this.entries = new LinkedHashMap<String, JCas>(16, 0.75f, policy == EvictionPolicy.LRU);
+		this.sizes = new HashMap<String, Long>();
+		this.frequencies = new HashMap<String, Integer>();
+		this.frequencyBuckets = new TreeMap<Integer, LinkedHashSet<String>>();
+	}
+
+	/**
+	 * Returns the cached JCas for the key, or null if it is not (or no longer) cached.
+	 * Updates the hit / miss statistics.
+	 */
+	synchronized JCas get(String key)
+	{
+		JCas value = entries.get(key);
+		if (value == null)
+		{
+			misses++;
+			return null;
+		}
+		hits++;
+		if (policy == EvictionPolicy.LFU)
+		{
+			touch(key);
+		}
+		return value;
+	}
+
+	/**
+	 * Returns the cached JCas for the key, or null, without updating the statistics.
+	 */
+	synchronized JCas peek(String key)
+	{
+		return entries.get(key);
+	}
+
+	/**
+	 * Puts the JCas in the cache with its estimated size, and evicts other entries if needed.
+	 * The new entry itself is never evicted by this call, so the caller can always use it.
+	 */
+	synchronized void put(String key, JCas value, long estimatedBytes)
+	{
+		if (entries.containsKey(key))
+		{
+			remove(key);
+		}
+		entries.put(key, value);
+		sizes.put(key, estimatedBytes);
+		totalBytes += estimatedBytes;
+		if (policy == EvictionPolicy.LFU)
+		{
+			frequencies.put(key, 0);
+			touch(key);
+		}
+
+		while (entries.size() > 1 && isOverLimit())
+		{
+			String victim = selectVictim(key);
+			if (victim == null)
+				break;
+			remove(victim);
+			evictions++;
+		}
+	}
+
+	synchronized int size()
+	{
+		return entries.size();
+	}
+
+	synchronized long getEstimatedBytes()
+	{
+		return totalBytes;
+	}
+
+	synchronized long getHits()
+	{
+		return hits;
+	}
+
+	synchronized long getMisses()
+	{
+		return misses;
+	}
+
+	synchronized long getEvictions()
+	{
+		return evictions;
+	}
+
+	synchronized void clear()
+	{
+		entries.clear();
+		sizes.clear();
+		frequencies.clear();
+		frequencyBuckets.clear();
+		totalBytes = 0;
+	}
+
+	//
+	// private methods
+
+	private boolean isOverLimit()
+	{
+		if (maxEntries > 0 && entries.size() > maxEntries)
+			return true;
+		if (maxBytes > 0 && totalBytes > maxBytes)
+			return true;
+		return false;
+	}
+
+	private String selectVictim(String protectedKey)
+	{
+		if (policy == EvictionPolicy.LRU)
+		{
+			// the eldest entry in access order
+			for (String key : entries.keySet())
+			{
+				if (!key.equals(protectedKey))
+					return key;
+			}
+			return null;
+		}
+
+		// LFU: the first inserted key in the lowest frequency bucket
+		for (LinkedHashSet<String> bucket : frequencyBuckets.values())
+		{
+			Iterator<String> it = bucket.iterator();
+			while (it.hasNext())
+			{
+				String key = it.next();
+				if (!key.equals(protectedKey))
+					return key;
+			}
+		}
+		return null;
+	}
+
+	private void remove(String key)
+	{
+		entries.remove(key);
+		Long size = sizes.remove(key);
+		if (size != null)
+			totalBytes -= size;
+		Integer freq = frequencies.remove(key);
+		if (freq != null)
+			removeFromBucket(key, freq);
+	}
+
+	private void touch(String key)
+	{
+		int freq = frequencies.get(key);
+		if (freq > 0)
+			removeFromBucket(key, freq);
+		freq++;
+		frequencies.put(key, freq);
+		LinkedHashSet<String> bucket = frequencyBuckets.get(freq);
+		if (bucket == null)
+		{
+			bucket = new LinkedHashSet<String>();
+			frequencyBuckets.put(freq, bucket);
+		}
+		bucket.add(key);
+	}
+
+	private void removeFromBucket(String key, int freq)
+	{
+		LinkedHashSet<String> bucket = frequencyBuckets.get(freq);
+		if (bucket == null)
+			return;
+		bucket.remove(key);
+		if (bucket.isEmpty())
+			frequencyBuckets.remove(freq);
+	}
+
+	// private data
+	private final int maxEntries;
+	private final long maxBytes;
+	private final EvictionPolicy policy;
+	private final Map<String, JCas> entries;
+	private final Map<String, Long> sizes;
+	private final Map<String, Integer> frequencies;
+	private final TreeMap<Integer, LinkedHashSet<String>> frequencyBuckets;
+
+	private long totalBytes = 0;
+	private long hits = 0;
+	private long misses = 0;
+	private long evictions = 0;
+}
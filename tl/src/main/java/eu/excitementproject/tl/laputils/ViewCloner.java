@@ -0,0 +1,177 @@
+package eu.excitementproject.tl.laputils;
+
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.uima.cas.ArrayFS;
+import org.apache.uima.cas.CAS;
+import org.apache.uima.cas.CommonArrayFS;
+import org.apache.uima.cas.FSIterator;
+import org.apache.uima.cas.Feature;
+import org.apache.uima.cas.FeatureStructure;
+import org.apache.uima.cas.Type;
+import org.apache.uima.cas.TypeSystem;
+
+/**
+ * Clones the annotations of one view of a CAS into another view (of the same CAS, or of
+ * another CAS with the same type system), used by {@link CachedLAPAccess}.
+ *
+ * The two views must hold the same document text. All feature structures indexed in the
+ * source view are re-created in the target view (with their features, and the feature
+ * structures and arrays they refer to), and added to the indexes of the target view.
+ * The document annotations of the views are not cloned, and any reference to a source
+ * feature structure that is "mapped" before cloning (e.g. Text annotation to Hypothesis
+ * annotation) is replaced by the mapped target feature structure.
+ *
+ * One cloner is meant for one cloning; it is not thread-safe.
+ */
+class ViewCloner {
+
+	ViewCloner(CAS srcView, CAS tgtView)
+	{
+		this.srcView = srcView;
+		this.tgtView = tgtView;
+		this.typeSystem = srcView.getTypeSystem();
+		this.sofaFeature = typeSystem.getFeatureByFullName(CAS.FEATURE_FULL_NAME_SOFA);
+		this.copies = new IdentityHashMap<FeatureStructure, FeatureStructure>();
+		this.mapped = new HashSet<FeatureStructure>();
+		this.skipped = new HashSet<Type>();
+
+		// document annotations are per view: map, but never clone them
+		map(srcView.getDocumentAnnotation(), tgtView.getDocumentAnnotation());
+	}
+
+	/**
+	 * Maps the source feature structure to an existing target feature structure: it will
+	 * not be cloned, and references to it are replaced by references to the target.
+	 */
+	void map(FeatureStructure src, FeatureStructure tgt)
+	{
+		copies.put(src, tgt);
+		mapped.add(src);
+	}
+
+	/**
+	 * Clones all feature structures indexed in the source view into the target view.
+	 */
+	void cloneIndexedFeatureStructures()
+	{
+		FSIterator<FeatureStructure> it = srcView.getIndexRepository().getAllIndexedFS(typeSystem.getTopType());
+		Set<FeatureStructure> indexed = new HashSet<FeatureStructure>();
+		while (it.hasNext())
+		{
+			FeatureStructure src = it.next();
+			if (mapped.contains(src) || isSkipped(src.getType()))
+				continue;
+			FeatureStructure tgt = cloneFs(src); // may already be cloned as a referred feature structure
+			if (indexed.add(tgt))
+			{
+				tgtView.addFsToIndexes(tgt);
+			}
+		}
+	}
+
+	//
+	// private methods
+
+	private boolean isSkipped(Type type)
+	{
+		if (skipped.contains(type))
+			return true;
+		// sofa and other view-specific document annotations (e.g. document metadata) are never cloned
+		if (typeSystem.subsumes(typeSystem.getType(CAS.TYPE_NAME_SOFA), type) || typeSystem.subsumes(typeSystem.getType(CAS.TYPE_NAME_DOCUMENT_ANNOTATION), type))
+		{
+			skipped.add(type);
+			return true;
+		}
+		return false;
+	}
+
+	private FeatureStructure cloneFs(FeatureStructure src)
+	{
+		FeatureStructure tgt = copies.get(src);
+		if (tgt != null)
+			return tgt;
+
+		Type type = src.getType();
+		if (type.isArray())
+		{
+			return cloneArray(src);
+		}
+
+		tgt = tgtView.createFS(type); // annotation base types get the sofa of the target view
+		copies.put(src, tgt); // before the features, so cyclic references terminate
+		for (Feature f : type.getFeatures())
+		{
+			if (f.equals(sofaFeature))
+				continue;
+			if (f.getRange().isPrimitive())
+			{
+				String value = src.getFeatureValueAsString(f);
+				if (value != null)
+					tgt.setFeatureValueFromString(f, value);
+			}
+			else
+			{
+				FeatureStructure value = src.getFeatureValue(f);
+				if (value != null)
+					tgt.setFeatureValue(f, cloneFs(value));
+			}
+		}
+		return tgt;
+	}
+
+	private FeatureStructure cloneArray(FeatureStructure src)
+	{
+		String typeName = src.getType().getName();
+		int size = ((CommonArrayFS) src).size();
+		CommonArrayFS tgt;
+		if (typeName.equals(CAS.TYPE_NAME_INTEGER_ARRAY))
+			tgt = tgtView.createIntArrayFS(size);
+		else if (typeName.equals(CAS.TYPE_NAME_FLOAT_ARRAY))
+			tgt = tgtView.createFloatArrayFS(size);
+		else if (typeName.equals(CAS.TYPE_NAME_STRING_ARRAY))
+			tgt = tgtView.createStringArrayFS(size);
+		else if (typeName.equals(CAS.TYPE_NAME_BOOLEAN_ARRAY))
+			tgt = tgtView.createBooleanArrayFS(size);
+		else if (typeName.equals(CAS.TYPE_NAME_BYTE_ARRAY))
+			tgt = tgtView.createByteArrayFS(size);
+		else if (typeName.equals(CAS.TYPE_NAME_SHORT_ARRAY))
+			tgt = tgtView.createShortArrayFS(size);
+		else if (typeName.equals(CAS.TYPE_NAME_LONG_ARRAY))
+			tgt = tgtView.createLongArrayFS(size);
+		else if (typeName.equals(CAS.TYPE_NAME_DOUBLE_ARRAY))
+			tgt = tgtView.createDoubleArrayFS(size);
+		else
+		{
+			// array of feature structures: clone the elements
+			ArrayFS srcArray = (ArrayFS) src;
+			ArrayFS tgtArray = tgtView.createArrayFS(size);
+			copies.put(src, tgtArray);
+			for (int i = 0; i < size; i++)
+			{
+				FeatureStructure element = srcArray.get(i);
+				if (element != null)
+					tgtArray.set(i, cloneFs(element));
+			}
+			return tgtArray;
+		}
+
+		// primitive array: copy the values
+		if (size > 0)
+			tgt.copyFromArray(((CommonArrayFS) src).toStringArray(), 0, 0, size);
+		copies.put(src, tgt);
+		return tgt;
+	}
+
+	// private data
+	private final CAS srcView;
+	private final CAS tgtView;
+	private final TypeSystem typeSystem;
+	private final Feature sofaFeature;
+	private final Map<FeatureStructure, FeatureStructure> copies;
+	private final Set<FeatureStructure> mapped;
+	private final Set<Type> skipped;
+}
@@ -0,0 +1,268 @@
+package eu.excitementproject.tl.laputils;
+
+import java.io.Closeable;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+
+import org.apache.log4j.Logger;
+import org.apache.uima.jcas.JCas;
+import org.apache.uima.util.FileUtils;
+
+import eu.excitement.type.tl.KeywordAnnotation;
+import eu.excitementproject.tl.structures.Interaction;
+
+/**
+ * Streams the XMI files of a directory as CASes, in the order of the files, while the
+ * next files are being decoded in the background.
+ * <p>
+ * The XMIs are decoded by a pool of threads, into CASes taken from the JCas pool of
+ * {@link CASUtils}. At most a given number of CASes are "in flight" (decoded or being
+ * decoded, and not yet released by the consumer), so the size of the corpus is not
+ * limited by the heap. The consumer gives each CAS back by {@link #release(JCas)} when
+ * it is done with it; this returns the CAS to the pool and lets the next XMI be decoded.
+ * <p>
+ * A released CAS is reset and handed out again, so nothing built from it may be used
+ * after {@link #release(JCas)}: fragment graphs and entailment unit mentions keep a
+ * reference to the CAS they come from (see
+ * {@link eu.excitementproject.tl.structures.fragmentgraph.EntailmentUnitMention#getJCas()}),
+ * and e.g. {@link eu.excitementproject.tl.structures.fragmentgraph.FragmentGraph#getInteractionId()}
+ * (part of the key of merge checkpoints) is read from that CAS. Release a CAS only after its fragment graphs are merged, or copy
+ * what is still needed from them before releasing it.
+ * <p>
+ * Files that cannot be decoded are logged and skipped. The stream should be closed
+ * after use (it stops the decoding threads). Usage:
+ * <pre>
+ * XmiCorpusStream docs = DataUtils.streamData(dataDir, fileNumberLimit, 4, 16);
+ * try {
+ *     while (docs.hasNext()) {
+ *         JCas aJCas = docs.next();
+ *         ... // use the CAS
+ *         docs.release(aJCas);
+ *     }
+ * } finally {
+ *     docs.close();
+ * }
+ * </pre>
+ * The stream itself is meant to be consumed by one thread.
+ */
+public class XmiCorpusStream implements Iterator<JCas>, Closeable {
+
+	/**
+	 * @param files the XMI files, in the order they are returned
+	 * @param keepAnnotations if true, the CASes hold the XMI content as it is; if false, they hold only
+	 *  the interaction text, language and metadata, and the keyword annotations of the XMI (as {@link DataUtils#loadDataNoAnnot(String, int)})
+	 * @param threads number of decoding threads
+	 * @param maxInFlight maximum number of CASes decoded (or being decoded) and not yet released
+	 */
+	public XmiCorpusStream(List<File> files, boolean keepAnnotations, int threads, int maxInFlight)
+	{
+		this.files = new LinkedList<File>(files);
+		this.keepAnnotations = keepAnnotations;
+		this.maxInFlight = Math.max(1, maxInFlight);
+		this.inFlight = new Semaphore(this.maxInFlight);
+		this.pending = new LinkedList<Future<JCas>>();
+		this.executor = Executors.newFixedThreadPool(Math.max(1, threads));
+		this.logger = Logger.getLogger("eu.excitementproject.tl.laputils.XmiCorpusStream");
+		submitMore();
+	}
+
+	/**
+	 * Makes a stream over the XMI files of the given directory (as {@link DataUtils#loadData(String, int)}).
+	 *
+	 * @param dataDir directory with input XMI files
+	 * @param fileNumberLimit maximum number of files to read
+	 * @param keepAnnotations if false, only the text, metadata and keyword annotations are kept
+	 * @param threads number of decoding threads
+	 * @param maxInFlight maximum number of CASes decoded (or being decoded) and not yet released
+	 */
+	public XmiCorpusStream(String dataDir, int fileNumberLimit, boolean keepAnnotations, int threads, int maxInFlight)
+	{
+		this(listFiles(dataDir, fileNumberLimit), keepAnnotations, threads, maxInFlight);
+	}
+
+	/**
+	 * @return true if there is one more CAS (waits until it is decoded)
+	 */
+	@Override
+	public boolean hasNext()
+	{
+		fetchNext();
+		return next != null;
+	}
+
+	/**
+	 * @return the next CAS. Give it back by {@link #release(JCas)} when it is no longer used.
+	 */
+	@Override
+	public JCas next()
+	{
+		fetchNext();
+		if (next == null)
+			throw new NoSuchElementException();
+		JCas aJCas = next;
+		next = null;
+		return aJCas;
+	}
+
+	/**
+	 * Gives the CAS back to the JCas pool, and lets the next XMI be decoded. The CAS must
+	 * not be used afterwards, and neither must the fragment graphs or entailment unit
+	 * mentions built from it (they still refer to the CAS, which is reset and reused).
+	 *
+	 * @param aJCas a CAS returned by {@link #next()}
+	 */
+	public void release(JCas aJCas)
+	{
+		CASUtils.returnInputCas(aJCas);
+		inFlight.release();
+		submitMore();
+	}
+
+	/**
+	 * Not supported.
+	 */
+	@Override
+	public void remove()
+	{
+		throw new UnsupportedOperationException();
+	}
+
+	/**
+	 * Stops the decoding threads, and gives the CASes that were decoded but not returned by
+	 * {@link #next()} back to the JCas pool.
+	 */
+	@Override
+	public void close()
+	{
+		files.clear();
+		executor.shutdown();
+		for (Future<JCas> f : pending)
+		{
+			try {
+				CASUtils.returnInputCas(f.get());
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				break;
+			} catch (ExecutionException e) {
+				// already logged by the decoding thread
+			}
+		}
+		pending.clear();
+		if (next != null)
+		{
+			CASUtils.returnInputCas(next);
+			next = null;
+		}
+		executor.shutdownNow();
+	}
+
+	/**
+	 * @return number of files that could not be decoded (and were skipped)
+	 */
+	public int getNumberOfFailures()
+	{
+		return failures;
+	}
+
+	//
+	// private methods
+
+	// submits the decoding of the next files, as long as the in-flight limit allows
+	private void submitMore()
+	{
+		while (!files.isEmpty() && inFlight.tryAcquire())
+		{
+			final File f = files.removeFirst();
+			pending.add(executor.submit(new Callable<JCas>() {
+				@Override
+				public JCas call() throws Exception {
+					return decode(f);
+				}
+			}));
+		}
+	}
+
+	// waits for the next successfully decoded CAS, skipping failed files
+	private void fetchNext()
+	{
+		while (next == null)
+		{
+			if (pending.isEmpty())
+			{
+				if (files.isEmpty())
+					return; // done
+				// all in-flight CASes are held by the consumer: nothing can be decoded
+				throw new IllegalStateException("All " + maxInFlight + " in-flight CASes are held by the consumer. Release CASes before asking for the next one.");
+			}
+			Future<JCas> f = pending.removeFirst();
+			try {
+				next = f.get();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new IllegalStateException("Interrupted while waiting for the next XMI", e);
+			} catch (ExecutionException e) {
+				// the file was skipped: its in-flight slot is free again
+				failures++;
+				inFlight.release();
+				submitMore();
+			}
+		}
+	}
+
+	// decodes one XMI file into a pooled CAS
+	private JCas decode(File f) throws Exception
+	{
+		logger.info("Processing file " + f.getName());
+		JCas goldJCas = CASUtils.checkOutInputCas();
+		JCas aJCas = null;
+		try {
+			CASUtils.deserializeFromXmi(goldJCas, f);
+			if (keepAnnotations)
+				return goldJCas;
+
+			Interaction in = new Interaction(goldJCas.getDocumentText(), goldJCas.getDocumentLanguage());
+			aJCas = in.createAndFillInputCAS();
+			AnnotationUtils.transferAnnotations(goldJCas, aJCas, KeywordAnnotation.class);
+			CASUtils.returnInputCas(goldJCas);
+			return aJCas;
+		} catch (Exception e) {
+			logger.error("Unable to load " + f.getAbsolutePath() + ": " + e.getMessage());
+			CASUtils.returnInputCas(goldJCas);
+			if (aJCas != null)
+				CASUtils.returnInputCas(aJCas);
+			throw e;
+		}
+	}
+
+	private static List<File> listFiles(String dataDir, int fileNumberLimit)
+	{
+		List<File> files = new ArrayList<File>();
+		for (File f : FileUtils.getFiles(new File(dataDir), true)) {
+			if (files.size() >= fileNumberLimit) break;
+			files.add(f);
+		}
+		return files;
+	}
+
+	// private data
+	private final LinkedList<File> files; // not yet submitted
+	private final boolean keepAnnotations;
+	private final int maxInFlight;
+	private final Semaphore inFlight;
+	private final LinkedList<Future<JCas>> pending; // submitted, in file order
+	private final ExecutorService executor;
+	private final Logger logger;
+
+	private JCas next = null;
+	private int failures = 0;
+}
@@ -157,12 +157,13 @@ public class Interaction implements Comparable<Interaction> {
 	 * This method first generates a new CAS and set language ID and CAS text by the information of this Interaction. 
 	 * <P> 
 	 * Note that creating a new JCAS is a costly function; (compared to reusing existing ones) so you should use fillInputCAS(), if you are running this to work sequentially.  
+	 * The JCAS is taken from the JCas pool of CASUtils (a new one is created only if the pool has no free JCAS), and can be given back by CASUtils.returnInputCas(). 
 	 * 
-	 * @return JCas a newly created JCAS that holds this Interaction. No annotations in it. No linguistic annotations in it. 
+	 * @return JCas a JCAS that holds this Interaction. No annotations in it. No linguistic annotations in it. 
 	 */
 	public JCas createAndFillInputCAS() throws LAPException
 	{
-		JCas aJCas = CASUtils.createNewInputCas(); 
+		JCas aJCas = CASUtils.checkOutInputCas(); 
 		this.fillInputCAS(aJCas);
 		return aJCas; 
 	}
@@ -183,7 +184,7 @@ public class Interaction implements Comparable<Interaction> {
 				String[] categories = relevantText.getGoldCategory().split(",");
 				logger.info("Number of categories assigned to relevant text: " + categories.length);
 				for (int j=0; j<categories.length; j++) { //dealing with multiple categories assigned to the same relevant text
-					JCas aJCas = CASUtils.createNewInputCas(); 
+					JCas aJCas = CASUtils.checkOutInputCas(); 
 					aJCas.setDocumentLanguage(this.lang); 
 					aJCas.setDocumentText(relevantText.getText());
 					CASUtils.addTLMetaData(aJCas, this.interactionId, this.channel, this.provider, null, null, null, categories[j]);
@@ -15,6 +15,7 @@ import java.util.Set;
 import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
 import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.stream.XMLStreamException;
 import javax.xml.transform.TransformerException;
 import javax.xml.transform.dom.DOMSource;
 
@@ -23,15 +24,15 @@ import org.jgrapht.graph.DefaultDirectedWeightedGraph;
 import org.w3c.dom.DOMException;
 import org.w3c.dom.Document;
 import org.w3c.dom.Element;
-import org.w3c.dom.Node;
-import org.w3c.dom.NodeList;
-import org.xml.sax.SAXException;
 
 import eu.excitementproject.tl.composition.exceptions.EntailmentGraphCollapsedException;
 import eu.excitementproject.tl.composition.exceptions.EntailmentGraphRawException;
 import eu.excitementproject.tl.structures.fragmentgraph.EntailmentUnitMention;
 import eu.excitementproject.tl.structures.rawgraph.EntailmentUnit;
 import eu.excitementproject.tl.structures.rawgraph.utils.EdgeType;
+import eu.excitementproject.tl.structures.utils.ReachabilityEngine;
+import eu.excitementproject.tl.structures.utils.XMLElement;
+import eu.excitementproject.tl.structures.utils.XMLFileReader;
 import eu.excitementproject.tl.structures.utils.XMLFileWriter;
 
 /**
@@ -61,6 +62,8 @@ public class EntailmentGraphCollapsed extends DefaultDirectedWeightedGraph<Equiv
 
 	GraphStatistics graphStatistics = null; //statistics computed for this graph that are relevant for computing category confidence scores for use case 2
 	
+	private transient EquivalenceClassIndex nodeIndex = null; //index of the nodes by their entailment units and texts, see getNodeIndex()
+	
 	/******************************************************************************************
 	 * CONSTRUCTORS
 	 * ****************************************************************************************/
@@ -102,115 +105,106 @@ public class EntailmentGraphCollapsed extends DefaultDirectedWeightedGraph<Equiv
 		Map<String,Integer> numberOfMentionsPerCategory = new HashMap<String,Integer>();
 		graphStatistics = new GraphStatistics();
 		
+		// the file is read as a stream (StAX), one node or edge element at a time 
+		XMLFileReader reader = null;
     	try {
-			DocumentBuilderFactory dbFactory = DocumentBuilderFactory.newInstance();
-			DocumentBuilder dBuilder = dbFactory.newDocumentBuilder();
-			Document doc = dBuilder.parse(xmlFile);
-    
-			doc.getDocumentElement().normalize();	     
-			doc.getDocumentElement().getNodeName();
+			reader = new XMLFileReader(xmlFile);
+			
+			// edges are added after all the nodes, since they refer to the nodes by their label
+			List<XMLElement> edgeList = new LinkedList<XMLElement>();
 			
-			NodeList equivalenceClassList = doc.getElementsByTagName("equivalenceClassNode");
 			// create and add nodes
-			for (int nodeNumber = 0; nodeNumber < equivalenceClassList.getLength(); nodeNumber++) {  
-				Node eqClassNode = equivalenceClassList.item(nodeNumber);     
-				eqClassNode.getNodeName();  
-				if (eqClassNode.getNodeType() == Node.ELEMENT_NODE) { 
-					// read the label of the node
-					Element eqClassElement = (Element) eqClassNode;
-					String label = eqClassElement.getAttribute("label");
+			XMLElement eqClassElement;
+			while ((eqClassElement = reader.nextElement("equivalenceClassNode", "entailmentRelationCollapsedEdge")) != null) {  
+				if (eqClassElement.getName().equals("entailmentRelationCollapsedEdge")) {
+					edgeList.add(eqClassElement);
+					continue;
+				}
+				// read the label of the node
+				String label = eqClassElement.getAttribute("label");
+			
+				// create the set of entailment units of the node
+				Set<EntailmentUnit> s_eu = new HashSet<EntailmentUnit>();
+				Map<String, Double> categoryConfidences = new HashMap<String, Double>();
 				
-					// create the set of entailment units of the node
-					NodeList entailmentUnitList = eqClassNode.getChildNodes();
-					Set<EntailmentUnit> s_eu = new HashSet<EntailmentUnit>();
-					Map<String, Double> categoryConfidences = new HashMap<String, Double>();
-					
-					for (int temp = 0; temp < entailmentUnitList.getLength(); temp++) {    
-						Node eu = entailmentUnitList.item(temp);     
+				for (XMLElement euElement : eqClassElement.getChildElements()) {    
+					if (euElement.getName().equals("entailmentUnit")) { 
+						String text = euElement.getAttribute("text");
+						String lemmaLabel = euElement.getAttribute("lemmaLabel");
+						Integer level = Integer.valueOf(euElement.getAttribute("level"));
+
+						Set<String> completeStatementTexts = new HashSet<String>();
+						Set<EntailmentUnitMention> mentions = new HashSet<EntailmentUnitMention>();
 						
-						if (eu.getNodeName().equals("entailmentUnit")) { 
-							Element euElement = (Element) eu;
-							String text = euElement.getAttribute("text");
-							String lemmaLabel = euElement.getAttribute("lemmaLabel");
-							Integer level = Integer.valueOf(euElement.getAttribute("level"));
-	
-							Set<String> completeStatementTexts = new HashSet<String>();
-							Set<EntailmentUnitMention> mentions = new HashSet<EntailmentUnitMention>();
-							
-							NodeList childNodes = eu.getChildNodes();
-					       	for (int i = 0; i < childNodes.getLength(); i++) {    
-					       		Node child = childNodes.item(i);
-					       		if (child.getNodeName().equals("completeStatement")){
-						       		Element csElement = (Element) child;
-						       		String cstext = csElement.getAttribute("text");
-					       			completeStatementTexts.add(cstext);
-					       		}
-					       							       		
-					       		if (child.getNodeName().equals("entailmentUnitMention")){
-						       		Element eumElement = (Element) child;
-						       		int eumLevel = Integer.valueOf(eumElement.getAttribute("level"));
-						       		EntailmentUnitMention m = new EntailmentUnitMention(eumElement.getAttribute("text"), eumLevel, eumElement.getAttribute("interactionId"));
-						       		String categoryId = eumElement.getAttribute("categoryId");
-						       		//update number of mentions per category
-						       		int categoryCount = 0;
-									if (numberOfMentionsPerCategory.containsKey(categoryId)) {
-										categoryCount = numberOfMentionsPerCategory.get(categoryId);
-									}
-									categoryCount++;
-									totalNumberOfMentions++;
-									
-									numberOfMentionsPerCategory.put(categoryId, categoryCount);
-						       		m.setCategoryId(categoryId);
-						       		mentions.add(m);	       			
-					       		}
-							}		
-					       	
-					       	EntailmentUnit newEntailmentUnit;
-					       	if(lemmaLabel.isEmpty()){			       
-					       		newEntailmentUnit = new EntailmentUnit(text, completeStatementTexts, mentions, level);
-							}
-							else{
-								newEntailmentUnit = new EntailmentUnit(text, lemmaLabel, completeStatementTexts, mentions, level);
-							}
-						    s_eu.add(newEntailmentUnit);
-						} else if (eu.getNodeName().equals("categoryConfidence")) { //added for use case 2
-							Element euElement = (Element) eu;
-							String category = euElement.getAttribute("category");
-							Double confidence = Double.valueOf(euElement.getAttribute("confidence"));
-							categoryConfidences.put(category, confidence);
+				       	for (XMLElement child : euElement.getChildElements()) {    
+				       		if (child.getName().equals("completeStatement")){
+					       		String cstext = child.getAttribute("text");
+				       			completeStatementTexts.add(cstext);
+				       		}
+				       							       		
+				       		if (child.getName().equals("entailmentUnitMention")){
+					       		int eumLevel = Integer.valueOf(child.getAttribute("level"));
+					       		EntailmentUnitMention m = new EntailmentUnitMention(child.getAttribute("text"), eumLevel, child.getAttribute("interactionId"));
+					       		String categoryId = child.getAttribute("categoryId");
+					       		//update number of mentions per category
+					       		int categoryCount = 0;
+								if (numberOfMentionsPerCategory.containsKey(categoryId)) {
+									categoryCount = numberOfMentionsPerCategory.get(categoryId);
+								}
+								categoryCount++;
+								totalNumberOfMentions++;
+								
+								numberOfMentionsPerCategory.put(categoryId, categoryCount);
+					       		m.setCategoryId(categoryId);
+					       		mentions.add(m);	       			
+				       		}
+						}		
+				       	
+				       	EntailmentUnit newEntailmentUnit;
+				       	if(lemmaLabel.isEmpty()){			       
+				       		newEntailmentUnit = new EntailmentUnit(text, completeStatementTexts, mentions, level);
 						}
-					} // done creating s_eu
-					// create and add a new node to the graph
-					EquivalenceClass ec = new EquivalenceClass(label, s_eu);
-					ec.setCategoryConfidences(categoryConfidences); //added for use case 2
-					this.addVertex(ec);					
-				}							
+						else{
+							newEntailmentUnit = new EntailmentUnit(text, lemmaLabel, completeStatementTexts, mentions, level);
+						}
+					    s_eu.add(newEntailmentUnit);
+					} else if (euElement.getName().equals("categoryConfidence")) { //added for use case 2
+						String category = euElement.getAttribute("category");
+						Double confidence = Double.valueOf(euElement.getAttribute("confidence"));
+						categoryConfidences.put(category, confidence);
+					}
+				} // done creating s_eu
+				// create and add a new node to the graph
+				EquivalenceClass ec = new EquivalenceClass(label, s_eu);
+				ec.setCategoryConfidences(categoryConfidences); //added for use case 2
+				this.addVertex(ec);					
 			}
 			//create graph statistics
 			graphStatistics.setNumberOfMentionsPerCategory(numberOfMentionsPerCategory);
 			graphStatistics.setTotalNumberOfMentions(totalNumberOfMentions);
 			
 			// create and add edges
-			NodeList edgeList = doc.getElementsByTagName("entailmentRelationCollapsedEdge");
-			for (int temp = 0; temp < edgeList.getLength(); temp++) {    
-				Node er = edgeList.item(temp);     
-				er.getNodeName();     
-				if (er.getNodeType() == Node.ELEMENT_NODE) {  
-					
-					Element erElement = (Element) er;
-					String source = erElement.getAttribute("source");
-					String target = erElement.getAttribute("target");
-					double confidence = Double.valueOf(erElement.getAttribute("confidence"));
-					
-					EquivalenceClass sourceVertex = this.getVertex(source);
-					EquivalenceClass targetVertex = this.getVertex(target);
-					EntailmentRelationCollapsed e = new EntailmentRelationCollapsed(sourceVertex, targetVertex, confidence);
-					this.addEdge(sourceVertex, targetVertex, e);
-				}
+			for (XMLElement erElement : edgeList) {    
+				String source = erElement.getAttribute("source");
+				String target = erElement.getAttribute("target");
+				double confidence = Double.valueOf(erElement.getAttribute("confidence"));
+				
+				EquivalenceClass sourceVertex = this.getVertex(source);
+				EquivalenceClass targetVertex = this.getVertex(target);
+				EntailmentRelationCollapsed e = new EntailmentRelationCollapsed(sourceVertex, targetVertex, confidence);
+				this.addEdge(sourceVertex, targetVertex, e);
 			}
-		} catch (DOMException | ParserConfigurationException | SAXException | IOException e) {
+		} catch (XMLStreamException | IOException e) {
 			throw new EntailmentGraphCollapsedException("Could not load collapsed graph from " + xmlFile.getAbsolutePath()+"\n"+e.getMessage());
-		}    	
+		} finally {
+			if (reader != null) {
+				try {
+					reader.close();
+				} catch (IOException e) {
+					logger.warn("Could not close " + xmlFile.getAbsolutePath());
+				}
+			}
+		}
 	}	
 	
 	/******************************************************************************************
@@ -589,10 +583,7 @@ public class EntailmentGraphCollapsed extends DefaultDirectedWeightedGraph<Equiv
 	 * If such node could not be found - returns null
 	 */
 	public EquivalenceClass getVertex (EntailmentUnit eu){
-		for (EquivalenceClass vertex : this.vertexSet()){
-			if (vertex.containsEntailmentUnit(eu)) return vertex;
-		}
-		return null;
+		return getNodeIndex().getVertex(eu);
 	}	
 
 	/** Return equivalence class, which includes the input text
@@ -601,13 +592,22 @@ public class EntailmentGraphCollapsed extends DefaultDirectedWeightedGraph<Equiv
 	 * If such node could not be found - returns null
 	 */
 	public EquivalenceClass getVertex (String text){
-		for (EquivalenceClass vertex : this.vertexSet()){
-			if (vertex.getLabel().equals(text)) return vertex;
-			for (EntailmentUnit eu : vertex.getEntailmentUnits()){
-				if (eu.getText().equals(text)) return vertex;
+		return getNodeIndex().getVertex(text);
+	}
+	
+	/**
+	 * Get the index of the nodes by their entailment units and texts. The index is built from the vertex set if the graph has none yet, 
+	 * e.g. after de-serialization, or for a graph made by clone() (which starts with the fields of the original graph). 
+	 * @return the node index of this graph
+	 */
+	private EquivalenceClassIndex getNodeIndex(){
+		if ((nodeIndex == null) || (nodeIndex.owner != this)){
+			nodeIndex = new EquivalenceClassIndex(this);
+			for (EquivalenceClass vertex : this.vertexSet()){
+				nodeIndex.add(vertex);
 			}
 		}
-		return null;
+		return nodeIndex;
 	}
 
 
@@ -615,20 +615,34 @@ public class EntailmentGraphCollapsed extends DefaultDirectedWeightedGraph<Equiv
 	/* (non-Javadoc)
 	 * @see org.jgrapht.graph.AbstractBaseGraph#addVertex(java.lang.Object)
 	 * Overrides the addVertex method of AbstractBaseGraph. The method adds the given vertex and updates the  
-	 * numberOfEntailmentUnits and textualInputs attributes. 
+	 * numberOfEntailmentUnits and textualInputs attributes, and the node index. 
 	 */
 	@Override
 	public boolean addVertex(EquivalenceClass v){
+		EquivalenceClassIndex index = getNodeIndex();
 		boolean added = super.addVertex(v);
 		if (added){
 			for (EntailmentUnit eu : v.getEntailmentUnits()){
 				numberOfEntailmentUnits++;
 				textualInputs.addAll(eu.getCompleteStatementTexts());
 			}						
+			index.add(v);
 		}
 		return added;
 	}
 	
+	/* (non-Javadoc)
+	 * @see org.jgrapht.graph.AbstractBaseGraph#removeVertex(java.lang.Object)
+	 * Overrides the removeVertex method of AbstractBaseGraph. The method removes the given vertex and updates the node index. 
+	 */
+	@Override
+	public boolean removeVertex(EquivalenceClass v){
+		EquivalenceClassIndex index = getNodeIndex();
+		boolean removed = super.removeVertex(v);
+		if (removed) index.remove(v);
+		return removed;
+	}
+	
 	 /** Adds the given edge (and if needed - its nodes) to the graph. 
 	  * If source or target node are not present in the graph - they will be added.
 	  * If an edge source -> target is already present in the graph, the edge will not be added (collapsed graph is not a multi-graph).
@@ -700,87 +714,55 @@ public class EntailmentGraphCollapsed extends DefaultDirectedWeightedGraph<Equiv
 	/******************************************************************************************
 	 * TRANSITIVE CLOSURE
 	 * ****************************************************************************************/
-	   /**
-     * Computes floor(log_2(n)) + 1
-     */
-    private int computeBinaryLog(int n)
-    {
-        assert n >= 0;
-
-        int result = 0;
-        while (n > 0) {
-            n >>= 1;
-            ++result;
-        }
-
-        return result;
-    }
-    
     /**
 	 *  Adds transitive closure edges to the graph.
-	 *  Based on org.jgrapht.alg.TransitiveClosure
+	 *  <p> The entailed nodes of each node are computed as bit sets by {@link ReachabilityEngine}. 
+	 *  The confidence of a closure edge is the min confidence along a path from its source to its target.
 	 *  
 	 * @param changeTypeOfExistingEdges - if true, existing transitive closure edges will change their type to "TRANSITIVE_CLOSURE" 
 	 */
 	public void applyTransitiveClosure(boolean changeTypeOfExistingEdges){    
-		Map<EquivalenceClass,Double> newEdgeTargets = new HashMap<EquivalenceClass,Double>();
-
-        // At every iteration of the outer loop, we add a path of length 1
-        // between nodes that originally had a path of length 2. In the worst
-        // case, we need to make floor(log |V|) + 1 iterations. We stop earlier
-        // if there is no change to the output graph.
-
-        int bound = computeBinaryLog(this.vertexSet().size());
-        boolean done = false;
-        for (int i = 0; !done && (i < bound); ++i) {
-            done = true;
-            for (EquivalenceClass v1 : this.vertexSet()) {
-                newEdgeTargets.clear();
-
-                for (EquivalenceClass v2 : this.getEntailedNodes(v1)) {
-                	Double confidence = this.getEdge(v1, v2).getConfidence();
-                    for (EquivalenceClass v3 : this.getEntailedNodes(v2)) {
-
-                        // Assign min confidence of the 2 edges as the confidence of the transitive edge
-                        if (this.getEdge(v2, v3).getConfidence() < confidence) confidence=this.getEdge(v2, v3).getConfidence();
-
-                        if (v1.equals(v3)) {
-                            // Don't add self loops.
-                            continue;
-                        }
-
-                        EntailmentRelationCollapsed e = this.getEdge(v1, v3);
-                        if (e != null) {
-                            // There is already an edge from v1 ---> v3
-                        	if (!changeTypeOfExistingEdges)	continue; 
-                        	
-                        	if (e.getEdgeType().is(EdgeType.TRANSITIVE_CLOSURE)) { // if it's a closure edge already
-                        		if (e.getConfidence()>=confidence) continue; // and its confidence is >= current - skip
-                        		// if its confidence is lower than current, we want to update the edge with the current confidence, since we have a more confident transitive path from v1 to v3 now 
-                        	}
-                        	else{
-                               	// if it's not a closure edge, add it as not an edge with EdgeType="TRANSITIVE_CLOSURE"
-                            	confidence = e.getConfidence(); // if we had this edge before, we want to keep its confidence, we only change its type                        		
-                        	}
-                        }
-                        
-                        newEdgeTargets.put(v3,confidence);
-                        done = false;
-                    }
-                }
-
-                for (EquivalenceClass v3 : newEdgeTargets.keySet()) {
-                    EntailmentRelationCollapsed e = this.getEdge(v1, v3);
-                	if (e!=null){
-                    	this.removeAllEdges(v1, v3);                    	
-                		logger.info("Removed edge: "+ e.toString()+" to add it as a transitive closure edge");
-                    }
-                	EntailmentRelationCollapsed closureEdge = new EntailmentRelationCollapsed(v1, v3, newEdgeTargets.get(v3), EdgeType.TRANSITIVE_CLOSURE);
-                	this.addEdge(v1, v3, closureEdge);
-                	logger.info("Added transitive closure edge: "+closureEdge.toString());
-                }
-            }
-        }
+		ReachabilityEngine<EquivalenceClass> engine = new ReachabilityEngine<EquivalenceClass>(this.vertexSet());
+		for (EntailmentRelationCollapsed e : this.edgeSet()){
+			engine.addEdge(e.getSource(), e.getTarget(), e.getConfidence());
+		}
+		
+		// the engine is computed before the graph is changed
+		List<ReachabilityEngine.Edge<EquivalenceClass>> missingEdges = engine.getMissingEdges();
+		List<ReachabilityEngine.Edge<EquivalenceClass>> redundantEdges = changeTypeOfExistingEdges ? engine.getRedundantEdges() : new LinkedList<ReachabilityEngine.Edge<EquivalenceClass>>();
+		
+		for (ReachabilityEngine.Edge<EquivalenceClass> missingEdge : missingEdges){
+			addTransitiveClosureEdge(missingEdge.getSource(), missingEdge.getTarget(), missingEdge.getConfidence());
+		}
+		
+		// the existing edges v1 ---> v3, which also have a path v1 ---> v2 ---> ... ---> v3
+		for (ReachabilityEngine.Edge<EquivalenceClass> redundantEdge : redundantEdges){
+			EntailmentRelationCollapsed e = this.getEdge(redundantEdge.getSource(), redundantEdge.getTarget());
+			double confidence = redundantEdge.getConfidence();
+        	if (e.getEdgeType().is(EdgeType.TRANSITIVE_CLOSURE)) { // if it's a closure edge already
+        		if (e.getConfidence()>=confidence) continue; // and its confidence is >= current - skip
+        		// if its confidence is lower than current, we want to update the edge with the current confidence, since we have a more confident transitive path from v1 to v3 now 
+        	}
+        	else{
+               	// if it's not a closure edge, add it as not an edge with EdgeType="TRANSITIVE_CLOSURE"
+            	confidence = e.getConfidence(); // if we had this edge before, we want to keep its confidence, we only change its type                        		
+        	}
+        	this.removeAllEdges(e.getSource(), e.getTarget());                    	
+        	logger.info("Removed edge: "+ e.toString()+" to add it as a transitive closure edge");
+        	addTransitiveClosureEdge(e.getSource(), e.getTarget(), confidence);
+		}
+	}
+	
+	/**
+	 * Add a transitive closure edge with the given confidence
+	 * @param source
+	 * @param target
+	 * @param confidence
+	 */
+	private void addTransitiveClosureEdge(EquivalenceClass source, EquivalenceClass target, double confidence){
+		EntailmentRelationCollapsed closureEdge = new EntailmentRelationCollapsed(source, target, confidence, EdgeType.TRANSITIVE_CLOSURE);
+		this.addEdge(source, target, closureEdge);
+		logger.info("Added transitive closure edge: "+closureEdge.toString());
 	}
 	
 	public GraphStatistics getGraphStatistics() {
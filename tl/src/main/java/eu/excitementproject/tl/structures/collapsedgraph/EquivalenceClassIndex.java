@@ -0,0 +1,101 @@
+package eu.excitementproject.tl.structures.collapsedgraph;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import eu.excitementproject.tl.structures.rawgraph.EntailmentUnit;
+
+/**
+ * Index of the nodes of an {@link EntailmentGraphCollapsed}, used by {@link EntailmentGraphCollapsed#getVertex(EntailmentUnit)}
+ * and {@link EntailmentGraphCollapsed#getVertex(String)}.
+ * <p> A node is indexed by each of its entailment units, and by its label and the canonical texts of its entailment units.
+ * When several nodes match, the one added to the graph first is returned, as when scanning the vertex set.
+ * <p> The index is kept in sync by the graph in addVertex()/removeVertex(). Entailment units added to a node
+ * after the node was added to the graph are not indexed.
+ */
+class EquivalenceClassIndex {
+
+	/**
+	 * The graph this index belongs to. A graph made by clone() shares the fields of the original graph,
+	 * so it has to check that the index is its own (see {@link EntailmentGraphCollapsed}).
+	 */
+	final Object owner;
+
+	/**
+	 * Nodes by the entailment units they contain, in the order they were indexed
+	 */
+	private final Map<EntailmentUnit, List<EquivalenceClass>> nodesByEntailmentUnit = new HashMap<EntailmentUnit, List<EquivalenceClass>>();
+
+	/**
+	 * Nodes by their labels and the canonical texts of the entailment units they contain, in the order they were indexed
+	 */
+	private final Map<String, List<EquivalenceClass>> nodesByText = new HashMap<String, List<EquivalenceClass>>();
+
+	EquivalenceClassIndex(Object owner) {
+		this.owner = owner;
+	}
+
+	/**
+	 * Index the given node by its label and its entailment units
+	 * @param ec
+	 */
+	void add(EquivalenceClass ec){
+		addKey(nodesByText, ec.getLabel(), ec);
+		for (EntailmentUnit eu : ec.getEntailmentUnits()){
+			addKey(nodesByEntailmentUnit, eu, ec);
+			addKey(nodesByText, eu.getText(), ec);
+		}
+	}
+
+	/**
+	 * Remove the given node from the index
+	 * @param ec
+	 */
+	void remove(EquivalenceClass ec){
+		removeKey(nodesByText, ec.getLabel(), ec);
+		for (EntailmentUnit eu : ec.getEntailmentUnits()){
+			removeKey(nodesByEntailmentUnit, eu, ec);
+			removeKey(nodesByText, eu.getText(), ec);
+		}
+	}
+
+	/**
+	 * @param eu
+	 * @return the first indexed node, which contains the given entailment unit, or null if there is no such node
+	 */
+	EquivalenceClass getVertex(EntailmentUnit eu){
+		return getFirst(nodesByEntailmentUnit, eu);
+	}
+
+	/**
+	 * @param text
+	 * @return the first indexed node, which has the given text as its label or as the canonical text of one of its entailment units, or null if there is no such node
+	 */
+	EquivalenceClass getVertex(String text){
+		return getFirst(nodesByText, text);
+	}
+
+	private static <K> EquivalenceClass getFirst(Map<K, List<EquivalenceClass>> map, K key){
+		List<EquivalenceClass> nodes = map.get(key);
+		if (nodes == null) return null;
+		return nodes.get(0);
+	}
+
+	private static <K> void addKey(Map<K, List<EquivalenceClass>> map, K key, EquivalenceClass ec){
+		List<EquivalenceClass> nodes = map.get(key);
+		if (nodes == null){
+			nodes = new ArrayList<EquivalenceClass>(1);
+			map.put(key, nodes);
+		}
+		if (!nodes.contains(ec)) nodes.add(ec);
+	}
+
+	private static <K> void removeKey(Map<K, List<EquivalenceClass>> map, K key, EquivalenceClass ec){
+		List<EquivalenceClass> nodes = map.get(key);
+		if (nodes == null) return;
+		nodes.remove(ec);
+		if (nodes.isEmpty()) map.remove(key);
+	}
+}
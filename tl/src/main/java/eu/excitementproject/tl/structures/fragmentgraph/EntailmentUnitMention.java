@@ -70,6 +70,21 @@ public class EntailmentUnitMention {
 	 * @param mods -- the modifiers included in this object 
 	 */
 	public EntailmentUnitMention(JCas aJCas, FragmentAnnotation frag, Set<ModifierAnnotation> mods) {
+		this(aJCas, frag, mods, FragmentGraph.getFragmentModifiers(aJCas, frag));
+	}
+
+	/**
+	 * 
+	 * Build an entailmentUnit based on the (determined) fragment annotation in a document CAS object, 
+	 * and the set of modifiers it should contain. The modifiers of the fragment are given, 
+	 * so that the nodes of one fragment graph do not gather them from the CAS again
+	 * 
+	 * @param aJCas -- the document CAS object with all annotations
+	 * @param frag -- the (determined) fragment to which this object will correspond
+	 * @param mods -- the modifiers included in this object 
+	 * @param fragmentModifiers -- all the modifiers of the fragment (see {@link FragmentGraph#getFragmentModifiers(JCas, FragmentAnnotation)})
+	 */
+	public EntailmentUnitMention(JCas aJCas, FragmentAnnotation frag, Set<ModifierAnnotation> mods, Set<ModifierAnnotation> fragmentModifiers) {
 		cas = aJCas; 
 		modifiers = mods;
 		Set<String> modsText = new HashSet<String>();
@@ -80,9 +95,9 @@ public class EntailmentUnitMention {
 		
 //		CharSequence chars = frag.getText();
 		CharSequence chars = CASUtils.getCompleteTextFragment(frag);
-		for(ModifierAnnotation ma: FragmentGraph.getFragmentModifiers(aJCas, frag)) {
+		for(ModifierAnnotation ma: fragmentModifiers) {
 			if (! mods.contains(ma)) {
-				logger.info("\t removing " + ma.getCoveredText());
+				logger.debug("\t removing " + ma.getCoveredText());
 				chars = removeModifier(chars,ma);
 			} else {
 				modsText.add(ma.getCoveredText());
@@ -93,7 +108,7 @@ public class EntailmentUnitMention {
 		modifiersText = addModifiers(text,modsText);
 		categoryId = getCategoryId(aJCas,frag);
 		
-		logger.info("Generated node with text: " + text);
+		logger.debug("Generated node with text: " + text);
 	}
 
 	
@@ -237,15 +252,15 @@ public class EntailmentUnitMention {
 		CharSequence chs = chars;
 		ModifierPart mp;
 		
-		logger.info("Removing modifiers from string : " + chars + " (begin: " + begin + ", end: " + end + ")");
+		logger.debug("Removing modifiers from string : " + chars + " (begin: " + begin + ", end: " + end + ")");
 		
 		for (int i = 0; i < ma.getModifierParts().size(); i++) {
 			mp = ma.getModifierParts(i);
-			logger.info("\t" + i + " : " + mp.getCoveredText() + "\t span: " + mp.getBegin() + "/" + mp.getEnd());
+			logger.debug("\t" + i + " : " + mp.getCoveredText() + "\t span: " + mp.getBegin() + "/" + mp.getEnd());
 			chs = chs.subSequence(0, mp.getBegin()-begin) + StringUtils.repeat(" ",mp.getEnd()-mp.getBegin()) + chs.subSequence(mp.getEnd()-begin,chs.length());
 		}
 		
-		logger.info("\n\tBEFORE: " + chars + "\n\tAFTER: " + chs);
+		logger.debug("\n\tBEFORE: " + chars + "\n\tAFTER: " + chs);
 		
 		return chs;
 	}
@@ -49,6 +49,7 @@ import eu.excitementproject.tl.structures.collapsedgraph.EntailmentRelationColla
 import eu.excitementproject.tl.structures.collapsedgraph.EquivalenceClass;
 import eu.excitementproject.tl.structures.rawgraph.EntailmentRelation;
 import eu.excitementproject.tl.structures.rawgraph.utils.EdgeType;
+import eu.excitementproject.tl.structures.utils.ReachabilityEngine;
 
 /**
  *
@@ -134,21 +135,42 @@ public class FragmentGraph extends DefaultDirectedWeightedGraph<EntailmentUnitMe
 	 * @param f -- the fragment annotation from which to produce a {@link} FragmentGraph 
 	 */
 	public FragmentGraph(JCas aJCas, FragmentAnnotation frag) {
+		this(aJCas, frag, Integer.MAX_VALUE);
+	}
+
+	/**
+	 * Build a fragment graph from a (determined) fragment in a CAS object corresponding to a document,
+	 * with at most the given number of modifiers expanded. 
+	 * 
+	 * The graph has a node for each consistent subset of the modifiers, so it grows exponentially with their number. 
+	 * If the fragment has more than maxModifiers modifiers, the graph only has the top node (all modifiers) 
+	 * and the base statement, with an edge from the top node to the base statement.
+	 * 
+	 * @param aJCas -- CAS object containing annotations for a document
+	 * @param f -- the fragment annotation from which to produce a {@link} FragmentGraph 
+	 * @param maxModifiers -- the maximal number of modifiers for which the whole graph is built
+	 */
+	public FragmentGraph(JCas aJCas, FragmentAnnotation frag, int maxModifiers) {
 		this(new ClassBasedEdgeFactory<EntailmentUnitMention, FragmentGraphEdge>(FragmentGraphEdge.class));
 		
 		document = aJCas;
 		fragment = frag;
 		
-		baseStatement = new EntailmentUnitMention(aJCas, frag, new HashSet<ModifierAnnotation>());
+		Set<ModifierAnnotation> mods = getFragmentModifiers(aJCas,frag);		
+
+		baseStatement = new EntailmentUnitMention(aJCas, frag, new HashSet<ModifierAnnotation>(), mods);
 		addVertex(baseStatement);
 		
-		Set<ModifierAnnotation> mods = getFragmentModifiers(aJCas,frag);		
 		if (mods == null || mods.isEmpty()) {
 			topStatement = baseStatement;
+		} else if (mods.size() > maxModifiers) {
+			logger.warn("Fragment has " + mods.size() + " modifiers (more than " + maxModifiers + "), only the top node and the base statement are generated: " + frag.getCoveredText());
+			buildGraph(aJCas, frag, mods, null, mods, null);
+			if (! topStatement.equals(baseStatement)) {
+				this.addEdge(topStatement, baseStatement);
+			}
 		} else {
-
-//			topStatement = new EntailmentUnitMention(aJCas, frag, mods);
-			buildGraph(aJCas, frag, mods, null);
+			buildGraph(aJCas, frag, mods, null, mods, new HashMap<Set<ModifierAnnotation>, EntailmentUnitMention>());
 		}
 	}
 		
@@ -163,34 +185,57 @@ public class FragmentGraph extends DefaultDirectedWeightedGraph<EntailmentUnitMe
 	 * @param parent -- parent node (that has one extra modifier compared to the current node)
 	 */
 	protected void buildGraph(JCas aJCas, FragmentAnnotation frag, Set<ModifierAnnotation> modifiers, EntailmentUnitMention parent) {
+		buildGraph(aJCas, frag, modifiers, parent, getFragmentModifiers(aJCas, frag), new HashMap<Set<ModifierAnnotation>, EntailmentUnitMention>());
+	}
 
-//		if (modifiers != null && !modifiers.isEmpty()) {
-		if (modifiers != null) {
+	/**
+	 * Build the lattice of the consistent subsets of the given modifiers, starting from the given subset. 
+	 * Each subset is visited once: the node of a subset reached again from another parent (by removing the
+	 * modifiers in a different order) is taken from nodesByModifiers, and only the edge from the parent is added.
+	 * 
+	 * @param aJCas -- document CAS object
+	 * @param frag -- (determined) fragment
+	 * @param modifiers -- set of modifiers of the current node
+	 * @param parent -- parent node (that has one extra modifier compared to the current node)
+	 * @param fragmentModifiers -- all the modifiers of the fragment
+	 * @param nodesByModifiers -- the nodes built so far by their set of modifiers (if null, only the current node is built)
+	 */
+	private void buildGraph(JCas aJCas, FragmentAnnotation frag, Set<ModifierAnnotation> modifiers, EntailmentUnitMention parent, 
+			Set<ModifierAnnotation> fragmentModifiers, Map<Set<ModifierAnnotation>, EntailmentUnitMention> nodesByModifiers) {
 
-			EntailmentUnitMention eum = new EntailmentUnitMention(aJCas, frag, modifiers);
+		if (modifiers == null) return;
 		
-			logger.info("Generated node (EUM) for string: " + eum.getText());
-			if (! this.containsVertex(eum)) { // double check that this test does what it should
+		EntailmentUnitMention eum = (nodesByModifiers == null) ? null : nodesByModifiers.get(modifiers);
+		boolean visited = (eum != null);
+		
+		if (! visited) {
+			eum = new EntailmentUnitMention(aJCas, frag, modifiers, fragmentModifiers);
+			logger.debug("Generated node (EUM) for string: " + eum.getText());
+			if (! this.containsVertex(eum)) { 
 				addVertex(eum);
-				logger.info("Vertex added: " + eum.text);
+				logger.debug("Vertex added: " + eum.text);
 			} else {
 				eum = getVertex(eum);
-				logger.info("Matching vertex retrieved from graph: " + eum.text);
+				logger.debug("Matching vertex retrieved from graph: " + eum.text);
 			}
+			if (nodesByModifiers != null) nodesByModifiers.put(modifiers, eum);
+		}
 		
-			if (parent != null) {
-				this.addEdge(parent, eum); // double check the direction of the added edges
-			} else {
-				topStatement = eum; // if the parent is null, it means it is the top node
-			}
-
-			Set<ModifierAnnotation> sma;
-			for(ModifierAnnotation m: modifiers) {
-				sma = new HashSet<ModifierAnnotation>(modifiers);
-				sma.remove(m);
-				if (consistentModifiers(sma)) {
-					buildGraph(aJCas, frag, sma, eum);
-				}
+		if (parent != null) {
+			this.addEdge(parent, eum); 
+		} else {
+			topStatement = eum; // if the parent is null, it means it is the top node
+		}
+		
+		// the subsets of a visited node were already built
+		if (visited || (nodesByModifiers == null)) return;
+
+		Set<ModifierAnnotation> sma;
+		for(ModifierAnnotation m: modifiers) {
+			sma = new HashSet<ModifierAnnotation>(modifiers);
+			sma.remove(m);
+			if (consistentModifiers(sma)) {
+				buildGraph(aJCas, frag, sma, eum, fragmentModifiers, nodesByModifiers);
 			}
 		}
 	}
@@ -206,16 +251,18 @@ public class FragmentGraph extends DefaultDirectedWeightedGraph<EntailmentUnitMe
 	 */
 	private boolean consistentModifiers(Set<ModifierAnnotation> sma) {
 		
-		printAnnotations(sma);
+		if (logger.isDebugEnabled()) {
+			printAnnotations(sma);
+		}
 		
 		for(ModifierAnnotation m: sma) {
 			ModifierAnnotation m_dp = m.getDependsOn();
 			if (m_dp != null && ! sma.contains(m_dp)) {
-				logger.info("Modifiers not consistent");
+				logger.debug("Modifiers not consistent");
 				return false;
 			}
 		}
-		logger.info("Modifiers OK");
+		logger.debug("Modifiers OK");
 		return true;
 	}
 
@@ -223,7 +270,7 @@ public class FragmentGraph extends DefaultDirectedWeightedGraph<EntailmentUnitMe
 	protected void printAnnotations(Set<ModifierAnnotation> sma) {
 
 		for (Annotation a: sma) {
-			logger.info("\t" + a.getCoveredText() + " / " + a.getClass());
+			logger.debug("\t" + a.getCoveredText() + " / " + a.getClass());
 		}
 	}
 
@@ -403,7 +450,7 @@ public class FragmentGraph extends DefaultDirectedWeightedGraph<EntailmentUnitMe
 	 * @return the interaction id from which this fragment graph was built
 	 */
 	public String getInteractionId(){
-		if (document == null) {
+		if ((document == null) || (CASUtils.getTLMetaData(document) == null)) {
 			return "N/A";
 		}
 		
@@ -604,68 +651,18 @@ public class FragmentGraph extends DefaultDirectedWeightedGraph<EntailmentUnitMe
 	/******************************************************************************************
 	 * TRANSITIVE CLOSURE
 	 * ****************************************************************************************/
-	   /**
-     * Computes floor(log_2(n)) + 1
-     */
-    private int computeBinaryLog(int n)
-    {
-        assert n >= 0;
-
-        int result = 0;
-        while (n > 0) {
-            n >>= 1;
-            ++result;
-        }
-
-        return result;
-    }
-    
     /**
 	 *  Adds transitive closure edges to the graph.
-	 *  Based on org.jgrapht.alg.TransitiveClosure
+	 *  The entailed nodes of each node are computed as bit sets by {@link ReachabilityEngine}.
 	 */
 	public void applyTransitiveClosure(){    
-		Map<EntailmentUnitMention,Double> newEdgeTargets = new HashMap<EntailmentUnitMention,Double>();
-
-        // At every iteration of the outer loop, we add a path of length 1
-        // between nodes that originally had a path of length 2. In the worst
-        // case, we need to make floor(log |V|) + 1 iterations. We stop earlier
-        // if there is no change to the output graph.
-
-        int bound = computeBinaryLog(this.vertexSet().size());
-        boolean done = false;
-        for (int i = 0; !done && (i < bound); ++i) {
-            done = true;
-            for (EntailmentUnitMention v1 : this.vertexSet()) {
-                newEdgeTargets.clear();
-
-                for (EntailmentUnitMention v2 : this.getEntailedNodes(v1)) {
-                	Double weight = this.getEdge(v1, v2).getWeight();
-                    for (EntailmentUnitMention v3 : this.getEntailedNodes(v2)) {
-
-                        // Assign min confidence of the 2 edges as the confidence of the transitive edge
-                        if (this.getEdge(v2, v3).getWeight() < weight) weight=this.getEdge(v2, v3).getWeight();
-
-                        if (v1.equals(v3)) {
-                            // Don't add self loops.
-                            continue;
-                        }
-
-                        if (this.getEdge(v1, v3) != null) {
-                        	// Already have such edge
-                        	continue; 
-                        }
-                                      
-                        newEdgeTargets.put(v3,weight);
-                        done = false;
-                    }
-                }
-
-                for (EntailmentUnitMention v3 : newEdgeTargets.keySet()) {
-                	this.addEdge(v1, v3);
-                }
-            }
-        }
+		ReachabilityEngine<EntailmentUnitMention> engine = new ReachabilityEngine<EntailmentUnitMention>(this.vertexSet());
+		for (FragmentGraphEdge edge : this.edgeSet()){
+			engine.addEdge(edge.getSource(), edge.getTarget(), edge.getWeight());
+		}
+		for (ReachabilityEngine.Edge<EntailmentUnitMention> missingEdge : engine.getMissingEdges()){
+			this.addEdge(missingEdge.getSource(), missingEdge.getTarget());
+		}
 	}
 
 	
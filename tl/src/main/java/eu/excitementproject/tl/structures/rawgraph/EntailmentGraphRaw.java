@@ -4,15 +4,17 @@ import java.io.BufferedWriter;
 import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
-import java.util.HashMap;
+import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.Hashtable;
-import java.util.Map;
+import java.util.LinkedList;
+import java.util.List;
 import java.util.Set;
 
 import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
 import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.stream.XMLStreamException;
 import javax.xml.transform.TransformerException;
 import javax.xml.transform.dom.DOMSource;
 
@@ -21,9 +23,6 @@ import org.jgrapht.graph.DirectedMultigraph;
 import org.w3c.dom.DOMException;
 import org.w3c.dom.Document;
 import org.w3c.dom.Element;
-import org.w3c.dom.Node;
-import org.w3c.dom.NodeList;
-import org.xml.sax.SAXException;
 
 import eu.excitementproject.eop.common.DecisionLabel;
 import eu.excitementproject.eop.common.EDABasic;
@@ -39,6 +38,9 @@ import eu.excitementproject.tl.structures.fragmentgraph.EntailmentUnitMention;
 import eu.excitementproject.tl.structures.fragmentgraph.FragmentGraph;
 import eu.excitementproject.tl.structures.fragmentgraph.FragmentGraphEdge;
 import eu.excitementproject.tl.structures.rawgraph.utils.EdgeType;
+import eu.excitementproject.tl.structures.utils.ReachabilityEngine;
+import eu.excitementproject.tl.structures.utils.XMLElement;
+import eu.excitementproject.tl.structures.utils.XMLFileReader;
 import eu.excitementproject.tl.structures.utils.XMLFileWriter;
 
 
@@ -66,6 +68,16 @@ public class EntailmentGraphRaw extends
 	
 	private boolean addLemmatizedLabel;
 
+	/**
+	 * Index of the vertices by their texts and by fragment graph (see {@link #getVertexIndex()})
+	 */
+	private transient EntailmentUnitIndex vertexIndex = null;
+
+	/**
+	 * Summaries of the edges by node pair, and the changes since the last transitive closure (see {@link #getPairIndex()})
+	 */
+	private transient EntailmentPairIndex pairIndex = null;
+
 	
 	/******************************************************************************************
 	 * CONSTRUCTORS
@@ -101,21 +113,23 @@ public class EntailmentGraphRaw extends
 	 */
 	public EntailmentGraphRaw(File xmlFile) throws EntailmentGraphRawException{
 		super(EntailmentRelation.class);
+		// the file is read as a stream (StAX), one node or edge element at a time 
+		XMLFileReader reader = null;
     	try {
-			DocumentBuilderFactory dbFactory = DocumentBuilderFactory.newInstance();
-			DocumentBuilder dBuilder = dbFactory.newDocumentBuilder();
-			Document doc = dBuilder.parse(xmlFile);
-    
-			doc.getDocumentElement().normalize();	     
-			doc.getDocumentElement().getNodeName();
-			NodeList entailmentUnitList = doc.getElementsByTagName("entailmentUnitNode");
+			reader = new XMLFileReader(xmlFile);
+			
+			// edges are added after all the nodes, since they refer to the nodes by their text
+			List<XMLElement> entailmentRelationList = new LinkedList<XMLElement>();
 			
 			// create and add nodes
-			for (int temp = 0; temp < entailmentUnitList.getLength(); temp++) {    
-				Node eu = entailmentUnitList.item(temp);     
-				eu.getNodeName();   
+			XMLElement element;
+			while ((element = reader.nextElement("entailmentUnitNode", "entailmentRelationEdge")) != null) {
+				if (element.getName().equals("entailmentRelationEdge")) {
+					entailmentRelationList.add(element);
+					continue;
+				}
 
-				Element euElement = (Element) eu;
+				XMLElement euElement = element;
 				String text = euElement.getAttribute("text");
 				String lemmaLabel = euElement.getAttribute("lemmaLabel");
 				if(!lemmaLabel.isEmpty()){
@@ -126,20 +140,16 @@ public class EntailmentGraphRaw extends
 				Set<String> completeStatementTexts = new HashSet<String>();
 				Set<EntailmentUnitMention> mentions = new HashSet<EntailmentUnitMention>();
 				
-				NodeList childNodes = eu.getChildNodes();
-		       	for (int i = 0; i < childNodes.getLength(); i++) {    
-		       		Node child = childNodes.item(i);
-		       		if (child.getNodeName().equals("completeStatement")){
-			       		Element csElement = (Element) child;
-			       		String cstext = csElement.getAttribute("text");
+		       	for (XMLElement child : euElement.getChildElements()) {    
+		       		if (child.getName().equals("completeStatement")){
+			       		String cstext = child.getAttribute("text");
 		       			completeStatementTexts.add(cstext);
 		       		}
 		       				       		
-		       		if (child.getNodeName().equals("entailmentUnitMention")){
-			       		Element eumElement = (Element) child;
-			       		int eumLevel = Integer.valueOf(eumElement.getAttribute("level"));
-			       		EntailmentUnitMention m = new EntailmentUnitMention(eumElement.getAttribute("text"), eumLevel, eumElement.getAttribute("interactionId"));
-			       		m.setCategoryId(eumElement.getAttribute("categoryId"));
+		       		if (child.getName().equals("entailmentUnitMention")){
+			       		int eumLevel = Integer.valueOf(child.getAttribute("level"));
+			       		EntailmentUnitMention m = new EntailmentUnitMention(child.getAttribute("text"), eumLevel, child.getAttribute("interactionId"));
+			       		m.setCategoryId(child.getAttribute("categoryId"));
 			       		mentions.add(m);	       			
 		       		}
 				}
@@ -154,27 +164,27 @@ public class EntailmentGraphRaw extends
 			
 			
 			// create and add edges
-			NodeList entailmentRelationList = doc.getElementsByTagName("entailmentRelationEdge");
-			for (int temp = 0; temp < entailmentRelationList.getLength(); temp++) {    
-				Node er = entailmentRelationList.item(temp);     
-				er.getNodeName();     
-				if (er.getNodeType() == Node.ELEMENT_NODE) {  
-					
-					Element erElement = (Element) er;
-					String source = erElement.getAttribute("source");
-					String target = erElement.getAttribute("target");
-					EdgeType edgeType = EdgeType.convert(erElement.getAttribute("type"));
-					TEDecision edge = new TEDecisionWithConfidence(Double.valueOf(erElement.getAttribute("confidence")), DecisionLabel.getLabelFor(erElement.getAttribute("decisionLabel")));
-					
-					EntailmentUnit sourceVertex = this.getVertexWithText(source);
-					EntailmentUnit targetVertex = this.getVertexWithText(target);
-					EntailmentRelation e = new EntailmentRelation(sourceVertex, targetVertex, edge, edgeType);
-					this.addEdge(sourceVertex, targetVertex, e);
-				}
+			for (XMLElement erElement : entailmentRelationList) {    
+				String source = erElement.getAttribute("source");
+				String target = erElement.getAttribute("target");
+				EdgeType edgeType = EdgeType.convert(erElement.getAttribute("type"));
+				TEDecision edge = new TEDecisionWithConfidence(Double.valueOf(erElement.getAttribute("confidence")), DecisionLabel.getLabelFor(erElement.getAttribute("decisionLabel")));
+				
+				EntailmentUnit sourceVertex = this.getVertexWithText(source);
+				EntailmentUnit targetVertex = this.getVertexWithText(target);
+				EntailmentRelation e = new EntailmentRelation(sourceVertex, targetVertex, edge, edgeType);
+				this.addEdge(sourceVertex, targetVertex, e);
 			}
-		} catch (DOMException | ParserConfigurationException | SAXException
-				| IOException | EDAException e) {
+		} catch (XMLStreamException | IOException | EDAException e) {
 			throw new EntailmentGraphRawException("Could not load collapsed graph from " + xmlFile.getAbsolutePath()+"\n"+e.getMessage());
+		} finally {
+			if (reader != null) {
+				try {
+					reader.close();
+				} catch (IOException e) {
+					logger.warn("Could not close " + xmlFile.getAbsolutePath());
+				}
+			}
 		}
 
     	
@@ -225,11 +235,7 @@ public class EntailmentGraphRaw extends
 	 * @return -- the base statements (the roots) of the graph
 	 */
 	public Set<EntailmentUnit> getBaseStatements(){
-		Set<EntailmentUnit> baseStatements = new HashSet<EntailmentUnit>();
-		for (EntailmentUnit node : this.vertexSet()){
-			if (node.isBaseStatement()) baseStatements.add(node);
-		}
-		return baseStatements;
+		return getVertexIndex().getBaseStatements();
 	}
 	
 	/**
@@ -290,12 +296,7 @@ public class EntailmentGraphRaw extends
 	 */
 	public boolean isEntailment(EntailmentUnit entailingNode, EntailmentUnit entailedNode){
 		if (entailingNode.equals(entailedNode)) return true; // if both nodes are the same
-		Set<EntailmentRelation> se = getAllEdges(entailingNode, entailedNode);
-		if (se==null) return false;		
-		for (EntailmentRelation e : se){
-			if (e.getLabel().is(DecisionLabel.Entailment)) return true;
-		}
-		return false;
+		return getPairIndex().isEntailment(entailingNode, entailedNode);
 	}
 	
     /**
@@ -447,6 +448,7 @@ public class EntailmentGraphRaw extends
 			//this.addVertex(newNode);			
 			
 			node.addMention(mention, completeStatementText);  
+			getVertexIndex().addMention(node, mention.getText(), completeStatementText);
 		}
 	}
 	
@@ -459,8 +461,6 @@ public class EntailmentGraphRaw extends
 	 * @throws EntailmentGraphRawException
 	 */
 	public Hashtable<Integer, Set<EntailmentUnit>> getFragmentGraphNodes(EntailmentUnit baseStatementNode, String completeStatementText) throws EntailmentGraphRawException {
-		Hashtable<Integer, Set<EntailmentUnit>> nodesByLevel = new Hashtable<Integer, Set<EntailmentUnit>>(); 
-		
  /*		
 		logger.info("----");
 		logger.info(baseStatementNode);
@@ -472,15 +472,8 @@ public class EntailmentGraphRaw extends
 		EntailmentUnit completeStatementNode = getVertexWithText(completeStatementText);
 		if (completeStatementNode==null) throw new EntailmentGraphRawException("The raw graph does not contain a node \""+completeStatementText+"\"\n");
 		
-		Set<EntailmentUnit> nodes = getAllNodes(completeStatementNode, baseStatementNode, new HashSet<EntailmentUnit>());
-		for(EntailmentUnit node: nodes){
-			if (node.isPartOfFragmentGraph(completeStatementText)){
-				Integer level = node.getLevel();
-				if (!nodesByLevel.containsKey(level)) nodesByLevel.put(level, new HashSet<EntailmentUnit>());
-				if (!nodesByLevel.get(level).contains(node)) nodesByLevel.get(level).add(node);
-			}
-		}		
-		return nodesByLevel;
+		// the nodes of each fragment graph are indexed when they are added, so there's no need to restore them by following the paths from the complete statement to the base statement
+		return getVertexIndex().getFragmentGraphNodes(completeStatementText);
 	}
 	
 	
@@ -591,13 +584,20 @@ public class EntailmentGraphRaw extends
 		for (EntailmentRelation edge : this.outgoingEdgesOf(node)){
 			EntailmentUnit entailedNode = edge.getTarget();
 			if (entailedNode.getLevel()==level){ // first check the level condition
-				for (String completeStatement : entailedNode.getCompleteStatementTexts()){ // now check if have a common completeStatement (came from the same gragment graph)
-					if (node.getCompleteStatementTexts().contains(completeStatement)){
+				if (entailedNodes.contains(entailedNode)) continue; // already added (by another edge between the same nodes)
+				// now check if have a common completeStatement (came from the same gragment graph) - look up the texts of the smaller set in the larger one
+				Set<String> fewerCompleteStatements = entailedNode.getCompleteStatementTexts();
+				Set<String> moreCompleteStatements = node.getCompleteStatementTexts();
+				if (fewerCompleteStatements.size() > moreCompleteStatements.size()){
+					fewerCompleteStatements = node.getCompleteStatementTexts();
+					moreCompleteStatements = entailedNode.getCompleteStatementTexts();
+				}
+				for (String completeStatement : fewerCompleteStatements){ 
+					if (moreCompleteStatements.contains(completeStatement)){
 						entailedNodes.add(entailedNode); // if yes - add
 						break; // and go to the next edge
 					}
 				}
-				
 			}
 		}
 		return entailedNodes;
@@ -663,10 +663,111 @@ public class EntailmentGraphRaw extends
 	 * @return the vertex, if found.
 	 */
 	public EntailmentUnit getVertexWithText(String text){
-		for (EntailmentUnit eu : this.vertexSet()){
-			if (eu.isTextIncludedOrRelevant(text)) return eu;
+		return getVertexIndex().getVertexWithText(text);
+	}
+	
+	/* (non-Javadoc)
+	 * @see org.jgrapht.graph.AbstractBaseGraph#addVertex(java.lang.Object)
+	 * Overrides the addVertex method of AbstractBaseGraph. The method adds the given vertex and indexes it by its texts and fragment graphs.
+	 */
+	@Override
+	public boolean addVertex(EntailmentUnit v){
+		EntailmentUnitIndex index = getVertexIndex();
+		boolean added = super.addVertex(v);
+		if (added) index.add(v);
+		return added;
+	}
+
+	/* (non-Javadoc)
+	 * @see org.jgrapht.graph.AbstractBaseGraph#removeVertex(java.lang.Object)
+	 * Overrides the removeVertex method of AbstractBaseGraph. The method removes the given vertex and removes it from the index.
+	 */
+	@Override
+	public boolean removeVertex(EntailmentUnit v){
+		EntailmentUnitIndex index = getVertexIndex();
+		boolean removed = super.removeVertex(v);
+		if (removed) index.remove(v);
+		return removed;
+	}
+	
+	/* (non-Javadoc)
+	 * @see org.jgrapht.graph.AbstractBaseGraph#addEdge(java.lang.Object, java.lang.Object, java.lang.Object)
+	 * Overrides the addEdge method of AbstractBaseGraph. The method adds the given edge and updates the summary of its node pair.
+	 */
+	@Override
+	public boolean addEdge(EntailmentUnit sourceVertex, EntailmentUnit targetVertex, EntailmentRelation e){
+		EntailmentPairIndex index = getPairIndex();
+		boolean added = super.addEdge(sourceVertex, targetVertex, e);
+		if (added) index.add(e);
+		return added;
+	}
+	
+	/* (non-Javadoc)
+	 * @see org.jgrapht.graph.AbstractBaseGraph#addEdge(java.lang.Object, java.lang.Object)
+	 * Overrides the addEdge method of AbstractBaseGraph. The method adds a new edge and updates the summary of its node pair.
+	 */
+	@Override
+	public EntailmentRelation addEdge(EntailmentUnit sourceVertex, EntailmentUnit targetVertex){
+		EntailmentPairIndex index = getPairIndex();
+		EntailmentRelation e = super.addEdge(sourceVertex, targetVertex);
+		if (e != null) index.add(e);
+		return e;
+	}
+	
+	/* (non-Javadoc)
+	 * @see org.jgrapht.graph.AbstractBaseGraph#removeEdge(java.lang.Object)
+	 * Overrides the removeEdge method of AbstractBaseGraph. The method removes the given edge and updates the summary of its node pair.
+	 */
+	@Override
+	public boolean removeEdge(EntailmentRelation e){
+		if (!containsEdge(e)) return false;
+		EntailmentPairIndex index = getPairIndex();
+		EntailmentUnit source = getEdgeSource(e);
+		EntailmentUnit target = getEdgeTarget(e);
+		boolean removed = super.removeEdge(e);
+		if (removed) index.update(source, target, getAllEdges(source, target));
+		return removed;
+	}
+	
+	/* (non-Javadoc)
+	 * @see org.jgrapht.graph.AbstractBaseGraph#removeEdge(java.lang.Object, java.lang.Object)
+	 * Overrides the removeEdge method of AbstractBaseGraph, so that the removal goes through {@link #removeEdge(EntailmentRelation)}.
+	 */
+	@Override
+	public EntailmentRelation removeEdge(EntailmentUnit sourceVertex, EntailmentUnit targetVertex){
+		EntailmentRelation e = getEdge(sourceVertex, targetVertex);
+		if (e != null) removeEdge(e);
+		return e;
+	}
+	
+	/**
+	 * Get the summaries of the edges by node pair. The summaries are built from the edge set if the graph has none yet, 
+	 * e.g. after de-serialization, or for a graph made by clone() (which starts with the fields of the original graph). 
+	 * @return the pair index of this graph
+	 */
+	private EntailmentPairIndex getPairIndex(){
+		if ((pairIndex == null) || (pairIndex.owner != this)){
+			pairIndex = new EntailmentPairIndex(this);
+			for (EntailmentRelation e : this.edgeSet()){
+				pairIndex.add(e);
+			}
+		}
+		return pairIndex;
+	}
+	
+	/**
+	 * Get the index of the vertices by their texts and by fragment graph. The index is built from the vertex set if the graph has none yet, 
+	 * e.g. after de-serialization, or for a graph made by clone() (which starts with the fields of the original graph). 
+	 * @return the vertex index of this graph
+	 */
+	private EntailmentUnitIndex getVertexIndex(){
+		if ((vertexIndex == null) || (vertexIndex.owner != this)){
+			vertexIndex = new EntailmentUnitIndex(this);
+			for (EntailmentUnit eu : this.vertexSet()){
+				vertexIndex.add(eu);
+			}
 		}
-		return null;
+		return vertexIndex;
 	}
 	
 
@@ -838,22 +939,6 @@ public class EntailmentGraphRaw extends
 	 * TRANSITIVE CLOSURE
 	 * ****************************************************************************************/
 
-	/**
-     * Computes floor(log_2(n)) + 1
-     */
-     private int computeBinaryLog(int n)
-     {
-        assert n >= 0;
-
-        int result = 0;
-        while (n > 0) {
-            n >>= 1;
-            ++result;
-        }
-
-        return result;
-    }
-    
     /** 
      * Find the best confidence of source -> target within the graph
      * @param source
@@ -861,109 +946,115 @@ public class EntailmentGraphRaw extends
      * @return the highest confidence of source -> target
      */
     private Double getBestDirectConfidence(EntailmentUnit source, EntailmentUnit target){
-    	Double confidence = 0.0;
-    	for (EntailmentRelation edge : this.getAllEdges(source, target)){
-    		if (edge.getLabel().is(DecisionLabel.NonEntailment)) continue; // don't consider the confidence of non-entailing edges
-    		if (edge.getConfidence() > confidence) confidence = edge.getConfidence();
-    	}
-    	return confidence;
+    	// the confidences of non-entailing edges are not considered (see EntailmentPairIndex)
+    	return getPairIndex().getBestConfidence(source, target);
     }
     
     /**
 	 *  Add transitive closure edges to the graph. 
 	 *  <p> Only considers "entailment" edges, i.e. can add conflicts to the graph if non-entailment decisions are present in it
-	 *  <p> Based on the algorithm from {@link org.jgrapht.alg.TransitiveClosure}
+	 *  <p> The entailed nodes of each node are computed as bit sets by {@link ReachabilityEngine}, rather than by repeated squaring over the graph.
 	 */
 	public void applyTransitiveClosure(){    
-		Map<EntailmentUnit,Double> newEdgeTargets = new HashMap<EntailmentUnit,Double>();
-
-        // At every iteration of the outer loop, we add a path of length 1
-        // between nodes that originally had a path of length 2. In the worst
-        // case, we need to make floor(log |V|) + 1 iterations. We stop earlier
-        // if there is no change to the output graph.
-
-        int bound = computeBinaryLog(this.vertexSet().size());
-        boolean done = false;
-        for (int i = 0; !done && (i < bound); ++i) {
-            done = true;
-            for (EntailmentUnit v1 : this.vertexSet()) {
-                newEdgeTargets.clear();
-
-                for (EntailmentUnit v2 : this.getEntailedNodes(v1)) {
-                	Double confidence = getBestDirectConfidence(v1,v2);
-                	
-                    for (EntailmentUnit v3 : this.getEntailedNodes(v2)) {
-
-                    	if (newEdgeTargets.containsKey(v3)){
-                    		continue; // since we're in a multu-graph, maybe we already added v3 to newEdgeTargets 
-                    	}
-                    	
-                    	Double secondStepConfidence = getBestDirectConfidence(v2, v3);
-                        // Assign min confidence of the 2 edges as the confidence of the transitive edge
-                        if (secondStepConfidence < confidence) confidence=secondStepConfidence;
-
-                        if (v1.equals(v3)) {
-                            // Don't add self loops.
-                            continue;
-                        }
-
-                    	if (this.isEntailment(v1, v3)){
-                    		// don't add duplicate entailing edges
-                        		continue; 
-                    	}
-                            	
-                        newEdgeTargets.put(v3,confidence);
-                        
-/*                        //debugging part
-                        String dbgTarget = "The food offering is in need of a improvement";
-                        String dbgSource = "The food is in need of a serious improvement";
-                        if (v1.getTextWithoutDoubleSpaces().equals(dbgSource)){
-                        	if (v3.getTextWithoutDoubleSpaces().equals(dbgTarget)){
-                        		logger.info(v1);
-                        		logger.info(v1.getTextWithoutDoubleSpaces());
-                        		logger.info(v2);
-                        		logger.info(v2.getTextWithoutDoubleSpaces());
-                        		logger.info(v3);
-                        		logger.info(v3.getTextWithoutDoubleSpaces());
-                        		try {
-									System.in.read();
-								} catch (IOException e1) {
-									// TODO Auto-generated catch block
-									e1.printStackTrace();
-								}
-                        	}
-                        }
-*/                        
-                        done = false;
-                    }
-                }
-
-                for (EntailmentUnit v3 : newEdgeTargets.keySet()) {
-                	double confidence = newEdgeTargets.get(v3);
-                	EntailmentRelation closureEdge = new EntailmentRelation(v1, v3, new TEDecisionWithConfidence(confidence, DecisionLabel.Entailment), EdgeType.TRANSITIVE_CLOSURE);
-                	this.addEdge(v1, v3, closureEdge);
-                	logger.info("Added transitive closure edge: "+closureEdge.toString());
-                }
-            }
-        }
+		ReachabilityEngine<EntailmentUnit> engine = new ReachabilityEngine<EntailmentUnit>(this.vertexSet());
+		for (EntailmentUnit v1 : this.vertexSet()){
+			for (EntailmentUnit v2 : getPairIndex().getEntailedNodes(v1)){
+				engine.addEdge(v1, v2, getBestDirectConfidence(v1, v2));
+			}
+		}
+		
+		// Each closure edge gets the min confidence along a path from v1 to v3 (see ReachabilityEngine) 
+		for (ReachabilityEngine.Edge<EntailmentUnit> missingEdge : engine.getMissingEdges()){
+			addTransitiveClosureEdge(missingEdge.getSource(), missingEdge.getTarget(), missingEdge.getConfidence());
+		}
+        // if the changes are recorded for updateTransitiveClosure(), the changes made so far are covered now
+        if (getPairIndex().isClosed()) getPairIndex().setClosed();
 	}	
+	
+	/**
+	 *  Add the transitive closure edges, which are missing due to the changes made since the last transitive closure. 
+	 *  <p> Only the entailment edges added since then (and the node pairs that lost their entailment edges) are looked at,
+	 *  so the cost is proportional to the change rather than to the graph size. 
+	 *  The confidence of a closure edge is the min of the best confidences of the 2 edges it is made of, as in {@link #applyTransitiveClosure()}.
+	 *  <p> If the graph was not closed before by this method (or was changed too much since then), the full transitive closure is applied. 
+	 *  From then on, the changes of entailment edges are recorded for the next update.
+	 */
+	public void updateTransitiveClosure(){
+		EntailmentPairIndex index = getPairIndex();
+		if (!index.isClosed()){
+			applyTransitiveClosure();
+			index.setClosed();
+			return;
+		}
+		
+		// A pair which lost its entailment edges might be closed via an intermediate node.
+		// For any other path x->y->z in the graph before the change, there was an edge x->z (the graph was closed), which is still there.   
+		for (EntailmentUnit[] pair : index.takeRemovedPairs()){
+			EntailmentUnit v1 = pair[0];
+			EntailmentUnit v3 = pair[1];
+			if (!containsVertex(v1) || !containsVertex(v3) || isEntailment(v1, v3)) continue;
+			for (EntailmentUnit v2 : index.getEntailedNodes(v1)){
+				if (v2.equals(v1) || v2.equals(v3)) continue;
+				if (index.isEntailment(v2, v3)){
+					addTransitiveClosureEdge(v1, v3, Math.min(getBestDirectConfidence(v1, v2), getBestDirectConfidence(v2, v3)));
+					break;
+				}
+			}
+		}
+		
+		// Extend each new edge v1->v2 by one entailment step in each direction: v0->v1->v2 and v1->v2->v3.
+		// The closure edges added on the way are new edges themselves, and are extended in the same way.  
+		LinkedList<EntailmentRelation> newEdges = new LinkedList<EntailmentRelation>(index.takeAddedEdges());
+		while (!newEdges.isEmpty()){
+			EntailmentRelation edge = newEdges.removeFirst();
+			EntailmentUnit v1 = edge.getSource();
+			EntailmentUnit v2 = edge.getTarget();
+			if (v1.equals(v2) || !isEntailment(v1, v2)) continue;
+			double confidence = getBestDirectConfidence(v1, v2);
+			
+			for (EntailmentUnit v0 : new ArrayList<EntailmentUnit>(index.getEntailingNodes(v1))){
+				if (v0.equals(v2) || isEntailment(v0, v2)) continue; // don't add self loops and duplicate entailing edges
+				addTransitiveClosureEdge(v0, v2, Math.min(getBestDirectConfidence(v0, v1), confidence));
+			}
+			for (EntailmentUnit v3 : new ArrayList<EntailmentUnit>(index.getEntailedNodes(v2))){
+				if (v3.equals(v1) || isEntailment(v1, v3)) continue; // don't add self loops and duplicate entailing edges
+				addTransitiveClosureEdge(v1, v3, Math.min(confidence, getBestDirectConfidence(v2, v3)));
+			}
+			newEdges.addAll(index.takeAddedEdges());
+		}
+		// the index stops recording, if the closure edges are too many changes: then the rest is added by the full closure 
+		if (!index.isClosed()) applyTransitiveClosure();
+		index.setClosed();
+	}
+	
+	/**
+	 * Add a transitive closure edge with the given confidence
+	 * @param source
+	 * @param target
+	 * @param confidence
+	 */
+	private void addTransitiveClosureEdge(EntailmentUnit source, EntailmentUnit target, double confidence){
+    	EntailmentRelation closureEdge = new EntailmentRelation(source, target, new TEDecisionWithConfidence(confidence, DecisionLabel.Entailment), EdgeType.TRANSITIVE_CLOSURE);
+    	this.addEdge(source, target, closureEdge);
+    	logger.info("Added transitive closure edge: "+closureEdge.toString());
+	}
 		
 	/**
 	 * Returns the transitive reduction of the graph. Does not change the graph itself.
-	 * <p><b>Not tested yet!</b>
+	 * <p> All edges from x to z are removed, if z is entailed by x through another node (x -> y -> ... -> z).
+	 * Cycles are kept, so the reduction has the same entailed nodes as the graph (see {@link ReachabilityEngine#getRedundantEdges()}).
 	 * @return transitive reduction of the graph
 	 */
 	public EntailmentGraphRaw getTransitiveReduction(){   
+		ReachabilityEngine<EntailmentUnit> engine = new ReachabilityEngine<EntailmentUnit>(this.vertexSet());
+		for (EntailmentUnit x : this.vertexSet()){
+			for (EntailmentUnit y : getPairIndex().getEntailedNodes(x)){
+				engine.addEdge(x, y, getBestDirectConfidence(x, y));
+			}
+		}
 		EntailmentGraphRaw reduction = new EntailmentGraphRaw(this.vertexSet(), this.edgeSet());
-		for (EntailmentUnit x : reduction.vertexSet()){
-			for (EntailmentUnit y : reduction.vertexSet()){
-				if (x.equals(y)) continue;
-				for (EntailmentUnit z : reduction.vertexSet()){
-					if (x.equals(z)) continue;
-					if (y.equals(z)) continue;
-					if ((isEntailment(x, y))&&(isEntailment(y, z))) reduction.removeAllEdges(x, z);
-				}
-			}		
+		for (ReachabilityEngine.Edge<EntailmentUnit> redundantEdge : engine.getRedundantEdges()){
+			reduction.removeAllEdges(redundantEdge.getSource(), redundantEdge.getTarget());
 		}
 		return reduction;
 	}
@@ -1010,10 +1101,7 @@ public class EntailmentGraphRaw extends
 	 * @return
 	 */
 	public EntailmentUnit getVertexWithExactText(String text){
-		for (EntailmentUnit eu : this.vertexSet()){
-			if (eu.getText().equals(text)) return eu;
-		}
-		return null;
+		return getVertexIndex().getVertexWithExactText(text);
 	}
 
 	/** Create an edge from sourceVertex to targetVertex with a random decision using {@link RandomEDA}. 
@@ -0,0 +1,268 @@
+package eu.excitementproject.tl.structures.rawgraph;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import eu.excitementproject.eop.common.DecisionLabel;
+
+/**
+ * Per-pair summaries of the edges of an {@link EntailmentGraphRaw}, and the changes of its entailment edges since
+ * the last transitive closure, used by {@link EntailmentGraphRaw#updateTransitiveClosure()}.
+ * <p> For each (source, target) pair with edges, the summary holds the number of entailing edges and the best
+ * confidence of the edges that are not "non-entailment" (as used for the confidence of transitive closure edges).
+ * The summaries are kept in sync by the graph in addEdge()/removeEdge().
+ * <p> Once the graph is transitively closed by {@link EntailmentGraphRaw#updateTransitiveClosure()}, the index records the entailment 
+ * edges added since then, and the pairs that lost their last entailing edge. These are the only places where the closure can be missing edges.
+ * If there are more of these changes than entailment pairs in the graph, the index stops recording them (so a graph, which is 
+ * modified but not closed again, does not keep them forever), and the next update is a full transitive closure.
+ */
+class EntailmentPairIndex {
+
+	/**
+	 * Summary of the edges from one node to another
+	 */
+	static class PairSummary {
+		int entailingEdges = 0;
+		double bestConfidence = 0.0;
+	}
+
+	/**
+	 * The graph this index belongs to. A graph made by clone() shares the fields of the original graph,
+	 * so it has to check that the index is its own (see {@link EntailmentGraphRaw}).
+	 */
+	final Object owner;
+
+	/**
+	 * Summaries by source node and target node
+	 */
+	private final Map<EntailmentUnit, Map<EntailmentUnit, PairSummary>> outgoing = new HashMap<EntailmentUnit, Map<EntailmentUnit, PairSummary>>();
+
+	/**
+	 * The nodes entailing each node (the source nodes of its entailing incoming edges)
+	 */
+	private final Map<EntailmentUnit, Set<EntailmentUnit>> entailing = new HashMap<EntailmentUnit, Set<EntailmentUnit>>();
+
+	/**
+	 * The nodes entailed by each node (the target nodes of its entailing outgoing edges)
+	 */
+	private final Map<EntailmentUnit, Set<EntailmentUnit>> entailed = new HashMap<EntailmentUnit, Set<EntailmentUnit>>();
+
+	/**
+	 * false until the graph was transitively closed
+	 */
+	private boolean closed = false;
+
+	/**
+	 * Number of (source, target) pairs with at least one entailing edge
+	 */
+	private int entailmentPairs = 0;
+
+	/**
+	 * Entailing edges added since the last closure (only recorded when closed = true)
+	 */
+	private List<EntailmentRelation> addedEdges = new ArrayList<EntailmentRelation>();
+
+	/**
+	 * Pairs (source, target) which lost their last entailing edge since the last closure (only recorded when closed = true)
+	 */
+	private List<EntailmentUnit[]> removedPairs = new ArrayList<EntailmentUnit[]>();
+
+	EntailmentPairIndex(Object owner) {
+		this.owner = owner;
+	}
+
+	/**
+	 * Update the summary of the pair of the given edge, which was added to the graph
+	 * @param edge
+	 */
+	void add(EntailmentRelation edge){
+		PairSummary summary = getOrCreate(edge.getSource(), edge.getTarget());
+		if (isEntailing(edge)){
+			summary.entailingEdges++;
+			if (summary.entailingEdges == 1) addEntailment(edge.getSource(), edge.getTarget());
+			if (closed){
+				addedEdges.add(edge);
+				checkChanges();
+			}
+		}
+		if (isNotNonEntailing(edge) && edge.getConfidence() > summary.bestConfidence) summary.bestConfidence = edge.getConfidence();
+	}
+
+	/**
+	 * Re-compute the summary of a pair, after the given edges of the pair were removed from the graph
+	 * @param source
+	 * @param target
+	 * @param remainingEdges - the edges from source to target, which are still in the graph
+	 */
+	void update(EntailmentUnit source, EntailmentUnit target, Set<EntailmentRelation> remainingEdges){
+		PairSummary summary = get(source, target);
+		if (summary == null) return;
+		boolean wasEntailment = summary.entailingEdges > 0;
+		if ((remainingEdges == null) || remainingEdges.isEmpty()){
+			outgoing.get(source).remove(target);
+			if (outgoing.get(source).isEmpty()) outgoing.remove(source);
+			summary = new PairSummary();
+		}
+		else {
+			summary.entailingEdges = 0;
+			summary.bestConfidence = 0.0;
+			for (EntailmentRelation edge : remainingEdges){
+				if (isEntailing(edge)) summary.entailingEdges++;
+				if (isNotNonEntailing(edge) && edge.getConfidence() > summary.bestConfidence) summary.bestConfidence = edge.getConfidence();
+			}
+		}
+		if (wasEntailment && (summary.entailingEdges == 0)){
+			removeEntailment(source, target);
+			if (closed){
+				removedPairs.add(new EntailmentUnit[]{source, target});
+				checkChanges();
+			}
+		}
+	}
+
+	/**
+	 * @param source
+	 * @param target
+	 * @return true if there is at least one entailing edge from source to target
+	 */
+	boolean isEntailment(EntailmentUnit source, EntailmentUnit target){
+		PairSummary summary = get(source, target);
+		return (summary != null) && (summary.entailingEdges > 0);
+	}
+
+	/**
+	 * @param source
+	 * @param target
+	 * @return the best confidence of the edges from source to target, which are not "non-entailment" edges (0 if there's no such edge)
+	 */
+	double getBestConfidence(EntailmentUnit source, EntailmentUnit target){
+		PairSummary summary = get(source, target);
+		if (summary == null) return 0.0;
+		return summary.bestConfidence;
+	}
+
+	/**
+	 * @param node
+	 * @return the nodes with entailing edges to the given node (do not modify)
+	 */
+	Set<EntailmentUnit> getEntailingNodes(EntailmentUnit node){
+		Set<EntailmentUnit> nodes = entailing.get(node);
+		if (nodes == null) return Collections.emptySet();
+		return nodes;
+	}
+
+	/**
+	 * @param node
+	 * @return the nodes with entailing edges from the given node (do not modify)
+	 */
+	Set<EntailmentUnit> getEntailedNodes(EntailmentUnit node){
+		Set<EntailmentUnit> nodes = entailed.get(node);
+		if (nodes == null) return Collections.emptySet();
+		return nodes;
+	}
+
+	/**
+	 * @return true if the graph was transitively closed and the later changes are recorded (see {@link #takeAddedEdges()} and {@link #takeRemovedPairs()})
+	 */
+	boolean isClosed(){
+		return closed;
+	}
+
+	/**
+	 * Mark the graph as transitively closed: forget the changes recorded so far, and start recording new ones
+	 */
+	void setClosed(){
+		closed = true;
+		addedEdges = new ArrayList<EntailmentRelation>();
+		removedPairs = new ArrayList<EntailmentUnit[]>();
+	}
+
+	/**
+	 * @return the entailing edges added since the last call (or since the last closure)
+	 */
+	List<EntailmentRelation> takeAddedEdges(){
+		List<EntailmentRelation> edges = addedEdges;
+		addedEdges = new ArrayList<EntailmentRelation>();
+		return edges;
+	}
+
+	/**
+	 * @return the pairs which lost their last entailing edge since the last call (or since the last closure)
+	 */
+	List<EntailmentUnit[]> takeRemovedPairs(){
+		List<EntailmentUnit[]> pairs = removedPairs;
+		removedPairs = new ArrayList<EntailmentUnit[]>();
+		return pairs;
+	}
+
+	/**
+	 * Stop recording the changes, if there are more of them than entailment pairs (a full closure is not more expensive then)
+	 */
+	private void checkChanges(){
+		if (addedEdges.size() + removedPairs.size() <= entailmentPairs) return;
+		closed = false;
+		addedEdges = new ArrayList<EntailmentRelation>();
+		removedPairs = new ArrayList<EntailmentUnit[]>();
+	}
+
+	private static boolean isEntailing(EntailmentRelation edge){
+		return (edge.getLabel() != null) && edge.getLabel().is(DecisionLabel.Entailment);
+	}
+
+	private static boolean isNotNonEntailing(EntailmentRelation edge){
+		return (edge.getLabel() == null) || !edge.getLabel().is(DecisionLabel.NonEntailment);
+	}
+
+	private PairSummary get(EntailmentUnit source, EntailmentUnit target){
+		Map<EntailmentUnit, PairSummary> targets = outgoing.get(source);
+		if (targets == null) return null;
+		return targets.get(target);
+	}
+
+	private PairSummary getOrCreate(EntailmentUnit source, EntailmentUnit target){
+		Map<EntailmentUnit, PairSummary> targets = outgoing.get(source);
+		if (targets == null){
+			targets = new HashMap<EntailmentUnit, PairSummary>();
+			outgoing.put(source, targets);
+		}
+		PairSummary summary = targets.get(target);
+		if (summary == null){
+			summary = new PairSummary();
+			targets.put(target, summary);
+		}
+		return summary;
+	}
+
+	private void addEntailment(EntailmentUnit source, EntailmentUnit target){
+		entailmentPairs++;
+		addToSet(entailed, source, target);
+		addToSet(entailing, target, source);
+	}
+
+	private void removeEntailment(EntailmentUnit source, EntailmentUnit target){
+		entailmentPairs--;
+		removeFromSet(entailed, source, target);
+		removeFromSet(entailing, target, source);
+	}
+
+	private static void addToSet(Map<EntailmentUnit, Set<EntailmentUnit>> map, EntailmentUnit key, EntailmentUnit value){
+		Set<EntailmentUnit> values = map.get(key);
+		if (values == null){
+			values = new LinkedHashSet<EntailmentUnit>();
+			map.put(key, values);
+		}
+		values.add(value);
+	}
+
+	private static void removeFromSet(Map<EntailmentUnit, Set<EntailmentUnit>> map, EntailmentUnit key, EntailmentUnit value){
+		Set<EntailmentUnit> values = map.get(key);
+		if (values == null) return;
+		values.remove(value);
+		if (values.isEmpty()) map.remove(key);
+	}
+}
@@ -16,6 +16,7 @@ import eu.excitementproject.eop.common.TEDecision;
 import eu.excitementproject.eop.common.exception.ComponentException;
 import eu.excitementproject.eop.lap.LAPException;
 import eu.excitementproject.tl.composition.exceptions.EntailmentGraphRawException;
+import eu.excitementproject.tl.edautils.EDADecisionCache;
 import eu.excitementproject.tl.edautils.RandomEDA;
 import eu.excitementproject.tl.edautils.TEDecisionWithConfidence;
 //import eu.excitementproject.tl.laputils.CASUtils;
@@ -71,6 +72,11 @@ public class EntailmentRelation extends DefaultEdge {
 	 **/
 	CachedLAPAccess lap;
 	
+	/**
+	 * True if the TEdecision was taken from an {@link EDADecisionCache} instead of calling the EDA.
+	 **/
+	boolean cachedDecision = false;
+	
 	
 	/******************************************************************************************
 	 * CONSTRUCTORS
@@ -87,6 +93,49 @@ public class EntailmentRelation extends DefaultEdge {
 		setAttributes(source, target, EdgeType.EDA, eda, lap);
 		computeTEdecision();
 	}
+
+	/** Create an entailment relation by computing TEdecision using the input EDA and LAP, 
+	 * building the text-hypothesis pair in the given JCas instead of the work JCas of the thread ({@link CachedLAPAccess#getWorkJCas()}).
+	 * <p>Use this constructor when several threads compute decisions at the same time, each with its own EDA and its own pair CAS. 
+	 * @param source
+	 * @param target
+	 * @param eda
+	 * @param lap
+	 * @param pairCAS - the JCas to be (re)used for the text-hypothesis pair
+	 * @throws EntailmentGraphRawException
+	 */
+	public EntailmentRelation(EntailmentUnit source, EntailmentUnit target, EDABasic<?> eda, CachedLAPAccess lap, JCas pairCAS) throws EntailmentGraphRawException {
+		setAttributes(source, target, EdgeType.EDA, eda, lap);
+		computeTEdecision(pairCAS);
+	}
+
+	/** Create an entailment relation by looking up the TEdecision in the given decision cache, 
+	 * and computing it using the input EDA and LAP (in the given JCas) only if it is not cached.
+	 * Newly computed decisions are added to the cache.
+	 * @param source
+	 * @param target
+	 * @param eda
+	 * @param lap
+	 * @param pairCAS - the JCas to be (re)used for the text-hypothesis pair
+	 * @param decisionCache - the cache of EDA decisions (can be null)
+	 * @throws EntailmentGraphRawException
+	 */
+	public EntailmentRelation(EntailmentUnit source, EntailmentUnit target, EDABasic<?> eda, CachedLAPAccess lap, JCas pairCAS, EDADecisionCache decisionCache) throws EntailmentGraphRawException {
+		setAttributes(source, target, EdgeType.EDA, eda, lap);
+		if (decisionCache == null) {
+			computeTEdecision(pairCAS);
+			return;
+		}
+		String text = source.getTextWithoutDoubleSpaces();
+		String hypothesis = target.getTextWithoutDoubleSpaces();
+		edge = decisionCache.getDecision(text, hypothesis);
+		if (edge != null) {
+			cachedDecision = true;
+			return;
+		}
+		computeTEdecision(pairCAS);
+		decisionCache.putDecision(text, hypothesis, edge);
+	}
 		
 	/**
 	 * Create an entailment relation in cases when TEDecision is known (don't specify the EDA).
@@ -129,6 +178,13 @@ public class EntailmentRelation extends DefaultEdge {
 		return lap;
 	}
 
+	/**
+	 * @return true if the TEdecision was taken from an {@link EDADecisionCache}, i.e. no EDA call was made to produce it
+	 */
+	public boolean isCachedDecision() {
+		return cachedDecision;
+	}
+
 	/**
 	 * @return the edgeType
 	 */
@@ -199,9 +255,22 @@ public class EntailmentRelation extends DefaultEdge {
 	 * @throws EntailmentGraphRawException
 	 */
 	protected void computeTEdecision() throws EntailmentGraphRawException {	
-		JCas pairCAS;
 		try {
-			pairCAS = generateTHPairCAS();
+			computeTEdecision(lap.getWorkJCas());
+		} catch (LAPException e) {
+			throw new EntailmentGraphRawException(e.getMessage());
+		}
+	}
+
+	/**
+	 * Computes TEdecision using this entailment relation's eda.
+	 * The JCAS representing the text and hypothesis pair is generated in the given pairCAS using the entailment relation's lap.   
+	 * @param pairCAS - the JCas to be (re)used for the text-hypothesis pair
+	 * @throws EntailmentGraphRawException
+	 */
+	protected void computeTEdecision(JCas pairCAS) throws EntailmentGraphRawException {	
+		try {
+			pairCAS = generateTHPairCAS(pairCAS);
 			try {
 				edge = eda.process(pairCAS);
 //				if (edge.getConfidence() > 0.5) {
@@ -226,10 +295,24 @@ public class EntailmentRelation extends DefaultEdge {
 	 * @throws EntailmentGraphRawException
 	 */
 	protected JCas generateTHPairCAS() throws EntailmentGraphRawException{
+		try {
+			return generateTHPairCAS(lap.getWorkJCas());
+		} catch (LAPException e) {
+			throw new EntailmentGraphRawException(e.getMessage());
+		}
+	}
+
+	/**
+	 * Prepare the given {@link JCas} object to represent the text (source) and hypothesis (target) pair
+	 * @param pairCAS - the JCas to be filled
+	 * @return the given JCas, holding the text and hypothesis pair
+	 * @throws EntailmentGraphRawException
+	 */
+	protected JCas generateTHPairCAS(JCas pairCAS) throws EntailmentGraphRawException{
 		// extract annotations from "from" and "to" to form the JCas object that is used as input to the EDA
 		logger.info("Generating a cass for the pair: \n \tTEXT: " + source.getText() + "\n \tHYPOTHESIS: " + target.getText());
 		try {
-			lap.annotateSingleTHPairCAS(source.getTextWithoutDoubleSpaces(), target.getTextWithoutDoubleSpaces(), lap.workJCas);			
+			lap.annotateSingleTHPairCAS(source.getTextWithoutDoubleSpaces(), target.getTextWithoutDoubleSpaces(), pairCAS);			
 
 /*			// some printouts trying to understand why BIUTEE LAP fails
 			logger.info("generateTHPairCAS:   "+lap.workJCas.getDocumentLanguage());
@@ -252,7 +335,7 @@ public class EntailmentRelation extends DefaultEdge {
 				e.printStackTrace();
 			}
 */
-			return lap.workJCas;
+			return pairCAS;
 
 		} catch (LAPException e) {
 			throw new EntailmentGraphRawException("Cannot generate THPairCAS for edge: " + source.getText() + " -> " + target.getText() +"\n"+e.getMessage());
@@ -49,6 +49,11 @@ public class EntailmentUnit{
 	 */
 	protected int level = UNKNOWN_LEVEL;
 	
+	/**
+	 * The text of the node with double spaces reduced to single space (computed on first use)
+	 */
+	private String textWithoutDoubleSpaces = null;
+	
 	
 	/******************************************************************************************
 	 * CONSTRUCTORS
@@ -332,7 +337,8 @@ public class EntailmentUnit{
 	 * @return the text of the node with double spaces reduced to single space
 	 */
 	public String getTextWithoutDoubleSpaces(){
-		return this.getText().trim().replaceAll(" +", " ");
+		if (textWithoutDoubleSpaces == null) textWithoutDoubleSpaces = getTextWithoutDoubleSpaces(this.getText());
+		return textWithoutDoubleSpaces;
 	}
 	
 	/**
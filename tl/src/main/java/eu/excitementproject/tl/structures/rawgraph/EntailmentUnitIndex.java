@@ -0,0 +1,201 @@
+package eu.excitementproject.tl.structures.rawgraph;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Hashtable;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import eu.excitementproject.tl.structures.fragmentgraph.EntailmentUnitMention;
+
+/**
+ * Indexes of the vertices of an {@link EntailmentGraphRaw}:
+ * <ul>
+ * <li> by their texts, used by {@link EntailmentGraphRaw#getVertexWithText(String)} and {@link EntailmentGraphRaw#getVertexWithExactText(String)}.
+ * A vertex is indexed under its canonical text and under the texts of all its mentions,
+ * with the same normalization as {@link EntailmentUnit#isTextIncludedOrRelevant(String)}
+ * (extra spaces and case are ignored), so that a lookup gives the same vertex as scanning the vertex set.
+ * <li> by the fragment graphs they were seen in (identified by the complete statement text, see {@link EntailmentUnit#isPartOfFragmentGraph(String)}),
+ * and by level within each fragment graph, used by {@link EntailmentGraphRaw#getFragmentGraphNodes(EntailmentUnit, String)}.
+ * <li> the base statements, used by {@link EntailmentGraphRaw#getBaseStatements()}.
+ * </ul>
+ * <p> The indexes are kept in sync by the graph: vertices are added/removed in addVertex()/removeVertex(),
+ * and new mention texts and complete statements are added when a mention is added to an existing vertex.
+ */
+class EntailmentUnitIndex {
+
+	/**
+	 * The graph this index belongs to. A graph made by clone() shares the fields of the original graph,
+	 * so it has to check that the index is its own (see {@link EntailmentGraphRaw}).
+	 */
+	final Object owner;
+
+	/**
+	 * Vertices by their normalized texts (canonical text and mention texts), in the order they were indexed
+	 */
+	private final Map<String, List<EntailmentUnit>> verticesByKey = new HashMap<String, List<EntailmentUnit>>();
+
+	/**
+	 * Vertices by their canonical text (which is unique in the graph, see {@link EntailmentUnit#equals(Object)})
+	 */
+	private final Map<String, EntailmentUnit> verticesByText = new HashMap<String, EntailmentUnit>();
+
+	/**
+	 * Vertices by complete statement text (i.e. fragment graph) and level
+	 */
+	private final Map<String, Map<Integer, Set<EntailmentUnit>>> verticesByFragmentGraph = new HashMap<String, Map<Integer, Set<EntailmentUnit>>>();
+
+	/**
+	 * The base statements (level 0 vertices), in the order they were indexed
+	 */
+	private final Set<EntailmentUnit> baseStatements = new LinkedHashSet<EntailmentUnit>();
+
+	EntailmentUnitIndex(Object owner) {
+		this.owner = owner;
+	}
+
+	/**
+	 * Index the given vertex under its text, the texts of its mentions and its complete statements
+	 * @param eu
+	 */
+	void add(EntailmentUnit eu){
+		verticesByText.put(eu.getText(), eu);
+		addKey(getKey(eu.getText()), eu);
+		for (EntailmentUnitMention mention : eu.getMentions()){
+			addKey(getKey(mention.getText()), eu);
+		}
+		for (String completeStatementText : eu.getCompleteStatementTexts()){
+			addToFragmentGraph(completeStatementText, eu);
+		}
+		if (eu.isBaseStatement()) baseStatements.add(eu);
+	}
+
+	/**
+	 * Index the given vertex under the text of a mention, which was added to it, and under the complete statement of the mention
+	 * @param eu
+	 * @param mentionText
+	 * @param completeStatementText
+	 */
+	void addMention(EntailmentUnit eu, String mentionText, String completeStatementText){
+		addKey(getKey(mentionText), eu);
+		addToFragmentGraph(completeStatementText, eu);
+	}
+
+	/**
+	 * Remove the given vertex from the index
+	 * @param eu
+	 */
+	void remove(EntailmentUnit eu){
+		if (verticesByText.get(eu.getText()) == eu) verticesByText.remove(eu.getText());
+		removeKey(getKey(eu.getText()), eu);
+		for (EntailmentUnitMention mention : eu.getMentions()){
+			removeKey(getKey(mention.getText()), eu);
+		}
+		for (String completeStatementText : eu.getCompleteStatementTexts()){
+			removeFromFragmentGraph(completeStatementText, eu);
+		}
+		baseStatements.remove(eu);
+	}
+
+	/**
+	 * @param text
+	 * @return the first indexed vertex, which has the given text (ignoring case and extra spaces) as its text or as one of its mentions texts, or null if there is no such vertex
+	 */
+	EntailmentUnit getVertexWithText(String text){
+		List<EntailmentUnit> vertices = verticesByKey.get(getKey(text));
+		if (vertices == null) return null;
+		return vertices.get(0);
+	}
+
+	/**
+	 * @param text
+	 * @return the vertex with exactly the given canonical text, or null if there is no such vertex
+	 */
+	EntailmentUnit getVertexWithExactText(String text){
+		return verticesByText.get(text);
+	}
+
+	/**
+	 * @param completeStatementText
+	 * @return a new table with the vertices of the fragment graph with the given complete statement by level (empty if there is no such fragment graph)
+	 */
+	Hashtable<Integer, Set<EntailmentUnit>> getFragmentGraphNodes(String completeStatementText){
+		Hashtable<Integer, Set<EntailmentUnit>> nodesByLevel = new Hashtable<Integer, Set<EntailmentUnit>>();
+		Map<Integer, Set<EntailmentUnit>> indexed = verticesByFragmentGraph.get(completeStatementText);
+		if (indexed == null) return nodesByLevel;
+		for (Map.Entry<Integer, Set<EntailmentUnit>> entry : indexed.entrySet()){
+			nodesByLevel.put(entry.getKey(), new HashSet<EntailmentUnit>(entry.getValue()));
+		}
+		return nodesByLevel;
+	}
+
+	/**
+	 * @return a new set with the base statements
+	 */
+	Set<EntailmentUnit> getBaseStatements(){
+		return new HashSet<EntailmentUnit>(baseStatements);
+	}
+
+	/**
+	 * Get the index key of a text: the text with double spaces reduced to single space (see {@link EntailmentUnit#getTextWithoutDoubleSpaces(String)}),
+	 * and each character case-folded as done by {@link String#equalsIgnoreCase(String)}.
+	 * Two texts have the same key if and only if their texts without double spaces are equal ignoring case.
+	 * @param text
+	 * @return the key
+	 */
+	static String getKey(String text){
+		String trimmed = text.trim();
+		StringBuilder key = new StringBuilder(trimmed.length());
+		char previous = 0;
+		for (int i = 0; i < trimmed.length(); i++){
+			char c = trimmed.charAt(i);
+			if (c == ' ' && previous == ' ') continue;
+			key.append(Character.toLowerCase(Character.toUpperCase(c)));
+			previous = c;
+		}
+		return key.toString();
+	}
+
+	private void addKey(String key, EntailmentUnit eu){
+		List<EntailmentUnit> vertices = verticesByKey.get(key);
+		if (vertices == null){
+			vertices = new ArrayList<EntailmentUnit>(1);
+			verticesByKey.put(key, vertices);
+		}
+		if (!vertices.contains(eu)) vertices.add(eu);
+	}
+
+	private void removeKey(String key, EntailmentUnit eu){
+		List<EntailmentUnit> vertices = verticesByKey.get(key);
+		if (vertices == null) return;
+		vertices.remove(eu);
+		if (vertices.isEmpty()) verticesByKey.remove(key);
+	}
+
+	private void addToFragmentGraph(String completeStatementText, EntailmentUnit eu){
+		Map<Integer, Set<EntailmentUnit>> nodesByLevel = verticesByFragmentGraph.get(completeStatementText);
+		if (nodesByLevel == null){
+			nodesByLevel = new HashMap<Integer, Set<EntailmentUnit>>();
+			verticesByFragmentGraph.put(completeStatementText, nodesByLevel);
+		}
+		Set<EntailmentUnit> nodes = nodesByLevel.get(eu.getLevel());
+		if (nodes == null){
+			nodes = new HashSet<EntailmentUnit>();
+			nodesByLevel.put(eu.getLevel(), nodes);
+		}
+		nodes.add(eu);
+	}
+
+	private void removeFromFragmentGraph(String completeStatementText, EntailmentUnit eu){
+		Map<Integer, Set<EntailmentUnit>> nodesByLevel = verticesByFragmentGraph.get(completeStatementText);
+		if (nodesByLevel == null) return;
+		Set<EntailmentUnit> nodes = nodesByLevel.get(eu.getLevel());
+		if (nodes == null) return;
+		nodes.remove(eu);
+		if (nodes.isEmpty()) nodesByLevel.remove(eu.getLevel());
+		if (nodesByLevel.isEmpty()) verticesByFragmentGraph.remove(completeStatementText);
+	}
+}
@@ -0,0 +1,68 @@
+package eu.excitementproject.tl.structures.rawgraph;
+
+import org.jgrapht.graph.DirectedMaskSubgraph;
+import org.jgrapht.graph.MaskFunctor;
+
+import eu.excitementproject.eop.common.DecisionLabel;
+
+/**
+ * Read-only view of an {@link EntailmentGraphRaw}, which contains all its nodes, and only the edges
+ * with the given decision label and confidence >= the given threshold.
+ * <p> The view does not copy the graph: the edges are filtered when the view is read, and changes of the underlying graph are seen by the view.
+ * So several thresholds can be tried on a large graph without a copy of the graph per threshold.
+ * Methods changing the view throw {@link UnsupportedOperationException} (see {@link DirectedMaskSubgraph}).
+ */
+public class FilteredEntailmentGraphRaw extends DirectedMaskSubgraph<EntailmentUnit, EntailmentRelation> {
+
+	private final EntailmentGraphRaw graph;
+	private final DecisionLabel label;
+	private final double confidenceThreshold;
+
+	/**
+	 * @param graph - the underlying graph
+	 * @param label - the decision label of the edges in the view (e.g. {@link DecisionLabel#Entailment})
+	 * @param confidenceThreshold - the minimal confidence of the edges in the view
+	 */
+	public FilteredEntailmentGraphRaw(EntailmentGraphRaw graph, final DecisionLabel label, final double confidenceThreshold) {
+		super(graph, new MaskFunctor<EntailmentUnit, EntailmentRelation>() {
+			@Override
+			public boolean isEdgeMasked(EntailmentRelation edge) {
+				return !isIncluded(edge, label, confidenceThreshold);
+			}
+
+			@Override
+			public boolean isVertexMasked(EntailmentUnit vertex) {
+				return false;
+			}
+		});
+		this.graph = graph;
+		this.label = label;
+		this.confidenceThreshold = confidenceThreshold;
+	}
+
+	/**
+	 * @return the underlying graph
+	 */
+	public EntailmentGraphRaw getGraph() {
+		return graph;
+	}
+
+	public DecisionLabel getLabel() {
+		return label;
+	}
+
+	public double getConfidenceThreshold() {
+		return confidenceThreshold;
+	}
+
+	/**
+	 * @param edge
+	 * @param label
+	 * @param confidenceThreshold
+	 * @return true if the edge has the given label and confidence >= the threshold
+	 */
+	private static boolean isIncluded(EntailmentRelation edge, DecisionLabel label, double confidenceThreshold) {
+		if ((edge.getLabel() == null) || !edge.getLabel().is(label)) return false;
+		return edge.getConfidence() >= confidenceThreshold;
+	}
+}
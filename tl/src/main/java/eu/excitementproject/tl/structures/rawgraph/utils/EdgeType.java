@@ -12,6 +12,8 @@ public enum EdgeType { // note that the types are not mutually exclusive, choice
 	FRAGMENT_GRAPH,
 	INDUCED, 
 	MANUAL_ANNOTATION,
+	PRUNED, // non-entailment decision for a pair, which was not sent to the EDA (see LexicalOverlapBlocker)
+	UNDECIDED, // unknown decision for a pair, which was not sent to the EDA since the merge budget was used up
 	
 	TRANSITIVE_CLOSURE,
 	DIRECT,
@@ -40,6 +42,8 @@ public enum EdgeType { // note that the types are not mutually exclusive, choice
 		if (str.equals("FRAGMENT_GRAPH")) return FRAGMENT_GRAPH;
 		if (str.equals("INDUCED")) return INDUCED;
 		if (str.equals("MANUAL_ANNOTATION")) return MANUAL_ANNOTATION;
+		if (str.equals("PRUNED")) return PRUNED;
+		if (str.equals("UNDECIDED")) return UNDECIDED;
 		if (str.equals("DIRECT")) return DIRECT;
 		if (str.equals("TRANSITIVE_CLOSURE")) return TRANSITIVE_CLOSURE;
 		
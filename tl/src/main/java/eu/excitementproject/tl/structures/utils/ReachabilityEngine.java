@@ -0,0 +1,486 @@
+package eu.excitementproject.tl.structures.utils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+/**
+ * Computes the transitive closure and the transitive reduction of a directed graph with edge confidences,
+ * for the entailment graphs ({@link eu.excitementproject.tl.structures.rawgraph.EntailmentGraphRaw},
+ * {@link eu.excitementproject.tl.structures.collapsedgraph.EntailmentGraphCollapsed} and
+ * {@link eu.excitementproject.tl.structures.fragmentgraph.FragmentGraph}).
+ * <p> The vertices are mapped to dense int ids, and the set of nodes reachable from each node is kept as a {@link BitSet}.
+ * Cycles are first collapsed into strongly connected components (Tarjan), and the components are visited in
+ * reverse topological order, so the reachable set of a component is the union (word by word) of the reachable
+ * sets of the components it has edges to.
+ * <p> The confidence of a reachable pair is the min confidence along one path from the source to the target:
+ * the path through the most confident first step that reaches the target.
+ * Within a cycle, the path with the best min confidence is used.
+ * <p> The engine does not change the graph: the caller adds the edges given by {@link #getMissingEdges()}, or removes
+ * the edges given by {@link #getRedundantEdges()}.
+ * <pre>
+ * ReachabilityEngine&lt;V&gt; engine = new ReachabilityEngine&lt;V&gt;(graph.vertexSet());
+ * for (E edge : graph.edgeSet()) engine.addEdge(source, target, confidence);
+ * for (ReachabilityEngine.Edge&lt;V&gt; e : engine.getMissingEdges()) { add closure edge ... }
+ * </pre>
+ * @param <V> vertex type
+ */
+public class ReachabilityEngine<V> {
+
+	/**
+	 * A (source, target) pair with a confidence, given by the engine
+	 * @param <V> vertex type
+	 */
+	public static class Edge<V> {
+		private final V source;
+		private final V target;
+		private final double confidence;
+
+		Edge(V source, V target, double confidence) {
+			this.source = source;
+			this.target = target;
+			this.confidence = confidence;
+		}
+
+		public V getSource() {
+			return source;
+		}
+
+		public V getTarget() {
+			return target;
+		}
+
+		/**
+		 * @return the min confidence along the path the edge stands for
+		 */
+		public double getConfidence() {
+			return confidence;
+		}
+
+		@Override
+		public String toString() {
+			return source + " -> " + target + " (" + confidence + ")";
+		}
+	}
+
+	/**
+	 * One step from node a to node b, with the confidence of the path it belongs to
+	 */
+	private static class Step {
+		final int from;
+		final int to;
+		final double confidence;
+
+		Step(int from, int to, double confidence) {
+			this.from = from;
+			this.to = to;
+			this.confidence = confidence;
+		}
+	}
+
+	private static final Comparator<Step> MOST_CONFIDENT_FIRST = new Comparator<Step>() {
+		@Override
+		public int compare(Step s1, Step s2) {
+			return Double.compare(s2.confidence, s1.confidence);
+		}
+	};
+
+	private final List<V> vertices;
+	private final Map<V, Integer> ids;
+
+	/**
+	 * Direct edges by source id: target id -> best confidence, in the order they were added
+	 */
+	private final List<Map<Integer, Double>> directEdges;
+
+	// computed by computeComponents(), reset by addEdge()
+	private boolean componentsComputed = false;
+	private int[][] successors;
+	private double[][] successorConfidences;
+	private int[] component; // component id of each node
+	private List<int[]> components; // members of each component, in reverse topological order
+
+	// computed by compute(), reset by addEdge()
+	private boolean computed = false;
+	private BitSet[] reachable; // by component id: the nodes reachable from (any member of) the component, including the members of a cycle
+	private int[][] targets; // by node id: the reachable nodes, except the node itself, in increasing id order
+	private double[][] confidences; // by node id: the confidences of the pairs in targets
+
+	/**
+	 * @param vertices - the vertices of the graph. Edges can only be added between these vertices.
+	 */
+	public ReachabilityEngine(Collection<V> vertices) {
+		this.vertices = new ArrayList<V>(vertices);
+		this.ids = new HashMap<V, Integer>();
+		this.directEdges = new ArrayList<Map<Integer, Double>>(this.vertices.size());
+		for (int i = 0; i < this.vertices.size(); i++) {
+			ids.put(this.vertices.get(i), i);
+			directEdges.add(null);
+		}
+	}
+
+	/**
+	 * Add an edge. If there's already an edge from source to target, the best of the confidences is kept. Self loops are ignored.
+	 * @param source
+	 * @param target
+	 * @param confidence
+	 */
+	public void addEdge(V source, V target, double confidence) {
+		int s = getId(source);
+		int t = getId(target);
+		if (s == t) return;
+		Map<Integer, Double> edges = directEdges.get(s);
+		if (edges == null) {
+			edges = new LinkedHashMap<Integer, Double>();
+			directEdges.set(s, edges);
+		}
+		Double existing = edges.get(t);
+		if ((existing == null) || (existing < confidence)) edges.put(t, confidence);
+		componentsComputed = false;
+		computed = false;
+	}
+
+	/**
+	 * Get the strongly connected components of the graph (Tarjan), in time linear in the number of vertices and edges.
+	 * The reachable sets are not computed.
+	 * @return the components (each a set of vertices, including single vertices which are not in a cycle), in reverse topological order:
+	 * a component is listed after all components it has edges to
+	 */
+	public List<Set<V>> getComponents() {
+		computeComponents();
+		List<Set<V>> result = new ArrayList<Set<V>>(components.size());
+		for (int[] members : components) {
+			Set<V> component = new LinkedHashSet<V>();
+			for (int m : members) component.add(vertices.get(m));
+			result.add(component);
+		}
+		return result;
+	}
+
+	/**
+	 * @param source
+	 * @param target
+	 * @return true if target is another node than source, and there is a path from source to target
+	 */
+	public boolean isReachable(V source, V target) {
+		compute();
+		int s = getId(source);
+		return reachable[component[s]].get(getId(target)) && (s != getId(target));
+	}
+
+	/**
+	 * @return the pairs (source, target) where target is reachable from source, but there is no direct edge from source to target,
+	 * with the confidence of a path from source to target. Self loops are not included.
+	 */
+	public List<Edge<V>> getMissingEdges() {
+		compute();
+		List<Edge<V>> missing = new ArrayList<Edge<V>>();
+		for (int s = 0; s < vertices.size(); s++) {
+			Map<Integer, Double> direct = directEdges.get(s);
+			for (int i = 0; i < targets[s].length; i++) {
+				int t = targets[s][i];
+				if ((direct != null) && direct.containsKey(t)) continue;
+				missing.add(new Edge<V>(vertices.get(s), vertices.get(t), confidences[s][i]));
+			}
+		}
+		return missing;
+	}
+
+	/**
+	 * Get the edges, which are not part of the transitive reduction. The reduction is computed on the graph of the components
+	 * (cycles collapsed): an edge between two components is kept if the target component cannot be reached through a third component,
+	 * and then only the most confident edge between the two components is kept. The edges within a cycle are all kept.
+	 * So the graph has the same reachable pairs after the redundant edges are removed, and for a graph without cycles this is the usual transitive reduction.
+	 * <p> The confidence given for a redundant edge source->target is the one of the best other path source->node->...->target.
+	 * @return the redundant edges
+	 */
+	public List<Edge<V>> getRedundantEdges() {
+		compute();
+		List<Edge<V>> redundant = new ArrayList<Edge<V>>();
+		for (int c = 0; c < components.size(); c++) {
+			// the edges from this component to each next component
+			Map<Integer, List<Step>> exitsByComponent = new LinkedHashMap<Integer, List<Step>>();
+			for (int a : components.get(c)) {
+				for (int i = 0; i < successors[a].length; i++) {
+					int d = component[successors[a][i]];
+					if (d == c) continue;
+					List<Step> exits = exitsByComponent.get(d);
+					if (exits == null) {
+						exits = new ArrayList<Step>();
+						exitsByComponent.put(d, exits);
+					}
+					exits.add(new Step(a, successors[a][i], successorConfidences[a][i]));
+				}
+			}
+			for (Map.Entry<Integer, List<Step>> entry : exitsByComponent.entrySet()) {
+				int d = entry.getKey();
+				int firstMember = components.get(d)[0];
+				boolean throughOther = false;
+				for (int other : exitsByComponent.keySet()) {
+					if ((other != d) && reachable[other].get(firstMember)) {
+						throughOther = true;
+						break;
+					}
+				}
+				List<Step> exits = entry.getValue();
+				Step kept = null;
+				if (!throughOther) {
+					for (Step exit : exits) {
+						if ((kept == null) || (exit.confidence > kept.confidence)) kept = exit;
+					}
+				}
+				for (Step exit : exits) {
+					if (exit != kept) redundant.add(new Edge<V>(vertices.get(exit.from), vertices.get(exit.to), getOtherPathConfidence(exit.from, exit.to)));
+				}
+			}
+		}
+		return redundant;
+	}
+
+	/**
+	 * @param s
+	 * @param t
+	 * @return the best confidence of a path from s to t, which does not start with the edge s->t (negative infinity if there's no such path)
+	 */
+	private double getOtherPathConfidence(int s, int t) {
+		double best = Double.NEGATIVE_INFINITY;
+		for (int j = 0; j < successors[s].length; j++) {
+			int y = successors[s][j];
+			if ((y == t) || !reachable[component[y]].get(t)) continue;
+			best = Math.max(best, Math.min(successorConfidences[s][j], getConfidence(y, t)));
+		}
+		return best;
+	}
+
+	/**
+	 * @param v
+	 * @return the id of the given vertex
+	 * @throws IllegalArgumentException if v is not one of the vertices the engine was created with
+	 */
+	private int getId(V v) {
+		Integer id = ids.get(v);
+		if (id == null) throw new IllegalArgumentException("Unknown vertex: " + v);
+		return id;
+	}
+
+	/**
+	 * @param s
+	 * @param t
+	 * @return the confidence of the (reachable) pair s,t; positive infinity if s = t
+	 */
+	private double getConfidence(int s, int t) {
+		if (s == t) return Double.POSITIVE_INFINITY;
+		int i = Arrays.binarySearch(targets[s], t);
+		return confidences[s][i];
+	}
+
+	/**
+	 * Compute the components, unless already computed
+	 */
+	private void computeComponents() {
+		if (componentsComputed) return;
+		int n = vertices.size();
+		successors = new int[n][];
+		successorConfidences = new double[n][];
+		for (int s = 0; s < n; s++) {
+			Map<Integer, Double> edges = directEdges.get(s);
+			if (edges == null) edges = Collections.emptyMap();
+			successors[s] = new int[edges.size()];
+			successorConfidences[s] = new double[edges.size()];
+			int i = 0;
+			for (Map.Entry<Integer, Double> edge : edges.entrySet()) {
+				successors[s][i] = edge.getKey();
+				successorConfidences[s][i] = edge.getValue();
+				i++;
+			}
+		}
+		findComponents();
+		componentsComputed = true;
+	}
+
+	/**
+	 * Compute the components, the reachable sets and the confidences, unless already computed
+	 */
+	private void compute() {
+		if (computed) return;
+		computeComponents();
+		int n = vertices.size();
+		reachable = new BitSet[components.size()];
+		targets = new int[n][];
+		confidences = new double[n][];
+		// a component is completed after all components it has edges to, so their reachable sets are known
+		for (int c = 0; c < components.size(); c++) {
+			computeComponent(c);
+		}
+		computed = true;
+	}
+
+	/**
+	 * Compute the reachable set of the given component, and the targets and confidences of its members
+	 * @param c
+	 */
+	private void computeComponent(int c) {
+		int n = vertices.size();
+		int[] members = components.get(c);
+		BitSet reach = new BitSet(n);
+		if (members.length > 1) {
+			for (int m : members) reach.set(m);
+		}
+
+		// steps leaving the component, the most confident first
+		List<Step> exits = new ArrayList<Step>();
+		for (int a : members) {
+			for (int i = 0; i < successors[a].length; i++) {
+				if (component[successors[a][i]] != c) exits.add(new Step(a, successors[a][i], successorConfidences[a][i]));
+			}
+		}
+		Collections.sort(exits, MOST_CONFIDENT_FIRST);
+
+		// each node outside the component is reached by the first step, which reaches it
+		BitSet outside = new BitSet(n);
+		int[] exitMember = new int[n];
+		double[] exitConfidence = new double[n];
+		for (Step exit : exits) {
+			BitSet newNodes = (BitSet) reachable[component[exit.to]].clone();
+			newNodes.set(exit.to);
+			newNodes.andNot(outside);
+			for (int t = newNodes.nextSetBit(0); t >= 0; t = newNodes.nextSetBit(t + 1)) {
+				exitMember[t] = exit.from;
+				exitConfidence[t] = Math.min(exit.confidence, getConfidence(exit.to, t));
+			}
+			outside.or(newNodes);
+		}
+		reach.or(outside);
+		reachable[c] = reach;
+
+		Map<Integer, Integer> position = new HashMap<Integer, Integer>();
+		for (int i = 0; i < members.length; i++) position.put(members[i], i);
+		for (int m : members) {
+			double[] inside = (members.length > 1) ? getBestPathConfidences(m, c, members, position) : null;
+			int size = reach.cardinality() - (reach.get(m) ? 1 : 0);
+			int[] mTargets = new int[size];
+			double[] mConfidences = new double[size];
+			int i = 0;
+			for (int t = reach.nextSetBit(0); t >= 0; t = reach.nextSetBit(t + 1)) {
+				if (t == m) continue;
+				mTargets[i] = t;
+				if (component[t] == c) mConfidences[i] = inside[position.get(t)];
+				else if (exitMember[t] == m) mConfidences[i] = exitConfidence[t];
+				else mConfidences[i] = Math.min(inside[position.get(exitMember[t])], exitConfidence[t]);
+				i++;
+			}
+			targets[m] = mTargets;
+			confidences[m] = mConfidences;
+		}
+	}
+
+	/**
+	 * Find the paths with the best min confidence from the given node to the other members of its component (Dijkstra)
+	 * @param source
+	 * @param c - the component of source
+	 * @param members - the members of c
+	 * @param position - the position of each member in members
+	 * @return the best min confidence to each member, by position (positive infinity for the source itself)
+	 */
+	private double[] getBestPathConfidences(int source, int c, int[] members, Map<Integer, Integer> position) {
+		double[] best = new double[members.length];
+		Arrays.fill(best, Double.NEGATIVE_INFINITY);
+		boolean[] done = new boolean[members.length];
+		PriorityQueue<Step> queue = new PriorityQueue<Step>(members.length, MOST_CONFIDENT_FIRST);
+		best[position.get(source)] = Double.POSITIVE_INFINITY;
+		queue.add(new Step(source, source, Double.POSITIVE_INFINITY));
+		while (!queue.isEmpty()) {
+			Step step = queue.poll();
+			int p = position.get(step.to);
+			if (done[p]) continue;
+			done[p] = true;
+			for (int i = 0; i < successors[step.to].length; i++) {
+				int next = successors[step.to][i];
+				if (component[next] != c) continue;
+				double confidence = Math.min(step.confidence, successorConfidences[step.to][i]);
+				int q = position.get(next);
+				if (!done[q] && (confidence > best[q])) {
+					best[q] = confidence;
+					queue.add(new Step(step.to, next, confidence));
+				}
+			}
+		}
+		return best;
+	}
+
+	/**
+	 * Find the strongly connected components (Tarjan), without recursion.
+	 * The components are numbered in the order they are completed, which is a reverse topological order.
+	 */
+	private void findComponents() {
+		int n = vertices.size();
+		component = new int[n];
+		components = new ArrayList<int[]>();
+		int[] index = new int[n];
+		int[] lowLink = new int[n];
+		boolean[] onStack = new boolean[n];
+		Arrays.fill(index, -1);
+		int[] stack = new int[n];
+		int stackSize = 0;
+		int[] callStack = new int[n]; // nodes being visited
+		int[] nextSuccessor = new int[n]; // by node: the position of the next successor to visit
+		int counter = 0;
+
+		for (int root = 0; root < n; root++) {
+			if (index[root] >= 0) continue;
+			int depth = 0;
+			callStack[depth++] = root;
+			index[root] = lowLink[root] = counter++;
+			stack[stackSize++] = root;
+			onStack[root] = true;
+			nextSuccessor[root] = 0;
+			while (depth > 0) {
+				int v = callStack[depth - 1];
+				if (nextSuccessor[v] < successors[v].length) {
+					int w = successors[v][nextSuccessor[v]++];
+					if (index[w] < 0) {
+						index[w] = lowLink[w] = counter++;
+						stack[stackSize++] = w;
+						onStack[w] = true;
+						nextSuccessor[w] = 0;
+						callStack[depth++] = w;
+					}
+					else if (onStack[w] && (index[w] < lowLink[v])) {
+						lowLink[v] = index[w];
+					}
+					continue;
+				}
+				// all successors of v visited
+				depth--;
+				if (lowLink[v] == index[v]) {
+					int size = 0;
+					while (stack[stackSize - 1 - size] != v) size++;
+					size++;
+					int[] members = new int[size];
+					for (int i = 0; i < size; i++) {
+						int w = stack[--stackSize];
+						onStack[w] = false;
+						component[w] = components.size();
+						members[i] = w;
+					}
+					Arrays.sort(members);
+					components.add(members);
+				}
+				if (depth > 0) {
+					int parent = callStack[depth - 1];
+					if (lowLink[v] < lowLink[parent]) lowLink[parent] = lowLink[v];
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,143 @@
+package eu.excitementproject.tl.structures.utils;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A small in-memory XML element (name, attributes, and child elements and texts), read by
+ * {@link XMLFileReader}. It is used to hold one record of a large XML file (e.g. one
+ * interaction, or one graph node) at a time, instead of the DOM tree of the whole file.
+ * <p>The accessors follow the DOM methods used by the readers before, e.g. a missing
+ * attribute is read as empty string.
+ */
+public class XMLElement {
+
+	private final String name;
+	private final Map<String, String> attributes;
+	private final List<Object> children; // XMLElement or String (text) children, in document order
+
+	public XMLElement(String name) {
+		this.name = name;
+		this.attributes = new HashMap<String, String>();
+		this.children = new ArrayList<Object>();
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * @param attributeName
+	 * @return the value of the attribute, or empty string if the element has no such attribute (as DOM's getAttribute())
+	 */
+	public String getAttribute(String attributeName) {
+		String value = attributes.get(attributeName);
+		if (value == null) return "";
+		return value;
+	}
+
+	/**
+	 * @param attributeName
+	 * @return true if the element has the attribute
+	 */
+	public boolean hasAttribute(String attributeName) {
+		return attributes.containsKey(attributeName);
+	}
+
+	void setAttribute(String attributeName, String value) {
+		attributes.put(attributeName, value);
+	}
+
+	void addChild(Object child) {
+		children.add(child);
+	}
+
+	/**
+	 * @return the number of child nodes (elements and texts)
+	 */
+	public int getChildCount() {
+		return children.size();
+	}
+
+	/**
+	 * @return the child elements, in document order
+	 */
+	public List<XMLElement> getChildElements() {
+		List<XMLElement> elements = new ArrayList<XMLElement>();
+		for (Object child : children) {
+			if (child instanceof XMLElement) elements.add((XMLElement) child);
+		}
+		return elements;
+	}
+
+	/**
+	 * @return the child nodes in document order: {@link XMLElement}s and {@link String}s (texts)
+	 */
+	public List<Object> getChildren() {
+		return children;
+	}
+
+	/**
+	 * @return the text of the first child node, or null if the first child is an element or there is no child (as DOM's getFirstChild().getNodeValue())
+	 */
+	public String getFirstChildValue() {
+		if (children.isEmpty()) return null;
+		Object first = children.get(0);
+		if (first instanceof String) return (String) first;
+		return null;
+	}
+
+	/**
+	 * @return the concatenated text of all descendants (as DOM's getTextContent())
+	 */
+	public String getTextContent() {
+		StringBuilder sb = new StringBuilder();
+		appendTextContent(sb);
+		return sb.toString();
+	}
+
+	/**
+	 * @param elementName
+	 * @return all descendant elements with the given name, in document order (as DOM's getElementsByTagName())
+	 */
+	public List<XMLElement> getDescendants(String elementName) {
+		List<XMLElement> descendants = new ArrayList<XMLElement>();
+		collectDescendants(elementName, descendants);
+		return descendants;
+	}
+
+	/**
+	 * @param elementName
+	 * @return the first descendant element with the given name (in document order), or null if there is none
+	 */
+	public XMLElement getFirstDescendant(String elementName) {
+		for (Object child : children) {
+			if (child instanceof XMLElement) {
+				XMLElement e = (XMLElement) child;
+				if (e.getName().equals(elementName)) return e;
+				XMLElement d = e.getFirstDescendant(elementName);
+				if (d != null) return d;
+			}
+		}
+		return null;
+	}
+
+	private void appendTextContent(StringBuilder sb) {
+		for (Object child : children) {
+			if (child instanceof String) sb.append((String) child);
+			else ((XMLElement) child).appendTextContent(sb);
+		}
+	}
+
+	private void collectDescendants(String elementName, List<XMLElement> descendants) {
+		for (Object child : children) {
+			if (child instanceof XMLElement) {
+				XMLElement e = (XMLElement) child;
+				if (e.getName().equals(elementName)) descendants.add(e);
+				e.collectDescendants(elementName, descendants);
+			}
+		}
+	}
+}
@@ -0,0 +1,136 @@
+package eu.excitementproject.tl.structures.utils;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.Set;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+/**
+ * Class for reading large xml files record by record (StAX), without building the DOM tree of the whole file.
+ * <p>The reader moves from one element of interest (e.g. a graph node) to the next, in document order, and
+ * reads each of them as a small {@link XMLElement}. So the memory needed is proportional to one record,
+ * rather than to the whole file.
+ * <pre>
+ * XMLFileReader reader = new XMLFileReader(file);
+ * try {
+ *     XMLElement e;
+ *     while ((e = reader.nextElement("node", "edge")) != null) { ... }
+ * } finally {
+ *     reader.close();
+ * }
+ * </pre>
+ */
+public class XMLFileReader implements Closeable {
+
+	private static final XMLInputFactory factory = createFactory();
+
+	private final InputStream in;
+	private final XMLStreamReader reader;
+
+	/**
+	 * @param xmlFile
+	 * @throws IOException if the file cannot be opened
+	 * @throws XMLStreamException if the xml cannot be parsed
+	 */
+	public XMLFileReader(File xmlFile) throws IOException, XMLStreamException {
+		this.in = new BufferedInputStream(new FileInputStream(xmlFile));
+		try {
+			synchronized (factory) {
+				this.reader = factory.createXMLStreamReader(in);
+			}
+		} catch (XMLStreamException e) {
+			in.close();
+			throw e;
+		}
+	}
+
+	/**
+	 * Move to the next element (at any depth, in document order) whose name is one of the given names, and read it with all its content.
+	 * Elements inside a returned element are not visited again.
+	 * @param elementNames - the names of the elements of interest
+	 * @return the next element with one of the given names, or null if there is no more such element in the file
+	 * @throws XMLStreamException
+	 */
+	public XMLElement nextElement(String... elementNames) throws XMLStreamException {
+		Set<String> names = new HashSet<String>(Arrays.asList(elementNames));
+		while (reader.hasNext()) {
+			if (reader.next() == XMLStreamConstants.START_ELEMENT && names.contains(reader.getLocalName())) {
+				return readElement();
+			}
+		}
+		return null;
+	}
+
+	@Override
+	public void close() throws IOException {
+		try {
+			reader.close();
+		} catch (XMLStreamException e) {
+			throw new IOException(e);
+		} finally {
+			in.close();
+		}
+	}
+
+	/**
+	 * Read the current element (the reader is on its start tag) with all its content. The reader ends on its end tag.
+	 * @return the element
+	 * @throws XMLStreamException
+	 */
+	private XMLElement readElement() throws XMLStreamException {
+		LinkedList<XMLElement> open = new LinkedList<XMLElement>();
+		XMLElement root = startElement();
+		open.push(root);
+		StringBuilder text = null;
+		while (!open.isEmpty()) {
+			int event = reader.next();
+			switch (event) {
+			case XMLStreamConstants.CHARACTERS:
+			case XMLStreamConstants.CDATA:
+			case XMLStreamConstants.SPACE:
+				if (text == null) text = new StringBuilder();
+				text.append(reader.getText());
+				break;
+			case XMLStreamConstants.START_ELEMENT:
+				if (text != null) { open.peek().addChild(text.toString()); text = null; }
+				XMLElement child = startElement();
+				open.peek().addChild(child);
+				open.push(child);
+				break;
+			case XMLStreamConstants.END_ELEMENT:
+				if (text != null) { open.peek().addChild(text.toString()); text = null; }
+				open.pop();
+				break;
+			default:
+				// comments and processing instructions are not kept
+			}
+		}
+		return root;
+	}
+
+	private XMLElement startElement() {
+		XMLElement e = new XMLElement(reader.getLocalName());
+		for (int i = 0; i < reader.getAttributeCount(); i++) {
+			e.setAttribute(reader.getAttributeLocalName(i), reader.getAttributeValue(i));
+		}
+		return e;
+	}
+
+	private static XMLInputFactory createFactory() {
+		XMLInputFactory f = XMLInputFactory.newInstance();
+		f.setProperty(XMLInputFactory.IS_COALESCING, Boolean.TRUE);
+		f.setProperty(XMLInputFactory.IS_REPLACING_ENTITY_REFERENCES, Boolean.TRUE);
+		return f;
+	}
+}
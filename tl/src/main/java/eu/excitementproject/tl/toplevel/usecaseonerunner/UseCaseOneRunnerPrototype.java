@@ -3,9 +3,15 @@ package eu.excitementproject.tl.toplevel.usecaseonerunner;
 import java.io.File;
 import java.io.IOException;
 import java.lang.reflect.InvocationTargetException;
+import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.apache.log4j.Logger;
 
@@ -27,6 +33,8 @@ import eu.excitementproject.tl.composition.exceptions.GraphOptimizerException;
 import eu.excitementproject.tl.composition.exceptions.EntailmentGraphCollapsedException;
 import eu.excitementproject.tl.composition.exceptions.EntailmentGraphRawException;
 import eu.excitementproject.tl.composition.exceptions.GraphMergerException;
+import eu.excitementproject.tl.composition.graphmerger.AbstractGraphMerger;
+import eu.excitementproject.tl.composition.graphmerger.FragmentGraphQueue;
 import eu.excitementproject.tl.composition.graphmerger.StructureBasedGraphMerger;
 import eu.excitementproject.tl.composition.graphoptimizer.GlobalGraphOptimizer;
 import eu.excitementproject.tl.decomposition.api.FragmentAnnotator;
@@ -38,6 +46,7 @@ import eu.excitementproject.tl.decomposition.exceptions.ModifierAnnotatorExcepti
 import eu.excitementproject.tl.decomposition.fragmentannotator.KeywordBasedFixedLengthFragmentAnnotator;
 import eu.excitementproject.tl.decomposition.fragmentgraphgenerator.FragmentGraphGeneratorFromCAS;
 import eu.excitementproject.tl.decomposition.modifierannotator.AdvAdjAsModifierAnnotator;
+import eu.excitementproject.tl.edautils.EDADecisionCache;
 import eu.excitementproject.tl.edautils.EDAUtils;
 import eu.excitementproject.tl.laputils.CachedLAPAccess;
 import eu.excitementproject.tl.laputils.LAPUtils;
@@ -82,6 +91,9 @@ public class UseCaseOneRunnerPrototype implements UseCaseOneRunner {
 	// output path used for outputting graphs to files
 	private String outputPath = ".";
 	
+	// capacity of the queue of fragment graphs between decomposition and merge (0 -- no pipelining, all fragment graphs are generated before the merge)
+	private int pipelineCapacity = 0;
+	
 	/**
 	 * Constructor from the given LAP and EDA objects. 
 	 * No default fragment and modifier annotators, such that they will only be instantiated and used when explicitly given
@@ -426,6 +438,23 @@ public class UseCaseOneRunnerPrototype implements UseCaseOneRunner {
 	public EntailmentGraphRaw buildRawGraph(Set<Interaction> docs) 
 			throws GraphMergerException, FragmentGraphGeneratorException, LAPException, FragmentAnnotatorException, ModifierAnnotatorException, IOException{
 		
+		if (pipelineCapacity > 0) {
+			List<Callable<Set<FragmentGraph>>> decompositions = new ArrayList<Callable<Set<FragmentGraph>>>();
+			for (final Interaction i: docs) {
+				// failures are thrown, as in the sequential build
+				decompositions.add(new Callable<Set<FragmentGraph>>() {
+					@Override
+					public Set<FragmentGraph> call() throws Exception {
+						JCas aJCas = i.createAndFillInputCAS();
+						annotateCAS(aJCas);
+						logger.info("Adding fragment graphs for text: " + aJCas.getDocumentText());
+						return fragGen.generateFragmentGraphs(aJCas);
+					}
+				});
+			}
+			return buildRawPipelined(decompositions);
+		}
+		
 		Set<FragmentGraph> fgs = new HashSet<FragmentGraph>(); 
 
 		for(Interaction i: docs) {
@@ -483,6 +512,26 @@ public class UseCaseOneRunnerPrototype implements UseCaseOneRunner {
 	private EntailmentGraphRaw buildRaw(List<JCas> docs) 
 			throws GraphMergerException, FragmentGraphGeneratorException, FragmentAnnotatorException, ModifierAnnotatorException, LAPException, IOException{
 		
+		if (pipelineCapacity > 0) {
+			List<Callable<Set<FragmentGraph>>> decompositions = new ArrayList<Callable<Set<FragmentGraph>>>();
+			for (final JCas aJCas: docs) {
+				// failing inputs are skipped, as in the sequential build
+				decompositions.add(new Callable<Set<FragmentGraph>>() {
+					@Override
+					public Set<FragmentGraph> call() {
+						try {
+							annotateCAS(aJCas);
+							return fragGen.generateFragmentGraphs(aJCas);
+						} catch (Exception e) {
+							logger.info("Cannot annotate modifiers and/or generate fragment graph. Skipping the problematic input.\n"+e);
+							return new HashSet<FragmentGraph>();
+						}
+					}
+				});
+			}
+			return buildRawPipelined(decompositions);
+		}
+		
 		Set<FragmentGraph> fgs = new HashSet<FragmentGraph>(); 
 		
 		for(JCas aJCas: docs) {
@@ -512,6 +561,59 @@ public class UseCaseOneRunnerPrototype implements UseCaseOneRunner {
 		return graphMerger.mergeGraphs(fgs, new EntailmentGraphRaw());
 	}
 	
+	/**
+	 * Builds a raw entailment graph from a set of user interactions, with the decomposition and the merge running at the same time:
+	 * the fragment graphs are generated on a separate thread and passed to the merger through a bounded queue ({@link FragmentGraphQueue}).
+	 * The decomposition waits while the queue is full, so at most pipelineCapacity fragment graphs wait for the merge.
+	 * The fragment graphs are merged in the order they are generated, and are not inspected (see {@link UseCaseOneRunnerPrototype#inspectGraph(Set)}).
+	 * 
+	 * @param decompositions -- one per user interaction, in order: each gives the fragment graphs of its interaction, and 
+	 * decides itself whether a failing input is thrown or skipped
+	 * 
+	 * @return an raw entailment graph (the multigraph with all edges and nodes)
+	 */
+	private EntailmentGraphRaw buildRawPipelined(final List<Callable<Set<FragmentGraph>>> decompositions) 
+			throws GraphMergerException, FragmentGraphGeneratorException, FragmentAnnotatorException, ModifierAnnotatorException, LAPException, IOException{
+		
+		final FragmentGraphQueue queue = new FragmentGraphQueue(pipelineCapacity);
+		ExecutorService executor = Executors.newSingleThreadExecutor();
+		Future<Void> decomposition = executor.submit(new Callable<Void>() {
+			@Override
+			public Void call() throws Exception {
+				try {
+					for (Callable<Set<FragmentGraph>> doc : decompositions) {
+						for (FragmentGraph fg : doc.call()) {
+							queue.put(fg);
+						}
+					}
+				} finally {
+					queue.close(); // also if the decomposition failed, so that the merge ends
+				}
+				return null;
+			}
+		});
+		
+		try {
+			EntailmentGraphRaw graph = graphMerger.mergeGraphs(queue, new EntailmentGraphRaw());
+			// throw the failure of the decomposition, if any
+			decomposition.get();
+			return graph;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new GraphMergerException("Interrupted while waiting for the decomposition");
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof LAPException) throw (LAPException) cause;
+			if (cause instanceof FragmentAnnotatorException) throw (FragmentAnnotatorException) cause;
+			if (cause instanceof ModifierAnnotatorException) throw (ModifierAnnotatorException) cause;
+			if (cause instanceof FragmentGraphGeneratorException) throw (FragmentGraphGeneratorException) cause;
+			throw new GraphMergerException("Decomposition failed: " + cause);
+		} finally {
+			// stops the decomposition if the merge failed
+			executor.shutdownNow();
+		}
+	}
+	
 	/**
 	 * Builds a raw entailment graph from a set of user interactions, using a confidence threshold when adding edges
 	 * 
@@ -781,6 +883,42 @@ public class UseCaseOneRunnerPrototype implements UseCaseOneRunner {
 	public GraphMerger getGraphMerger() {
 		return graphMerger;
 	}
+
+	/**
+	 * Run the decomposition and the merge at the same time, with at most the given number of fragment graphs waiting for the merge 
+	 * (the fragment graphs are passed to the merger through a bounded {@link FragmentGraphQueue}, and merged in the order they are generated). 
+	 * The fragment annotator, modifier annotator and fragment graph generator are then used on a separate thread. 
+	 * @param pipelineCapacity -- the capacity of the queue of fragment graphs, or 0 to generate all fragment graphs before the merge (default)
+	 */
+	public void setPipelineCapacity(int pipelineCapacity) {
+		this.pipelineCapacity = pipelineCapacity;
+	}
+
+	/**
+	 * Set the cache of EDA decisions to be used by the graph merger, if the merger supports caching ({@link AbstractGraphMerger})
+	 * @param decisionCache -- the cache, or null to disable caching
+	 */
+	public void setDecisionCache(EDADecisionCache decisionCache) {
+		if (graphMerger instanceof AbstractGraphMerger) {
+			((AbstractGraphMerger) graphMerger).setDecisionCache(decisionCache);
+		} else {
+			logger.warn("The graph merger " + graphMerger.getClass() + " does not support EDA decision caching");
+		}
+	}
+
+	/**
+	 * Save checkpoints of the merge to the given file, if the merger supports checkpoints ({@link AbstractGraphMerger#setCheckpoint(File, int, boolean)})
+	 * @param checkpointFile -- the checkpoint file, or null to disable checkpoints
+	 * @param checkpointInterval -- the number of fragment graphs merged between two checkpoints
+	 * @param resume -- whether to continue the merge from the checkpoint in the file (the fragment graphs merged before the checkpoint are skipped)
+	 */
+	public void setCheckpoint(File checkpointFile, int checkpointInterval, boolean resume) {
+		if (graphMerger instanceof AbstractGraphMerger) {
+			((AbstractGraphMerger) graphMerger).setCheckpoint(checkpointFile, checkpointInterval, resume);
+		} else {
+			logger.warn("The graph merger " + graphMerger.getClass() + " does not support checkpoints");
+		}
+	}
 	
 
 	private void prepareOutputFolder() {
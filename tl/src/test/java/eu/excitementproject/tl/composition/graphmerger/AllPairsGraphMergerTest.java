@@ -1,21 +1,36 @@
 package eu.excitementproject.tl.composition.graphmerger;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.log4j.Logger;
+import org.apache.uima.cas.CASException;
+import org.apache.uima.jcas.JCas;
 import org.junit.Test;
 
 import eu.excitementproject.eop.common.EDABasic;
 import eu.excitementproject.eop.lap.LAPException;
+import eu.excitementproject.eop.lap.implbase.LAP_ImplBase;
 import eu.excitementproject.eop.lap.dkpro.TreeTaggerEN;
 import eu.excitementproject.tl.composition.api.GraphMerger;
 import eu.excitementproject.tl.composition.exceptions.GraphMergerException;
+import eu.excitementproject.tl.edautils.ProbabilisticTEDecision;
 import eu.excitementproject.tl.edautils.RandomEDA;
 import eu.excitementproject.tl.laputils.CachedLAPAccess;
 import eu.excitementproject.tl.structures.fragmentgraph.FragmentGraph;
 import eu.excitementproject.tl.structures.rawgraph.EntailmentGraphRaw;
+import eu.excitementproject.tl.structures.rawgraph.EntailmentRelation;
+import eu.excitementproject.tl.structures.rawgraph.EntailmentUnit;
+import eu.excitementproject.tl.structures.rawgraph.utils.EdgeType;
 
 /**
  * 
@@ -51,4 +66,197 @@ public class AllPairsGraphMergerTest {
 		
 	}
 
+	@Test
+	public void testEdaCallBudget() {
+		try {
+			CachedLAPAccess lap = new CachedLAPAccess(new TreeTaggerEN());
+			AtomicInteger calls = new AtomicInteger();
+			AllPairsGraphMerger merger = new AllPairsGraphMerger(lap, new CountingEDA(calls));
+			checkEdaCallBudget(merger, calls, 5);
+		} catch (LAPException | GraphMergerException e) {
+			e.printStackTrace();
+			fail(e.getMessage()); 
+		}
+	}
+
+	@Test
+	public void testEdaCallBudgetInParallel() {
+		try {
+			CachedLAPAccess lap = new CachedLAPAccess(new TreeTaggerEN());
+			AtomicInteger calls = new AtomicInteger();
+			List<EDABasic<?>> edas = new ArrayList<EDABasic<?>>();
+			for (int i=0; i<3; i++){
+				edas.add(new CountingEDA(calls));
+			}
+			AllPairsGraphMerger merger = new AllPairsGraphMerger(lap, edas);
+			// the budget is not a multiple of the number of workers
+			checkEdaCallBudget(merger, calls, 5);
+		} catch (LAPException | GraphMergerException e) {
+			e.printStackTrace();
+			fail(e.getMessage()); 
+		}
+	}
+
+	@Test
+	public void testParallelMerge() {
+		try {
+			CachedLAPAccess lap = new CachedLAPAccess(new TreeTaggerEN());
+			AtomicInteger sequentialCalls = new AtomicInteger();
+			AllPairsGraphMerger sequentialMerger = new AllPairsGraphMerger(lap, new CountingEDA(sequentialCalls));
+			AtomicInteger parallelCalls = new AtomicInteger();
+			List<EDABasic<?>> edas = new ArrayList<EDABasic<?>>();
+			for (int i=0; i<3; i++){
+				edas.add(new CountingEDA(parallelCalls));
+			}
+			AllPairsGraphMerger parallelMerger = new AllPairsGraphMerger(lap, edas);
+			
+			// without a budget, each worker evaluates a contiguous chunk of the pairs
+			EntailmentGraphRaw sequentialGraph = sequentialMerger.mergeGraphs(FragmentGraph.getSampleOutput());
+			EntailmentGraphRaw parallelGraph = parallelMerger.mergeGraphs(FragmentGraph.getSampleOutput());
+			assertEquals(getEdges(sequentialGraph), getEdges(parallelGraph));
+			assertEquals(sequentialCalls.get(), parallelCalls.get());
+			assertEquals(sequentialMerger.getEdaCallsNumber(), parallelMerger.getEdaCallsNumber());
+			assertEquals(0, parallelMerger.getUndecidedPairsNumber());
+		} catch (LAPException | GraphMergerException e) {
+			e.printStackTrace();
+			fail(e.getMessage()); 
+		}
+	}
+
+	@Test
+	public void testNewPairsOnly() {
+		try {
+			CachedLAPAccess lap = new CachedLAPAccess(new TreeTaggerEN());
+			AtomicInteger rescanCalls = new AtomicInteger();
+			EntailmentGraphRaw rescanGraph = new FullRescanGraphMerger(lap, new CountingEDA(rescanCalls)).mergeGraphs(FragmentGraph.getSampleOutput());
+			
+			// merging the fragment graphs at once, and in two batches (the second onto the graph of the first)
+			AtomicInteger calls = new AtomicInteger();
+			AllPairsGraphMerger merger = new AllPairsGraphMerger(lap, new CountingEDA(calls));
+			assertEquals(getEdges(rescanGraph), getEdges(merger.mergeGraphs(FragmentGraph.getSampleOutput())));
+			assertEquals(rescanCalls.get(), calls.get());
+			assertEquals(rescanCalls.get(), merger.getEdaCallsNumber().intValue());
+			
+			List<FragmentGraph> fragmentGraphs = new LinkedList<FragmentGraph>(FragmentGraph.getSampleOutput());
+			Collections.sort(fragmentGraphs, new FragmentGraph.CompleteStatementComparator());
+			int half = fragmentGraphs.size()/2;
+			assertTrue(half > 0);
+			calls.set(0);
+			merger = new AllPairsGraphMerger(lap, new CountingEDA(calls));
+			EntailmentGraphRaw graph = merger.mergeGraphs(new HashSet<FragmentGraph>(fragmentGraphs.subList(0, half)));
+			graph = merger.mergeGraphs(new HashSet<FragmentGraph>(fragmentGraphs.subList(half, fragmentGraphs.size())), graph);
+			assertEquals(getEdges(rescanGraph), getEdges(graph));
+			assertEquals(rescanCalls.get(), calls.get());
+		} catch (LAPException | GraphMergerException e) {
+			e.printStackTrace();
+			fail(e.getMessage()); 
+		}
+	}
+
+	private static Set<String> getEdges(EntailmentGraphRaw graph) {
+		Set<String> edges = new HashSet<String>();
+		for (EntailmentRelation edge : graph.edgeSet()){
+			edges.add(edge.getSource().getText()+" -> "+edge.getTarget().getText()+" "+edge.getLabel()+" "+edge.getEdgeType());
+		}
+		return edges;
+	}
+
+	/** Merge the sample fragment graphs with the given EDA call budget, and check that exactly budget EDA calls were made, 
+	 * and that all the other pairs got an "undecided" edge, which is replaced by a later merge with a budget for these pairs.
+	 * @param merger
+	 * @param calls - the counter of the EDA calls made by the EDA(s) of the merger
+	 * @param budget
+	 * @throws GraphMergerException
+	 */
+	private void checkEdaCallBudget(AllPairsGraphMerger merger, AtomicInteger calls, int budget) throws GraphMergerException {
+		merger.setEdaCallBudget(budget);
+		EntailmentGraphRaw rawGraph = merger.mergeGraphs(FragmentGraph.getSampleOutput());
+		
+		int edaEdges = countEdges(rawGraph, EdgeType.EDA);
+		int undecidedEdges = countEdges(rawGraph, EdgeType.UNDECIDED);
+		assertEquals(budget, calls.get());
+		assertEquals(budget, merger.getEdaCallsNumber().intValue());
+		assertEquals(budget, edaEdges);
+		assertTrue(undecidedEdges > 0);
+		assertEquals(undecidedEdges, merger.getUndecidedPairsNumber());
+		
+		// a later merge with a budget for the undecided pairs evaluates them, and replaces their "undecided" edges
+		merger.setEdaCallBudget(undecidedEdges);
+		rawGraph = merger.mergeGraphs(new HashSet<FragmentGraph>(), rawGraph);
+		assertEquals(budget + undecidedEdges, calls.get());
+		assertEquals(budget + undecidedEdges, merger.getEdaCallsNumber().intValue());
+		assertEquals(budget + undecidedEdges, countEdges(rawGraph, EdgeType.EDA));
+		assertEquals(0, countEdges(rawGraph, EdgeType.UNDECIDED));
+		assertEquals(0, merger.getUndecidedPairsNumber());
+	}
+
+	private static int countEdges(EntailmentGraphRaw graph, EdgeType edgeType) {
+		int count = 0;
+		for (EntailmentRelation edge : graph.edgeSet()){
+			if (edge.getEdgeType().equals(edgeType)) count++;
+		}
+		return count;
+	}
+
+	/**
+	 * EDA, which decides by the lengths of the text and the hypothesis (so that the decisions do not depend on the order of the calls), and counts its calls
+	 */
+	private static class CountingEDA extends RandomEDA {
+		
+		private final AtomicInteger calls;
+		
+		public CountingEDA(AtomicInteger calls) {
+			this.calls = calls;
+		}
+
+		@Override
+		public ProbabilisticTEDecision process(JCas aCas) {
+			calls.incrementAndGet();
+			try {
+				String text = aCas.getView(LAP_ImplBase.TEXTVIEW).getDocumentText();
+				String hypothesis = aCas.getView(LAP_ImplBase.HYPOTHESISVIEW).getDocumentText();
+				return new ProbabilisticTEDecision((text.length() >= hypothesis.length()) ? 0.9 : 0.1);
+			} catch (CASException e) {
+				throw new IllegalStateException(e);
+			}
+		}
+	}
+
+	/**
+	 * Merger, which evaluates every pair of the work graph without a decision after each fragment graph is copied 
+	 * (as {@link AllPairsGraphMerger} did before it evaluated only the pairs with a new node)
+	 */
+	private static class FullRescanGraphMerger extends AbstractGraphMerger {
+
+		public FullRescanGraphMerger(CachedLAPAccess lap, EDABasic<?> eda) throws GraphMergerException {
+			super(lap, eda);
+		}
+
+		@Override
+		public EntailmentGraphRaw mergeGraphs(Set<FragmentGraph> fragmentGraphs, EntailmentGraphRaw workGraph) throws GraphMergerException {
+			List<FragmentGraph> fg = new LinkedList<FragmentGraph>(fragmentGraphs);
+			Collections.sort(fg, new FragmentGraph.CompleteStatementComparator());
+			for (FragmentGraph fragmentGraph : fg){
+				workGraph = mergeGraphs(fragmentGraph, workGraph);
+			}
+			return workGraph;
+		}
+
+		@Override
+		public EntailmentGraphRaw mergeGraphs(FragmentGraph fragmentGraph, EntailmentGraphRaw workGraph) throws GraphMergerException {
+			if (workGraph==null) workGraph = new EntailmentGraphRaw(fragmentGraph, true);
+			if (workGraph.isEmpty()) workGraph = new EntailmentGraphRaw(fragmentGraph, true, workGraph.hasLemmatizedLabel());
+			workGraph.copyFragmentGraphNodesAndAllEdges(fragmentGraph);
+			for (EntailmentUnit src : workGraph.vertexSet()){
+				for (EntailmentUnit tgt : workGraph.vertexSet()){
+					if (src.equals(tgt)) continue;
+					if (!workGraph.containsEdge(src, tgt)){
+						EntailmentRelation edge = getRelation(src, tgt);
+						workGraph.addEdge(edge.getSource(), edge.getTarget(), edge);
+					}
+				}
+			}
+			return workGraph;
+		}
+	}
 }
@@ -0,0 +1,54 @@
+package eu.excitementproject.tl.composition.graphmerger;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import eu.excitementproject.tl.structures.fragmentgraph.FragmentGraph;
+import eu.excitementproject.tl.structures.fragmentgraph.FragmentGraphEdge;
+
+public class FragmentGraphQueueTest {
+
+	@Test
+	public void testCloseFullQueue() throws InterruptedException {
+		FragmentGraphQueue queue = new FragmentGraphQueue(1);
+		FragmentGraph fg = new FragmentGraph(FragmentGraphEdge.class);
+		queue.put(fg);
+		// the end marker does not fit into the full queue, but closing does not wait
+		queue.close();
+		assertTrue(queue.hasNext());
+		assertSame(fg, queue.next());
+		assertFalse(queue.hasNext());
+	}
+
+	@Test
+	public void testMergeFailsWhileProducerWaits() throws Exception {
+		final FragmentGraphQueue queue = new FragmentGraphQueue(1);
+		ExecutorService executor = Executors.newSingleThreadExecutor();
+		executor.submit(new Callable<Void>() {
+			@Override
+			public Void call() throws Exception {
+				try {
+					for (int i = 0; i < 3; i++) {
+						queue.put(new FragmentGraph(FragmentGraphEdge.class));
+					}
+				} finally {
+					queue.close();
+				}
+				return null;
+			}
+		});
+		// the merge takes one fragment graph and fails, while the producer waits on the full queue
+		queue.next();
+		Thread.sleep(200);
+		executor.shutdownNow();
+		assertTrue("The producer did not end", executor.awaitTermination(5, TimeUnit.SECONDS));
+	}
+}
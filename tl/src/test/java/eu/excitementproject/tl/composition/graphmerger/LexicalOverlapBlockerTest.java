@@ -0,0 +1,59 @@
+package eu.excitementproject.tl.composition.graphmerger;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.junit.Test;
+
+import eu.excitementproject.tl.structures.fragmentgraph.EntailmentUnitMention;
+import eu.excitementproject.tl.structures.rawgraph.EntailmentUnit;
+
+public class LexicalOverlapBlockerTest {
+
+	@Test
+	public void testTokenBlocking() {
+		LexicalOverlapBlocker blocker = new LexicalOverlapBlocker(new HashSet<String>(Arrays.asList("the", "was", "it", "too")));
+		EntailmentUnit food = createNode("The food was bad", null);
+		EntailmentUnit coldFood = createNode("The food was too cold", null);
+		EntailmentUnit clerk = createNode("The clerk was rude", null);
+		EntailmentUnit rudeClerk = createNode("Clerks are rude", "clerk be rude");
+		EntailmentUnit stopWordsOnly = createNode("It was too", null);
+
+		assertTrue(blocker.isCandidatePair(food, coldFood));
+		assertFalse(blocker.isCandidatePair(food, clerk));
+		// the lemmatized text is used when available
+		assertTrue(blocker.isCandidatePair(clerk, rudeClerk));
+		// a node without keys cannot be blocked
+		assertTrue(blocker.isCandidatePair(food, stopWordsOnly));
+
+		Set<String> candidates = blocker.getCandidateTexts(food);
+		assertTrue(candidates.contains(coldFood.getText()));
+		assertTrue(candidates.contains(stopWordsOnly.getText()));
+		assertFalse(candidates.contains(clerk.getText()));
+		assertFalse(candidates.contains(rudeClerk.getText()));
+		assertNull(blocker.getCandidateTexts(stopWordsOnly));
+	}
+
+	@Test
+	public void testNGramBlocking() {
+		LexicalOverlapBlocker tokens = new LexicalOverlapBlocker();
+		LexicalOverlapBlocker ngrams = new LexicalOverlapBlocker(4, 2, new HashSet<String>());
+		EntailmentUnit seats = createNode("Uncomfortable seats", null);
+		EntailmentUnit seating = createNode("Comfort of seating", null);
+		EntailmentUnit food = createNode("Bad food", null);
+
+		assertFalse(tokens.isCandidatePair(seats, seating));
+		assertTrue(ngrams.isCandidatePair(seats, seating));
+		assertFalse(ngrams.isCandidatePair(seats, food));
+		assertTrue(ngrams.getCandidateTexts(seating).contains(seats.getText()));
+	}
+
+	private static EntailmentUnit createNode(String text, String lemmatizedText) {
+		return new EntailmentUnit(text, lemmatizedText, new HashSet<String>(Arrays.asList(text)), new HashSet<EntailmentUnitMention>(), 0);
+	}
+}
@@ -0,0 +1,104 @@
+package eu.excitementproject.tl.composition.graphmerger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.Test;
+
+import eu.excitementproject.eop.common.DecisionLabel;
+import eu.excitementproject.tl.composition.exceptions.GraphMergerException;
+import eu.excitementproject.tl.edautils.RandomEDA;
+import eu.excitementproject.tl.edautils.TEDecisionWithConfidence;
+import eu.excitementproject.tl.structures.fragmentgraph.EntailmentUnitMention;
+import eu.excitementproject.tl.structures.fragmentgraph.FragmentGraph;
+import eu.excitementproject.tl.structures.fragmentgraph.FragmentGraphEdge;
+import eu.excitementproject.tl.structures.rawgraph.EntailmentGraphRaw;
+import eu.excitementproject.tl.structures.rawgraph.EntailmentRelation;
+import eu.excitementproject.tl.structures.rawgraph.EntailmentUnit;
+import eu.excitementproject.tl.structures.rawgraph.utils.EdgeType;
+
+public class MergeCheckpointTest {
+
+	@Test
+	public void testWriteAndRead() throws IOException {
+		EntailmentGraphRaw graph = new EntailmentGraphRaw(false);
+		EntailmentUnit coldFood = createNode("The food was too cold", 1);
+		EntailmentUnit food = createNode("The food was cold", 0);
+		EntailmentUnit clerk = createNode("The clerk was rude", 0);
+		graph.addVertex(coldFood);
+		graph.addVertex(food);
+		graph.addVertex(clerk);
+		graph.addEdge(coldFood, food, new EntailmentRelation(coldFood, food, new TEDecisionWithConfidence(1.0, DecisionLabel.Entailment), EdgeType.FRAGMENT_GRAPH));
+		graph.addEdge(food, clerk, new EntailmentRelation(food, clerk, new TEDecisionWithConfidence(0.8, DecisionLabel.NonEntailment), EdgeType.EDA));
+		Map<String, Integer> merged = new HashMap<String, Integer>();
+		merged.put("1\tThe food was too cold", 1);
+		merged.put("2\tThe clerk was rude", 2);
+
+		File file = File.createTempFile("merge", ".checkpoint");
+		file.deleteOnExit();
+		new MergeCheckpoint(graph, merged, 5, 2, 1).write(file);
+		MergeCheckpoint checkpoint = MergeCheckpoint.read(file);
+
+		assertEquals(5, checkpoint.getEdaCalls());
+		assertEquals(2, checkpoint.getPrunedPairs());
+		assertEquals(1, checkpoint.getUndecidedPairs());
+		assertEquals(merged, checkpoint.getMergedFragmentGraphs());
+
+		EntailmentGraphRaw restored = checkpoint.getWorkGraph();
+		assertEquals(3, restored.vertexSet().size());
+		assertEquals(2, restored.edgeSet().size());
+		EntailmentUnit restoredColdFood = restored.getVertexWithText(coldFood.getText());
+		assertEquals(1, restoredColdFood.getLevel());
+		assertEquals(1, restoredColdFood.getMentions().size());
+		EntailmentRelation edge = restored.getEdge(restored.getVertexWithText(food.getText()), restored.getVertexWithText(clerk.getText()));
+		assertNotNull(edge);
+		assertEquals(DecisionLabel.NonEntailment, edge.getLabel());
+		assertEquals(0.8, edge.getConfidence(), 0.0);
+		assertEquals(EdgeType.EDA, edge.getEdgeType());
+		assertNull(restored.getEdge(restored.getVertexWithText(clerk.getText()), restoredColdFood));
+	}
+
+	@Test
+	public void testRepeatedFragmentGraphs() throws IOException, GraphMergerException {
+		File file = File.createTempFile("merge", ".checkpoint");
+		file.delete();
+		file.deleteOnExit();
+
+		// fragment graphs without a document have the same interaction id, so the same statement gives the same key
+		AllPairsGraphMerger merger = new AllPairsGraphMerger(null, new RandomEDA());
+		merger.setCheckpoint(file, 1, false);
+		EntailmentGraphRaw graph = merger.mergeGraphs(Arrays.asList(createFragmentGraph(), createFragmentGraph()).iterator(), null);
+		assertEquals(1, graph.vertexSet().size());
+		assertEquals(2, graph.vertexSet().iterator().next().getMentions().size());
+		assertEquals(Integer.valueOf(2), MergeCheckpoint.read(file).getMergedFragmentGraphs().get("N/A\tThe food was cold"));
+
+		// the resumed merge only skips as many fragment graphs with the key as were merged before the checkpoint
+		merger = new AllPairsGraphMerger(null, new RandomEDA());
+		merger.setCheckpoint(file, 1, true);
+		graph = merger.mergeGraphs(Arrays.asList(createFragmentGraph(), createFragmentGraph(), createFragmentGraph()).iterator(), null);
+		assertEquals(1, graph.vertexSet().size());
+		assertEquals(3, graph.vertexSet().iterator().next().getMentions().size());
+		assertEquals(Integer.valueOf(3), MergeCheckpoint.read(file).getMergedFragmentGraphs().get("N/A\tThe food was cold"));
+	}
+
+	private static FragmentGraph createFragmentGraph() {
+		FragmentGraph fg = new FragmentGraph(FragmentGraphEdge.class);
+		fg.addVertex(new EntailmentUnitMention("The food was cold", 0, null));
+		return fg;
+	}
+
+	private static EntailmentUnit createNode(String text, int level) {
+		Set<EntailmentUnitMention> mentions = new HashSet<EntailmentUnitMention>();
+		mentions.add(new EntailmentUnitMention(text, level, "1"));
+		return new EntailmentUnit(text, new HashSet<String>(Arrays.asList(text)), mentions, level);
+	}
+}
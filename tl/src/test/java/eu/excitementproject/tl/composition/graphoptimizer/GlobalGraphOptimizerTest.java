@@ -1,14 +1,20 @@
 package eu.excitementproject.tl.composition.graphoptimizer;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.fail;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.HashSet;
 import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import org.apache.log4j.Logger;
 import org.junit.Test;
 
+import eu.excitementproject.eop.common.DecisionLabel;
 import eu.excitementproject.eop.common.EDAException;
 import eu.excitementproject.eop.common.configuration.CommonConfig;
 import eu.excitementproject.eop.common.exception.ComponentException;
@@ -24,10 +30,17 @@ import eu.excitementproject.tl.composition.exceptions.GraphMergerException;
 import eu.excitementproject.tl.composition.exceptions.GraphOptimizerException;
 import eu.excitementproject.tl.composition.graphmerger.StructureBasedGraphMerger;
 import eu.excitementproject.tl.composition.graphmerger.LegacyAutomateWP2ProcedureGraphMerger;
+import eu.excitementproject.tl.edautils.TEDecisionWithConfidence;
 import eu.excitementproject.tl.laputils.CachedLAPAccess;
 import eu.excitementproject.tl.structures.collapsedgraph.EntailmentGraphCollapsed;
+import eu.excitementproject.tl.structures.collapsedgraph.EntailmentRelationCollapsed;
+import eu.excitementproject.tl.structures.collapsedgraph.EquivalenceClass;
 import eu.excitementproject.tl.structures.fragmentgraph.FragmentGraph;
 import eu.excitementproject.tl.structures.rawgraph.EntailmentGraphRaw;
+import eu.excitementproject.tl.structures.rawgraph.EntailmentRelation;
+import eu.excitementproject.tl.structures.rawgraph.EntailmentUnit;
+import eu.excitementproject.tl.structures.rawgraph.RawGraphTestUtils;
+import eu.excitementproject.tl.structures.rawgraph.utils.EdgeType;
 
 /**
  * 
@@ -83,4 +96,116 @@ public class GlobalGraphOptimizerTest {
 			
 	}
 
+	@Test
+	public void testComponents() {
+		// two components: 0<->1 and 1->2, and 3->4; and 5 without edges
+		EntailmentGraphRaw rawGraph = createComponentsGraph();
+		ExecutorService executor = Executors.newFixedThreadPool(2);
+		try {
+			GlobalGraphOptimizer singleGraph = new GlobalGraphOptimizer();
+			singleGraph.setSplitComponents(false);
+			EntailmentGraphCollapsed expected = singleGraph.optimizeGraph(rawGraph);
+			assertEquals(5, expected.vertexSet().size());
+			assertEquals(2, expected.edgeSet().size());
+			
+			// components optimized in parallel on a new thread pool, and on the given executor
+			GlobalGraphOptimizer components = new GlobalGraphOptimizer();
+			assertSameGraph(expected, components.optimizeGraph(rawGraph));
+			components.setExecutor(executor);
+			assertSameGraph(expected, components.optimizeGraph(rawGraph));
+		} catch (GraphOptimizerException e) {
+			e.printStackTrace();
+			fail(e.getMessage());
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	@Test
+	public void testSparseInput() {
+		EntailmentGraphRaw rawGraph = createComponentsGraph();
+		try {
+			EntailmentGraphCollapsed dense = new GlobalGraphOptimizer(0.5, 0, false).optimizeGraph(rawGraph);
+			// only the pairs with edges are given to the learner, the others get the unknown score 
+			EntailmentGraphCollapsed sparse = new GlobalGraphOptimizer(0.5, 0, true).optimizeGraph(rawGraph);
+			assertSameGraph(dense, sparse);
+		} catch (GraphOptimizerException e) {
+			e.printStackTrace();
+			fail(e.getMessage());
+		}
+	}
+
+	@Test
+	public void testPrunedEdges() {
+		EntailmentGraphRaw rawGraph = createComponentsGraph();
+		// the same graph, with edges for pairs the EDA never saw (pruned by the blocker, or left undecided by the budget)
+		EntailmentGraphRaw prunedGraph = createComponentsGraph();
+		addEdge(prunedGraph, "node 2", "node 0", DecisionLabel.NonEntailment, 1.0, EdgeType.PRUNED);
+		addEdge(prunedGraph, "node 2", "node 1", DecisionLabel.NonEntailment, 1.0, EdgeType.PRUNED);
+		addEdge(prunedGraph, "node 4", "node 3", DecisionLabel.Unknown, 0.0, EdgeType.UNDECIDED);
+		try {
+			// the edges count as missing edges, both in the dense and in the sparse input of the learner
+			assertSameGraph(new GlobalGraphOptimizer().optimizeGraph(rawGraph), new GlobalGraphOptimizer().optimizeGraph(prunedGraph));
+			assertSameGraph(new GlobalGraphOptimizer(0.5, 0, true).optimizeGraph(rawGraph), new GlobalGraphOptimizer(0.5, 0, true).optimizeGraph(prunedGraph));
+		} catch (GraphOptimizerException e) {
+			e.printStackTrace();
+			fail(e.getMessage());
+		}
+	}
+
+	private static void addEdge(EntailmentGraphRaw graph, String sourceText, String targetText, DecisionLabel label, double confidence, EdgeType edgeType) {
+		EntailmentUnit source = graph.getVertexWithText(sourceText);
+		EntailmentUnit target = graph.getVertexWithText(targetText);
+		graph.addEdge(source, target, new EntailmentRelation(source, target, new TEDecisionWithConfidence(confidence, label), edgeType));
+	}
+
+	/**
+	 * @return a transitively closed graph with two components: 0<->1 and 1->2, and 3->4; and 5 without edges
+	 */
+	private static EntailmentGraphRaw createComponentsGraph() {
+		EntailmentGraphRaw rawGraph = new EntailmentGraphRaw();
+		EntailmentUnit[] nodes = RawGraphTestUtils.createNodes(rawGraph, 6);
+		RawGraphTestUtils.addEntailmentEdges(rawGraph, nodes, new int[][]{{0,1},{1,0},{1,2},{3,4}}, 0.9);
+		rawGraph.applyTransitiveClosure();
+		return rawGraph;
+	}
+
+	/**
+	 * Assert that the two graphs have the same equivalence classes (by the texts of their nodes), and the same edges between them
+	 * @param expected
+	 * @param actual
+	 */
+	private static void assertSameGraph(EntailmentGraphCollapsed expected, EntailmentGraphCollapsed actual) {
+		assertEquals(getClasses(expected), getClasses(actual));
+		assertEquals(getEdges(expected), getEdges(actual));
+	}
+
+	private static Set<String> getClasses(EntailmentGraphCollapsed graph) {
+		Set<String> classes = new HashSet<String>();
+		for (EquivalenceClass node : graph.vertexSet()){
+			classes.add(getClassText(node));
+		}
+		return classes;
+	}
+
+	private static Set<String> getEdges(EntailmentGraphCollapsed graph) {
+		Set<String> edges = new HashSet<String>();
+		for (EntailmentRelationCollapsed edge : graph.edgeSet()){
+			edges.add(getClassText(edge.getSource())+" -> "+getClassText(edge.getTarget()));
+		}
+		return edges;
+	}
+
+	/**
+	 * @param node
+	 * @return the sorted texts of the entailment units of the equivalence class
+	 */
+	private static String getClassText(EquivalenceClass node) {
+		Set<String> texts = new TreeSet<String>();
+		for (EntailmentUnit eu : node.getEntailmentUnits()){
+			texts.add(eu.getText());
+		}
+		return texts.toString();
+	}
+
 }
@@ -1,5 +1,8 @@
 package eu.excitementproject.tl.composition.graphoptimizer;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
 import java.io.File;
@@ -27,6 +30,8 @@ import eu.excitementproject.tl.structures.collapsedgraph.EntailmentGraphCollapse
 import eu.excitementproject.tl.structures.collapsedgraph.EquivalenceClass;
 import eu.excitementproject.tl.structures.fragmentgraph.FragmentGraph;
 import eu.excitementproject.tl.structures.rawgraph.EntailmentGraphRaw;
+import eu.excitementproject.tl.structures.rawgraph.EntailmentUnit;
+import eu.excitementproject.tl.structures.rawgraph.RawGraphTestUtils;
 //import eu.excitementproject.eop.common.EDABasic;
 //import eu.excitementproject.tl.structures.rawgraph.utils.RandomEDA;
 
@@ -90,4 +95,29 @@ public class SimpleGraphOptimizerTest {
 			
 	}
 
+	@Test
+	public void testEquivalenceClassesAsCycles() {
+		try {
+			// two cycles 0<->1 and 2->3->4->2, connected by 1->2, and 5 not in any cycle
+			EntailmentGraphRaw rawGraph = new EntailmentGraphRaw();
+			EntailmentUnit[] nodes = RawGraphTestUtils.createNodes(rawGraph, 6);
+			RawGraphTestUtils.addEntailmentEdges(rawGraph, nodes, new int[][]{{0,1},{1,0},{1,2},{2,3},{3,4},{4,2},{4,5}}, 0.9);
+			
+			SimpleGraphOptimizer collapser = new SimpleGraphOptimizer();
+			Set<EquivalenceClass> cycles = collapser.findEquivalenceClassesAsCycles(rawGraph);
+			assertEquals(2, cycles.size());
+			
+			EntailmentGraphCollapsed collapsedGraph = collapser.optimizeGraph(rawGraph);
+			assertEquals(3, collapsedGraph.vertexSet().size());
+			assertEquals(2, collapsedGraph.edgeSet().size());
+			assertEquals(3, collapsedGraph.getVertex(nodes[3]).getEntailmentUnits().size());
+			assertTrue(collapsedGraph.getVertex(nodes[0]).containsEntailmentUnit(nodes[1]));
+			assertNotNull(collapsedGraph.getEdge(collapsedGraph.getVertex(nodes[0]), collapsedGraph.getVertex(nodes[4])));
+			assertNotNull(collapsedGraph.getEdge(collapsedGraph.getVertex(nodes[2]), collapsedGraph.getVertex(nodes[5])));
+		} catch (GraphOptimizerException e) {
+			e.printStackTrace();
+			fail(e.getMessage());
+		}
+	}
+
 }
@@ -0,0 +1,137 @@
+package eu.excitementproject.tl.edautils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+import org.apache.log4j.Logger;
+import org.junit.Test;
+
+import eu.excitementproject.eop.common.DecisionLabel;
+import eu.excitementproject.eop.common.TEDecision;
+
+/**
+ *
+ * @author ??
+ *
+ */
+public class EDADecisionCacheTest {
+	private final Logger logger = Logger.getLogger(this.getClass());
+
+	@Test
+	public void test() {
+		File storeFile = new File("./src/test/outputs/edaDecisionCache.bin");
+		if (storeFile.exists()) storeFile.delete();
+
+		try {
+			EDADecisionCache cache = new EDADecisionCache(storeFile, "TestEDA", 2);
+			assertNull(cache.getDecision("Food was bad.", "I didn't like the food."));
+			cache.putDecision("Food was bad.", "I didn't like the food.", new TEDecisionWithConfidence(0.72, DecisionLabel.Entailment));
+			cache.putDecision("Food was  bad. ", "Food was really bad.", new TEDecisionWithConfidence(0.9, DecisionLabel.NonEntailment));
+			// differences in spacing are ignored
+			assertNotNull(cache.getDecision("Food was bad.", "Food was really bad."));
+			// failed EDA calls are not cached
+			cache.putDecision("a", "b", new TEDecisionWithConfidence(0.0, DecisionLabel.Unknown));
+			assertNull(cache.getDecision("a", "b"));
+			assertEquals(2, cache.getNumberOfMisses());
+			assertEquals(1, cache.getNumberOfHits());
+			// third decision evicts the least recently used one
+			cache.putDecision("Disappointed with legroom", "Food was bad.", new TEDecisionWithConfidence(0.1, DecisionLabel.NonEntailment));
+			assertEquals(1, cache.getNumberOfEvictions());
+			assertEquals(2, cache.size());
+			cache.close();
+			logger.info(cache.toString());
+
+			// decisions survive a restart; another fingerprint does not see them
+			EDADecisionCache reloaded = new EDADecisionCache(storeFile, "TestEDA");
+			TEDecision d = reloaded.getDecision("Food was bad.", "I didn't like the food.");
+			assertNotNull(d);
+			assertEquals(DecisionLabel.Entailment, d.getDecision());
+			assertEquals(0.72, d.getConfidence(), 0.0001);
+			reloaded.save();
+			reloaded.close();
+
+			EDADecisionCache other = new EDADecisionCache(storeFile, "OtherEDA");
+			assertNull(other.getDecision("Food was bad.", "I didn't like the food."));
+			other.close();
+		} catch (IOException e) {
+			e.printStackTrace();
+			fail(e.getMessage());
+		}
+	}
+
+	@Test
+	public void testTruncatedRecord() {
+		File storeFile = new File("./src/test/outputs/edaDecisionCacheTruncated.bin");
+		if (storeFile.exists()) storeFile.delete();
+
+		try {
+			EDADecisionCache cache = new EDADecisionCache(storeFile, "TestEDA");
+			cache.putDecision("Food was bad.", "I didn't like the food.", new TEDecisionWithConfidence(0.72, DecisionLabel.Entailment));
+			cache.close();
+			// the process dies while writing the next record
+			FileOutputStream out = new FileOutputStream(storeFile, true);
+			out.write(new byte[]{0, 40, 'a', 'b', 'c'});
+			out.close();
+
+			EDADecisionCache reloaded = new EDADecisionCache(storeFile, "TestEDA");
+			assertEquals(1, reloaded.size());
+			reloaded.putDecision("Food was bad.", "Food was really bad.", new TEDecisionWithConfidence(0.9, DecisionLabel.NonEntailment));
+			reloaded.close();
+
+			// the new record is appended after the last complete record
+			EDADecisionCache again = new EDADecisionCache(storeFile, "TestEDA");
+			assertEquals(2, again.size());
+			TEDecision d = again.getDecision("Food was bad.", "Food was really bad.");
+			assertNotNull(d);
+			assertEquals(DecisionLabel.NonEntailment, d.getDecision());
+			assertEquals(0.9, d.getConfidence(), 0.0001);
+			again.close();
+		} catch (IOException e) {
+			e.printStackTrace();
+			fail(e.getMessage());
+		}
+	}
+
+	@Test
+	public void testSaveKeepsEvictedDecisions() {
+		File storeFile = new File("./src/test/outputs/edaDecisionCacheEvicted.bin");
+		if (storeFile.exists()) storeFile.delete();
+
+		try {
+			EDADecisionCache cache = new EDADecisionCache(storeFile, "TestEDA");
+			cache.putDecision("Food was bad.", "I didn't like the food.", new TEDecisionWithConfidence(0.72, DecisionLabel.Entailment));
+			cache.putDecision("Food was bad.", "Food was really bad.", new TEDecisionWithConfidence(0.9, DecisionLabel.NonEntailment));
+			cache.close();
+			long length = storeFile.length();
+
+			// the first decision is evicted from memory when loading, so it is computed again and appended again
+			cache = new EDADecisionCache(storeFile, "TestEDA", 1);
+			assertNull(cache.getDecision("Food was bad.", "I didn't like the food."));
+			cache.putDecision("Food was bad.", "I didn't like the food.", new TEDecisionWithConfidence(0.72, DecisionLabel.Entailment));
+			cache.close();
+			assertTrue(storeFile.length() > length);
+
+			// compaction drops the duplicate record, but keeps the decision evicted from memory
+			cache = new EDADecisionCache(storeFile, "TestEDA", 1);
+			cache.save();
+			cache.close();
+			assertEquals(length, storeFile.length());
+			EDADecisionCache reloaded = new EDADecisionCache(storeFile, "TestEDA");
+			assertEquals(2, reloaded.size());
+			assertNotNull(reloaded.getDecision("Food was bad.", "I didn't like the food."));
+			assertNotNull(reloaded.getDecision("Food was bad.", "Food was really bad."));
+			reloaded.close();
+		} catch (IOException e) {
+			e.printStackTrace();
+			fail(e.getMessage());
+		}
+	}
+
+}
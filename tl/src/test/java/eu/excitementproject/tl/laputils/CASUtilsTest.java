@@ -231,5 +231,28 @@ public class CASUtilsTest {
 		{
 			fail(e.getMessage()); 
 		}
+		
+		// testing the JCas pool: a returned CAS is reused, and is clean 
+		try {
+			JCasPool pool = new JCasPool(1); 
+			JCas aJCas = pool.checkOut(); 
+			aJCas.setDocumentLanguage("EN"); 
+			aJCas.setDocumentText("test document."); 
+			pool.checkIn(aJCas); 
+			JCas again = pool.checkOut(); 
+			Assert.assertSame(aJCas, again); 
+			Assert.assertNull(again.getDocumentText()); 
+			assertEquals(1, pool.getNumberOfCreated()); 
+			assertEquals(1, pool.getNumberOfReused()); 
+			
+			// only one free CAS is kept 
+			pool.checkIn(again); 
+			pool.checkIn(CASUtils.createNewInputCas()); 
+			assertEquals(1, pool.getNumberOfFree()); 
+		}
+		catch (Exception e)
+		{
+			fail(e.getMessage()); 
+		}
 	}
 }
@@ -2,6 +2,16 @@ package eu.excitementproject.tl.laputils;
 
 import static org.junit.Assert.*;
 
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
 import org.apache.log4j.BasicConfigurator;
 import org.apache.log4j.Level;
 import org.apache.log4j.Logger;
@@ -9,8 +19,10 @@ import org.apache.uima.jcas.JCas;
 import org.junit.Test;
 
 import eu.excitementproject.eop.lap.LAPAccess;
+import eu.excitementproject.eop.lap.LAPException;
 import eu.excitementproject.eop.lap.PlatformCASProber;
 import eu.excitementproject.eop.lap.dkpro.MaltParserEN;
+import eu.excitementproject.eop.lap.implbase.LAP_ImplBase;
 
 /**
  * 
@@ -114,6 +126,13 @@ public class CachedLAPAccessTest {
 			PlatformCASProber.probeCas(cachedCAS,  System.out);
 			//PlatformCASProber.probeCasAndPrintContent(originalCAS, System.out); 
 			//PlatformCASProber.probeCasAndPrintContent(cachedCAS, System.out); 			
+			
+			// annotations cloned from TextView should be the same as annotations made by the LAP 
+			for (String viewName : new String[] {LAP_ImplBase.TEXTVIEW, LAP_ImplBase.HYPOTHESISVIEW})
+			{
+				assertEquals(originalCAS.getView(viewName).getAnnotationIndex().size(), cachedCAS.getView(viewName).getAnnotationIndex().size()); 
+			}
+			assertEquals(2, cachedLAP.getNumberOfActualCalls()); 
 		}
 		catch (Exception e)
 		{
@@ -138,4 +157,148 @@ public class CachedLAPAccessTest {
 		
 	}
 
+	@Test
+	public void testAnnotateOnce() {
+		String text = "This is a pipe."; 
+		String hypo = "Holy, this is not a pipe!"; 
+		try {
+			LAPAccess underlyingLAP = new LemmaLevelLapEN(); // tree tagger 
+			CachedLAPAccess cachedLAP = new CachedLAPAccess(underlyingLAP); 
+			assertFalse(cachedLAP.isAnnotateOnce()); 
+			// the tree tagger annotates both views the same way, so the TextView annotations can be cloned into the HypothesisView 
+			cachedLAP.setAnnotateOnce(true); 
+			assertTrue(cachedLAP.isAnnotateOnce()); 
+
+			JCas cachedCAS = cachedLAP.generateSingleTHPairCAS(text, hypo); 
+			JCas originalCAS = underlyingLAP.generateSingleTHPairCAS(text, hypo); 
+			for (String viewName : new String[] {LAP_ImplBase.TEXTVIEW, LAP_ImplBase.HYPOTHESISVIEW})
+			{
+				assertEquals(originalCAS.getView(viewName).getAnnotationIndex().size(), cachedCAS.getView(viewName).getAnnotationIndex().size()); 
+			}
+			cachedCAS = cachedLAP.generateSingleTHPairCAS(hypo, text); 
+			assertEquals(2, cachedLAP.getNumberOfActualCalls()); 
+		}
+		catch (Exception e)
+		{
+			fail(e.getMessage()); 
+		}
+	}
+
+	@Test
+	public void testConcurrentRequests() {
+		final String text = "This is a pipe."; 
+		final int threads = 4; 
+		ExecutorService executor = Executors.newFixedThreadPool(threads); 
+		try {
+			// one LAP instance per thread, all counting the annotations of the text 
+			LAPAccess sharedLAP = new LemmaLevelLapEN(); 
+			AtomicInteger annotations = new AtomicInteger(); 
+			List<LAPAccess> underlyingLAPs = new ArrayList<LAPAccess>(); 
+			for (int i = 0; i < threads; i++)
+			{
+				underlyingLAPs.add(new SlowCountingLAP(sharedLAP, text, annotations)); 
+			}
+			final CachedLAPAccess cachedLAP = new CachedLAPAccess(underlyingLAPs); 
+			int actualCalls = cachedLAP.getNumberOfActualCalls(); 
+			
+			// all the threads ask for the text at once: the first one annotates it, the others wait for its result 
+			final CountDownLatch start = new CountDownLatch(1); 
+			List<Future<String>> results = new ArrayList<Future<String>>(); 
+			for (int i = 0; i < threads; i++)
+			{
+				results.add(executor.submit(new Callable<String>() {
+					@Override
+					public String call() throws Exception {
+						start.await(); 
+						JCas aJCas = cachedLAP.getWorkJCas(); 
+						cachedLAP.annotateSingleTHPairCAS(text, text, aJCas); 
+						return aJCas.getView(LAP_ImplBase.HYPOTHESISVIEW).getDocumentText(); 
+					}
+				})); 
+			}
+			start.countDown(); 
+			for (Future<String> result : results)
+			{
+				assertEquals(text, result.get()); 
+			}
+			// (the text is annotated on both views) 
+			assertEquals(2, annotations.get()); 
+			assertEquals(actualCalls + 1, cachedLAP.getNumberOfActualCalls()); 
+			assertEquals(threads, cachedLAP.getNumberOfReceivedCalls()); 
+		}
+		catch (Exception e)
+		{
+			e.printStackTrace(); 
+			fail(e.getMessage()); 
+		}
+		finally {
+			executor.shutdownNow(); 
+		}
+	}
+
+	/**
+	 * LAP that passes the calls to a shared LAP (one call at a time), counts the annotations of the given text, 
+	 * and takes its time for them, so that concurrent requests for the text arrive while it is being annotated. 
+	 */
+	private static class SlowCountingLAP implements LAPAccess {
+		
+		private final LAPAccess lap; 
+		private final String text; 
+		private final AtomicInteger annotations; 
+		
+		public SlowCountingLAP(LAPAccess lap, String text, AtomicInteger annotations) {
+			this.lap = lap; 
+			this.text = text; 
+			this.annotations = annotations; 
+		}
+
+		@Override
+		public void addAnnotationOn(JCas aJCas, String viewName) throws LAPException {
+			try {
+				if (text.equals(aJCas.getView(viewName).getDocumentText()))
+				{
+					annotations.incrementAndGet(); 
+					Thread.sleep(200); 
+				}
+			}
+			catch (Exception e)
+			{
+				throw new LAPException("Unable to annotate view " + viewName, e); 
+			}
+			synchronized (lap) {
+				lap.addAnnotationOn(aJCas, viewName); 
+			}
+		}
+
+		@Override
+		public void addAnnotationOn(JCas aJCas) throws LAPException {
+			synchronized (lap) {
+				lap.addAnnotationOn(aJCas); 
+			}
+		}
+
+		@Override
+		public JCas generateSingleTHPairCAS(String text, String hypothesis) throws LAPException {
+			synchronized (lap) {
+				return lap.generateSingleTHPairCAS(text, hypothesis); 
+			}
+		}
+
+		@Override
+		public void processRawInputFormat(File inputDir, File outputDir) throws LAPException {
+			synchronized (lap) {
+				lap.processRawInputFormat(inputDir, outputDir); 
+			}
+		}
+
+		@Override
+		public String getComponentName() {
+			return lap.getComponentName(); 
+		}
+
+		@Override
+		public String getInstanceName() {
+			return lap.getInstanceName(); 
+		}
+	}
 }
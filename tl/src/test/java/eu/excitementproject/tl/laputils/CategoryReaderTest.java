@@ -0,0 +1,47 @@
+package eu.excitementproject.tl.laputils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+
+import org.junit.Test;
+import org.w3c.dom.Element;
+import org.w3c.dom.NodeList;
+
+import eu.excitementproject.tl.structures.Interaction;
+
+public class CategoryReaderTest {
+
+	@Test
+	public void testSameAsDOM() {
+		// the streaming reader gives one interaction per category, as reading the whole XML document (DOM)
+		File f = new File("./src/test/resources/OMQ/test/omq_public_categories.xml");
+		try {
+			List<String> expected = new ArrayList<String>();
+			Element dataset = DocumentBuilderFactory.newInstance().newDocumentBuilder().parse(f).getDocumentElement();
+			NodeList categoryNodes = dataset.getElementsByTagName("category");
+			for (int i = 0; i < categoryNodes.getLength(); i++) {
+				Element category = (Element) categoryNodes.item(i);
+				String id = category.getAttribute("id");
+				expected.add("c_" + id + "|" + id + "|DE|email|OMQ|" + category.getTextContent());
+			}
+
+			List<String> categories = new ArrayList<String>();
+			for (Interaction i : CategoryReader.readCategoryXML(f)) {
+				assertEquals(0, i.getRelevantTexts().size());
+				categories.add(i.getInteractionId() + "|" + i.getCategoryString() + "|" + i.getLang() + "|" + i.getChannel() + "|" + i.getProvider() + "|" + i.getInteractionString());
+			}
+			assertTrue(expected.size() > 0);
+			assertEquals(expected, categories);
+		} catch (Exception e) {
+			e.printStackTrace();
+			fail(e.getMessage());
+		}
+	}
+}
@@ -3,16 +3,24 @@ package eu.excitementproject.tl.laputils;
 import static org.junit.Assert.*;
 
 import java.io.File;
+import java.io.FileWriter;
+import java.util.ArrayList;
 import java.util.List;
 
+import javax.xml.parsers.DocumentBuilderFactory;
+
 import org.apache.log4j.BasicConfigurator;
 import org.apache.log4j.Level;
 import org.apache.log4j.Logger;
 import org.apache.uima.jcas.JCas;
 import org.junit.Test;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
 
 import eu.excitement.type.tl.Metadata;
 import eu.excitementproject.tl.structures.Interaction;
+import eu.excitementproject.tl.structures.RelevantText;
 
 /**
  * 
@@ -330,4 +338,107 @@ public class InteractionReaderTest {
 		testlogger.info("testing of readInteractionXML() with multiple categories: Okay"); 	
     	
     }
+    
+    @Test
+    public void test_same_as_dom() {
+    	// the streaming reader gives the same interactions as reading the whole XML document (DOM) 
+    	String[] files = {
+    			"./src/test/resources/WP2_public_data_XML/D2.1.1 English-Email.xml", 
+    			"./src/test/resources/WP2_public_data_XML/keywordAnnotations.xml", 
+    			"./src/test/resources/OMQ/test/omq_public_multiple_cats_for_test.xml"};
+		try {
+			for (String f : files) {
+				List<String> expected = new ArrayList<String>(); 
+				for (Interaction i : readInteractionXMLWithDOM(new File(f))) {
+					expected.add(describe(i)); 
+				}
+				List<String> interactions = new ArrayList<String>(); 
+				for (Interaction i : InteractionReader.readInteractionXML(new File(f))) {
+					interactions.add(describe(i)); 
+				}
+				assertTrue(expected.size() > 0); 
+				assertEquals(expected, interactions); 
+			}
+		}
+		catch (Exception e)
+		{
+			e.printStackTrace();
+			fail(e.getMessage()); 
+		}	
+    }
+    
+    @Test
+    public void test_metadata_after_interactions() {
+		try {
+			File f = new File("./src/test/outputs/interactionsBeforeMetadata.xml"); 
+			FileWriter writer = new FileWriter(f); 
+			writer.write("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n<dataset>\n<provider>NICE</provider>\n<interactions>\n" 
+					+ "<interaction><metadata><id>1</id><category></category></metadata><text>The food was cold</text></interaction>\n" 
+					+ "</interactions>\n<channel>email</channel>\n<language>EN</language>\n</dataset>\n"); 
+			writer.close(); 
+			
+			// the metadata is still given to the interaction read before it 
+			List<Interaction> iList = InteractionReader.readInteractionXML(f); 
+			assertEquals(1, iList.size()); 
+			assertEquals("NICE", iList.get(0).getProvider()); 
+			assertEquals("email", iList.get(0).getChannel()); 
+			assertEquals("EN", iList.get(0).getLang()); 
+			assertEquals("The food was cold", iList.get(0).getInteractionString()); 
+		}
+		catch (Exception e)
+		{
+			e.printStackTrace();
+			fail(e.getMessage()); 
+		}	
+    }
+    
+    // reads the interactions from the whole XML document, as the reader did before streaming 
+    private List<Interaction> readInteractionXMLWithDOM(File f) throws Exception {
+    	Element dataset = DocumentBuilderFactory.newInstance().newDocumentBuilder().parse(f).getDocumentElement(); 
+    	String provider = dataset.getElementsByTagName("provider").item(0).getFirstChild().getNodeValue(); 
+    	String channel = dataset.getElementsByTagName("channel").item(0).getFirstChild().getNodeValue(); 
+    	String lang = dataset.getElementsByTagName("language").item(0).getFirstChild().getNodeValue(); 
+    	
+    	List<Interaction> interactions = new ArrayList<Interaction>(); 
+    	NodeList interactionNodes = ((Element) dataset.getElementsByTagName("interactions").item(0)).getElementsByTagName("interaction"); 
+    	for (int i = 0; i < interactionNodes.getLength(); i++) {
+    		Element oneInteraction = (Element) interactionNodes.item(i); 
+    		Node text = oneInteraction.getElementsByTagName("text").item(0); 
+    		String interactionText = ""; 
+    		List<RelevantText> relevantTexts = new ArrayList<RelevantText>(); 
+    		if (text.getChildNodes().getLength() == 1) {
+    			interactionText = text.getFirstChild().getNodeValue(); 
+    		} else {
+    			for (int k = 0; k < text.getChildNodes().getLength(); k++) {
+    				Node child = text.getChildNodes().item(k); 
+    				interactionText += child.getTextContent(); 
+    				if (child.getNodeName().equals("relevantText")) {
+    					RelevantText relevantText = new RelevantText(); 
+    					relevantText.setText(child.getTextContent()); 
+    					relevantText.setGoldCategory(((Element) child).getAttribute("goldCategory")); 
+    					relevantTexts.add(relevantText); 
+    				}
+    			}
+    		}
+    		String keywords = getFirstValue(oneInteraction, "keyword"); 
+    		Element meta = (Element) oneInteraction.getElementsByTagName("metadata").item(0); 
+    		interactions.add(new Interaction(interactionText, relevantTexts, lang, getFirstValue(meta, "id"), getFirstValue(meta, "category"), channel, provider, keywords)); 
+    	}
+    	return interactions; 
+    }
+    
+    private String getFirstValue(Element e, String tag) {
+    	NodeList elements = e.getElementsByTagName(tag); 
+    	if (elements.getLength() == 0 || elements.item(0).getFirstChild() == null) 
+    		return null; 
+    	return elements.item(0).getFirstChild().getNodeValue(); 
+    }
+    
+    private String describe(Interaction i) {
+    	String s = i.getInteractionId() + "|" + i.getLang() + "|" + i.getChannel() + "|" + i.getProvider() + "|" + i.getCategoryString() + "|" + i.getInteractionString(); 
+    	for (RelevantText r : i.getRelevantTexts()) {
+    		s += "|" + r.getGoldCategory() + ":" + r.getText(); 
+    	}
+    	return s; 
+    }
 }
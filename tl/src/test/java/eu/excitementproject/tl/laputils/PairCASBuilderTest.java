@@ -0,0 +1,94 @@
+package eu.excitementproject.tl.laputils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.uima.cas.FSIterator;
+import org.apache.uima.jcas.JCas;
+import org.apache.uima.jcas.tcas.Annotation;
+import org.junit.Test;
+
+import eu.excitement.type.entailment.Hypothesis;
+import eu.excitement.type.entailment.Text;
+import eu.excitementproject.eop.lap.implbase.LAP_ImplBase;
+
+public class PairCASBuilderTest {
+
+	private static final String[] inputs = {
+		"The food was cold",
+		"The food was really cold",
+		"The clerk was rude",
+	};
+
+	@Test
+	public void testReusedTextView() {
+		try {
+			List<JCas> cacheJCases = new ArrayList<JCas>();
+			for (String input : inputs) {
+				cacheJCases.add(createCacheCas(input));
+			}
+
+			// one text against the other inputs in a row: the text view of the second pair is restored from the snapshot
+			PairCASBuilder builder = new PairCASBuilder();
+			JCas aJCas = CASUtils.createNewInputCas();
+			builder.build(aJCas, inputs[0], cacheJCases.get(0), cacheJCases.get(1));
+			// (an annotation added to the previous pair, e.g. by an EDA, is not kept)
+			new Annotation(aJCas.getView(LAP_ImplBase.TEXTVIEW), 0, 3).addToIndexes();
+			builder.build(aJCas, inputs[0], cacheJCases.get(0), cacheJCases.get(2));
+			assertEquals(1, builder.getNumberOfReusedTextViews());
+			assertEquals(1, builder.getNumberOfCopiedTextViews());
+
+			PairCASBuilder freshBuilder = new PairCASBuilder();
+			JCas freshJCas = CASUtils.createNewInputCas();
+			freshBuilder.build(freshJCas, inputs[0], cacheJCases.get(0), cacheJCases.get(2));
+			assertEquals(0, freshBuilder.getNumberOfReusedTextViews());
+			assertEquals(describe(freshJCas), describe(aJCas));
+
+			// another text in between: the snapshot of the first text is still kept
+			builder.build(aJCas, inputs[1], cacheJCases.get(1), cacheJCases.get(0));
+			builder.build(aJCas, inputs[0], cacheJCases.get(0), cacheJCases.get(2));
+			assertEquals(2, builder.getNumberOfReusedTextViews());
+			assertEquals(describe(freshJCas), describe(aJCas));
+		} catch (Exception e) {
+			e.printStackTrace();
+			fail(e.getMessage());
+		}
+	}
+
+	// a cached CAS as made by CachedLAPAccess: the input on both views, with one annotation per word
+	private JCas createCacheCas(String input) throws Exception {
+		JCas aJCas = CASUtils.createNewInputCas();
+		JCas textView = aJCas.createView(LAP_ImplBase.TEXTVIEW);
+		JCas hypoView = aJCas.createView(LAP_ImplBase.HYPOTHESISVIEW);
+		for (JCas view : new JCas[] {textView, hypoView}) {
+			view.setDocumentLanguage("EN");
+			view.setDocumentText(input);
+			int begin = 0;
+			for (String word : input.split(" ")) {
+				new Annotation(view, begin, begin + word.length()).addToIndexes();
+				begin += word.length() + 1;
+			}
+		}
+		new Text(textView, 0, input.length()).addToIndexes();
+		new Hypothesis(hypoView, 0, input.length()).addToIndexes();
+		return aJCas;
+	}
+
+	// the texts, languages and annotations of the two views of the pair CAS
+	private List<String> describe(JCas aJCas) throws Exception {
+		List<String> description = new ArrayList<String>();
+		for (String viewName : new String[] {LAP_ImplBase.TEXTVIEW, LAP_ImplBase.HYPOTHESISVIEW}) {
+			JCas view = aJCas.getView(viewName);
+			description.add(viewName + ": " + view.getDocumentLanguage() + " " + view.getDocumentText());
+			FSIterator<Annotation> it = view.getAnnotationIndex().iterator();
+			while (it.hasNext()) {
+				Annotation a = it.next();
+				description.add(a.getType().getName() + " " + a.getBegin() + " " + a.getEnd() + " " + a.getCoveredText());
+			}
+		}
+		return description;
+	}
+}
@@ -0,0 +1,89 @@
+package eu.excitementproject.tl.laputils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.nio.file.Files;
+
+import org.apache.uima.jcas.JCas;
+import org.junit.Test;
+
+import eu.excitement.type.tl.DeterminedFragment;
+
+public class PersistentViewCacheTest {
+
+	private static final String input = "The food was really cold";
+
+	@Test
+	public void testStoreAndLoad() {
+		try {
+			File dir = Files.createTempDirectory("persistentViewCache").toFile();
+			PersistentViewCache cache = new PersistentViewCache(dir, "LAP A");
+			cache.store(input, createAnnotatedCas());
+			assertEquals(1, cache.getWrites());
+
+			// a new cache on the same directory and LAP identity loads the stored CAS
+			cache = new PersistentViewCache(dir, "LAP A");
+			JCas aJCas = CASUtils.createNewInputCas();
+			assertTrue(cache.load(input, aJCas));
+			assertEquals(input, aJCas.getDocumentText());
+			assertEquals("EN", aJCas.getDocumentLanguage());
+			assertEquals(1, aJCas.getAnnotationIndex(DeterminedFragment.type).size());
+			assertEquals(1, cache.getHits());
+
+			// another input, or another LAP identity, is not cached
+			aJCas = CASUtils.createNewInputCas();
+			assertFalse(cache.load("The food was cold", aJCas));
+			PersistentViewCache otherLap = new PersistentViewCache(dir, "LAP B");
+			assertFalse(otherLap.load(input, aJCas));
+			assertEquals(1, cache.getMisses());
+			assertEquals(1, otherLap.getMisses());
+			assertEquals(0, otherLap.getHits());
+		} catch (Exception e) {
+			e.printStackTrace();
+			fail(e.getMessage());
+		}
+	}
+
+	@Test
+	public void testFailedRename() {
+		try {
+			File dir = Files.createTempDirectory("persistentViewCache").toFile();
+			PersistentViewCache cache = new PersistentViewCache(dir, "LAP A");
+			cache.store(input, createAnnotatedCas());
+			File stored = findFile(dir);
+
+			// a non-empty directory in place of the stored file: the new file can not be renamed to it
+			assertTrue(stored.delete());
+			assertTrue(stored.mkdir());
+			assertTrue(new File(stored, "blocked").createNewFile());
+			cache.store(input, createAnnotatedCas());
+			assertEquals(1, cache.getWrites());
+			// and the temporary file is removed
+			assertEquals(1, stored.getParentFile().listFiles().length);
+		} catch (Exception e) {
+			e.printStackTrace();
+			fail(e.getMessage());
+		}
+	}
+
+	private JCas createAnnotatedCas() throws Exception {
+		JCas aJCas = CASUtils.createNewInputCas();
+		aJCas.setDocumentText(input);
+		aJCas.setDocumentLanguage("EN");
+		CASUtils.annotateOneDeterminedFragment(aJCas, new CASUtils.Region[] {new CASUtils.Region(0, input.length())});
+		return aJCas;
+	}
+
+	// the only file under the directory
+	private File findFile(File dir) {
+		for (File f : dir.listFiles()) {
+			File found = f.isDirectory() ? findFile(f) : f;
+			if (found != null) return found;
+		}
+		return null;
+	}
+}
@@ -0,0 +1,92 @@
+package eu.excitementproject.tl.laputils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import org.apache.uima.jcas.JCas;
+import org.junit.Before;
+import org.junit.Test;
+
+import eu.excitementproject.tl.laputils.CachedLAPAccess.EvictionPolicy;
+
+public class ViewCacheTest {
+
+	private JCas aJCas;
+
+	@Before
+	public void setUp() throws Exception {
+		// the cache does not look into the values, so one CAS is used for all entries
+		aJCas = CASUtils.createNewInputCas();
+	}
+
+	@Test
+	public void testLRU() {
+		ViewCache cache = new ViewCache(2, 0, EvictionPolicy.LRU);
+		cache.put("a", aJCas, 10);
+		cache.put("b", aJCas, 10);
+		assertNotNull(cache.get("a"));
+		// "b" is the least recently used
+		cache.put("c", aJCas, 10);
+		assertEquals(2, cache.size());
+		assertEquals(1, cache.getEvictions());
+		assertNull(cache.peek("b"));
+		assertNotNull(cache.peek("a"));
+		assertNotNull(cache.peek("c"));
+		assertNull(cache.get("b"));
+		assertEquals(1, cache.getHits());
+		assertEquals(1, cache.getMisses());
+	}
+
+	@Test
+	public void testLFU() {
+		ViewCache cache = new ViewCache(2, 0, EvictionPolicy.LFU);
+		cache.put("a", aJCas, 10);
+		cache.put("b", aJCas, 10);
+		cache.get("a");
+		cache.get("a");
+		cache.get("b");
+		// "b" is used less often than "a"
+		cache.put("c", aJCas, 10);
+		assertNull(cache.peek("b"));
+		assertNotNull(cache.peek("a"));
+		// "c" and "d" are used equally often, the first inserted one is evicted
+		cache.put("d", aJCas, 10);
+		assertNull(cache.peek("c"));
+		assertNotNull(cache.peek("a"));
+		assertNotNull(cache.peek("d"));
+		assertEquals(2, cache.getEvictions());
+	}
+
+	@Test
+	public void testMaxBytes() {
+		ViewCache cache = new ViewCache(0, 100, EvictionPolicy.LRU);
+		cache.put("a", aJCas, 40);
+		cache.put("b", aJCas, 40);
+		assertEquals(80, cache.getEstimatedBytes());
+		// replacing an entry replaces its size
+		cache.put("a", aJCas, 50);
+		assertEquals(90, cache.getEstimatedBytes());
+		assertEquals(2, cache.size());
+		// over the limit: the least recently used entries are evicted until the rest fits
+		cache.put("c", aJCas, 30);
+		assertNull(cache.peek("b"));
+		assertEquals(80, cache.getEstimatedBytes());
+		cache.clear();
+		assertEquals(0, cache.getEstimatedBytes());
+		assertEquals(0, cache.size());
+	}
+
+	@Test
+	public void testNewEntryIsNotEvicted() {
+		ViewCache cache = new ViewCache(0, 100, EvictionPolicy.LFU);
+		cache.put("a", aJCas, 40);
+		cache.get("a");
+		// the new entry alone is over the limit: all other entries are evicted, but not the new one
+		cache.put("b", aJCas, 150);
+		assertNull(cache.peek("a"));
+		assertNotNull(cache.peek("b"));
+		assertEquals(150, cache.getEstimatedBytes());
+		assertEquals(1, cache.getEvictions());
+	}
+}
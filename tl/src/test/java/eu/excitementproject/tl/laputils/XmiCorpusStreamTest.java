@@ -0,0 +1,147 @@
+package eu.excitementproject.tl.laputils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.uima.jcas.JCas;
+import org.junit.Before;
+import org.junit.Test;
+
+public class XmiCorpusStreamTest {
+
+	private static final String dataDir = "./src/test/resources/WP2_public_data_CAS_XMI/NICE_reAnnotated/perFrag/dev/EMAIL0060/";
+
+	private List<File> files;
+	private File brokenFile;
+
+	@Before
+	public void setUp() throws Exception {
+		files = new ArrayList<File>(Arrays.asList(
+				new File(dataDir + "464852.txt_1.xml.graphf1output.xml.xmi"),
+				new File(dataDir + "105536.txt_5.xml.graphf5output.xml.xmi"),
+				new File(dataDir + "326254.txt_1.xml.graphf1output.xml.xmi"),
+				new File(dataDir + "220190.txt_1.xml.graphf1output.xml.xmi")));
+		brokenFile = new File("./src/test/outputs/xmiCorpusStreamBroken.xmi");
+		FileWriter writer = new FileWriter(brokenFile);
+		writer.write("this is not an XMI file");
+		writer.close();
+	}
+
+	@Test
+	public void testFileOrder() {
+		try {
+			List<String> expected = new ArrayList<String>();
+			JCas aJCas = CASUtils.createNewInputCas();
+			for (File f : files) {
+				CASUtils.deserializeFromXmi(aJCas, f);
+				expected.add(aJCas.getDocumentText());
+			}
+
+			// more threads than files: the files are decoded in any order, but returned in the given one
+			XmiCorpusStream docs = new XmiCorpusStream(files, true, 4, 4);
+			List<String> texts = new ArrayList<String>();
+			try {
+				while (docs.hasNext()) {
+					JCas doc = docs.next();
+					texts.add(doc.getDocumentText());
+					docs.release(doc);
+				}
+			} finally {
+				docs.close();
+			}
+			assertEquals(expected, texts);
+			assertEquals(0, docs.getNumberOfFailures());
+		} catch (Exception e) {
+			e.printStackTrace();
+			fail(e.getMessage());
+		}
+	}
+
+	@Test
+	public void testInFlightBound() {
+		try {
+			XmiCorpusStream docs = new XmiCorpusStream(files, true, 2, 2);
+			try {
+				JCas first = docs.next();
+				JCas second = docs.next();
+				// both in-flight CASes are held: the third file can not be decoded
+				try {
+					docs.hasNext();
+					fail("Holding all the in-flight CASes should not let the stream go on");
+				} catch (IllegalStateException e) {
+					// expected
+				}
+				docs.release(first);
+				assertTrue(docs.hasNext());
+				JCas third = docs.next();
+				docs.release(second);
+				docs.release(third);
+				assertTrue(docs.hasNext());
+				docs.release(docs.next());
+				assertFalse(docs.hasNext());
+			} finally {
+				docs.close();
+			}
+		} catch (Exception e) {
+			e.printStackTrace();
+			fail(e.getMessage());
+		}
+	}
+
+	@Test
+	public void testFailedFile() {
+		try {
+			List<File> input = new ArrayList<File>(files);
+			input.add(1, brokenFile);
+			// one in-flight CAS: the slot of the broken file must be given back
+			XmiCorpusStream docs = new XmiCorpusStream(input, false, 1, 1);
+			int n = 0;
+			try {
+				while (docs.hasNext()) {
+					JCas doc = docs.next();
+					assertTrue(doc.getDocumentText().length() > 0);
+					docs.release(doc);
+					n++;
+				}
+			} finally {
+				docs.close();
+			}
+			assertEquals(files.size(), n);
+			assertEquals(1, docs.getNumberOfFailures());
+		} catch (Exception e) {
+			e.printStackTrace();
+			fail(e.getMessage());
+		}
+	}
+
+	@Test
+	public void testClose() {
+		try {
+			JCasPool pool = CASUtils.getInputCasPool();
+			int free = pool.getNumberOfFree();
+			long created = pool.getNumberOfCreated();
+
+			XmiCorpusStream docs = new XmiCorpusStream(files, true, 2, 3);
+			JCas first = docs.next();
+			// the two other in-flight CASes are decoded, or being decoded, and not yet returned by next()
+			docs.close();
+			assertFalse(docs.hasNext());
+			docs.release(first);
+
+			// every CAS taken from the pool is back in it
+			long newCases = pool.getNumberOfCreated() - created;
+			assertEquals(Math.min(CASUtils.INPUT_CAS_POOL_SIZE, free + newCases), pool.getNumberOfFree());
+		} catch (Exception e) {
+			e.printStackTrace();
+			fail(e.getMessage());
+		}
+	}
+}
@@ -1,13 +1,32 @@
 package eu.excitementproject.tl.structures.collapsedgraph;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
 import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import javax.xml.parsers.DocumentBuilderFactory;
 
 import org.apache.log4j.Logger;
 import org.junit.Test;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
 
 import eu.excitementproject.tl.composition.exceptions.EntailmentGraphCollapsedException;
+import eu.excitementproject.tl.structures.fragmentgraph.EntailmentUnitMention;
+import eu.excitementproject.tl.structures.rawgraph.EntailmentUnit;
 
 /**
  * 
@@ -31,4 +50,114 @@ public class EntailmentGraphCollapsedTest {
 		}
 	}
 
+	@Test
+	public void testNodeIndex() {
+		EntailmentUnit food = new EntailmentUnit(new EntailmentUnitMention("the food was bad", 0, "1"), "the food was bad");
+		EntailmentUnit meal = new EntailmentUnit(new EntailmentUnitMention("the meal was bad", 0, "2"), "the meal was bad");
+		EntailmentUnit service = new EntailmentUnit(new EntailmentUnitMention("service was slow", 0, "3"), "service was slow");
+		
+		EntailmentGraphCollapsed graph = new EntailmentGraphCollapsed();
+		EquivalenceClass badFood = new EquivalenceClass("bad food", new HashSet<EntailmentUnit>(Arrays.asList(food, meal)));
+		EquivalenceClass slowService = new EquivalenceClass(service);
+		graph.addEdgeWithNodes(badFood, slowService, new EntailmentRelationCollapsed(badFood, slowService, 0.5));
+		
+		assertSame(badFood, graph.getVertex(meal));
+		assertSame(badFood, graph.getVertex("bad food"));
+		assertSame(badFood, graph.getVertex("the food was bad"));
+		assertSame(slowService, graph.getVertex("service was slow"));
+		assertNull(graph.getVertex("the service was slow"));
+		
+		graph.removeVertex(badFood);
+		assertNull(graph.getVertex(food));
+		assertNull(graph.getVertex("bad food"));
+		assertSame(slowService, graph.getVertex(service));
+	}
+
+	@Test
+	public void testReadSampleXML() {
+		// the streaming reader gives the same graph as reading the whole XML document (DOM)
+		File f = new File("./src/test/resources/sample_graphs/keywordAnnotations_graph.xml");
+		try {
+			Element root = DocumentBuilderFactory.newInstance().newDocumentBuilder().parse(f).getDocumentElement();
+			List<String> expectedNodes = new ArrayList<String>();
+			int expectedMentions = 0;
+			NodeList nodeList = root.getElementsByTagName("equivalenceClassNode");
+			for (int i = 0; i < nodeList.getLength(); i++) {
+				Element node = (Element) nodeList.item(i);
+				List<String> units = new ArrayList<String>();
+				Map<String, Double> categoryConfidences = new TreeMap<String, Double>();
+				for (Element child : getChildElements(node)) {
+					if (child.getNodeName().equals("entailmentUnit")) {
+						List<String> completeStatements = new ArrayList<String>();
+						List<String> mentions = new ArrayList<String>();
+						for (Element e : getChildElements(child)) {
+							if (e.getNodeName().equals("completeStatement")) {
+								completeStatements.add(e.getAttribute("text"));
+							} else if (e.getNodeName().equals("entailmentUnitMention")) {
+								mentions.add(e.getAttribute("text") + "|" + e.getAttribute("interactionId") + "|" + Integer.valueOf(e.getAttribute("level")) + "|" + e.getAttribute("categoryId"));
+								expectedMentions++;
+							}
+						}
+						units.add(describeUnit(child.getAttribute("text"), Integer.valueOf(child.getAttribute("level")), completeStatements, mentions));
+					} else if (child.getNodeName().equals("categoryConfidence")) {
+						categoryConfidences.put(child.getAttribute("category"), Double.valueOf(child.getAttribute("confidence")));
+					}
+				}
+				Collections.sort(units);
+				expectedNodes.add(node.getAttribute("label") + "|" + units + "|" + categoryConfidences);
+			}
+			List<String> expectedEdges = new ArrayList<String>();
+			NodeList edgeList = root.getElementsByTagName("entailmentRelationCollapsedEdge");
+			for (int i = 0; i < edgeList.getLength(); i++) {
+				Element edge = (Element) edgeList.item(i);
+				expectedEdges.add(edge.getAttribute("source") + " -> " + edge.getAttribute("target") + " " + Double.valueOf(edge.getAttribute("confidence")));
+			}
+
+			EntailmentGraphCollapsed graph = new EntailmentGraphCollapsed(f);
+			List<String> nodes = new ArrayList<String>();
+			for (EquivalenceClass ec : graph.vertexSet()) {
+				List<String> units = new ArrayList<String>();
+				for (EntailmentUnit eu : ec.getEntailmentUnits()) {
+					List<String> mentions = new ArrayList<String>();
+					for (EntailmentUnitMention m : eu.getMentions()) {
+						mentions.add(m.getText() + "|" + m.getInteractionId() + "|" + m.getLevel() + "|" + m.getCategoryId());
+					}
+					units.add(describeUnit(eu.getText(), eu.getLevel(), eu.getCompleteStatementTexts(), mentions));
+				}
+				Collections.sort(units);
+				nodes.add(ec.getLabel() + "|" + units + "|" + new TreeMap<String, Double>(ec.getCategoryConfidences()));
+			}
+			List<String> edges = new ArrayList<String>();
+			for (EntailmentRelationCollapsed e : graph.edgeSet()) {
+				edges.add(e.getSource().getLabel() + " -> " + e.getTarget().getLabel() + " " + e.getConfidence());
+			}
+
+			assertTrue(expectedNodes.size() > 0);
+			Collections.sort(expectedNodes);
+			Collections.sort(nodes);
+			assertEquals(expectedNodes, nodes);
+			Collections.sort(expectedEdges);
+			Collections.sort(edges);
+			assertEquals(expectedEdges, edges);
+			assertEquals(expectedMentions, graph.getGraphStatistics().getTotalNumberOfMentions());
+		} catch (Exception e) {
+			e.printStackTrace();
+			fail(e.getMessage());
+		}
+	}
+
+	private static List<Element> getChildElements(Element element) {
+		List<Element> children = new ArrayList<Element>();
+		for (Node child = element.getFirstChild(); child != null; child = child.getNextSibling()) {
+			if (child instanceof Element) children.add((Element) child);
+		}
+		return children;
+	}
+
+	private static String describeUnit(String text, int level, Collection<String> completeStatements, List<String> mentions) {
+		List<String> sortedStatements = new ArrayList<String>(completeStatements);
+		Collections.sort(sortedStatements);
+		Collections.sort(mentions);
+		return text + "|" + level + "|" + sortedStatements + "|" + mentions;
+	}
 }
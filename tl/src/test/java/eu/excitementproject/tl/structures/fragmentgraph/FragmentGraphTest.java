@@ -1,8 +1,11 @@
 package eu.excitementproject.tl.structures.fragmentgraph;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.fail;
 
 import java.io.File;
+import java.util.Arrays;
+import java.util.HashSet;
 import java.util.Set;
 
 import junit.framework.Assert;
@@ -12,8 +15,11 @@ import org.apache.uima.jcas.JCas;
 import org.junit.Ignore;
 import org.junit.Test;
 
+import eu.excitement.type.tl.FragmentAnnotation;
+import eu.excitement.type.tl.ModifierAnnotation;
 import eu.excitementproject.tl.decomposition.fragmentgraphgenerator.FragmentGraphGeneratorFromCAS;
 import eu.excitementproject.tl.laputils.CASUtils;
+import eu.excitementproject.tl.laputils.CASUtils.Region;
 
 /**
  * 
@@ -60,4 +66,57 @@ public class FragmentGraphTest {
 			fail(e.getMessage());
 		}
 	}
+
+	@Test
+	public void testModifierLattice() {
+		try {
+			//    0         1         2         3         4
+			//    01234567890123456789012345678901234567890
+			//    Seats are really uncomfortable as too old
+			JCas aJCas = CASUtils.createNewInputCas();
+			aJCas.setDocumentText("Seats are really uncomfortable as too old");
+			aJCas.setDocumentLanguage("EN");
+			FragmentAnnotation frag = CASUtils.annotateOneDeterminedFragment(aJCas, new Region[] {new Region(0, 41)});
+			CASUtils.annotateOneModifier(aJCas, new Region[] {new Region(10, 16)}); // "really"
+			ModifierAnnotation asOld = CASUtils.annotateOneModifier(aJCas, new Region[] {new Region(31, 33), new Region(38, 41)}); // "as ... old"
+			CASUtils.annotateOneModifier(aJCas, new Region[] {new Region(34, 37)}, asOld); // "too", only with "as ... old"
+
+			// every consistent subset of the modifiers, and an edge for each modifier removed
+			Set<String> edges = new HashSet<String>(Arrays.asList(
+					"Seats are really uncomfortable as too old -> Seats are uncomfortable as too old",
+					"Seats are really uncomfortable as too old -> Seats are really uncomfortable as old",
+					"Seats are uncomfortable as too old -> Seats are uncomfortable as old",
+					"Seats are really uncomfortable as old -> Seats are uncomfortable as old",
+					"Seats are really uncomfortable as old -> Seats are really uncomfortable",
+					"Seats are really uncomfortable -> Seats are uncomfortable",
+					"Seats are uncomfortable as old -> Seats are uncomfortable"));
+
+			FragmentGraph fg = new FragmentGraph(aJCas, frag);
+			assertEquals(6, fg.vertexSet().size());
+			assertEquals(edges, getEdges(fg));
+			assertEquals("Seats are really uncomfortable as too old", fg.getCompleteStatement().getTextWithoutDoubleSpaces());
+			assertEquals("Seats are uncomfortable", fg.getBaseStatement().getTextWithoutDoubleSpaces());
+
+			// as many modifiers as the cap: the whole lattice
+			fg = new FragmentGraph(aJCas, frag, 3);
+			assertEquals(6, fg.vertexSet().size());
+			assertEquals(edges, getEdges(fg));
+
+			// more modifiers than the cap: only the top node and the base statement
+			fg = new FragmentGraph(aJCas, frag, 2);
+			assertEquals(2, fg.vertexSet().size());
+			assertEquals(new HashSet<String>(Arrays.asList("Seats are really uncomfortable as too old -> Seats are uncomfortable")), getEdges(fg));
+		} catch (Exception e) {
+			e.printStackTrace();
+			fail(e.getMessage());
+		}
+	}
+
+	private Set<String> getEdges(FragmentGraph fg) {
+		Set<String> edges = new HashSet<String>();
+		for (FragmentGraphEdge e : fg.edgeSet()) {
+			edges.add(e.getSource().getTextWithoutDoubleSpaces() + " -> " + e.getTarget().getTextWithoutDoubleSpaces());
+		}
+		return edges;
+	}
 }
@@ -1,17 +1,33 @@
 package eu.excitementproject.tl.structures.rawgraph;
 
 import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Hashtable;
+import java.util.List;
 import java.util.Set;
 
+import javax.xml.parsers.DocumentBuilderFactory;
 import javax.xml.transform.TransformerException;
 
 import org.apache.log4j.Logger;
 import org.junit.Test;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
+import eu.excitementproject.eop.common.DecisionLabel;
 import eu.excitementproject.tl.composition.exceptions.EntailmentGraphRawException;
+import eu.excitementproject.tl.structures.fragmentgraph.EntailmentUnitMention;
 import eu.excitementproject.tl.structures.fragmentgraph.FragmentGraph;
+import eu.excitementproject.tl.structures.rawgraph.utils.EdgeType;
 import eu.excitementproject.tl.structures.utils.XMLFileWriter;
 
 /**
@@ -98,6 +114,200 @@ public class EntailmentGraphRawTest {
 		
 	}
 
-}
+	@Test
+	public void testTextIndex() {
+		EntailmentGraphRaw rawGraph = new EntailmentGraphRaw();
+		rawGraph.addEntailmentUnitMention(new EntailmentUnitMention("The food  was bad", 0, "1"), "The food was bad");
+		rawGraph.addEntailmentUnitMention(new EntailmentUnitMention("the food was bad ", 0, "2"), "the food was bad");
+		rawGraph.addEntailmentUnitMention(new EntailmentUnitMention("Service was slow", 0, "3"), "Service was slow");
+		assertEquals(2, rawGraph.vertexSet().size());
+
+		// lookup ignores case and extra spaces, and finds the mention texts 
+		EntailmentUnit food = rawGraph.getVertexWithExactText("The food  was bad");
+		assertNotNull(food);
+		assertSame(food, rawGraph.getVertexWithText("THE FOOD WAS BAD"));
+		assertSame(food, rawGraph.getVertexWithText(" the food   was bad"));
+		assertNull(rawGraph.getVertexWithExactText("the food was bad"));
+		assertNull(rawGraph.getVertexWithText("the food was good"));
+		
+		// the index follows the removal of vertices, and a clone has its own index
+		EntailmentGraphRaw copy = (EntailmentGraphRaw) rawGraph.clone();
+		rawGraph.removeVertex(food);
+		assertNull(rawGraph.getVertexWithText("the food was bad"));
+		assertNotNull(rawGraph.getVertexWithText("service was slow"));
+		assertSame(food, copy.getVertexWithText("the food was bad"));
+	}
+
+	@Test
+	public void testFragmentGraphIndex() {
+		FragmentGraph fg = FragmentGraph.getSampleGraph();
+		EntailmentGraphRaw rawGraph = new EntailmentGraphRaw(fg, false);
+		String completeStatement = fg.getCompleteStatement().getText();
+		EntailmentUnit baseStatement = rawGraph.getVertexWithText(fg.getBaseStatement().getText());
+		assertEquals(Collections.singleton(baseStatement), rawGraph.getBaseStatements());
+		
+		try {
+			Hashtable<Integer, Set<EntailmentUnit>> fgNodes = rawGraph.getFragmentGraphNodes(baseStatement, completeStatement);
+			int numberOfNodes = 0;
+			for (int level : fgNodes.keySet()){
+				for (EntailmentUnit node : fgNodes.get(level)){
+					assertEquals(level, node.getLevel());
+					assertTrue(node.isPartOfFragmentGraph(completeStatement));
+					numberOfNodes++;
+				}
+			}
+			assertEquals(rawGraph.vertexSet().size(), numberOfNodes);
+		} catch (EntailmentGraphRawException e) {
+			e.printStackTrace();
+			fail(e.getMessage());
+		}
+	}
+
+	@Test
+	public void testIncrementalTransitiveClosure() {
+		EntailmentGraphRaw rawGraph = new EntailmentGraphRaw();
+		EntailmentUnit[] nodes = RawGraphTestUtils.createNodes(rawGraph, 5);
+		RawGraphTestUtils.addEntailmentEdges(rawGraph, nodes, new int[][]{{0,1},{2,3}}, 0.9, 0.8);
+		// the first update is a full closure, and starts recording the changes for the next one
+		rawGraph.updateTransitiveClosure();
+		assertFalse(rawGraph.isEntailment(nodes[0], nodes[3]));
+
+		// connect the two chains: 0->1->2->3, and 3->4
+		RawGraphTestUtils.addEntailmentEdges(rawGraph, nodes, new int[][]{{1,2},{3,4}}, 0.7, 0.6);
+		rawGraph.addEdgeByInduction(nodes[4], nodes[0], DecisionLabel.NonEntailment, 1.0);
+		rawGraph.updateTransitiveClosure();
+		for (int i = 0; i < nodes.length; i++){
+			for (int j = i+1; j < nodes.length; j++){
+				assertTrue(rawGraph.isEntailment(nodes[i], nodes[j]));
+				assertFalse(rawGraph.isEntailment(nodes[j], nodes[i]));
+			}
+		}
+		// closure edges get the min confidence of the edges they are made of
+		assertEquals(0.7, rawGraph.getEdge(nodes[0], nodes[2]).getConfidence(), 0.0001);
+		assertEquals(0.6, rawGraph.getEdge(nodes[0], nodes[4]).getConfidence(), 0.0001);
+		
+		// the same edges as the full transitive closure
+		EntailmentGraphRaw fullClosure = (EntailmentGraphRaw) rawGraph.clone();
+		fullClosure.applyTransitiveClosure();
+		assertEquals(rawGraph.edgeSet().size(), fullClosure.edgeSet().size());
+	}
+
+	@Test
+	public void testTransitiveClosureAndReduction() {
+		EntailmentGraphRaw rawGraph = new EntailmentGraphRaw();
+		EntailmentUnit[] nodes = RawGraphTestUtils.createNodes(rawGraph, 4);
+		// a cycle 0<->1, and 1->2->3
+		RawGraphTestUtils.addEntailmentEdges(rawGraph, nodes, new int[][]{{0,1},{1,0},{1,2},{2,3}}, 0.9, 0.8, 0.7, 0.6);
+		int originalEdges = rawGraph.edgeSet().size();
+		
+		rawGraph.applyTransitiveClosure();
+		for (int i = 0; i < nodes.length; i++){
+			for (int j = i+1; j < nodes.length; j++){
+				assertTrue(rawGraph.isEntailment(nodes[i], nodes[j]));
+			}
+		}
+		assertFalse(rawGraph.isEntailment(nodes[2], nodes[1]));
+		assertEquals(0.7, rawGraph.getEdge(nodes[0], nodes[2]).getConfidence(), 0.0001);
+		assertEquals(0.6, rawGraph.getEdge(nodes[1], nodes[3]).getConfidence(), 0.0001);
+		assertEquals(originalEdges+3, rawGraph.edgeSet().size());
+
+		// the reduction keeps the cycle, and one edge from the cycle to each next node
+		EntailmentGraphRaw reduction = rawGraph.getTransitiveReduction();
+		assertEquals(originalEdges, reduction.edgeSet().size());
+		assertTrue(reduction.isEntailment(nodes[0], nodes[1]));
+		assertTrue(reduction.isEntailment(nodes[1], nodes[0]));
+		assertTrue(reduction.isEntailment(nodes[2], nodes[3]));
+		assertFalse(reduction.isEntailment(nodes[0], nodes[3]));
+		assertFalse(reduction.isEntailment(nodes[1], nodes[3]));
+		assertEquals(originalEdges+3, rawGraph.edgeSet().size());
+	}
 
+	@Test
+	public void testFilteredView() {
+		EntailmentGraphRaw rawGraph = new EntailmentGraphRaw();
+		EntailmentUnit[] nodes = RawGraphTestUtils.createNodes(rawGraph, 3);
+		RawGraphTestUtils.addEntailmentEdges(rawGraph, nodes, new int[][]{{0,1},{1,2}}, 0.9, 0.3);
+		rawGraph.addEdgeByInduction(nodes[2], nodes[0], DecisionLabel.NonEntailment, 0.8);
+		
+		FilteredEntailmentGraphRaw view = new FilteredEntailmentGraphRaw(rawGraph, DecisionLabel.Entailment, 0.5);
+		assertEquals(3, view.vertexSet().size());
+		assertEquals(1, view.edgeSet().size());
+		assertNotNull(view.getEdge(nodes[0], nodes[1]));
+		assertNull(view.getEdge(nodes[1], nodes[2]));
+		assertNull(view.getEdge(nodes[2], nodes[0]));
+		
+		// the view follows the changes of the graph, which is not copied
+		rawGraph.addEdgeByInduction(nodes[1], nodes[2], DecisionLabel.Entailment, 0.6);
+		assertEquals(2, view.edgeSet().size());
+		assertEquals(4, rawGraph.edgeSet().size());
+		try {
+			view.removeVertex(nodes[0]);
+			fail("The view should be read-only");
+		} catch (UnsupportedOperationException e) {
+			// expected
+		}
+	}
 
+	@Test
+	public void testReadSampleXML() {
+		// the streaming reader gives the same graph as reading the whole XML document (DOM)
+		File f = new File("./src/test/resources/sample_graphs/9interactions_merged_graph.xml");
+		try {
+			Element root = DocumentBuilderFactory.newInstance().newDocumentBuilder().parse(f).getDocumentElement();
+			List<String> expectedNodes = new ArrayList<String>();
+			NodeList nodeList = root.getElementsByTagName("entailmentUnitNode");
+			for (int i = 0; i < nodeList.getLength(); i++) {
+				Element node = (Element) nodeList.item(i);
+				List<String> completeStatements = new ArrayList<String>();
+				List<String> mentions = new ArrayList<String>();
+				for (Node child = node.getFirstChild(); child != null; child = child.getNextSibling()) {
+					if (child.getNodeName().equals("completeStatement")) {
+						completeStatements.add(((Element) child).getAttribute("text"));
+					} else if (child.getNodeName().equals("entailmentUnitMention")) {
+						Element e = (Element) child;
+						mentions.add(e.getAttribute("text") + "|" + e.getAttribute("interactionId") + "|" + Integer.valueOf(e.getAttribute("level")) + "|" + e.getAttribute("categoryId"));
+					}
+				}
+				expectedNodes.add(describeNode(node.getAttribute("text"), Integer.valueOf(node.getAttribute("level")), completeStatements, mentions));
+			}
+			List<String> expectedEdges = new ArrayList<String>();
+			NodeList edgeList = root.getElementsByTagName("entailmentRelationEdge");
+			for (int i = 0; i < edgeList.getLength(); i++) {
+				Element edge = (Element) edgeList.item(i);
+				expectedEdges.add(edge.getAttribute("source") + " -> " + edge.getAttribute("target") + " " + EdgeType.convert(edge.getAttribute("type")) 
+						+ " " + DecisionLabel.getLabelFor(edge.getAttribute("decisionLabel")) + " " + Double.valueOf(edge.getAttribute("confidence")));
+			}
+
+			EntailmentGraphRaw graph = new EntailmentGraphRaw(f);
+			List<String> nodes = new ArrayList<String>();
+			for (EntailmentUnit eu : graph.vertexSet()) {
+				List<String> mentions = new ArrayList<String>();
+				for (EntailmentUnitMention m : eu.getMentions()) {
+					mentions.add(m.getText() + "|" + m.getInteractionId() + "|" + m.getLevel() + "|" + m.getCategoryId());
+				}
+				nodes.add(describeNode(eu.getText(), eu.getLevel(), new ArrayList<String>(eu.getCompleteStatementTexts()), mentions));
+			}
+			List<String> edges = new ArrayList<String>();
+			for (EntailmentRelation e : graph.edgeSet()) {
+				edges.add(e.getSource().getText() + " -> " + e.getTarget().getText() + " " + e.getEdgeType() + " " + e.getLabel() + " " + e.getConfidence());
+			}
+
+			assertTrue(expectedEdges.size() > 0);
+			Collections.sort(expectedNodes);
+			Collections.sort(nodes);
+			assertEquals(expectedNodes, nodes);
+			Collections.sort(expectedEdges);
+			Collections.sort(edges);
+			assertEquals(expectedEdges, edges);
+		} catch (Exception e) {
+			e.printStackTrace();
+			fail(e.getMessage());
+		}
+	}
+
+	private static String describeNode(String text, int level, List<String> completeStatements, List<String> mentions) {
+		Collections.sort(completeStatements);
+		Collections.sort(mentions);
+		return text + "|" + level + "|" + completeStatements + "|" + mentions;
+	}
+}
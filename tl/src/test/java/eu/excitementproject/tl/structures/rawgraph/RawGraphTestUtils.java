@@ -0,0 +1,43 @@
+package eu.excitementproject.tl.structures.rawgraph;
+
+import eu.excitementproject.eop.common.DecisionLabel;
+import eu.excitementproject.tl.structures.fragmentgraph.EntailmentUnitMention;
+
+/**
+ * Fixtures of raw graphs for the tests: nodes "node 0" ... "node n-1" and induced entailment edges between them, given by node indexes.
+ */
+public final class RawGraphTestUtils {
+
+	private RawGraphTestUtils() {
+	}
+
+	/**
+	 * Add n nodes "node 0" ... "node n-1" to the graph
+	 * @param graph
+	 * @param n
+	 * @return the nodes
+	 */
+	public static EntailmentUnit[] createNodes(EntailmentGraphRaw graph, int n) {
+		EntailmentUnit[] nodes = new EntailmentUnit[n];
+		for (int i = 0; i < n; i++){
+			nodes[i] = new EntailmentUnit(new EntailmentUnitMention("node "+i, 0, String.valueOf(i)), "node "+i);
+			graph.addVertex(nodes[i]);
+		}
+		return nodes;
+	}
+
+	/**
+	 * Add an induced entailment edge for each given pair of node indexes, with the confidence at the same position 
+	 * (or with the same confidence for all the edges, if only one confidence is given)
+	 * @param graph
+	 * @param nodes
+	 * @param edges
+	 * @param confidences
+	 */
+	public static void addEntailmentEdges(EntailmentGraphRaw graph, EntailmentUnit[] nodes, int[][] edges, double... confidences) {
+		for (int i = 0; i < edges.length; i++){
+			double confidence = (confidences.length == 1) ? confidences[0] : confidences[i];
+			graph.addEdgeByInduction(nodes[edges[i][0]], nodes[edges[i][1]], DecisionLabel.Entailment, confidence);
+		}
+	}
+}
@@ -0,0 +1,119 @@
+package eu.excitementproject.tl.toplevel.usecaseonerunner;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.uima.jcas.JCas;
+import org.junit.Test;
+
+import eu.excitementproject.eop.lap.dkpro.TreeTaggerEN;
+import eu.excitementproject.tl.composition.graphmerger.StructureBasedGraphMerger;
+import eu.excitementproject.tl.composition.graphoptimizer.GlobalGraphOptimizer;
+import eu.excitementproject.tl.decomposition.api.FragmentAnnotator;
+import eu.excitementproject.tl.decomposition.exceptions.FragmentAnnotatorException;
+import eu.excitementproject.tl.decomposition.fragmentannotator.SentenceAsFragmentAnnotator;
+import eu.excitementproject.tl.decomposition.fragmentgraphgenerator.FragmentGraphGeneratorFromCAS;
+import eu.excitementproject.tl.decomposition.modifierannotator.AdvAsModifierAnnotator;
+import eu.excitementproject.tl.edautils.RandomEDA;
+import eu.excitementproject.tl.laputils.CachedLAPAccess;
+import eu.excitementproject.tl.structures.Interaction;
+import eu.excitementproject.tl.structures.rawgraph.EntailmentGraphRaw;
+import eu.excitementproject.tl.structures.rawgraph.EntailmentUnit;
+
+public class UseCaseOneRunnerPrototypeTest {
+
+	// the fragment annotator of the test fails on the interactions starting with this text
+	private static final String FAILING = "Unreadable";
+
+	private static final String[] texts = {
+		"The food was really cold. The clerk was very rude.",
+		FAILING + " the seats were extremely uncomfortable.",
+		"The train was late again.",
+	};
+
+	@Test
+	public void testPipelinedBuild() {
+		try {
+			CachedLAPAccess lap = new CachedLAPAccess(new TreeTaggerEN());
+			Set<Interaction> docs = new LinkedHashSet<Interaction>();
+			for (String text : texts) {
+				if (!text.startsWith(FAILING))
+					docs.add(new Interaction(text, "EN"));
+			}
+			Map<String, Integer> expected = getMentionCounts(createRunner(lap).buildRawGraph(docs));
+			assertFalse(expected.isEmpty());
+
+			UseCaseOneRunnerPrototype pipelined = createRunner(lap);
+			pipelined.setPipelineCapacity(1);
+			assertEquals(expected, getMentionCounts(pipelined.buildRawGraph(docs)));
+
+			// JCas inputs: the failing input is skipped, as in the sequential build
+			pipelined = createRunner(lap);
+			pipelined.setPipelineCapacity(1);
+			List<JCas> cases = new ArrayList<JCas>();
+			for (String text : texts) {
+				cases.add(new Interaction(text, "EN").createAndFillInputCAS());
+			}
+			assertEquals(expected, getMentionCounts(pipelined.buildRawGraph(cases)));
+		} catch (Exception e) {
+			e.printStackTrace();
+			fail(e.getMessage());
+		}
+	}
+
+	@Test
+	public void testPipelinedFailure() {
+		try {
+			CachedLAPAccess lap = new CachedLAPAccess(new TreeTaggerEN());
+			UseCaseOneRunnerPrototype pipelined = createRunner(lap);
+			pipelined.setPipelineCapacity(1);
+
+			// Interaction inputs: the failure is thrown, as in the sequential build
+			Set<Interaction> docs = new LinkedHashSet<Interaction>();
+			for (String text : texts) {
+				docs.add(new Interaction(text, "EN"));
+			}
+			try {
+				pipelined.buildRawGraph(docs);
+				fail("The failure of the decomposition should be thrown");
+			} catch (FragmentAnnotatorException e) {
+				// expected
+			}
+		} catch (Exception e) {
+			e.printStackTrace();
+			fail(e.getMessage());
+		}
+	}
+
+	private UseCaseOneRunnerPrototype createRunner(CachedLAPAccess lap) throws Exception {
+		FragmentAnnotator fragAnot = new SentenceAsFragmentAnnotator(lap) {
+			@Override
+			public void annotateFragments(JCas aJCas) throws FragmentAnnotatorException {
+				if (aJCas.getDocumentText().startsWith(FAILING)) {
+					throw new FragmentAnnotatorException("Unable to annotate " + aJCas.getDocumentText());
+				}
+				super.annotateFragments(aJCas);
+			}
+		};
+		RandomEDA eda = new RandomEDA();
+		return new UseCaseOneRunnerPrototype(lap, eda, fragAnot, new AdvAsModifierAnnotator(lap),
+				new FragmentGraphGeneratorFromCAS(), new StructureBasedGraphMerger(lap, eda), new GlobalGraphOptimizer());
+	}
+
+	// the number of mentions of each node: the edges depend on the (random) EDA, the nodes do not
+	private Map<String, Integer> getMentionCounts(EntailmentGraphRaw graph) {
+		Map<String, Integer> mentions = new HashMap<String, Integer>();
+		for (EntailmentUnit node : graph.vertexSet()) {
+			mentions.put(node.getText(), node.getMentions().size());
+		}
+		return mentions;
+	}
+}